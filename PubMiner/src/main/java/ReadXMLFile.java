@@ -11,18 +11,21 @@ import com.amazonaws.services.dynamodbv2.model.ListTablesResult;
 import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.AmazonS3ClientBuilder;
 import com.amazonaws.services.s3.model.S3Object;
+import edu.harvard.nlp.SentenceAnnotationCache;
+import edu.harvard.pipeline.DemographicExtraction;
+import edu.harvard.pipeline.DemographicExtractor;
+import edu.harvard.pipeline.MiningOutcome;
+import edu.harvard.scoring.SentenceFeatureStoreWriter;
 import edu.uwm.pmcarticleparser.PMCArticle;
-import edu.uwm.pmcarticleparser.structuralelements.PMCArticleAbstract;
-import edu.uwm.pmcarticleparser.structuralelements.PMCArticleFullText;
-import edu.uwm.pmcarticleparser.structuralelements.PMCArticleSentence;
+import edu.uwm.pmcarticleparser.PMCSectionFilter;
 import org.json.simple.JSONArray;
 import org.json.simple.parser.JSONParser;
 
 import java.io.FileReader;
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Paths;
 import java.util.*;
-import java.util.Map.Entry;
-import java.util.stream.Collectors;
 
 /**
  * Created by bingao on 3/10/18.
@@ -35,6 +38,10 @@ public class ReadXMLFile {
     private static final String SENTENCES_COLUMN_NAME = "sentences";
     private static final String ERROR_STATUS_COLUMN_NAME = "errorStatus";
     private static final String BUCKET_NAME = "pubmedcentral_oa";
+    private static final String ANNOTATION_CACHE_FILE = "./annotations.cache";
+    private static final long ANNOTATION_CACHE_MAX_BYTES = 1L << 30;
+    private static final String SENTENCE_FEATURE_STORE = "./sentence-features";
+    private static final String PRUNE_SECTIONS_OPTION = "--prune-sections";
 
     public static void main(String argv[]) {
         int updateCount = 0;
@@ -59,6 +66,34 @@ public class ReadXMLFile {
             return;
         }
 
+        // Lemmas and dependency labels do not change between scoring experiments, so they are kept across runs.
+        SentenceAnnotationCache annotationCache;
+        try {
+            annotationCache = SentenceAnnotationCache.open(Paths.get(ANNOTATION_CACHE_FILE),
+                    ANNOTATION_CACHE_MAX_BYTES);
+        } catch (IOException ex) {
+            System.out.println("Caught Exception while opening annotation cache: " + ex);
+            return;
+        }
+
+        // New weights are tried on these with SentenceRescorer, without parsing the articles again.
+        SentenceFeatureStoreWriter featureWriter;
+        try {
+            featureWriter = SentenceFeatureStoreWriter.open(Paths.get(SENTENCE_FEATURE_STORE));
+        } catch (IOException ex) {
+            System.out.println("Caught Exception while opening sentence feature store: " + ex);
+            return;
+        }
+
+        // With --prune-sections, only the abstract and the sections demographic sentences come from are split into
+        // sentences; by default, all of them are.
+        PMCSectionFilter sectionFilter = Arrays.asList(argv).contains(PRUNE_SECTIONS_OPTION)
+                ? PMCSectionFilter.demographics() : null;
+        DemographicExtractor extractor = DemographicExtractor.builder()
+                .annotationCache(annotationCache)
+                .sectionFilter(sectionFilter)
+                .build();
+
         final AmazonS3 s3 = AmazonS3ClientBuilder.standard()
                 .withRegion(Regions.US_EAST_1)
                 .build();
@@ -105,7 +140,7 @@ public class ReadXMLFile {
                     String key_name = "PMC" + pmcid + ".nxml";
                     S3Object o = s3.getObject(BUCKET_NAME, key_name);
                     InputStream s3is = o.getObjectContent();
-                    pa = new PMCArticle(s3is);
+                    pa = extractor.parse(s3is);
                 } catch (Exception ex) {
                     System.out.println("Caught Exception while reading s3 file: " + ex);
                     continue;
@@ -124,18 +159,13 @@ public class ReadXMLFile {
                 }
                 */
 
-                PMCArticleAbstract pmcArticleAbstract = pa.getAbstract();
-
-                PMCArticleFullText fullText = pa.getFullText();
-                List<PMCArticleSentence> allSentences = new ArrayList<>();
-                allSentences.addAll(pmcArticleAbstract.getAbstractSentences());
-                allSentences.addAll(fullText.getFullTextSentences());
+                DemographicExtraction extraction = extractor.extract(pa);
 
                 // Skip articles that are empty.
-                if (allSentences.isEmpty()) {
+                if (extraction.isEmpty()) {
                     UpdateItemSpec updateItemSpec = new UpdateItemSpec().withPrimaryKey(PMCID_COLUMN_NAME, pmcid)
                             .withUpdateExpression("set errorStatus = :val").withValueMap(new ValueMap().withString
-                                    (":val", "empty"));
+                                    (":val", MiningOutcome.EMPTY));
                     UpdateItemOutcome updateItemOutcome = table.updateItem(updateItemSpec);
 
                     System.out.println("UpdateItemOutcome: " + updateItemOutcome);
@@ -143,100 +173,19 @@ public class ReadXMLFile {
                     continue;
                 }
 
-                /*
-                List<PMCArticleSentence> demographicSentences = allSentences.stream().filter(s -> s.hasAnchorWords() && s
-                        .getNummodCount() > 0).sorted(Comparator.comparing
-                        (PMCArticleSentence::getDemographicScore).reversed()).collect(Collectors.toList());
-                */
-
-                List<PMCArticleSentence> demographicSentences = allSentences.stream().filter(s -> s.hasAnchorWords() && s
-                        .getNummodCount() > 0).collect(Collectors.toList());
-
-                Map<String, Integer> numCounts = new HashMap<>();
-                for (PMCArticleSentence s : demographicSentences) {
-                    for (int index : s.getNummodIndices()) {
-                        String currentLemma = s.getLemmas().get(index);
-                        Integer count = numCounts.get(currentLemma);
-                        if (count == null) {
-                            numCounts.put(currentLemma, 1);
-                        } else {
-                            numCounts.put(currentLemma, count + 1);
-                        }
-                    }
-                }
-                numCounts.entrySet().stream()
-                        .sorted(Entry.<String, Integer>comparingByValue().reversed())
-                        .limit(10)
-                        .forEach(System.out::println);
-
-                System.out.println("Number of sentences: " + allSentences.size());
-
-                demographicSentences = demographicSentences.stream().sorted((s1, s2) ->
-                        s2.getDemographicScoreBasedOnNumCounts(numCounts).compareTo(s1.getDemographicScoreBasedOnNumCounts
-
-                                (numCounts))).collect(Collectors.toList());
-
-                List<Map> sentenceList = new ArrayList<>();
-
-                int i = 0;
-                for (PMCArticleSentence s : demographicSentences) {
-                    // SemanticGraph semanticGraph = sentence.dependencyGraph();
-                    // System.out.println("dependencyGraph: " + semanticGraph);
-
-                    System.out.println(i + ": " + s.getText());
-                    System.out.println("lemmas: " + s.getLemmas());
-                    for (int index : s.getNummodIndices()) {
-                        System.out.println(s.getLemmas().get(index) + " " + s.getLemmas().get(index + 1) + "\t" + numCounts.get(s.getLemmas().get(index)));
-
-                    }
-
-                    System.out.println("End of numeric modifier list. Score: " + s.getDemographicScoreBasedOnNumCounts
-                            (numCounts) + "\n");
-
-                    // System.out.println("\tnerTags: " + s.getNerTags());
-
-                    ++i;
-                    System.out.println(s.getInParagraphIndex() + "/" + s.getTotalSentencesInContainingParagraph());
-                    System.out.println(s.getSectionName());
-                    System.out.println(s.getSubSectionName());
-                    System.out.println();
-
-                    Map sentenceMap = new HashMap();
-                    sentenceMap.put("text", s.getText());
-                    String sectionName = null;
-                    if (!s.getSubSectionName().isEmpty()) {
-                        sectionName = s.getSubSectionName();
-                    } else if (!s.getSectionName().isEmpty()) {
-                        sectionName = s.getSectionName();
-                    } else {
-                        sectionName = "Abstract";
-                    }
-                    sentenceMap.put("section", sectionName);
-                    sentenceList.add(sentenceMap);
-
-                    if (i >= 10) {
-                        break;
-                    }
-                }
-
-                /*
-                i = 0;
-                for (PMCArticleSentence s : demographicSentences) {
-                    System.out.println((i++) + ": " + s.getText());
-                    if (i >= 10) {
-                        break;
-                    }
+                try {
+                    featureWriter.append(pmcid, extraction.getSentences());
+                } catch (IOException ex) {
+                    System.out.println("Caught Exception while writing sentence features: " + ex);
                 }
 
-                if (pmcid!=null) {
-                    break;
-                }
-                */
+                extraction.print(System.out);
 
+                List<Map<String, String>> sentenceList = extraction.getSentenceMaps();
                 if (sentenceList.isEmpty()) {
                     UpdateItemSpec updateItemSpec = new UpdateItemSpec().withPrimaryKey(PMCID_COLUMN_NAME, pmcid)
                             .withUpdateExpression("set errorStatus = :val").withValueMap(new ValueMap().withString
-                                    (":val", "not randomized clinical trials"));
+                                    (":val", MiningOutcome.NOT_RANDOMIZED_CLINICAL_TRIALS));
                     UpdateItemOutcome updateItemOutcome = table.updateItem(updateItemSpec);
 
                     System.out.println("UpdateItemOutcome: " + updateItemOutcome);
@@ -263,6 +212,22 @@ public class ReadXMLFile {
             //lastKeyEvaluated = result.getLastEvaluatedKey();
         } while (false);
 
+        if (sectionFilter != null) {
+            System.out.println(sectionFilter);
+        }
+        System.out.println("Annotation cache hits: " + annotationCache.getHitCount() + " misses: "
+                + annotationCache.getMissCount() + " evictions: " + annotationCache.getEvictionCount());
+        try {
+            annotationCache.close();
+        } catch (IOException ex) {
+            System.out.println("Caught Exception while closing annotation cache: " + ex);
+        }
+        try {
+            featureWriter.close();
+        } catch (IOException ex) {
+            System.out.println("Caught Exception while closing sentence feature store: " + ex);
+        }
+
         /*
         List<PMCArticleTable> tables = pa.getTables();
         for (PMCArticleTable tab : tables) {
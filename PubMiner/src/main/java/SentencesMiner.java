@@ -1,48 +1,88 @@
+import com.amazonaws.ClientConfiguration;
 import com.amazonaws.regions.Regions;
 import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
 import com.amazonaws.services.dynamodbv2.AmazonDynamoDBClientBuilder;
-import com.amazonaws.services.dynamodbv2.document.*;
-import com.amazonaws.services.dynamodbv2.document.spec.QuerySpec;
-import com.amazonaws.services.dynamodbv2.document.spec.UpdateItemSpec;
-import com.amazonaws.services.dynamodbv2.document.utils.ValueMap;
-import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException;
 import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.AmazonS3ClientBuilder;
-import com.amazonaws.services.s3.model.S3Object;
+import edu.harvard.corpus.PMCCorpusStore;
+import edu.harvard.pipeline.ArticleSource;
+import edu.harvard.pipeline.DemographicExtraction;
+import edu.harvard.pipeline.DemographicExtractor;
+import edu.harvard.pipeline.DemographicsStore;
+import edu.harvard.pipeline.DynamoDBDemographicsStore;
+import edu.harvard.pipeline.InMemoryDemographicsStore;
+import edu.harvard.pipeline.JournaledDemographicsStore;
+import edu.harvard.pipeline.MiningOutcome;
+import edu.harvard.pipeline.MiningPipeline;
+import edu.harvard.pipeline.PipelinedDemographicsStore;
+import edu.harvard.pipeline.ProgressJournal;
+import edu.harvard.pipeline.S3ArticleSource;
+import edu.harvard.pipeline.ThroughputGovernor;
+import edu.harvard.scoring.NummodPairSketch;
 import edu.uwm.pmcarticleparser.PMCArticle;
-import edu.uwm.pmcarticleparser.structuralelements.PMCArticleAbstract;
-import edu.uwm.pmcarticleparser.structuralelements.PMCArticleFullText;
+import edu.uwm.pmcarticleparser.PMCSectionFilter;
+import edu.uwm.pmcarticleparser.structuralelements.DemographicScoringModel;
 import edu.uwm.pmcarticleparser.structuralelements.PMCArticleSentence;
 import org.json.simple.JSONArray;
 import org.json.simple.parser.JSONParser;
 
 import java.io.FileReader;
-import java.io.InputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
-import java.util.Map.Entry;
-import java.util.stream.Collectors;
 
 /**
  * Created by bingao on 3/10/18.
  */
 public class SentencesMiner {
 
-    private static final String TABLE_NAME = "demographics";
-    private static final String PMCID_COLUMN_NAME = "pmcid";
-    private static final String SENTENCES_COLUMN_NAME = "sentences";
-    private static final String ERROR_STATUS_COLUMN_NAME = "errorStatus";
+    private static final String TABLE_NAME = DynamoDBDemographicsStore.TABLE_NAME;
     private static final String BUCKET_NAME = "pubmedcentral_oa";
     private static final String NEW_RCTS_JSON_FILE_PATH = "./newRCTs.json";
+    private static final String PROGRESS_JOURNAL_FILE_PATH = "./progress.journal";
     private static final Regions US_EAST_REGION = Regions.US_EAST_1;
+    private static final String LOCAL_OPTION = "--local";
+    private static final String OPTIMISTIC_OPTION = "--optimistic";
+    private static final String PRUNE_SECTIONS_OPTION = "--prune-sections";
+    private static final int METRICS_REPORT_INTERVAL_SECONDS = 60;
+    private static final String IDF_PAIR_WEIGHTING = "idf";
 
-    public static void main(String argv[]) {
-        int updateCount = 0;
+    // With --prune-sections, only the abstract and the sections demographic sentences come from are split into
+    // sentences; by default, all of them are.
+    private static PMCSectionFilter sectionFilter;
+    // Shared by the NLP workers; it also counts the numeric modifier pairs of the articles for the corpus sketch.
+    private static volatile DemographicExtractor extractor = DemographicExtractor.builder()
+            .countPairs()
+            .build();
 
-        AmazonDynamoDB dbClient = AmazonDynamoDBClientBuilder.standard()
-                .withRegion(US_EAST_REGION)
-                .build();
-        DynamoDB dynamoDB = new DynamoDB(dbClient);
-        Table table = dynamoDB.getTable(TABLE_NAME);
+    /**
+     * Mines the demographic sentences of the articles in newRCTs.json.
+     * Usage: SentencesMiner [--optimistic] [--prune-sections] [corpus directory [--local]]
+     * With a corpus packed by PMCCorpusPacker, articles are read from it
+     * before S3. With --local, only the corpus is read and the outcomes are
+     * kept in memory instead of DynamoDB. With --optimistic, the states of
+     * the articles are not read from DynamoDB first: every article is mined,
+     * and the conditional updates keep the stored sentences. The articles
+     * finished with DynamoDB are journaled in progress.journal, and skipped
+     * without asking DynamoDB when the miner is run again. The updates are
+     * paced to the provisioned write capacity of the table. With
+     * --prune-sections, the sections demographic sentences do not come from,
+     * such as the introduction and the discussion, are not split into
+     * sentences: the articles are mined faster, but their sentences are
+     * numbered and counted without those sections.
+     */
+    public static void main(String argv[]) {
+        List<String> arguments = new ArrayList<>(Arrays.asList(argv));
+        boolean optimistic = arguments.remove(OPTIMISTIC_OPTION);
+        if (arguments.remove(PRUNE_SECTIONS_OPTION)) {
+            sectionFilter = PMCSectionFilter.demographics();
+            extractor = DemographicExtractor.builder()
+                    .sectionFilter(sectionFilter)
+                    .countPairs()
+                    .build();
+        }
 
         // Getting PMC Ids from the new RCT json file.
         List<String> pmcids = new ArrayList<>();
@@ -57,156 +97,175 @@ public class SentencesMiner {
             return;
         }
 
-        final AmazonS3 s3Client = AmazonS3ClientBuilder.standard()
-                .withRegion(US_EAST_REGION)
-                .build();
-
-        for (String pmcid : pmcids) {
-            QuerySpec querySpec = new QuerySpec()
-                    .withKeyConditionExpression("pmcid = :pmc_id")
-                    .withValueMap(new ValueMap()
-                            .withString(":pmc_id", pmcid));
-            ItemCollection<QueryOutcome> items = table.query(querySpec);
-            Iterator<Item> iterator = items.iterator();
-            if (!iterator.hasNext()) {
-                System.out.println("This pmc id cannot be found in dynamodb: " + pmcid);
+        // An optional local corpus packed with PMCCorpusPacker; articles missing from it are read from S3.
+        PMCCorpusStore corpusStore = null;
+        if (!arguments.isEmpty()) {
+            try {
+                corpusStore = PMCCorpusStore.open(Paths.get(arguments.get(0)));
+                System.out.println("Reading " + corpusStore.size() + " articles from local corpus "
+                        + arguments.get(0));
+            } catch (IOException ex) {
+                System.out.println("Caught Exception while opening local corpus: " + ex);
+                return;
             }
-            Item item = iterator.next();
+        }
+        boolean local = corpusStore != null && arguments.size() > 1 && LOCAL_OPTION.equals(arguments.get(1));
 
-            if (item.hasAttribute(SENTENCES_COLUMN_NAME)) {
-                System.out.println("This pmc id is already in dynamodb: " + pmcid);
-                continue;
+        ArticleSource articleSource;
+        DemographicsStore demographicsStore;
+        PipelinedDemographicsStore pipelinedStore = null;
+        ProgressJournal journal = null;
+        ThroughputGovernor governor = null;
+        if (local) {
+            articleSource = corpusStore::readArticle;
+            InMemoryDemographicsStore inMemoryStore = new InMemoryDemographicsStore();
+            inMemoryStore.addPending(pmcids);
+            demographicsStore = inMemoryStore;
+        } else {
+            AmazonDynamoDB dbClient = AmazonDynamoDBClientBuilder.standard()
+                    .withRegion(US_EAST_REGION)
+                    .build();
+            // Updates are paced to the provisioned write capacity of the table, which the Lambda functions share.
+            try {
+                Long writeCapacity = dbClient.describeTable(TABLE_NAME).getTable().getProvisionedThroughput()
+                        .getWriteCapacityUnits();
+                if (writeCapacity != null && writeCapacity > 0) {
+                    governor = new ThroughputGovernor(writeCapacity);
+                }
+            } catch (Exception ex) {
+                System.out.println("Caught Exception while describing table: " + ex);
             }
-
-            if (item.hasAttribute(ERROR_STATUS_COLUMN_NAME)) {
-                System.out.println("pmcid " + pmcid + " has error: " + item.get(ERROR_STATUS_COLUMN_NAME));
-                continue;
+            if (governor != null) {
+                // The governor retries the throttled updates, instead of the SDK; without it, the SDK still does.
+                dbClient.shutdown();
+                dbClient = AmazonDynamoDBClientBuilder.standard()
+                        .withRegion(US_EAST_REGION)
+                        .withClientConfiguration(new ClientConfiguration()
+                                .withRetryPolicy(DynamoDBDemographicsStore.GOVERNED_RETRY_POLICY))
+                        .build();
             }
-
-            System.out.println("pmcid: " + pmcid);
-
-            // Getting the PMCArticle from AWS S3 bucket.
-            PMCArticle pmcArticle;
             try {
-                String key_name = "PMC" + pmcid + ".nxml";
-                S3Object o = s3Client.getObject(BUCKET_NAME, key_name);
-                InputStream s3is = o.getObjectContent();
-                pmcArticle = new PMCArticle(s3is);
-            } catch (Exception ex) {
-                System.out.println("Caught Exception while reading s3 file: " + ex);
-                continue;
+                journal = ProgressJournal.open(Paths.get(PROGRESS_JOURNAL_FILE_PATH));
+                System.out.println("Resuming from " + journal);
+            } catch (IOException ex) {
+                System.out.println("Caught Exception while opening progress journal: " + ex);
+                return;
             }
+            // States are read 100 articles per request, and updates are sent without waiting for each other.
+            // Finished articles are journaled once their update is done, and not read again on the next run.
+            // Without write capacity, the persist stage blocks, and the NLP stage behind it.
+            pipelinedStore = new PipelinedDemographicsStore(new JournaledDemographicsStore(
+                    new DynamoDBDemographicsStore(dbClient, TABLE_NAME, optimistic, governor), journal),
+                    PipelinedDemographicsStore.DEFAULT_WRITERS, PipelinedDemographicsStore.DEFAULT_MAX_PENDING_WRITES,
+                    governor);
+            demographicsStore = pipelinedStore;
 
-            List<PMCArticleSentence> demographicSentences = getDemographicSentences(pmcArticle);
-
-            // Skip articles that are empty.
-            if (demographicSentences.isEmpty()) {
-                UpdateItemSpec updateItemSpec = new UpdateItemSpec().withPrimaryKey(PMCID_COLUMN_NAME, pmcid)
-                        .withUpdateExpression("set errorStatus = :val").withValueMap(new ValueMap().withString
-                                (":val", "empty"));
-                table.updateItem(updateItemSpec);
-                continue;
+            final AmazonS3 s3Client = AmazonS3ClientBuilder.standard()
+                    .withRegion(US_EAST_REGION)
+                    .build();
+            articleSource = new S3ArticleSource(s3Client, BUCKET_NAME);
+            if (corpusStore != null) {
+                articleSource = ((ArticleSource) corpusStore::readArticle).orElse(articleSource);
             }
+        }
 
-            List<Map> sentenceList = new ArrayList<>();
-
-            int i = 0;
-            for (PMCArticleSentence s : demographicSentences) {
-                System.out.println(i + ": " + s.getText());
-                System.out.println("lemmas: " + s.getLemmas());
-                System.out.println(s.getInParagraphIndex() + "/" + s.getTotalSentencesInContainingParagraph());
-                System.out.println(s.getSectionName());
-                System.out.println(s.getSubSectionName());
-                System.out.println();
-
-                Map sentenceMap = new HashMap();
-                sentenceMap.put("text", s.getText());
-                String sectionName;
-                if (!s.getSubSectionName().isEmpty()) {
-                    sectionName = s.getSubSectionName();
-                } else if (!s.getSectionName().isEmpty()) {
-                    sectionName = s.getSectionName();
-                } else {
-                    sectionName = "Abstract";
-                }
-                sentenceMap.put("section", sectionName);
-                sentenceList.add(sentenceMap);
-
-                ++i;
-                if (i >= 10) {
-                    break;
-                }
+        // Corpus statistics of the numeric modifier pairs, kept across runs.
+        Path sketchFile = Paths.get(NummodPairSketch.DEFAULT_FILE);
+        NummodPairSketch corpusSketch = new NummodPairSketch();
+        try {
+            if (Files.exists(sketchFile)) {
+                corpusSketch = NummodPairSketch.read(sketchFile);
             }
+        } catch (IOException ex) {
+            System.out.println("Caught Exception while reading numeric modifier sketch: " + ex);
+        }
+        DemographicScoringModel scoringModel = extractor.getScoringModel();
+        if (IDF_PAIR_WEIGHTING.equals(scoringModel.getPairWeighting()) && corpusSketch.getArticleCount() > 0) {
+            scoringModel = scoringModel.withPairWeights(corpusSketch.idfWeights());
+            extractor = DemographicExtractor.builder()
+                    .scoringModel(scoringModel)
+                    .sectionFilter(sectionFilter)
+                    .countPairs()
+                    .build();
+            System.out.println("Scoring with model " + scoringModel.getVersion());
+        }
 
-            // Skip articles that are not randomized clinical trials, since they don't contain numeric modifiers at all.
-            if (sentenceList.isEmpty()) {
-                UpdateItemSpec updateItemSpec = new UpdateItemSpec().withPrimaryKey(PMCID_COLUMN_NAME, pmcid)
-                        .withUpdateExpression("set errorStatus = :val").withValueMap(new ValueMap().withString
-                                (":val", "not randomized clinical trials"));
-                table.updateItem(updateItemSpec);
-                continue;
+        // Fetching, parsing, sentence mining and updates run in separate stages, so network waits overlap NLP.
+        MiningPipeline pipeline = new MiningPipeline(articleSource, demographicsStore, SentencesMiner::mine);
+        pipeline.setReportIntervalSeconds(METRICS_REPORT_INTERVAL_SECONDS);
+        pipeline.setParser(inputStream -> extractor.parse(inputStream));
+        try {
+            pipeline.run(pmcids);
+        } catch (InterruptedException ex) {
+            System.out.println("Interrupted while mining sentences: " + ex);
+            Thread.currentThread().interrupt();
+        }
+        pipeline.getMetrics().forEach(System.out::println);
+        if (sectionFilter != null) {
+            System.out.println(sectionFilter);
+        }
+        if (governor != null) {
+            System.out.println(governor);
+        }
+        if (pipelinedStore != null) {
+            System.out.println(pipelinedStore);
+            try {
+                pipelinedStore.close();
+            } catch (IllegalStateException ex) {
+                System.out.println("Caught Exception while writing sentences: " + ex);
             }
-
-            ValueMap valueMap = new ValueMap().withList(":val", sentenceList).withList(":empty_list", new ArrayList<>
-                    ());
-
-            updateCount++;
-            System.out.println("update count: " + updateCount + " valueMap: " + valueMap);
-
-            // Update dynamodb with demographic sentences.
+        }
+        if (journal != null) {
+            System.out.println(journal);
             try {
-                UpdateItemSpec updateItemSpec = new UpdateItemSpec().withPrimaryKey(PMCID_COLUMN_NAME, pmcid)
-                        .withUpdateExpression("set sentences = list_append(if_not_exists(sentences, :empty_list)," +
-                                " :val)")
-                        .withValueMap(valueMap).withConditionExpression("attribute_not_exists(sentences)");
-                table.updateItem(updateItemSpec);
-            } catch (ConditionalCheckFailedException ex) {
-                System.out.println("ConditionalCheckFailedException: " + ex);
+                journal.close();
+            } catch (IOException ex) {
+                System.out.println("Caught Exception while closing progress journal: " + ex);
             }
         }
-    }
-
-    public static List<PMCArticleSentence> getDemographicSentences(PMCArticle pmcArticle) {
-        PMCArticleAbstract pmcArticleAbstract = pmcArticle.getAbstract();
 
-        PMCArticleFullText fullText = pmcArticle.getFullText();
-        List<PMCArticleSentence> allSentences = new ArrayList<>();
-        allSentences.addAll(pmcArticleAbstract.getAbstractSentences());
-        allSentences.addAll(fullText.getFullTextSentences());
-
-        // Skip articles that are empty.
-        if (allSentences.isEmpty()) {
-            return new ArrayList<>();
+        corpusSketch.merge(extractor.getPairSketch());
+        try {
+            corpusSketch.write(sketchFile);
+        } catch (IOException ex) {
+            System.out.println("Caught Exception while writing numeric modifier sketch: " + ex);
         }
+        System.out.println("Most frequent numeric modifier pairs of " + corpusSketch.getArticleCount() + " articles:");
+        corpusSketch.getHeavyHitters().stream().limit(10).forEach(System.out::println);
+    }
 
-        List<PMCArticleSentence> demographicSentences = allSentences.stream().filter(s -> s.hasAnchorWords() && s
-                .getNummodCount() > 0).collect(Collectors.toList());
-
-        Map<String, Integer> numCounts = new HashMap<>();
-        for (PMCArticleSentence s : demographicSentences) {
-            for (int index : s.getNummodIndices()) {
-                String currentLemma = s.getLemmas().get(index);
-                Integer count = numCounts.get(currentLemma);
-                if (count == null) {
-                    numCounts.put(currentLemma, 1);
-                } else {
-                    numCounts.put(currentLemma, count + 1);
-                }
-            }
+    /**
+     * Finds the demographic sentences of an article, in the form they are
+     * stored in
+     * @param pmcArticle the article
+     * @return the first ten sentences by score, or the error status of the article
+     */
+    public static MiningOutcome mine(PMCArticle pmcArticle) {
+        DemographicExtraction extraction = extractor.extract(pmcArticle);
+        extraction.print(System.out);
+        // The batch miner stores articles without demographic sentences as empty, like articles without sentences.
+        if (extraction.getTopSentences().isEmpty()) {
+            return MiningOutcome.error(MiningOutcome.EMPTY);
         }
+        return extraction.toOutcome();
+    }
 
-        // Debugging info: numeric modifier frequency in the article.
-        numCounts.entrySet().stream()
-                .sorted(Entry.<String, Integer>comparingByValue().reversed())
-                .limit(10)
-                .forEach(System.out::println);
-
-        System.out.println("Number of sentences: " + allSentences.size());
-
-        demographicSentences = demographicSentences.stream().sorted((s1, s2) ->
-                s2.getDemographicScoreBasedOnNumCounts(numCounts).compareTo(s1.getDemographicScoreBasedOnNumCounts
-                        (numCounts))).collect(Collectors.toList());
+    /**
+     * Finds the demographic sentences of an article
+     * @param pmcArticle the article
+     * @return all the demographic sentences, by decreasing score
+     */
+    public static List<PMCArticleSentence> getDemographicSentences(PMCArticle pmcArticle) {
+        return getDemographicSentences(pmcArticle, Integer.MAX_VALUE);
+    }
 
-        return demographicSentences;
+    /**
+     * Finds the best demographic sentences of an article
+     * @param pmcArticle the article
+     * @param k the number of sentences to keep
+     * @return at most k demographic sentences, by decreasing score
+     */
+    public static List<PMCArticleSentence> getDemographicSentences(PMCArticle pmcArticle, int k) {
+        return extractor.extract(pmcArticle, k).getTopSentences();
     }
 }
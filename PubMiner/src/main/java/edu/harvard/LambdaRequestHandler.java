@@ -1,120 +1,111 @@
 package edu.harvard;
 
-import com.amazonaws.services.dynamodbv2.document.utils.ValueMap;
 import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.RequestHandler;
+import edu.harvard.pipeline.DemographicExtraction;
+import edu.harvard.pipeline.DemographicExtractor;
+import edu.harvard.pipeline.MiningOutcome;
 import edu.uwm.pmcarticleparser.PMCArticle;
-import edu.uwm.pmcarticleparser.structuralelements.PMCArticleAbstract;
-import edu.uwm.pmcarticleparser.structuralelements.PMCArticleFullText;
-import edu.uwm.pmcarticleparser.structuralelements.PMCArticleSentence;
+import edu.uwm.pmcarticleparser.PMCSectionFilter;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-import java.util.stream.Collectors;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Created by bingao on 4/16/18.
  */
 public class LambdaRequestHandler implements RequestHandler<String, String> {
+    // The sentences of an article are annotated in parallel; ANNOTATION_PARALLELISM=1 annotates them in turn.
+    private static final ForkJoinPool ANNOTATION_POOL = new ForkJoinPool(annotationParallelism());
+    // PRUNE_SECTIONS=true splits only the abstract and the sections demographic sentences come from into sentences;
+    // by default, all of them are.
+    private static final DemographicExtractor EXTRACTOR = DemographicExtractor.builder()
+            .annotationPool(ANNOTATION_POOL)
+            .sectionFilter("true".equalsIgnoreCase(System.getenv("PRUNE_SECTIONS"))
+                    ? PMCSectionFilter.demographics() : null)
+            .build();
+
+    // WARMUP=init loads the parser and CoreNLP classes and models once per container, during initialization, so
+    // that no request pays for them. It takes longer than the 10 s Lambda allows an on-demand initialization, so
+    // only set it with provisioned concurrency or SnapStart; otherwise the first request loads them.
+    static {
+        if ("init".equalsIgnoreCase(System.getenv("WARMUP"))) {
+            warmUp();
+        }
+    }
+
+    /**
+     * Runs the warm-up and exits, eg. to list the classes it loads for a CDS
+     * archive (see the appcds profile of the pom)
+     */
+    public static void main(String[] args) {
+        warmUp();
+        ANNOTATION_POOL.shutdown();
+    }
+
+    static void warmUp() {
+        long start = System.nanoTime();
+        try {
+            EXTRACTOR.warmUp();
+            System.out.println("Warmed up in " + (System.nanoTime() - start) / 1000000 + " ms");
+        } catch (RuntimeException ex) {
+            // The requests load what the warm-up could not.
+            System.out.println("Caught Exception while warming up: " + ex);
+        }
+    }
+
+    private static int annotationParallelism() {
+        String parallelism = System.getenv("ANNOTATION_PARALLELISM");
+        if (parallelism != null) {
+            try {
+                return Math.max(1, Integer.parseInt(parallelism.trim()));
+            } catch (NumberFormatException ex) {
+                System.out.println("Ignoring ANNOTATION_PARALLELISM: " + parallelism);
+            }
+        }
+        return Runtime.getRuntime().availableProcessors();
+    }
+
     @Override
     public String handleRequest(String input, Context context) {
         String pmcid = input;
 
         System.out.println("pmcid: " + pmcid);
 
-        PMCArticle pa = new PMCArticle(pmcid, 0);
+        PMCArticle pa;
+        try (InputStream inputStream = new URL(PMCArticle.EFETCH_URL + pmcid).openStream()) {
+            pa = EXTRACTOR.parse(inputStream);
+        } catch (IOException ex) {
+            // Like an article that could not be fetched by new PMCArticle(pmcid, 0).
+            System.out.println("Caught Exception while fetching article: " + ex);
+            return "Skip articles that are empty";
+        }
         // PMCArticle pa = new PMCArticle("./PMC"+pmcid+".nxml");
 
-        PMCArticleAbstract pmcArticleAbstract = pa.getAbstract();
+        return handleArticle(pa);
+    }
 
-        PMCArticleFullText fullText = pa.getFullText();
-        List<PMCArticleSentence> allSentences = new ArrayList<>();
-        allSentences.addAll(pmcArticleAbstract.getAbstractSentences());
-        allSentences.addAll(fullText.getFullTextSentences());
+    /**
+     * Finds the demographic sentences of an article
+     * @param pa the article
+     * @return the first ten sentences by score, or the reason there are none
+     */
+    public String handleArticle(PMCArticle pa) {
+        DemographicExtraction extraction = EXTRACTOR.extract(pa);
 
         // Skip articles that are empty.
-        if (allSentences.isEmpty()) {
+        if (extraction.isEmpty()) {
             return "Skip articles that are empty";
         }
 
-        List<PMCArticleSentence> demographicSentences = allSentences.stream().filter(s -> s.hasAnchorWords() && s
-                .getNummodCount() > 0).collect(Collectors.toList());
-
-        Map<String, Integer> numCounts = new HashMap<>();
-        for (PMCArticleSentence s : demographicSentences) {
-            for (int index : s.getNummodIndices()) {
-                String currentLemma = s.getLemmas().get(index);
-                Integer count = numCounts.get(currentLemma);
-                if (count == null) {
-                    numCounts.put(currentLemma, 1);
-                } else {
-                    numCounts.put(currentLemma, count + 1);
-                }
-            }
-        }
-        numCounts.entrySet().stream()
-                .sorted(Map.Entry.<String, Integer>comparingByValue().reversed())
-                .limit(10)
-                .forEach(System.out::println);
-
-        System.out.println("Number of sentences: " + allSentences.size());
-
-        demographicSentences = demographicSentences.stream().sorted((s1, s2) ->
-                s2.getDemographicScoreBasedOnNumCounts(numCounts).compareTo(s1.getDemographicScoreBasedOnNumCounts
-
-                        (numCounts))).collect(Collectors.toList());
-
-        List<Map> sentenceList = new ArrayList<>();
-
-        int i = 0;
-        for (PMCArticleSentence s : demographicSentences) {
-            // SemanticGraph semanticGraph = sentence.dependencyGraph();
-            // System.out.println("dependencyGraph: " + semanticGraph);
-
-            System.out.println(i + ": " + s.getText());
-            System.out.println("lemmas: " + s.getLemmas());
-            for (int index : s.getNummodIndices()) {
-                System.out.println(s.getLemmas().get(index) + " " + s.getLemmas().get(index + 1) + "\t" + numCounts.get(s.getLemmas().get(index)));
-
-            }
-
-            System.out.println("End of numeric modifier list. Score: " + s.getDemographicScoreBasedOnNumCounts
-                    (numCounts) + "\n");
+        extraction.print(System.out);
 
-            // System.out.println("\tnerTags: " + s.getNerTags());
-
-            ++i;
-            System.out.println(s.getInParagraphIndex() + "/" + s.getTotalSentencesInContainingParagraph());
-            System.out.println(s.getSectionName());
-            System.out.println(s.getSubSectionName());
-            System.out.println();
-
-            Map sentenceMap = new HashMap();
-            sentenceMap.put("text", s.getText());
-            String sectionName = null;
-            if (!s.getSubSectionName().isEmpty()) {
-                sectionName = s.getSubSectionName();
-            } else if (!s.getSectionName().isEmpty()) {
-                sectionName = s.getSectionName();
-            } else {
-                sectionName = "Abstract";
-            }
-            sentenceMap.put("section", sectionName);
-            sentenceList.add(sentenceMap);
-
-            if (i >= 10) {
-                break;
-            }
+        MiningOutcome outcome = extraction.toOutcome();
+        if (outcome.isError()) {
+            return outcome.getErrorStatus();
         }
-
-        if (sentenceList.isEmpty()) {
-            return "not randomized clinical trials";
-        }
-
-        ValueMap valueMap = new ValueMap().withList(":val", sentenceList).withList(":empty_list", new ArrayList<>());
-
-        return sentenceList.toString();
+        return outcome.getSentences().toString();
     }
-}
\ No newline at end of file
+}
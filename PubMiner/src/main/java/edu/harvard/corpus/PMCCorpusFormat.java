@@ -0,0 +1,56 @@
+package edu.harvard.corpus;
+
+import java.nio.file.Path;
+
+/**
+ * Layout of a packed PMC corpus directory.
+ *
+ * A corpus is a set of segment files holding the zlib compressed NXML of the
+ * articles back to back, a preset dictionary shared by all articles, and an
+ * index of fixed size entries sorted by PMC id:
+ * <pre>
+ * index:   MAGIC, int entryCount, entryCount * (long pmcid, int segment, long offset, int length, int rawLength)
+ * segment: compressed articles, each at most MAX_SEGMENT_BYTES per file
+ * </pre>
+ * All numbers are big endian.
+ */
+final class PMCCorpusFormat {
+    static final String INDEX_FILE = "corpus.idx";
+    static final String DICTIONARY_FILE = "corpus.dict";
+    static final String SEGMENT_FILE_FORMAT = "segment-%05d.seg";
+
+    static final long MAGIC = 0x504D434944583031L; // "PMCIDX01"
+    static final int HEADER_BYTES = 8 + 4;
+    static final int ENTRY_BYTES = 8 + 4 + 8 + 4 + 4;
+
+    /**
+     * Segments are memory mapped as a whole, which limits them to 2 GB.
+     */
+    static final long MAX_SEGMENT_BYTES = 1L << 30;
+
+    private PMCCorpusFormat() {
+    }
+
+    static Path segmentFile(Path directory, int segment) {
+        return directory.resolve(String.format(SEGMENT_FILE_FORMAT, segment));
+    }
+
+    /**
+     * Parses a PMC id as used in the demographics table ("3978729") or in file
+     * names ("PMC3978729").
+     * @param pmcid the id with or without the "PMC" prefix
+     * @return the numeric id, or -1 if it is not a PMC id
+     */
+    static long parsePmcid(String pmcid) {
+        String digits = pmcid.regionMatches(true, 0, "PMC", 0, 3) ? pmcid.substring(3) : pmcid;
+        if (digits.isEmpty() || digits.length() > 18) {
+            return -1;
+        }
+        for (int i = 0; i < digits.length(); ++i) {
+            if (!Character.isDigit(digits.charAt(i))) {
+                return -1;
+            }
+        }
+        return Long.parseLong(digits);
+    }
+}
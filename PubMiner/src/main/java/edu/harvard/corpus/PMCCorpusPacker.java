@@ -0,0 +1,390 @@
+package edu.harvard.corpus;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Packs NXML articles into a corpus readable by {@link PMCCorpusStore}.
+ *
+ * Every article is deflated on its own, so it can be read without touching
+ * its neighbours, but all articles share a preset dictionary trained on the
+ * JATS markup of a sample of the input. The tags, attributes and DOCTYPE
+ * boilerplate repeat in every article, so with the dictionary even the first
+ * kilobytes of an article compress well.
+ *
+ * Usage: PMCCorpusPacker &lt;nxml directory | .tar | .tar.gz | .tgz&gt; &lt;output directory&gt;
+ */
+public class PMCCorpusPacker implements Closeable {
+    /**
+     * Deflate can only refer back 32 KB, so a larger dictionary is useless.
+     */
+    public static final int MAX_DICTIONARY_BYTES = 32 * 1024;
+    public static final int DEFAULT_DICTIONARY_SAMPLES = 1000;
+
+    private static final int TAR_BLOCK_BYTES = 512;
+
+    private final Path directory;
+    private final byte[] dictionary;
+    private final long maxSegmentBytes;
+    private final Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+    private final byte[] buffer = new byte[64 * 1024];
+    private final Map<Long, long[]> entries = new HashMap<>();
+    private OutputStream segment;
+    private int segmentNumber = -1;
+    private long segmentBytes;
+    private long rawBytes;
+    private long compressedBytes;
+
+    /**
+     * Creates a packer writing to the given directory
+     * @param directory the output directory, created if needed
+     * @param dictionary the preset dictionary, see {@link #trainDictionary(List, int)}
+     * @throws IOException
+     */
+    public PMCCorpusPacker(Path directory, byte[] dictionary) throws IOException {
+        this(directory, dictionary, PMCCorpusFormat.MAX_SEGMENT_BYTES);
+    }
+
+    PMCCorpusPacker(Path directory, byte[] dictionary, long maxSegmentBytes) throws IOException {
+        this.directory = directory;
+        this.dictionary = dictionary.clone();
+        this.maxSegmentBytes = Math.min(maxSegmentBytes, PMCCorpusFormat.MAX_SEGMENT_BYTES);
+        Files.createDirectories(directory);
+    }
+
+    /**
+     * Adds an article. If the same PMC id is added twice, the last one wins.
+     * @param pmcid the PMC id, with or without the "PMC" prefix
+     * @param nxml the article xml
+     * @throws IOException
+     */
+    public void add(String pmcid, byte[] nxml) throws IOException {
+        long key = PMCCorpusFormat.parsePmcid(pmcid);
+        if (key < 0) {
+            throw new IllegalArgumentException("Not a PMC id: " + pmcid);
+        }
+        deflater.reset();
+        deflater.setDictionary(dictionary);
+        deflater.setInput(nxml);
+        deflater.finish();
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(nxml.length / 4 + 64);
+        while (!deflater.finished()) {
+            int n = deflater.deflate(buffer);
+            compressed.write(buffer, 0, n);
+        }
+        if (segment == null || segmentBytes + compressed.size() > maxSegmentBytes) {
+            nextSegment();
+        }
+        entries.put(key, new long[]{segmentNumber, segmentBytes, compressed.size(), nxml.length});
+        compressed.writeTo(segment);
+        segmentBytes += compressed.size();
+        rawBytes += nxml.length;
+        compressedBytes += compressed.size();
+    }
+
+    private void nextSegment() throws IOException {
+        if (segment != null) {
+            segment.close();
+        }
+        ++segmentNumber;
+        segment = Files.newOutputStream(PMCCorpusFormat.segmentFile(directory, segmentNumber));
+        segmentBytes = 0;
+    }
+
+    public int getArticleCount() {
+        return entries.size();
+    }
+
+    public long getRawBytes() {
+        return rawBytes;
+    }
+
+    public long getCompressedBytes() {
+        return compressedBytes;
+    }
+
+    /**
+     * Writes the dictionary and the sorted index. The packer cannot be used
+     * afterwards.
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        if (segment != null) {
+            segment.close();
+            segment = null;
+        }
+        deflater.end();
+        Files.write(directory.resolve(PMCCorpusFormat.DICTIONARY_FILE), dictionary);
+        List<Long> pmcids = new ArrayList<>(entries.keySet());
+        Collections.sort(pmcids);
+        ByteBuffer index = ByteBuffer.allocate(PMCCorpusFormat.HEADER_BYTES
+                + pmcids.size() * PMCCorpusFormat.ENTRY_BYTES);
+        index.putLong(PMCCorpusFormat.MAGIC);
+        index.putInt(pmcids.size());
+        for (Long pmcid : pmcids) {
+            long[] entry = entries.get(pmcid);
+            index.putLong(pmcid);
+            index.putInt((int) entry[0]);
+            index.putLong(entry[1]);
+            index.putInt((int) entry[2]);
+            index.putInt((int) entry[3]);
+        }
+        Files.write(directory.resolve(PMCCorpusFormat.INDEX_FILE), index.array());
+    }
+
+    /**
+     * Trains a preset dictionary from sample articles.
+     *
+     * The samples are cut into markup tokens (tags with their attributes, the
+     * xml declaration and the DOCTYPE) and the tokens are ranked by how many
+     * bytes they would save across the samples. Deflate encodes near matches
+     * more cheaply, so the most valuable tokens go at the end of the dictionary.
+     * @param samples the sample articles
+     * @param size the maximum dictionary size, at most {@link #MAX_DICTIONARY_BYTES}
+     * @return the dictionary
+     */
+    public static byte[] trainDictionary(List<byte[]> samples, int size) {
+        size = Math.min(size, MAX_DICTIONARY_BYTES);
+        Map<String, Integer> counts = new HashMap<>();
+        for (byte[] sample : samples) {
+            String xml = new String(sample, StandardCharsets.UTF_8);
+            int start = xml.indexOf('<');
+            while (start >= 0) {
+                int end = xml.indexOf('>', start);
+                if (end < 0) {
+                    break;
+                }
+                // Keep the whitespace that follows a tag, it is part of the layout that repeats.
+                int next = end + 1;
+                while (next < xml.length() && next - end <= 8 && Character.isWhitespace(xml.charAt(next))) {
+                    ++next;
+                }
+                if (next - start <= 512) {
+                    counts.merge(xml.substring(start, next), 1, Integer::sum);
+                }
+                start = xml.indexOf('<', end);
+            }
+        }
+        List<Map.Entry<String, Integer>> tokens = counts.entrySet().stream()
+                .filter(e -> e.getValue() > 1)
+                .sorted(Comparator.comparingLong(
+                        (Map.Entry<String, Integer> e) -> (long) e.getValue() * e.getKey().length()).reversed()
+                        .thenComparing(Map.Entry::getKey))
+                .collect(Collectors.toList());
+        List<byte[]> chosen = new ArrayList<>();
+        int total = 0;
+        for (Map.Entry<String, Integer> token : tokens) {
+            byte[] bytes = token.getKey().getBytes(StandardCharsets.UTF_8);
+            if (total + bytes.length <= size) {
+                chosen.add(bytes);
+                total += bytes.length;
+            }
+        }
+        byte[] dictionary = new byte[total];
+        int position = total;
+        for (byte[] bytes : chosen) {
+            position -= bytes.length;
+            System.arraycopy(bytes, 0, dictionary, position, bytes.length);
+        }
+        return dictionary;
+    }
+
+    /**
+     * Gets the PMC id from a file name like "PMC3978729.nxml"
+     * @param fileName the file name, possibly with directories
+     * @return the PMC id without prefix, or null if the name is not a PMC article
+     */
+    static String pmcidOfFileName(String fileName) {
+        String name = fileName.substring(fileName.lastIndexOf('/') + 1);
+        if (!name.endsWith(".nxml")) {
+            return null;
+        }
+        name = name.substring(0, name.length() - ".nxml".length());
+        long pmcid = PMCCorpusFormat.parsePmcid(name);
+        return pmcid < 0 ? null : String.valueOf(pmcid);
+    }
+
+    /**
+     * Calls the visitor for every .nxml file named by PMC id in a directory
+     * tree or a (gzipped) tar file, without extracting the tar file.
+     * @param input the directory or tar file
+     * @param limit the maximum number of articles to visit
+     * @param visitor called with the PMC id and the xml
+     * @throws IOException
+     */
+    public static void forEachArticle(Path input, int limit, BiConsumer<String, byte[]> visitor) throws IOException {
+        if (Files.isDirectory(input)) {
+            List<Path> files;
+            try (Stream<Path> walk = Files.walk(input)) {
+                files = walk.filter(p -> Files.isRegularFile(p) && p.toString().endsWith(".nxml"))
+                        .sorted()
+                        .collect(Collectors.toList());
+            }
+            int visited = 0;
+            for (Path file : files) {
+                if (visited >= limit) {
+                    break;
+                }
+                String pmcid = pmcidOfFileName(file.getFileName().toString());
+                if (pmcid == null) {
+                    Logger.getLogger(PMCCorpusPacker.class.getName()).log(Level.WARNING,
+                            "Skipping {0}: not named by PMC id", file);
+                } else {
+                    visitor.accept(pmcid, Files.readAllBytes(file));
+                    ++visited;
+                }
+            }
+        } else {
+            String name = input.getFileName().toString();
+            try (InputStream inputStream = name.endsWith(".gz") || name.endsWith(".tgz")
+                    ? new GZIPInputStream(Files.newInputStream(input), 64 * 1024)
+                    : new BufferedInputStream(Files.newInputStream(input), 64 * 1024)) {
+                forEachTarEntry(inputStream, limit, visitor);
+            }
+        }
+    }
+
+    private static void forEachTarEntry(InputStream tar, int limit, BiConsumer<String, byte[]> visitor)
+            throws IOException {
+        byte[] header = new byte[TAR_BLOCK_BYTES];
+        String longName = null;
+        int visited = 0;
+        while (visited < limit) {
+            if (!readFully(tar, header, header.length) || isZeroBlock(header)) {
+                return;
+            }
+            String name = tarString(header, 0, 100);
+            String prefix = tarString(header, 345, 155);
+            if (!prefix.isEmpty()) {
+                name = prefix + "/" + name;
+            }
+            String octalSize = tarString(header, 124, 12).trim();
+            long size = octalSize.isEmpty() ? 0 : Long.parseLong(octalSize, 8);
+            byte type = header[156];
+            int padding = (int) ((TAR_BLOCK_BYTES - size % TAR_BLOCK_BYTES) % TAR_BLOCK_BYTES);
+            if (type == 'L') {
+                // GNU long name: the data block holds the name of the next entry.
+                byte[] data = readEntry(tar, size, padding);
+                longName = new String(data, StandardCharsets.UTF_8).replace("\0", "");
+                continue;
+            }
+            if (longName != null) {
+                name = longName;
+                longName = null;
+            }
+            String pmcid = (type == '0' || type == 0) ? pmcidOfFileName(name) : null;
+            if (pmcid == null || size > Integer.MAX_VALUE) {
+                skipFully(tar, size + padding);
+            } else {
+                visitor.accept(pmcid, readEntry(tar, size, padding));
+                ++visited;
+            }
+        }
+    }
+
+    private static byte[] readEntry(InputStream tar, long size, int padding) throws IOException {
+        byte[] data = new byte[(int) size];
+        if (!readFully(tar, data, data.length)) {
+            throw new EOFException("Truncated tar entry");
+        }
+        skipFully(tar, padding);
+        return data;
+    }
+
+    private static String tarString(byte[] header, int offset, int length) {
+        int end = offset;
+        while (end < offset + length && header[end] != 0) {
+            ++end;
+        }
+        return new String(header, offset, end - offset, StandardCharsets.UTF_8);
+    }
+
+    private static boolean isZeroBlock(byte[] block) {
+        for (byte b : block) {
+            if (b != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean readFully(InputStream inputStream, byte[] b, int length) throws IOException {
+        int read = 0;
+        while (read < length) {
+            int n = inputStream.read(b, read, length - read);
+            if (n < 0) {
+                return false;
+            }
+            read += n;
+        }
+        return true;
+    }
+
+    private static void skipFully(InputStream inputStream, long n) throws IOException {
+        while (n > 0) {
+            long skipped = inputStream.skip(n);
+            if (skipped <= 0) {
+                if (inputStream.read() < 0) {
+                    throw new EOFException("Truncated tar file");
+                }
+                skipped = 1;
+            }
+            n -= skipped;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: PMCCorpusPacker <nxml directory | .tar | .tar.gz | .tgz> <output directory>");
+            System.exit(1);
+        }
+        Path input = Paths.get(args[0]);
+        Path output = Paths.get(args[1]);
+
+        long start = System.currentTimeMillis();
+        List<byte[]> samples = new ArrayList<>();
+        forEachArticle(input, DEFAULT_DICTIONARY_SAMPLES, (pmcid, nxml) -> samples.add(nxml));
+        byte[] dictionary = trainDictionary(samples, MAX_DICTIONARY_BYTES);
+        samples.clear();
+        System.out.println("Trained a " + dictionary.length + " byte dictionary");
+
+        try (PMCCorpusPacker packer = new PMCCorpusPacker(output, dictionary)) {
+            forEachArticle(input, Integer.MAX_VALUE, (pmcid, nxml) -> {
+                try {
+                    packer.add(pmcid, nxml);
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            });
+            System.out.println("Packed " + packer.getArticleCount() + " articles, " + packer.getRawBytes()
+                    + " bytes into " + packer.getCompressedBytes() + " bytes ("
+                    + String.format("%.1f", 100.0 * packer.getCompressedBytes() / Math.max(1, packer.getRawBytes()))
+                    + "%) in " + (System.currentTimeMillis() - start) + " ms");
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package edu.harvard.corpus;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Read-only access to a corpus packed by {@link PMCCorpusPacker}.
+ *
+ * The index and the segments are memory mapped, so looking up an article is a
+ * binary search over the mapped index and reading it inflates straight from
+ * the mapped segment; no file is opened per article. The returned stream can
+ * be handed to {@code PMCArticleStreamParser.parse(InputStream)} or to
+ * {@code new PMCArticle(InputStream)}. A store is thread-safe once opened.
+ */
+public class PMCCorpusStore implements Closeable {
+    private final Path directory;
+    private final ByteBuffer index;
+    private final int size;
+    private final byte[] dictionary;
+    private final MappedByteBuffer[] segments;
+
+    private PMCCorpusStore(Path directory, ByteBuffer index, byte[] dictionary, MappedByteBuffer[] segments) {
+        this.directory = directory;
+        this.index = index;
+        this.size = index.getInt(8);
+        this.dictionary = dictionary;
+        this.segments = segments;
+    }
+
+    /**
+     * Opens the corpus packed in the given directory
+     * @param directory the output directory of the packer
+     * @return the store
+     * @throws IOException if the directory does not hold a packed corpus
+     */
+    public static PMCCorpusStore open(Path directory) throws IOException {
+        MappedByteBuffer index = map(directory.resolve(PMCCorpusFormat.INDEX_FILE));
+        if (index.capacity() < PMCCorpusFormat.HEADER_BYTES || index.getLong(0) != PMCCorpusFormat.MAGIC) {
+            throw new IOException("Not a packed PMC corpus index: " + directory.resolve(PMCCorpusFormat.INDEX_FILE));
+        }
+        int size = index.getInt(8);
+        if (index.capacity() != PMCCorpusFormat.HEADER_BYTES + (long) size * PMCCorpusFormat.ENTRY_BYTES) {
+            throw new IOException("Truncated PMC corpus index: " + directory.resolve(PMCCorpusFormat.INDEX_FILE));
+        }
+        int segmentCount = 0;
+        for (int i = 0; i < size; ++i) {
+            segmentCount = Math.max(segmentCount, index.getInt(entryPosition(i) + 8) + 1);
+        }
+        MappedByteBuffer[] segments = new MappedByteBuffer[segmentCount];
+        for (int i = 0; i < segmentCount; ++i) {
+            segments[i] = map(PMCCorpusFormat.segmentFile(directory, i));
+        }
+        byte[] dictionary = Files.readAllBytes(directory.resolve(PMCCorpusFormat.DICTIONARY_FILE));
+        return new PMCCorpusStore(directory, index, dictionary, segments);
+    }
+
+    private static MappedByteBuffer map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // The mapping stays valid after the channel is closed.
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    private static int entryPosition(int entry) {
+        return PMCCorpusFormat.HEADER_BYTES + entry * PMCCorpusFormat.ENTRY_BYTES;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * @return the number of articles in the store
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param pmcid the PMC id, with or without the "PMC" prefix
+     * @return true if the article is in the store
+     */
+    public boolean contains(String pmcid) {
+        return find(PMCCorpusFormat.parsePmcid(pmcid)) >= 0;
+    }
+
+    /**
+     * Gets the PMC id of an article by its position in the sorted index
+     * @param entry the position, from 0 to size() - 1
+     * @return the numeric PMC id
+     */
+    public long getPmcid(int entry) {
+        return index.getLong(entryPosition(entry));
+    }
+
+    /**
+     * Gets the size of the uncompressed NXML of an article
+     * @param pmcid the PMC id, with or without the "PMC" prefix
+     * @return the size in bytes, or -1 if the article is not in the store
+     */
+    public int getArticleLength(String pmcid) {
+        int entry = find(PMCCorpusFormat.parsePmcid(pmcid));
+        return entry < 0 ? -1 : index.getInt(entryPosition(entry) + 24);
+    }
+
+    /**
+     * Opens the NXML of an article
+     * @param pmcid the PMC id, with or without the "PMC" prefix
+     * @return the uncompressed NXML, or null if the article is not in the store
+     */
+    public InputStream openArticle(String pmcid) {
+        int entry = find(PMCCorpusFormat.parsePmcid(pmcid));
+        if (entry < 0) {
+            return null;
+        }
+        int position = entryPosition(entry);
+        int segment = index.getInt(position + 8);
+        long offset = index.getLong(position + 12);
+        int length = index.getInt(position + 20);
+        // Each reader gets its own view, so the shared mapping is never repositioned.
+        ByteBuffer compressed = segments[segment].duplicate();
+        compressed.position((int) offset);
+        compressed.limit((int) offset + length);
+        return new ArticleInputStream(compressed.slice(), dictionary);
+    }
+
+    /**
+     * Reads the NXML of an article into memory
+     * @param pmcid the PMC id, with or without the "PMC" prefix
+     * @return the uncompressed NXML, or null if the article is not in the store
+     * @throws IOException if the stored article is corrupt
+     */
+    public byte[] readArticle(String pmcid) throws IOException {
+        int length = getArticleLength(pmcid);
+        if (length < 0) {
+            return null;
+        }
+        byte[] nxml = new byte[length];
+        try (InputStream inputStream = openArticle(pmcid)) {
+            int read = 0;
+            while (read < length) {
+                int n = inputStream.read(nxml, read, length - read);
+                if (n < 0) {
+                    throw new IOException("Truncated article " + pmcid);
+                }
+                read += n;
+            }
+        }
+        return nxml;
+    }
+
+    private int find(long pmcid) {
+        if (pmcid < 0) {
+            return -1;
+        }
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            long key = getPmcid(middle);
+            if (key < pmcid) {
+                low = middle + 1;
+            } else if (key > pmcid) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * The mappings are released when the store is garbage collected; Java 8
+     * has no supported way to unmap them earlier.
+     */
+    @Override
+    public void close() {
+    }
+
+    /**
+     * Inflates one article from its slice of a mapped segment.
+     */
+    private static final class ArticleInputStream extends InputStream {
+        private static final int CHUNK_BYTES = 8192;
+
+        private final ByteBuffer compressed;
+        private final byte[] dictionary;
+        private final Inflater inflater = new Inflater();
+        private final byte[] chunk;
+        private final byte[] single = new byte[1];
+        private boolean closed;
+
+        ArticleInputStream(ByteBuffer compressed, byte[] dictionary) {
+            this.compressed = compressed;
+            this.dictionary = dictionary;
+            this.chunk = new byte[Math.min(CHUNK_BYTES, Math.max(1, compressed.remaining()))];
+        }
+
+        @Override
+        public int read() throws IOException {
+            return read(single, 0, 1) < 0 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (closed) {
+                throw new IOException("Stream closed");
+            }
+            if (len == 0) {
+                return 0;
+            }
+            try {
+                while (true) {
+                    int n = inflater.inflate(b, off, len);
+                    if (n > 0) {
+                        return n;
+                    }
+                    if (inflater.finished()) {
+                        return -1;
+                    }
+                    if (inflater.needsDictionary()) {
+                        inflater.setDictionary(dictionary);
+                    } else if (inflater.needsInput()) {
+                        if (!compressed.hasRemaining()) {
+                            throw new IOException("Unexpected end of compressed article");
+                        }
+                        int k = Math.min(chunk.length, compressed.remaining());
+                        compressed.get(chunk, 0, k);
+                        inflater.setInput(chunk, 0, k);
+                    }
+                }
+            } catch (DataFormatException ex) {
+                throw new IOException(ex);
+            }
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                inflater.end();
+            }
+        }
+    }
+}
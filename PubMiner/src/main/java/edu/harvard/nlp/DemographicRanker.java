@@ -0,0 +1,183 @@
+package edu.harvard.nlp;
+
+import edu.uwm.pmcarticleparser.structuralelements.DemographicScoringModel;
+import edu.uwm.pmcarticleparser.structuralelements.LemmaCounts;
+import edu.uwm.pmcarticleparser.structuralelements.PMCArticleSentence;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Ranks the demographic sentences of an article by their demographic score
+ * ({@link PMCArticleSentence#getDemographicScore(LemmaCounts)}).
+ *
+ * Each score is computed once per sentence, and the best sentences are kept
+ * in a heap bounded by their number, so ranking n sentences for the first k
+ * costs n scores and O(n log k) comparisons of doubles. The order is the one
+ * of a stable sort by decreasing score: sentences with equal scores keep
+ * their order in the article.
+ */
+public final class DemographicRanker {
+    /**
+     * The number of sentences stored for an article
+     */
+    public static final int DEFAULT_TOP_K = 10;
+
+    private DemographicRanker() {
+    }
+
+    /**
+     * Counts the numeric modifier lemmas of the given sentences
+     * @param sentences annotated sentences
+     * @return the number of times each numeric modifier lemma occurs
+     */
+    public static LemmaCounts countNummodLemmas(List<PMCArticleSentence> sentences) {
+        return countNummodLemmas(sentences, DemographicScoringModel.getDefault());
+    }
+
+    /**
+     * Counts the numeric modifier lemmas of the given sentences that a
+     * scoring model does not exclude
+     * @param sentences annotated sentences
+     * @param model the scoring model
+     * @return the number of times each numeric modifier lemma occurs
+     */
+    public static LemmaCounts countNummodLemmas(List<PMCArticleSentence> sentences, DemographicScoringModel model) {
+        LemmaCounts numCounts = new LemmaCounts();
+        for (PMCArticleSentence s : sentences) {
+            int[] lemmaIds = s.getLemmaIds();
+            for (int index : s.getNummodIndexArray(model)) {
+                numCounts.increment(lemmaIds[index]);
+            }
+        }
+        return numCounts;
+    }
+
+    /**
+     * Gets the first sentences by decreasing demographic score
+     * @param sentences annotated sentences, in article order
+     * @param numCounts the number of times each numeric modifier lemma occurs in the article
+     * @param k the number of sentences to keep
+     * @return at most k sentences, best first; ties in article order
+     */
+    public static List<PMCArticleSentence> top(List<PMCArticleSentence> sentences, LemmaCounts numCounts,
+            int k) {
+        return top(sentences, numCounts, k, DemographicScoringModel.getDefault());
+    }
+
+    /**
+     * Gets the first sentences by decreasing demographic score under a
+     * scoring model
+     * @param sentences annotated sentences, in article order
+     * @param numCounts the number of times each numeric modifier lemma occurs in the article
+     * @param k the number of sentences to keep
+     * @param model the scoring model, eg. the default one with corpus pair weights
+     * @return at most k sentences, best first; ties in article order
+     */
+    public static List<PMCArticleSentence> top(List<PMCArticleSentence> sentences, LemmaCounts numCounts, int k,
+            DemographicScoringModel model) {
+        int n = sentences.size();
+        if (k <= 0 || n == 0) {
+            return new ArrayList<>();
+        }
+        double[] scores = new double[n];
+        for (int i = 0; i < n; ++i) {
+            scores[i] = sentences.get(i).getDemographicScore(numCounts, model);
+        }
+
+        int[] best = topIndices(scores, 0, n, k);
+        List<PMCArticleSentence> top = new ArrayList<>(best.length);
+        for (int index : best) {
+            top.add(sentences.get(index));
+        }
+        return top;
+    }
+
+    /**
+     * Sorts all the given sentences by decreasing demographic score
+     * @param sentences annotated sentences, in article order
+     * @param numCounts the number of times each numeric modifier lemma occurs in the article
+     * @return the sentences, best first; ties in article order
+     */
+    public static List<PMCArticleSentence> rank(List<PMCArticleSentence> sentences, LemmaCounts numCounts) {
+        return top(sentences, numCounts, sentences.size());
+    }
+
+    /**
+     * Gets the indices of the best scores of a range, with a heap of at most
+     * k indices
+     * @param scores the scores
+     * @param from the first index of the range
+     * @param to the index after the range
+     * @param k the number of indices to keep
+     * @return at most k indices, by decreasing score; ties by increasing index
+     */
+    public static int[] topIndices(double[] scores, int from, int to, int k) {
+        // A heap of indices with the worst kept one at the root.
+        int[] heap = new int[Math.max(0, Math.min(k, to - from))];
+        int size = 0;
+        for (int i = from; i < to; ++i) {
+            if (size < heap.length) {
+                heap[size] = i;
+                siftUp(heap, size, scores);
+                ++size;
+            } else if (size > 0 && isWorse(heap[0], i, scores)) {
+                heap[0] = i;
+                siftDown(heap, size, scores);
+            }
+        }
+
+        int[] ranked = new int[size];
+        while (size > 0) {
+            ranked[--size] = heap[0];
+            heap[0] = heap[size];
+            siftDown(heap, size, scores);
+        }
+        return ranked;
+    }
+
+    /**
+     * Tells whether sentence a ranks after sentence b: it has a lower score,
+     * or the same score and comes later in the article
+     */
+    private static boolean isWorse(int a, int b, double[] scores) {
+        int comparison = Double.compare(scores[a], scores[b]);
+        return comparison < 0 || comparison == 0 && a > b;
+    }
+
+    private static void siftUp(int[] heap, int i, double[] scores) {
+        int item = heap[i];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!isWorse(item, heap[parent], scores)) {
+                break;
+            }
+            heap[i] = heap[parent];
+            i = parent;
+        }
+        heap[i] = item;
+    }
+
+    private static void siftDown(int[] heap, int size, double[] scores) {
+        if (size == 0) {
+            return;
+        }
+        int item = heap[0];
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && isWorse(heap[child + 1], heap[child], scores)) {
+                ++child;
+            }
+            if (!isWorse(heap[child], item, scores)) {
+                break;
+            }
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = item;
+    }
+}
@@ -0,0 +1,486 @@
+package edu.harvard.nlp;
+
+import edu.uwm.pmcarticleparser.structuralelements.DependencyLabelDictionary;
+import edu.uwm.pmcarticleparser.structuralelements.PMCArticleSentence;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keeps the annotations of sentences in a file, so that sentences annotated
+ * in an earlier run are not annotated again.
+ *
+ * A sentence is keyed by a hash of its text and of
+ * {@link SentenceAnnotator#ANNOTATOR_VERSION}, and its lemmas, dependency
+ * labels and nummod indices are stored in a compact binary record. The file
+ * is a log of records behind a header; only the index of the records is held
+ * in memory. When the file grows past its size limit, the least recently used
+ * records are dropped and the file is rewritten. A file written by another
+ * annotator version is emptied when opened.
+ *
+ * A cache is thread-safe. Records are appended as sentences are stored, and
+ * {@link #close()} forces them to disk; a record cut by a crash is dropped the
+ * next time the file is opened.
+ */
+public class SentenceAnnotationCache implements Closeable {
+    private static final long MAGIC = 0x504D43414E4E3032L;
+    // Key hash, payload length.
+    private static final int RECORD_HEADER_BYTES = 20;
+    private static final int KEY_BYTES = 16;
+    private static final String DIGEST = "SHA-256";
+    // Dependency labels stored as their fixed DependencyLabelDictionary code, the others spelled out. Changing the
+    // fixed codes changes the format: change MAGIC with them.
+    private static final DependencyLabelDictionary LABELS = DependencyLabelDictionary.getInstance();
+    private static final int OTHER_LABEL = 0xFF;
+    private static final int HAS_LABELS = 1;
+
+    private static final ThreadLocal<MessageDigest> MESSAGE_DIGEST = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance(DIGEST);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    });
+
+    private final Path file;
+    private final long maxBytes;
+    private final byte[] versionHash;
+    private FileChannel channel;
+    private long fileLength;
+    // Record positions in least recently used order.
+    private final LinkedHashMap<Key, Location> index = new LinkedHashMap<>(1024, 0.75f, true);
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private SentenceAnnotationCache(Path file, long maxBytes) {
+        this.file = file;
+        this.maxBytes = maxBytes;
+        this.versionHash = SentenceAnnotator.ANNOTATOR_VERSION.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Opens a cache file, creating it if it does not exist
+     * @param file the cache file
+     * @param maxBytes the size the file is kept under
+     * @return the cache
+     * @throws IOException if the file cannot be read or written
+     */
+    public static SentenceAnnotationCache open(Path file, long maxBytes) throws IOException {
+        SentenceAnnotationCache cache = new SentenceAnnotationCache(file, maxBytes);
+        cache.load();
+        return cache;
+    }
+
+    private void load() throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        ByteBuffer header = ByteBuffer.allocate(headerBytes());
+        boolean valid = readFully(header, 0) && header.getLong(0) == MAGIC && header.getInt(8) == versionHash.length;
+        for (int i = 0; valid && i < versionHash.length; ++i) {
+            valid = header.get(12 + i) == versionHash[i];
+        }
+        if (!valid) {
+            if (channel.size() > 0) {
+                Logger.getLogger(SentenceAnnotationCache.class.getName()).log(Level.INFO,
+                        "Annotation cache {0} was written by another annotator version, emptying it", file);
+            }
+            channel.truncate(0);
+            writeHeader(channel);
+            fileLength = headerBytes();
+            return;
+        }
+
+        long position = headerBytes();
+        long size = channel.size();
+        ByteBuffer recordHeader = ByteBuffer.allocate(RECORD_HEADER_BYTES);
+        while (position + RECORD_HEADER_BYTES <= size) {
+            recordHeader.clear();
+            readFully(recordHeader, position);
+            int length = recordHeader.getInt(KEY_BYTES);
+            if (length < 0 || position + RECORD_HEADER_BYTES + length > size) {
+                break;
+            }
+            index.put(new Key(recordHeader.getLong(0), recordHeader.getLong(8)),
+                    new Location(position + RECORD_HEADER_BYTES, length));
+            position += RECORD_HEADER_BYTES + length;
+        }
+        if (position < size) {
+            // A record cut by a crash.
+            channel.truncate(position);
+        }
+        fileLength = position;
+    }
+
+    private int headerBytes() {
+        return 12 + versionHash.length;
+    }
+
+    private void writeHeader(FileChannel target) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(headerBytes());
+        header.putLong(MAGIC).putInt(versionHash.length).put(versionHash);
+        header.flip();
+        writeFully(target, header, 0);
+    }
+
+    /**
+     * Sets the cached lemmas, dependency labels and nummod indices on a
+     * sentence, if the cache has them
+     * @param sentence the sentence
+     * @return true if the sentence was found in the cache
+     */
+    public boolean load(PMCArticleSentence sentence) {
+        Key key = key(sentence.getText());
+        byte[] record;
+        synchronized (this) {
+            Location location = index.get(key);
+            record = location == null ? null : read(location);
+        }
+        if (record == null) {
+            misses.increment();
+            return false;
+        }
+        try {
+            decode(record, sentence);
+        } catch (IOException ex) {
+            Logger.getLogger(SentenceAnnotationCache.class.getName()).log(Level.WARNING, null, ex);
+            misses.increment();
+            return false;
+        }
+        hits.increment();
+        return true;
+    }
+
+    /**
+     * Stores the annotations of a sentence, unless it has no lemmas or is
+     * already cached with the same annotations
+     * @param sentence the sentence
+     */
+    public void store(PMCArticleSentence sentence) {
+        if (!sentence.hasLemmas()) {
+            return;
+        }
+        Key key = key(sentence.getText());
+        byte[] record;
+        try {
+            record = encode(sentence);
+        } catch (IOException ex) {
+            Logger.getLogger(SentenceAnnotationCache.class.getName()).log(Level.WARNING, null, ex);
+            return;
+        }
+        synchronized (this) {
+            Location location = index.get(key);
+            if (location != null && location.length >= record.length) {
+                // Already stored, with dependency labels if the sentence has them.
+                return;
+            }
+            try {
+                append(key, record);
+            } catch (IOException ex) {
+                Logger.getLogger(SentenceAnnotationCache.class.getName()).log(Level.WARNING, null, ex);
+            }
+        }
+    }
+
+    private void append(Key key, byte[] record) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_HEADER_BYTES + record.length);
+        buffer.putLong(key.high).putLong(key.low).putInt(record.length).put(record);
+        buffer.flip();
+        writeFully(channel, buffer, fileLength);
+        index.remove(key);
+        index.put(key, new Location(fileLength + RECORD_HEADER_BYTES, record.length));
+        fileLength += RECORD_HEADER_BYTES + record.length;
+        if (fileLength > maxBytes) {
+            evict();
+        }
+    }
+
+    /**
+     * Drops the least recently used records until the live records take
+     * three quarters of the size limit, and rewrites the file with them
+     * @throws IOException
+     */
+    private void evict() throws IOException {
+        long liveBytes = headerBytes();
+        for (Location location : index.values()) {
+            liveBytes += RECORD_HEADER_BYTES + location.length;
+        }
+        Iterator<Location> eldest = index.values().iterator();
+        while (liveBytes > maxBytes / 4 * 3 && eldest.hasNext()) {
+            liveBytes -= RECORD_HEADER_BYTES + eldest.next().length;
+            eldest.remove();
+            evictions.increment();
+        }
+
+        Path compacted = file.resolveSibling(file.getFileName() + ".tmp");
+        LinkedHashMap<Key, Location> locations = new LinkedHashMap<>(index.size() * 2, 0.75f, true);
+        try (FileChannel target = FileChannel.open(compacted, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            writeHeader(target);
+            long position = headerBytes();
+            ByteBuffer recordHeader = ByteBuffer.allocate(RECORD_HEADER_BYTES);
+            for (Map.Entry<Key, Location> entry : index.entrySet()) {
+                Key key = entry.getKey();
+                byte[] record = read(entry.getValue());
+                if (record == null) {
+                    // Unreadable: dropped like an evicted record.
+                    evictions.increment();
+                    continue;
+                }
+                recordHeader.clear();
+                recordHeader.putLong(key.high).putLong(key.low).putInt(record.length);
+                recordHeader.flip();
+                writeFully(target, recordHeader, position);
+                writeFully(target, ByteBuffer.wrap(record), position + RECORD_HEADER_BYTES);
+                locations.put(key, new Location(position + RECORD_HEADER_BYTES, record.length));
+                position += RECORD_HEADER_BYTES + record.length;
+            }
+            target.force(true);
+            fileLength = position;
+        }
+        channel.close();
+        Files.move(compacted, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        index.clear();
+        index.putAll(locations);
+    }
+
+    private byte[] read(Location location) {
+        ByteBuffer buffer = ByteBuffer.allocate(location.length);
+        try {
+            return readFully(buffer, location.offset) ? buffer.array() : null;
+        } catch (IOException ex) {
+            Logger.getLogger(SentenceAnnotationCache.class.getName()).log(Level.WARNING, null, ex);
+            return null;
+        }
+    }
+
+    private boolean readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, position);
+            if (n < 0) {
+                return false;
+            }
+            position += n;
+        }
+        return true;
+    }
+
+    private static void writeFully(FileChannel target, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += target.write(buffer, position);
+        }
+    }
+
+    private Key key(String text) {
+        MessageDigest digest = MESSAGE_DIGEST.get();
+        digest.reset();
+        digest.update(versionHash);
+        digest.update((byte) 0);
+        digest.update(text.getBytes(StandardCharsets.UTF_8));
+        ByteBuffer hash = ByteBuffer.wrap(digest.digest());
+        return new Key(hash.getLong(), hash.getLong());
+    }
+
+    /**
+     * Encodes the lemmas and, if the sentence was parsed, the dependency
+     * labels and nummod indices of a sentence
+     */
+    private static byte[] encode(PMCArticleSentence sentence) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        DataOutputStream out = new DataOutputStream(bytes);
+        List<String> lemmas = sentence.getLemmas();
+        boolean hasLabels = sentence.hasDependencyLabels();
+        out.writeByte(hasLabels ? HAS_LABELS : 0);
+        writeVarInt(out, lemmas.size());
+        for (String lemma : lemmas) {
+            out.writeUTF(lemma);
+        }
+        if (hasLabels) {
+            List<Optional<String>> labels = sentence.getDependencyLabels();
+            writeVarInt(out, labels.size());
+            for (Optional<String> label : labels) {
+                int code = label.isPresent() ? LABELS.code(label.get()) : DependencyLabelDictionary.NO_LABEL;
+                if (code >= 0 && code < DependencyLabelDictionary.FIXED_CODES) {
+                    out.writeByte(code);
+                } else {
+                    out.writeByte(OTHER_LABEL);
+                    out.writeUTF(label.get());
+                }
+            }
+            List<Integer> nummodIndices = sentence.getNummodIndices();
+            writeVarInt(out, nummodIndices.size());
+            for (int index : nummodIndices) {
+                writeVarInt(out, index);
+            }
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Decodes a record and sets it on the sentence; the sentence is left
+     * unchanged if the record cannot be decoded
+     */
+    private static void decode(byte[] record, PMCArticleSentence sentence) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+        boolean hasLabels = in.readByte() == HAS_LABELS;
+        String[] lemmas = new String[readVarInt(in)];
+        for (int i = 0; i < lemmas.length; ++i) {
+            lemmas[i] = in.readUTF();
+        }
+        List<Optional<String>> labels = null;
+        Integer[] nummodIndices = null;
+        if (hasLabels) {
+            int length = readVarInt(in);
+            labels = new ArrayList<>(length);
+            for (int i = 0; i < length; ++i) {
+                int code = in.readUnsignedByte();
+                if (code == OTHER_LABEL) {
+                    labels.add(Optional.of(in.readUTF()));
+                } else if (code < DependencyLabelDictionary.FIXED_CODES) {
+                    labels.add(LABELS.label((byte) code));
+                } else {
+                    throw new IOException("Bad dependency label code " + code);
+                }
+            }
+            nummodIndices = new Integer[readVarInt(in)];
+            for (int i = 0; i < nummodIndices.length; ++i) {
+                nummodIndices[i] = readVarInt(in);
+            }
+        }
+        sentence.setLemmas(Collections.unmodifiableList(Arrays.asList(lemmas)));
+        if (hasLabels) {
+            sentence.setDependencyLabels(Collections.unmodifiableList(labels),
+                    Collections.unmodifiableList(Arrays.asList(nummodIndices)));
+        }
+    }
+
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+
+    /**
+     * Gets the number of sentences found in the cache so far
+     * @return the number of hits
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * Gets the number of sentences not found in the cache so far
+     * @return the number of misses
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Gets the number of records dropped to keep the file under its size limit
+     * @return the number of evicted records
+     */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * Gets the number of sentences in the cache
+     * @return the number of records
+     */
+    public synchronized int size() {
+        return index.size();
+    }
+
+    /**
+     * Gets the size of the cache file
+     * @return the size in bytes
+     */
+    public synchronized long getFileLength() {
+        return fileLength;
+    }
+
+    /**
+     * Forces the records to disk and closes the file
+     * @throws IOException
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        channel.force(false);
+        channel.close();
+    }
+
+    private static final class Key {
+        private final long high;
+        private final long low;
+
+        Key(long high, long low) {
+            this.high = high;
+            this.low = low;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return high == key.high && low == key.low;
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) (low ^ (low >>> 32));
+        }
+    }
+
+    private static final class Location {
+        private final long offset;
+        private final int length;
+
+        Location(long offset, int length) {
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package edu.harvard.nlp;
+
+import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.ling.CoreLabel;
+import edu.stanford.nlp.ling.IndexedWord;
+import edu.stanford.nlp.pipeline.Annotation;
+import edu.stanford.nlp.pipeline.StanfordCoreNLP;
+import edu.stanford.nlp.semgraph.SemanticGraph;
+import edu.stanford.nlp.semgraph.SemanticGraphCoreAnnotations;
+import edu.stanford.nlp.semgraph.SemanticGraphEdge;
+import edu.stanford.nlp.util.CoreMap;
+import edu.uwm.pmcarticleparser.structuralelements.PMCArticleSentence;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Predicate;
+
+/**
+ * Annotates the sentences of an article in batches with shared CoreNLP
+ * pipelines, instead of one Simple API document per sentence.
+ *
+ * All the sentences are tokenized, tagged and lemmatized as one document,
+ * one sentence per line, and only the sentences passing a filter are then
+ * dependency parsed, again as one document. The pipelines are configured like
+ * the Simple API ({@code edu.stanford.nlp.simple.Sentence}) and the labels
+ * are read from the same dependency graphs, so the lemmas, dependency labels
+ * and nummod indices set on the sentences are the ones the sentences would
+ * compute themselves.
+ *
+ * The pipelines are loaded once per JVM by {@link #getInstance()}. An
+ * annotator is thread-safe, and the sentences of one article can also be
+ * annotated in parallel.
+ */
+public class SentenceAnnotator {
+    /**
+     * Identifies the annotators and models, so that stored annotations can be
+     * told apart when they change.
+     */
+    public static final String ANNOTATOR_VERSION = "corenlp-3.9.1:english-left3words-distsim:english_UD:enhanced";
+
+    private static volatile SentenceAnnotator instance;
+
+    private final StanfordCoreNLP lemmaPipeline;
+    private final StanfordCoreNLP parsePipeline;
+
+    private SentenceAnnotator() {
+        Properties lemmaProperties = new Properties();
+        lemmaProperties.setProperty("annotators", "tokenize,ssplit,pos,lemma");
+        lemmaProperties.setProperty("language", "english");
+        lemmaProperties.setProperty("tokenize.class", "PTBTokenizer");
+        lemmaProperties.setProperty("tokenize.language", "en");
+        // The sentences are already split: one sentence per line.
+        lemmaProperties.setProperty("ssplit.eolonly", "true");
+        lemmaPipeline = new StanfordCoreNLP(lemmaProperties);
+
+        Properties parseProperties = new Properties();
+        parseProperties.setProperty("annotators", "depparse");
+        parseProperties.setProperty("language", "english");
+        parseProperties.setProperty("enforceRequirements", "false");
+        parsePipeline = new StanfordCoreNLP(parseProperties);
+    }
+
+    /**
+     * Gets the shared annotator, loading the models on the first call
+     * @return the annotator
+     */
+    public static SentenceAnnotator getInstance() {
+        SentenceAnnotator annotator = instance;
+        if (annotator == null) {
+            synchronized (SentenceAnnotator.class) {
+                annotator = instance;
+                if (annotator == null) {
+                    annotator = new SentenceAnnotator();
+                    instance = annotator;
+                }
+            }
+        }
+        return annotator;
+    }
+
+    /**
+     * Lemmatizes all the sentences, then dependency parses those passing the
+     * filter. Sentences that already have lemmas are not lemmatized again.
+     * @param sentences the sentences, eg. all the sentences of an article
+     * @param parseFilter chooses the sentences to parse, called once their lemmas are set
+     */
+    public void annotate(List<PMCArticleSentence> sentences, Predicate<PMCArticleSentence> parseFilter) {
+        List<PMCArticleSentence> lemmatized = new ArrayList<>();
+        List<CoreMap> lemmatizedSentences = new ArrayList<>();
+        lemmatize(sentences, lemmatized, lemmatizedSentences);
+
+        List<CoreMap> toParse = new ArrayList<>();
+        List<PMCArticleSentence> parsed = new ArrayList<>();
+        for (int i = 0; i < lemmatized.size(); ++i) {
+            PMCArticleSentence sentence = lemmatized.get(i);
+            if (parseFilter.test(sentence)) {
+                toParse.add(lemmatizedSentences.get(i));
+                parsed.add(sentence);
+            }
+        }
+        if (toParse.isEmpty()) {
+            return;
+        }
+        for (CoreMap sentence : toParse) {
+            // The graphs are hash based, and a token hashes on its sentence index. Parsing every sentence as
+            // sentence 0, like the Simple API does, keeps the edge order that decides between enhanced labels.
+            sentence.set(CoreAnnotations.SentenceIndexAnnotation.class, 0);
+            for (CoreLabel token : sentence.get(CoreAnnotations.TokensAnnotation.class)) {
+                token.setSentIndex(0);
+            }
+        }
+        Annotation document = new Annotation("");
+        document.set(CoreAnnotations.SentencesAnnotation.class, toParse);
+        parsePipeline.annotate(document);
+        for (int i = 0; i < parsed.size(); ++i) {
+            parsed.get(i).setDependencyLabels(incomingDependencyLabels(toParse.get(i)));
+        }
+    }
+
+    /**
+     * Annotates the sentences like {@link #annotate(List, Predicate)}, split
+     * in as many runs of consecutive sentences as the pool has threads. The
+     * runs hold about the same number of characters and are annotated in
+     * parallel; the sentences keep their order, since each one receives its
+     * own annotations.
+     * @param sentences the sentences, eg. all the sentences of an article
+     * @param parseFilter chooses the sentences to parse, called once their lemmas are set
+     * @param pool the pool the runs are annotated in
+     */
+    public void annotate(List<PMCArticleSentence> sentences, Predicate<PMCArticleSentence> parseFilter,
+            ForkJoinPool pool) {
+        int parallelism = Math.min(pool.getParallelism(), sentences.size());
+        if (parallelism <= 1) {
+            annotate(sentences, parseFilter);
+            return;
+        }
+        long length = 0;
+        for (PMCArticleSentence sentence : sentences) {
+            length += sentence.getText().length();
+        }
+
+        List<ForkJoinTask<?>> tasks = new ArrayList<>(parallelism);
+        int start = 0;
+        long prefixLength = 0;
+        for (int i = 0; i < sentences.size(); ++i) {
+            prefixLength += sentences.get(i).getText().length();
+            if (prefixLength * parallelism >= length * (tasks.size() + 1) || i == sentences.size() - 1) {
+                List<PMCArticleSentence> run = sentences.subList(start, i + 1);
+                tasks.add(pool.submit(() -> annotate(run, parseFilter)));
+                start = i + 1;
+            }
+        }
+        for (ForkJoinTask<?> task : tasks) {
+            task.join();
+        }
+    }
+
+    /**
+     * Annotates the sentences like {@link #annotate(List, Predicate)}, but
+     * takes the annotations of the sentences found in a cache from it, and
+     * stores the annotations of the others in it
+     * @param sentences the sentences, eg. all the sentences of an article
+     * @param parseFilter chooses the sentences to parse, called once their lemmas are set
+     * @param cache the cache
+     */
+    public void annotate(List<PMCArticleSentence> sentences, Predicate<PMCArticleSentence> parseFilter,
+            SentenceAnnotationCache cache) {
+        List<PMCArticleSentence> missed = new ArrayList<>();
+        for (PMCArticleSentence sentence : sentences) {
+            if (!sentence.hasLemmas() && !cache.load(sentence)) {
+                missed.add(sentence);
+            }
+        }
+        annotate(missed, parseFilter);
+        for (PMCArticleSentence sentence : missed) {
+            cache.store(sentence);
+        }
+    }
+
+    /**
+     * Lemmatizes the sentences without lemmas as one document
+     * @param sentences the sentences
+     * @param lemmatized receives the sentences that were lemmatized
+     * @param lemmatizedSentences receives their annotated CoreNLP sentences
+     */
+    private void lemmatize(List<PMCArticleSentence> sentences, List<PMCArticleSentence> lemmatized,
+            List<CoreMap> lemmatizedSentences) {
+        StringBuilder text = new StringBuilder();
+        List<PMCArticleSentence> lines = new ArrayList<>();
+        List<Integer> lineStarts = new ArrayList<>();
+        for (PMCArticleSentence sentence : sentences) {
+            if (sentence.hasLemmas()) {
+                continue;
+            }
+            String sentenceText = sentence.getText();
+            if (sentenceText.trim().isEmpty() || sentenceText.indexOf('\n') >= 0 || sentenceText.indexOf('\r') >= 0) {
+                // Left to the sentence itself, so the lines of the document stay one to one with the sentences.
+                continue;
+            }
+            lineStarts.add(text.length());
+            lines.add(sentence);
+            text.append(sentenceText).append('\n');
+        }
+        if (lines.isEmpty()) {
+            return;
+        }
+        Annotation document = new Annotation(text.toString());
+        lemmaPipeline.annotate(document);
+
+        PMCArticleSentence previous = null;
+        boolean previousSplit = false;
+        for (CoreMap annotated : document.get(CoreAnnotations.SentencesAnnotation.class)) {
+            int begin = annotated.get(CoreAnnotations.CharacterOffsetBeginAnnotation.class);
+            int line = Collections.binarySearch(lineStarts, begin);
+            line = line >= 0 ? line : -line - 2;
+            PMCArticleSentence sentence = lines.get(line);
+            if (sentence == previous) {
+                // Should not happen with one sentence per line; the sentence annotates itself instead. Its entry is
+                // the last one added, and is only removed for its second fragment.
+                if (!previousSplit) {
+                    int last = lemmatized.size() - 1;
+                    lemmatized.remove(last);
+                    lemmatizedSentences.remove(last);
+                    sentence.setLemmas(null);
+                    previousSplit = true;
+                }
+                continue;
+            }
+            previous = sentence;
+            previousSplit = false;
+            List<CoreLabel> tokens = annotated.get(CoreAnnotations.TokensAnnotation.class);
+            String[] lemmas = new String[tokens.size()];
+            for (int i = 0; i < lemmas.length; ++i) {
+                lemmas[i] = tokens.get(i).lemma();
+            }
+            sentence.setLemmas(Collections.unmodifiableList(Arrays.asList(lemmas)));
+            lemmatized.add(sentence);
+            lemmatizedSentences.add(annotated);
+        }
+    }
+
+    /**
+     * Reads the incoming dependency label of every token the way
+     * Sentence.incomingDependencyLabels() does: from the enhanced graph, the
+     * last edge to a token wins, and the roots of the basic graph are "root".
+     */
+    private static List<Optional<String>> incomingDependencyLabels(CoreMap sentence) {
+        int length = sentence.get(CoreAnnotations.TokensAnnotation.class).size();
+        List<Optional<String>> labels = new ArrayList<>(length);
+        for (int i = 0; i < length; ++i) {
+            labels.add(Optional.empty());
+        }
+        SemanticGraph enhanced = sentence.get(SemanticGraphCoreAnnotations.EnhancedDependenciesAnnotation.class);
+        for (SemanticGraphEdge edge : enhanced.edgeIterable()) {
+            labels.set(edge.getDependent().index() - 1, Optional.of(edge.getRelation().toString()));
+        }
+        SemanticGraph basic = sentence.get(SemanticGraphCoreAnnotations.BasicDependenciesAnnotation.class);
+        for (IndexedWord root : basic.getRoots()) {
+            labels.set(root.index() - 1, Optional.of("root"));
+        }
+        return Collections.unmodifiableList(labels);
+    }
+}
@@ -0,0 +1,145 @@
+package edu.harvard.nlp;
+
+import edu.uwm.pmcarticleparser.structuralelements.DemographicScoringModel;
+import edu.uwm.pmcarticleparser.structuralelements.PMCArticleSentence;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * Drops the sentences that cannot be demographic sentences from their raw
+ * text alone, before any CoreNLP annotation.
+ *
+ * A demographic sentence has an anchor word of the scoring model among its
+ * lemmas and a numeric modifier ({@link PMCArticleSentence#hasAnchorWords(DemographicScoringModel)}
+ * and {@link PMCArticleSentence#getNummodCount(DemographicScoringModel)}).
+ * A sentence is kept when its text contains a surface form that may
+ * lemmatize to an anchor word, as a whole word in any case, and a number: a
+ * digit, a number word or a roman numeral. Both checks are precompiled
+ * patterns, so the filter is far cheaper than tagging and lemmatizing the
+ * sentence. It only needs to never drop a sentence the lemma and dependency
+ * filter would keep; it is thread-safe.
+ */
+public class SentencePrefilter {
+    // Tokens the tagger may read as cardinal numbers: digits, number words in any case (also the start of
+    // "twenty-two") and upper case roman numerals, as in "type II diabetes".
+    private static final Pattern NUMBER_FORMS = Pattern.compile("\\p{N}|(?<!\\p{L})(?:(?i:zero|one|two|three|four"
+            + "|five|six|seven|eight|nine|ten|eleven|twelve|thirteen|fourteen|fifteen|sixteen|seventeen|eighteen"
+            + "|nineteen|twenty|thirty|forty|fifty|sixty|seventy|eighty|ninety|hundred|thousand|million|billion"
+            + "|dozen)s?|[IVXLC]+)(?!\\p{L})");
+    // Suffixes of the regular inflections: "patients", "ages", "aged", "peopled", "subjected", "ageing".
+    private static final String[] SUFFIXES = {"", "s", "es", "d", "ed", "ing"};
+
+    private final Pattern anchorForms;
+    private final LongAdder keptSentences = new LongAdder();
+    private final LongAdder droppedSentences = new LongAdder();
+
+    /**
+     * Creates a filter for the anchor words of the default scoring model
+     */
+    public SentencePrefilter() {
+        this(DemographicScoringModel.getDefault());
+    }
+
+    /**
+     * Creates a filter for the anchor words of a scoring model
+     * @param model the scoring model
+     */
+    public SentencePrefilter(DemographicScoringModel model) {
+        anchorForms = anchorForms(model.getAnchorWords());
+    }
+
+    /**
+     * Makes the pattern of the surface forms that may lemmatize to anchor
+     * words: each word with the suffixes of the regular inflections, also
+     * after a doubled last letter ("manned") or without a final "e"
+     * ("aging") or "y" ("studies"), and the plurals in "-men" of the words
+     * in "-man"
+     * @param anchorWords the anchor words
+     * @return the pattern, matching whole words in any case
+     */
+    static Pattern anchorForms(Collection<String> anchorWords) {
+        Set<String> forms = new TreeSet<>();
+        for (String word : anchorWords) {
+            word = word.toLowerCase(Locale.ROOT);
+            if (word.isEmpty()) {
+                continue;
+            }
+            for (String suffix : SUFFIXES) {
+                forms.add(word + suffix);
+            }
+            char last = word.charAt(word.length() - 1);
+            forms.add(word + last + "ed");
+            forms.add(word + last + "ing");
+            String stem = word.substring(0, word.length() - 1);
+            if (last == 'e') {
+                forms.add(stem + "ing");
+            } else if (last == 'y') {
+                forms.add(stem + "ies");
+                forms.add(stem + "ied");
+            }
+            if (word.endsWith("man")) {
+                forms.add(word.substring(0, word.length() - 3) + "men");
+            }
+        }
+        if (forms.isEmpty()) {
+            return Pattern.compile("(?!)");
+        }
+        StringBuilder pattern = new StringBuilder("(?<!\\p{L})(?:");
+        String separator = "";
+        for (String form : forms) {
+            pattern.append(separator).append(Pattern.quote(form));
+            separator = "|";
+        }
+        return Pattern.compile(pattern.append(")(?!\\p{L})").toString(),
+                Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+    }
+
+    /**
+     * Tells whether a sentence may be a demographic sentence
+     * @param text the text of the sentence
+     * @return false if the sentence has no anchor word or no number
+     */
+    public boolean mayBeDemographic(String text) {
+        return anchorForms.matcher(text).find() && NUMBER_FORMS.matcher(text).find();
+    }
+
+    /**
+     * Keeps the sentences that may be demographic sentences, in order
+     * @param sentences the sentences, eg. all the sentences of an article
+     * @return the sentences passing {@link #mayBeDemographic(String)}
+     */
+    public List<PMCArticleSentence> filter(List<PMCArticleSentence> sentences) {
+        List<PMCArticleSentence> kept = new ArrayList<>();
+        for (PMCArticleSentence sentence : sentences) {
+            if (mayBeDemographic(sentence.getText())) {
+                kept.add(sentence);
+            }
+        }
+        keptSentences.add(kept.size());
+        droppedSentences.add(sentences.size() - kept.size());
+        return kept;
+    }
+
+    /**
+     * Gets the number of sentences kept by this filter so far
+     * @return the number of sentences kept
+     */
+    public long getKeptSentences() {
+        return keptSentences.sum();
+    }
+
+    /**
+     * Gets the number of sentences dropped by this filter so far
+     * @return the number of sentences dropped
+     */
+    public long getDroppedSentences() {
+        return droppedSentences.sum();
+    }
+}
@@ -0,0 +1,32 @@
+package edu.harvard.pipeline;
+
+import java.io.IOException;
+
+/**
+ * Where the NXML of articles is read from: the PMC open access bucket on S3,
+ * a packed local corpus ({@code PMCCorpusStore::readArticle}) or a local
+ * directory standing in for the bucket.
+ */
+@FunctionalInterface
+public interface ArticleSource {
+    /**
+     * Reads the NXML of an article into memory
+     * @param pmcid the PMC id, without the "PMC" prefix
+     * @return the NXML, or null if the source does not have the article
+     * @throws IOException if the article cannot be read
+     */
+    byte[] readArticle(String pmcid) throws IOException;
+
+    /**
+     * Reads the articles from this source, and from another source when this
+     * one does not have them
+     * @param other the source of the missing articles
+     * @return the combined source
+     */
+    default ArticleSource orElse(ArticleSource other) {
+        return pmcid -> {
+            byte[] nxml = readArticle(pmcid);
+            return nxml != null ? nxml : other.readArticle(pmcid);
+        };
+    }
+}
@@ -0,0 +1,161 @@
+package edu.harvard.pipeline;
+
+import edu.uwm.pmcarticleparser.structuralelements.DemographicScoringModel;
+import edu.uwm.pmcarticleparser.structuralelements.LemmaCounts;
+import edu.uwm.pmcarticleparser.structuralelements.PMCArticleSentence;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * What a {@link DemographicExtractor} found in an article: its sentences,
+ * the best demographic ones and the numeric modifier counts they were
+ * scored with.
+ */
+public final class DemographicExtraction {
+    private final List<PMCArticleSentence> sentences;
+    private final int candidateCount;
+    private final int demographicCount;
+    private final List<PMCArticleSentence> topSentences;
+    private final LemmaCounts numCounts;
+    private final DemographicScoringModel model;
+
+    DemographicExtraction(List<PMCArticleSentence> sentences, int candidateCount, int demographicCount,
+            List<PMCArticleSentence> topSentences, LemmaCounts numCounts, DemographicScoringModel model) {
+        this.sentences = Collections.unmodifiableList(sentences);
+        this.candidateCount = candidateCount;
+        this.demographicCount = demographicCount;
+        this.topSentences = Collections.unmodifiableList(topSentences);
+        this.numCounts = numCounts;
+        this.model = model;
+    }
+
+    /**
+     * Gets all the sentences of the article, abstract first, annotated if
+     * they may be demographic
+     * @return the sentences
+     */
+    public List<PMCArticleSentence> getSentences() {
+        return sentences;
+    }
+
+    /**
+     * Gets the number of sentences kept by the prefilter and annotated
+     * @return the number of candidate sentences
+     */
+    public int getCandidateCount() {
+        return candidateCount;
+    }
+
+    /**
+     * Gets the number of sentences with an anchor word and a numeric modifier
+     * @return the number of demographic sentences
+     */
+    public int getDemographicCount() {
+        return demographicCount;
+    }
+
+    /**
+     * Gets the best demographic sentences
+     * @return at most k sentences, by decreasing score
+     */
+    public List<PMCArticleSentence> getTopSentences() {
+        return topSentences;
+    }
+
+    /**
+     * Gets the number of times each numeric modifier lemma occurs in the
+     * demographic sentences
+     * @return the counts; not to be modified
+     */
+    public LemmaCounts getNummodCounts() {
+        return numCounts;
+    }
+
+    public DemographicScoringModel getScoringModel() {
+        return model;
+    }
+
+    /**
+     * Gets the demographic score a sentence of the article was ranked by
+     * @param sentence a demographic sentence of the article
+     * @return the score
+     */
+    public double getScore(PMCArticleSentence sentence) {
+        return sentence.getDemographicScore(numCounts, model);
+    }
+
+    /**
+     * Tells whether the article has no sentences at all
+     * @return true if the article is empty
+     */
+    public boolean isEmpty() {
+        return sentences.isEmpty();
+    }
+
+    /**
+     * Gets the best sentences in the form they are stored in
+     * @return the top sentences, each with its "text" and "section"
+     */
+    public List<Map<String, String>> getSentenceMaps() {
+        List<Map<String, String>> sentenceList = new ArrayList<>();
+        for (PMCArticleSentence s : topSentences) {
+            Map<String, String> sentenceMap = new HashMap<>();
+            sentenceMap.put("text", s.getText());
+            sentenceMap.put("section", s.getScoringSectionName());
+            sentenceList.add(sentenceMap);
+        }
+        return sentenceList;
+    }
+
+    /**
+     * Gets what is stored for the article: its best sentences, or why it has
+     * none
+     * @return the outcome
+     */
+    public MiningOutcome toOutcome() {
+        if (isEmpty()) {
+            return MiningOutcome.error(MiningOutcome.EMPTY);
+        }
+        // Articles that are not randomized clinical trials don't contain numeric modifiers at all.
+        if (topSentences.isEmpty()) {
+            return MiningOutcome.error(MiningOutcome.NOT_RANDOMIZED_CLINICAL_TRIALS);
+        }
+        return MiningOutcome.sentences(getSentenceMaps());
+    }
+
+    /**
+     * Prints the debugging info of the article: the most frequent numeric
+     * modifiers, the sentence counts and the stored sentences with their
+     * numeric modifiers and scores
+     * @param out the stream to print to
+     */
+    public void print(PrintStream out) {
+        numCounts.toMap().entrySet().stream()
+                .sorted(Map.Entry.<String, Integer>comparingByValue().reversed())
+                .limit(10)
+                .forEach(out::println);
+
+        out.println("Number of sentences: " + sentences.size());
+        out.println("Number of candidate sentences: " + candidateCount);
+
+        for (int i = 0; i < topSentences.size(); ++i) {
+            PMCArticleSentence s = topSentences.get(i);
+            out.println(i + ": " + s.getText());
+            out.println("lemmas: " + s.getLemmas());
+            for (int index : s.getNummodIndexArray(model)) {
+                out.println(s.getLemmas().get(index) + " " + s.getLemmas().get(index + 1) + "\t"
+                        + numCounts.get(s.getLemmaIds()[index]));
+            }
+            out.println("End of numeric modifier list. Score: " + getScore(s) + "\n");
+            out.println(s.getInParagraphIndex() + "/" + s.getTotalSentencesInContainingParagraph());
+            out.println(s.getSectionName());
+            out.println(s.getSubSectionName());
+            out.println();
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package edu.harvard.pipeline;
+
+import edu.harvard.nlp.DemographicRanker;
+import edu.harvard.nlp.SentenceAnnotationCache;
+import edu.harvard.nlp.SentenceAnnotator;
+import edu.harvard.nlp.SentencePrefilter;
+import edu.harvard.scoring.NummodPairSketch;
+import edu.uwm.pmcarticleparser.PMCArticle;
+import edu.uwm.pmcarticleparser.PMCArticleStreamParser;
+import edu.uwm.pmcarticleparser.PMCSectionFilter;
+import edu.uwm.pmcarticleparser.structuralelements.DemographicScoringModel;
+import edu.uwm.pmcarticleparser.structuralelements.LemmaCounts;
+import edu.uwm.pmcarticleparser.structuralelements.PMCArticleSentence;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+/**
+ * Finds the demographic sentences of articles: the steps the batch miner,
+ * the scoring experiments and the Lambda function share, behind one object.
+ *
+ * The sentences of an article are prefiltered on their text, the candidates
+ * annotated with the shared {@link SentenceAnnotator}, and those with an
+ * anchor word and a numeric modifier ranked by the scoring model. The
+ * annotations can come from a {@link SentenceAnnotationCache}, and the
+ * sentences of one article can be annotated in parallel in a pool. The
+ * articles it parses can have only some of their sections split into
+ * sentences, with a {@link PMCSectionFilter}.
+ *
+ * An extractor is meant to live as long as the process and is thread-safe:
+ * one extractor serves all the articles mined at the same time. When it
+ * counts numeric modifier pairs, each thread counts in its own sketch, and
+ * {@link #getPairSketch()} merges them.
+ */
+public final class DemographicExtractor {
+    // A small article run through the extractor to load the parser and CoreNLP classes and models.
+    private static final String WARMUP_ARTICLE = "<article><front><article-meta><title-group><article-title>Warmup"
+            + "</article-title></title-group><abstract><p>A total of 585 women and 412 men aged 50 to 74 years "
+            + "completed the study.</p></abstract></article-meta></front><body><sec><title>Methods</title><p>"
+            + "Forty patients were randomized.</p></sec></body></article>";
+
+    private final SentencePrefilter prefilter;
+    private final DemographicScoringModel model;
+    private final int topK;
+    private final ForkJoinPool annotationPool;
+    private final SentenceAnnotationCache annotationCache;
+    private final boolean countPairs;
+    private final PMCSectionFilter sectionFilter;
+    private final List<NummodPairSketch> pairSketches = Collections.synchronizedList(new ArrayList<>());
+    private final ThreadLocal<NummodPairSketch> pairSketch = ThreadLocal.withInitial(() -> {
+        NummodPairSketch sketch = new NummodPairSketch();
+        pairSketches.add(sketch);
+        return sketch;
+    });
+
+    private DemographicExtractor(Builder builder) {
+        this.model = builder.model;
+        this.prefilter = new SentencePrefilter(builder.model);
+        this.topK = builder.topK;
+        this.annotationPool = builder.annotationPool;
+        this.annotationCache = builder.annotationCache;
+        this.countPairs = builder.countPairs;
+        this.sectionFilter = builder.sectionFilter;
+    }
+
+    /**
+     * Builds an extractor. The CoreNLP models are loaded by the first
+     * article, or by {@link #warmUp()}.
+     */
+    public static final class Builder {
+        private DemographicScoringModel model = DemographicScoringModel.getDefault();
+        private int topK = DemographicRanker.DEFAULT_TOP_K;
+        private ForkJoinPool annotationPool;
+        private SentenceAnnotationCache annotationCache;
+        private boolean countPairs;
+        private PMCSectionFilter sectionFilter;
+
+        private Builder() {
+        }
+
+        /**
+         * Finds and ranks the sentences with another model than the default
+         * one: its anchor words and excluded numeric modifiers decide the
+         * demographic sentences, and its weights their rank
+         * @param model the scoring model
+         * @return this builder
+         */
+        public Builder scoringModel(DemographicScoringModel model) {
+            this.model = model;
+            return this;
+        }
+
+        /**
+         * Keeps another number of sentences than
+         * {@link DemographicRanker#DEFAULT_TOP_K}
+         * @param topK the number of sentences kept per article
+         * @return this builder
+         */
+        public Builder topK(int topK) {
+            this.topK = topK;
+            return this;
+        }
+
+        /**
+         * Annotates the sentences of an article in parallel in a pool
+         * @param annotationPool the pool
+         * @return this builder
+         */
+        public Builder annotationPool(ForkJoinPool annotationPool) {
+            this.annotationPool = annotationPool;
+            return this;
+        }
+
+        /**
+         * Takes the annotations from a cache, and stores the new ones in it;
+         * the sentences are then annotated in the calling thread
+         * @param annotationCache the cache
+         * @return this builder
+         */
+        public Builder annotationCache(SentenceAnnotationCache annotationCache) {
+            this.annotationCache = annotationCache;
+            return this;
+        }
+
+        /**
+         * Counts the numeric modifier pairs of the articles, see
+         * {@link DemographicExtractor#getPairSketch()}
+         * @return this builder
+         */
+        public Builder countPairs() {
+            this.countPairs = true;
+            return this;
+        }
+
+        /**
+         * Splits only the sections a filter keeps into sentences, in the
+         * articles parsed by {@link DemographicExtractor#parse(InputStream)}
+         * @param sectionFilter the filter, eg. {@link PMCSectionFilter#demographics()}
+         * @return this builder
+         */
+        public Builder sectionFilter(PMCSectionFilter sectionFilter) {
+            this.sectionFilter = sectionFilter;
+            return this;
+        }
+
+        public DemographicExtractor build() {
+            return new DemographicExtractor(this);
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Extracts the demographic sentences of a small article, so that the
+     * first real article does not pay for loading classes and models
+     */
+    public void warmUp() {
+        extract(new ByteArrayInputStream(WARMUP_ARTICLE.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Parses an article, splitting the sections of the section filter into
+     * sentences, or all of them without a filter
+     * @param inputStream the input stream of the article xml file; not closed
+     * @return the article
+     */
+    public PMCArticle parse(InputStream inputStream) {
+        return PMCArticleStreamParser.parse(inputStream, false, sectionFilter);
+    }
+
+    /**
+     * Parses an article and extracts its demographic sentences
+     * @param inputStream the input stream of the article xml file; not closed
+     * @return what was found
+     */
+    public DemographicExtraction extract(InputStream inputStream) {
+        return extract(parse(inputStream));
+    }
+
+    /**
+     * Extracts the best demographic sentences of an article
+     * @param article the article
+     * @return what was found
+     */
+    public DemographicExtraction extract(PMCArticle article) {
+        return extract(article, topK);
+    }
+
+    /**
+     * Extracts the best demographic sentences of an article
+     * @param article the article
+     * @param k the number of sentences to keep
+     * @return what was found
+     */
+    public DemographicExtraction extract(PMCArticle article, int k) {
+        List<PMCArticleSentence> allSentences = new ArrayList<>();
+        allSentences.addAll(article.getAbstract().getAbstractSentences());
+        allSentences.addAll(article.getFullText().getFullTextSentences());
+
+        // Only the sentences with an anchor word and a number in their text are lemmatized, and those with
+        // anchor lemmas parsed, in two batches.
+        List<PMCArticleSentence> candidateSentences = prefilter.filter(allSentences);
+        SentenceAnnotator annotator = SentenceAnnotator.getInstance();
+        if (annotationCache != null) {
+            annotator.annotate(candidateSentences, s -> s.hasAnchorWords(model), annotationCache);
+        } else if (annotationPool != null) {
+            annotator.annotate(candidateSentences, s -> s.hasAnchorWords(model), annotationPool);
+        } else {
+            annotator.annotate(candidateSentences, s -> s.hasAnchorWords(model));
+        }
+        List<PMCArticleSentence> demographicSentences = candidateSentences.stream()
+                .filter(s -> s.hasAnchorWords(model) && s.getNummodCount(model) > 0).collect(Collectors.toList());
+
+        LemmaCounts numCounts = DemographicRanker.countNummodLemmas(demographicSentences, model);
+        if (countPairs && !allSentences.isEmpty()) {
+            NummodPairSketch sketch = pairSketch.get();
+            // Only ever contended by getPairSketch().
+            synchronized (sketch) {
+                sketch.addArticle(demographicSentences, model);
+            }
+        }
+        return new DemographicExtraction(allSentences, candidateSentences.size(), demographicSentences.size(),
+                DemographicRanker.top(demographicSentences, numCounts, k, model), numCounts, model);
+    }
+
+    public DemographicScoringModel getScoringModel() {
+        return model;
+    }
+
+    /**
+     * Gets the prefilter the sentences go through, eg. for its counts
+     * @return the prefilter
+     */
+    public SentencePrefilter getPrefilter() {
+        return prefilter;
+    }
+
+    /**
+     * Merges the numeric modifier pairs counted so far by all the threads
+     * @return a new sketch of the pairs, empty unless the extractor counts them
+     */
+    public NummodPairSketch getPairSketch() {
+        NummodPairSketch merged = new NummodPairSketch();
+        synchronized (pairSketches) {
+            for (NummodPairSketch sketch : pairSketches) {
+                synchronized (sketch) {
+                    merged.merge(sketch);
+                }
+            }
+        }
+        return merged;
+    }
+}
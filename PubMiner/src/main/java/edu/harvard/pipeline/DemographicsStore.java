@@ -0,0 +1,71 @@
+package edu.harvard.pipeline;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Where the demographic sentences of articles are kept: the "demographics"
+ * DynamoDB table, or an in-memory stand-in for local runs and tests.
+ * Implementations are thread-safe.
+ */
+public interface DemographicsStore {
+    /**
+     * The state of an article in the store
+     */
+    enum Status {
+        /** The article is not in the store. */
+        MISSING,
+        /** The article is waiting for its sentences. */
+        PENDING,
+        /** The sentences of the article are stored. */
+        DONE,
+        /** The article has an error status instead of sentences. */
+        FAILED
+    }
+
+    /**
+     * Gets the state of an article
+     * @param pmcid the PMC id, without the "PMC" prefix
+     * @return the state of the article
+     */
+    Status getStatus(String pmcid);
+
+    /**
+     * Gets the states of several articles, in as few requests as the store
+     * allows
+     * @param pmcids the PMC ids, without the "PMC" prefix
+     * @return the state of each article
+     */
+    default Map<String, Status> getStatuses(List<String> pmcids) {
+        Map<String, Status> statuses = new HashMap<>();
+        for (String pmcid : pmcids) {
+            statuses.put(pmcid, getStatus(pmcid));
+        }
+        return statuses;
+    }
+
+    /**
+     * Stores the demographic sentences of an article, unless it already has
+     * sentences
+     * @param pmcid the PMC id, without the "PMC" prefix
+     * @param sentences the sentences, each with its "text" and "section"
+     * @return false if the article already had sentences; true if they are stored, or to be stored in the
+     * background
+     */
+    boolean putSentences(String pmcid, List<Map<String, String>> sentences);
+
+    /**
+     * Marks an article as having no demographic sentences
+     * @param pmcid the PMC id, without the "PMC" prefix
+     * @param errorStatus the reason, eg. "empty"
+     */
+    void putErrorStatus(String pmcid, String errorStatus);
+
+    /**
+     * Waits until the writes made in the background are done
+     * @throws InterruptedException if the calling thread is interrupted while waiting
+     */
+    default void flush() throws InterruptedException {
+    }
+}
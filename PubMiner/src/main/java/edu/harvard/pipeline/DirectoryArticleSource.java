@@ -0,0 +1,27 @@
+package edu.harvard.pipeline;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Reads articles from a local directory holding them as "PMC{pmcid}.nxml",
+ * as they are in the S3 bucket. Stands in for S3 in local runs and tests.
+ */
+public class DirectoryArticleSource implements ArticleSource {
+    private final Path directory;
+
+    /**
+     * Creates a source reading from the given directory
+     * @param directory the directory of NXML files
+     */
+    public DirectoryArticleSource(Path directory) {
+        this.directory = directory;
+    }
+
+    @Override
+    public byte[] readArticle(String pmcid) throws IOException {
+        Path file = directory.resolve("PMC" + pmcid + ".nxml");
+        return Files.isRegularFile(file) ? Files.readAllBytes(file) : null;
+    }
+}
@@ -0,0 +1,299 @@
+package edu.harvard.pipeline;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonWebServiceRequest;
+import com.amazonaws.retry.PredefinedRetryPolicies;
+import com.amazonaws.retry.RetryPolicy;
+import com.amazonaws.retry.RetryUtils;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.document.DynamoDB;
+import com.amazonaws.services.dynamodbv2.document.Item;
+import com.amazonaws.services.dynamodbv2.document.ItemCollection;
+import com.amazonaws.services.dynamodbv2.document.QueryOutcome;
+import com.amazonaws.services.dynamodbv2.document.Table;
+import com.amazonaws.services.dynamodbv2.document.UpdateItemOutcome;
+import com.amazonaws.services.dynamodbv2.document.spec.QuerySpec;
+import com.amazonaws.services.dynamodbv2.document.spec.UpdateItemSpec;
+import com.amazonaws.services.dynamodbv2.document.utils.ValueMap;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.BatchGetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.BatchGetItemResult;
+import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException;
+import com.amazonaws.services.dynamodbv2.model.ConsumedCapacity;
+import com.amazonaws.services.dynamodbv2.model.KeysAndAttributes;
+import com.amazonaws.services.dynamodbv2.model.ProvisionedThroughputExceededException;
+import com.amazonaws.services.dynamodbv2.model.ReturnConsumedCapacity;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemRequest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps the demographic sentences in the "demographics" DynamoDB table,
+ * with the queries and updates SentencesMiner has always used.
+ *
+ * The states of many articles are read with BatchGetItem, 100 keys per
+ * request, retrying the keys DynamoDB leaves unprocessed. In optimistic mode
+ * nothing is read: every article is taken as pending, and the updates are
+ * conditioned so that they neither create articles missing from the table
+ * nor overwrite stored sentences.
+ *
+ * With a {@link ThroughputGovernor}, every update waits for write capacity
+ * and is charged the capacity DynamoDB reports it consumed. A throttled
+ * update slows the governor down and is retried after it, with exponential
+ * backoff; the client should then be built with
+ * {@link #GOVERNED_RETRY_POLICY}, so that the SDK does not retry it first on
+ * its own.
+ */
+public class DynamoDBDemographicsStore implements DemographicsStore {
+    public static final String TABLE_NAME = "demographics";
+    public static final String PMCID_COLUMN_NAME = "pmcid";
+    public static final String SENTENCES_COLUMN_NAME = "sentences";
+    public static final String ERROR_STATUS_COLUMN_NAME = "errorStatus";
+    /**
+     * The largest number of keys DynamoDB reads in one BatchGetItem request
+     */
+    public static final int BATCH_GET_LIMIT = 100;
+    private static final int BATCH_GET_RETRIES = 8;
+    private static final long BATCH_GET_BACKOFF_MILLIS = 25;
+    private static final int THROTTLED_UPDATE_RETRIES = 8;
+    private static final long THROTTLED_UPDATE_BACKOFF_MILLIS = 25;
+    // The least an update costs, even when its condition fails.
+    private static final double MIN_WRITE_UNITS = 1;
+    private static final String NEW_SENTENCES_CONDITION = "attribute_not_exists(sentences)";
+    private static final String OPTIMISTIC_CONDITION = "attribute_exists(pmcid) AND attribute_not_exists(sentences)";
+
+    /**
+     * The DynamoDB retry policy, except that throttled updates are left to
+     * the governor of the store
+     */
+    public static final RetryPolicy GOVERNED_RETRY_POLICY = new RetryPolicy(
+            DynamoDBDemographicsStore::shouldRetry, PredefinedRetryPolicies.DYNAMODB_DEFAULT_BACKOFF_STRATEGY,
+            PredefinedRetryPolicies.DYNAMODB_DEFAULT_MAX_ERROR_RETRY, true);
+
+    private final AmazonDynamoDB client;
+    private final String tableName;
+    private final Table table;
+    private final boolean optimistic;
+    private final ThroughputGovernor governor;
+
+    /**
+     * Creates a store over the given table
+     * @param client the DynamoDB client
+     * @param tableName the name of the demographics table
+     */
+    public DynamoDBDemographicsStore(AmazonDynamoDB client, String tableName) {
+        this(client, tableName, false);
+    }
+
+    /**
+     * Creates a store over the given table
+     * @param client the DynamoDB client
+     * @param tableName the name of the demographics table
+     * @param optimistic whether to take every article as pending instead of reading its state
+     */
+    public DynamoDBDemographicsStore(AmazonDynamoDB client, String tableName, boolean optimistic) {
+        this(client, tableName, optimistic, null);
+    }
+
+    /**
+     * Creates a store over the given table
+     * @param client the DynamoDB client
+     * @param tableName the name of the demographics table
+     * @param optimistic whether to take every article as pending instead of reading its state
+     * @param governor the pace of the updates, or null to send them as they come
+     */
+    public DynamoDBDemographicsStore(AmazonDynamoDB client, String tableName, boolean optimistic,
+            ThroughputGovernor governor) {
+        this.client = client;
+        this.tableName = tableName;
+        this.table = new DynamoDB(client).getTable(tableName);
+        this.optimistic = optimistic;
+        this.governor = governor;
+    }
+
+    private static boolean shouldRetry(AmazonWebServiceRequest request, AmazonClientException ex, int retries) {
+        if (request instanceof UpdateItemRequest && RetryUtils.isThrottlingException(ex)) {
+            return false;
+        }
+        return PredefinedRetryPolicies.DEFAULT_RETRY_CONDITION.shouldRetry(request, ex, retries);
+    }
+
+    public boolean isOptimistic() {
+        return optimistic;
+    }
+
+    public ThroughputGovernor getGovernor() {
+        return governor;
+    }
+
+    @Override
+    public Status getStatus(String pmcid) {
+        if (optimistic) {
+            return Status.PENDING;
+        }
+        QuerySpec querySpec = new QuerySpec()
+                .withKeyConditionExpression("pmcid = :pmc_id")
+                .withValueMap(new ValueMap()
+                        .withString(":pmc_id", pmcid));
+        ItemCollection<QueryOutcome> items = table.query(querySpec);
+        Iterator<Item> iterator = items.iterator();
+        if (!iterator.hasNext()) {
+            return Status.MISSING;
+        }
+        Item item = iterator.next();
+        if (item.hasAttribute(SENTENCES_COLUMN_NAME)) {
+            return Status.DONE;
+        }
+        if (item.hasAttribute(ERROR_STATUS_COLUMN_NAME)) {
+            return Status.FAILED;
+        }
+        return Status.PENDING;
+    }
+
+    @Override
+    public Map<String, Status> getStatuses(List<String> pmcids) {
+        Map<String, Status> statuses = new HashMap<>();
+        if (optimistic) {
+            for (String pmcid : pmcids) {
+                statuses.put(pmcid, Status.PENDING);
+            }
+            return statuses;
+        }
+        // DynamoDB rejects a request with the same key twice.
+        List<String> keys = new ArrayList<>(new LinkedHashSet<>(pmcids));
+        for (int start = 0; start < keys.size(); start += BATCH_GET_LIMIT) {
+            getStatuses(keys.subList(start, Math.min(keys.size(), start + BATCH_GET_LIMIT)), statuses);
+        }
+        return statuses;
+    }
+
+    private void getStatuses(List<String> pmcids, Map<String, Status> statuses) {
+        List<Map<String, AttributeValue>> keys = new ArrayList<>(pmcids.size());
+        for (String pmcid : pmcids) {
+            keys.add(Collections.singletonMap(PMCID_COLUMN_NAME, new AttributeValue(pmcid)));
+        }
+        Map<String, KeysAndAttributes> requestItems = Collections.singletonMap(tableName, new KeysAndAttributes()
+                .withKeys(keys)
+                .withProjectionExpression(PMCID_COLUMN_NAME + ", " + SENTENCES_COLUMN_NAME + ", "
+                        + ERROR_STATUS_COLUMN_NAME));
+        for (int attempt = 0; ; ++attempt) {
+            BatchGetItemResult result = client.batchGetItem(new BatchGetItemRequest().withRequestItems(requestItems));
+            List<Map<String, AttributeValue>> items = result.getResponses().get(tableName);
+            if (items != null) {
+                for (Map<String, AttributeValue> item : items) {
+                    statuses.put(item.get(PMCID_COLUMN_NAME).getS(), status(item));
+                }
+            }
+            Map<String, KeysAndAttributes> unprocessed = result.getUnprocessedKeys();
+            if (unprocessed == null || unprocessed.get(tableName) == null
+                    || unprocessed.get(tableName).getKeys().isEmpty()) {
+                break;
+            }
+            if (attempt == BATCH_GET_RETRIES) {
+                // Still throttled: the remaining articles are read one by one.
+                for (Map<String, AttributeValue> key : unprocessed.get(tableName).getKeys()) {
+                    String pmcid = key.get(PMCID_COLUMN_NAME).getS();
+                    statuses.put(pmcid, getStatus(pmcid));
+                }
+                break;
+            }
+            requestItems = unprocessed;
+            try {
+                Thread.sleep(BATCH_GET_BACKOFF_MILLIS << attempt);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while reading article states", ex);
+            }
+        }
+        for (String pmcid : pmcids) {
+            statuses.putIfAbsent(pmcid, Status.MISSING);
+        }
+    }
+
+    private static Status status(Map<String, AttributeValue> item) {
+        if (item.containsKey(SENTENCES_COLUMN_NAME)) {
+            return Status.DONE;
+        }
+        if (item.containsKey(ERROR_STATUS_COLUMN_NAME)) {
+            return Status.FAILED;
+        }
+        return Status.PENDING;
+    }
+
+    @Override
+    public boolean putSentences(String pmcid, List<Map<String, String>> sentences) {
+        ValueMap valueMap = new ValueMap().withList(":val", sentences).withList(":empty_list", new ArrayList<>());
+        try {
+            UpdateItemSpec updateItemSpec = new UpdateItemSpec().withPrimaryKey(PMCID_COLUMN_NAME, pmcid)
+                    .withUpdateExpression("set sentences = list_append(if_not_exists(sentences, :empty_list)," +
+                            " :val)")
+                    .withValueMap(valueMap)
+                    .withConditionExpression(optimistic ? OPTIMISTIC_CONDITION : NEW_SENTENCES_CONDITION);
+            updateItem(updateItemSpec);
+            return true;
+        } catch (ConditionalCheckFailedException ex) {
+            System.out.println("ConditionalCheckFailedException: " + ex);
+            return false;
+        }
+    }
+
+    @Override
+    public void putErrorStatus(String pmcid, String errorStatus) {
+        UpdateItemSpec updateItemSpec = new UpdateItemSpec().withPrimaryKey(PMCID_COLUMN_NAME, pmcid)
+                .withUpdateExpression("set errorStatus = :val").withValueMap(new ValueMap().withString
+                        (":val", errorStatus));
+        if (!optimistic) {
+            updateItem(updateItemSpec);
+            return;
+        }
+        // Unread, the article may be missing or done already.
+        try {
+            updateItem(updateItemSpec.withConditionExpression(OPTIMISTIC_CONDITION));
+        } catch (ConditionalCheckFailedException ex) {
+            System.out.println("ConditionalCheckFailedException: " + ex);
+        }
+    }
+
+    private UpdateItemOutcome updateItem(UpdateItemSpec updateItemSpec) {
+        if (governor == null) {
+            return table.updateItem(updateItemSpec);
+        }
+        updateItemSpec.withReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL);
+        for (int attempt = 0; ; ++attempt) {
+            try {
+                governor.acquire();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for write capacity", ex);
+            }
+            try {
+                UpdateItemOutcome outcome = table.updateItem(updateItemSpec);
+                ConsumedCapacity consumed = outcome.getUpdateItemResult().getConsumedCapacity();
+                governor.recordConsumed(consumed != null && consumed.getCapacityUnits() != null
+                        ? consumed.getCapacityUnits() : MIN_WRITE_UNITS);
+                return outcome;
+            } catch (ConditionalCheckFailedException ex) {
+                governor.recordConsumed(MIN_WRITE_UNITS);
+                throw ex;
+            } catch (ProvisionedThroughputExceededException ex) {
+                governor.recordThrottle();
+                if (attempt == THROTTLED_UPDATE_RETRIES) {
+                    throw ex;
+                }
+                // The table stays throttled for a while: the retries also back off, past the pace of the governor.
+                try {
+                    Thread.sleep(THROTTLED_UPDATE_BACKOFF_MILLIS << attempt);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for write capacity", interrupted);
+                }
+            }
+        }
+    }
+}
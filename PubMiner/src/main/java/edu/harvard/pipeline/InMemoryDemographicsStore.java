@@ -0,0 +1,68 @@
+package edu.harvard.pipeline;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the demographic sentences in memory. Stands in for the DynamoDB
+ * table in local runs and tests.
+ */
+public class InMemoryDemographicsStore implements DemographicsStore {
+    private final Map<String, List<Map<String, String>>> sentences = new ConcurrentHashMap<>();
+    private final Map<String, String> errorStatuses = new ConcurrentHashMap<>();
+    private final Map<String, Boolean> pmcids = new ConcurrentHashMap<>();
+
+    /**
+     * Adds articles waiting for their sentences, like the rows the RCT list
+     * puts in the table
+     * @param pmcids the PMC ids, without the "PMC" prefix
+     */
+    public void addPending(Iterable<String> pmcids) {
+        for (String pmcid : pmcids) {
+            this.pmcids.put(pmcid, Boolean.TRUE);
+        }
+    }
+
+    @Override
+    public Status getStatus(String pmcid) {
+        if (sentences.containsKey(pmcid)) {
+            return Status.DONE;
+        }
+        if (errorStatuses.containsKey(pmcid)) {
+            return Status.FAILED;
+        }
+        return pmcids.containsKey(pmcid) ? Status.PENDING : Status.MISSING;
+    }
+
+    @Override
+    public boolean putSentences(String pmcid, List<Map<String, String>> sentences) {
+        pmcids.put(pmcid, Boolean.TRUE);
+        return this.sentences.putIfAbsent(pmcid, Collections.unmodifiableList(sentences)) == null;
+    }
+
+    @Override
+    public void putErrorStatus(String pmcid, String errorStatus) {
+        pmcids.put(pmcid, Boolean.TRUE);
+        errorStatuses.put(pmcid, errorStatus);
+    }
+
+    /**
+     * Gets the stored sentences of an article
+     * @param pmcid the PMC id
+     * @return the sentences, or null if none were stored
+     */
+    public List<Map<String, String>> getSentences(String pmcid) {
+        return sentences.get(pmcid);
+    }
+
+    /**
+     * Gets the error status of an article
+     * @param pmcid the PMC id
+     * @return the error status, or null if none was stored
+     */
+    public String getErrorStatus(String pmcid) {
+        return errorStatuses.get(pmcid);
+    }
+}
@@ -0,0 +1,125 @@
+package edu.harvard.pipeline;
+
+import java.util.Arrays;
+
+/**
+ * A compressed set of non-negative ints, split like a roaring bitmap: the
+ * high 16 bits of a value choose a container, which holds the low 16 bits
+ * in a sorted array while it has at most {@value #ARRAY_LIMIT} of them, and
+ * in an 8 KB bitset past that. PMC ids are dense in places and sparse in
+ * others, and take 2 bytes each at most either way. Not thread-safe.
+ */
+final class IntBitmap {
+    private static final int ARRAY_LIMIT = 4096;
+
+    private char[] keys = new char[4];
+    private Container[] containers = new Container[4];
+    private int containerCount;
+    private long cardinality;
+
+    /**
+     * Adds a value
+     * @param value the value
+     * @return false if the value was already in the set
+     */
+    boolean add(int value) {
+        char high = (char) (value >>> 16);
+        int i = Arrays.binarySearch(keys, 0, containerCount, high);
+        if (i < 0) {
+            i = -i - 1;
+            if (containerCount == keys.length) {
+                keys = Arrays.copyOf(keys, keys.length * 2);
+                containers = Arrays.copyOf(containers, containers.length * 2);
+            }
+            System.arraycopy(keys, i, keys, i + 1, containerCount - i);
+            System.arraycopy(containers, i, containers, i + 1, containerCount - i);
+            keys[i] = high;
+            containers[i] = new Container();
+            ++containerCount;
+        }
+        if (!containers[i].add((char) value)) {
+            return false;
+        }
+        ++cardinality;
+        return true;
+    }
+
+    /**
+     * Tells whether a value is in the set
+     * @param value the value
+     * @return true if it was added
+     */
+    boolean contains(int value) {
+        int i = Arrays.binarySearch(keys, 0, containerCount, (char) (value >>> 16));
+        return i >= 0 && containers[i].contains((char) value);
+    }
+
+    /**
+     * Gets the number of values in the set
+     * @return the number of values
+     */
+    long getCardinality() {
+        return cardinality;
+    }
+
+    /**
+     * Estimates the memory taken by the values
+     * @return the number of bytes of the arrays and bitsets
+     */
+    long getSizeInBytes() {
+        long size = keys.length * 2L + containers.length * 8L;
+        for (int i = 0; i < containerCount; ++i) {
+            size += containers[i].getSizeInBytes();
+        }
+        return size;
+    }
+
+    private static final class Container {
+        private char[] values = new char[4];
+        private long[] bits;
+        private int count;
+
+        boolean add(char low) {
+            if (bits != null) {
+                long mask = 1L << low;
+                if ((bits[low >>> 6] & mask) != 0) {
+                    return false;
+                }
+                bits[low >>> 6] |= mask;
+                ++count;
+                return true;
+            }
+            int i = Arrays.binarySearch(values, 0, count, low);
+            if (i >= 0) {
+                return false;
+            }
+            if (count == ARRAY_LIMIT) {
+                bits = new long[1 << 10];
+                for (int j = 0; j < count; ++j) {
+                    bits[values[j] >>> 6] |= 1L << values[j];
+                }
+                values = null;
+                return add(low);
+            }
+            i = -i - 1;
+            if (count == values.length) {
+                values = Arrays.copyOf(values, Math.min(ARRAY_LIMIT, values.length * 2));
+            }
+            System.arraycopy(values, i, values, i + 1, count - i);
+            values[i] = low;
+            ++count;
+            return true;
+        }
+
+        boolean contains(char low) {
+            if (bits != null) {
+                return (bits[low >>> 6] & 1L << low) != 0;
+            }
+            return Arrays.binarySearch(values, 0, count, low) >= 0;
+        }
+
+        long getSizeInBytes() {
+            return bits != null ? bits.length * 8L : values.length * 2L;
+        }
+    }
+}
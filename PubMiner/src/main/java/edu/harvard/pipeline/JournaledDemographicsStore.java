@@ -0,0 +1,116 @@
+package edu.harvard.pipeline;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Records the finished articles of another store in a local
+ * {@link ProgressJournal}, and answers their states from it: a run started
+ * again after a crash skips them without a request to the other store.
+ *
+ * An article is journaled once its write to the other store returns, so
+ * with a {@link PipelinedDemographicsStore} this store goes inside it, and
+ * articles found done or failed in the other store are journaled too.
+ * Articles whose sentences were rejected are not journaled from the write,
+ * the other store has their outcome. If the journal cannot be written, the
+ * error is logged and the articles are asked from the other store on the
+ * next run.
+ */
+public class JournaledDemographicsStore implements DemographicsStore {
+    private static final Logger LOGGER = Logger.getLogger(JournaledDemographicsStore.class.getName());
+
+    private final DemographicsStore store;
+    private final ProgressJournal journal;
+
+    /**
+     * Creates a store journaling the outcomes of another one
+     * @param store the store written to
+     * @param journal the journal of the finished articles, closed by the caller
+     */
+    public JournaledDemographicsStore(DemographicsStore store, ProgressJournal journal) {
+        this.store = store;
+        this.journal = journal;
+    }
+
+    private static Status toStatus(ProgressJournal.Outcome outcome) {
+        return outcome == ProgressJournal.Outcome.SENTENCES ? Status.DONE : Status.FAILED;
+    }
+
+    private void record(String pmcid, ProgressJournal.Outcome outcome) {
+        try {
+            journal.record(pmcid, outcome);
+        } catch (IOException ex) {
+            LOGGER.log(Level.WARNING, "Could not journal PMC" + pmcid, ex);
+        }
+    }
+
+    private void recordStatus(String pmcid, Status status) {
+        if (status == Status.DONE) {
+            record(pmcid, ProgressJournal.Outcome.SENTENCES);
+        } else if (status == Status.FAILED) {
+            record(pmcid, ProgressJournal.Outcome.ERROR);
+        }
+    }
+
+    @Override
+    public Status getStatus(String pmcid) {
+        ProgressJournal.Outcome outcome = journal.getOutcome(pmcid);
+        if (outcome != null) {
+            return toStatus(outcome);
+        }
+        Status status = store.getStatus(pmcid);
+        recordStatus(pmcid, status);
+        return status;
+    }
+
+    @Override
+    public Map<String, Status> getStatuses(List<String> pmcids) {
+        Map<String, Status> statuses = new HashMap<>();
+        List<String> unknown = new ArrayList<>();
+        for (String pmcid : pmcids) {
+            ProgressJournal.Outcome outcome = journal.getOutcome(pmcid);
+            if (outcome != null) {
+                statuses.put(pmcid, toStatus(outcome));
+            } else {
+                unknown.add(pmcid);
+            }
+        }
+        if (!unknown.isEmpty()) {
+            for (Map.Entry<String, Status> entry : store.getStatuses(unknown).entrySet()) {
+                recordStatus(entry.getKey(), entry.getValue());
+                statuses.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return statuses;
+    }
+
+    @Override
+    public boolean putSentences(String pmcid, List<Map<String, String>> sentences) {
+        if (!store.putSentences(pmcid, sentences)) {
+            return false;
+        }
+        record(pmcid, ProgressJournal.Outcome.SENTENCES);
+        return true;
+    }
+
+    @Override
+    public void putErrorStatus(String pmcid, String errorStatus) {
+        store.putErrorStatus(pmcid, errorStatus);
+        record(pmcid, ProgressJournal.Outcome.ofErrorStatus(errorStatus));
+    }
+
+    @Override
+    public void flush() throws InterruptedException {
+        store.flush();
+        try {
+            journal.sync();
+        } catch (IOException ex) {
+            LOGGER.log(Level.WARNING, "Could not sync " + journal, ex);
+        }
+    }
+}
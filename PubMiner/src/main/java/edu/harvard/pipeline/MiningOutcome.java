@@ -0,0 +1,58 @@
+package edu.harvard.pipeline;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * What mining an article found: its demographic sentences, or the error
+ * status stored instead of them.
+ */
+public final class MiningOutcome {
+    /**
+     * The error status of an article without sentences
+     */
+    public static final String EMPTY = "empty";
+    /**
+     * The error status of an article without demographic sentences
+     */
+    public static final String NOT_RANDOMIZED_CLINICAL_TRIALS = "not randomized clinical trials";
+
+    private final List<Map<String, String>> sentences;
+    private final String errorStatus;
+
+    private MiningOutcome(List<Map<String, String>> sentences, String errorStatus) {
+        this.sentences = sentences;
+        this.errorStatus = errorStatus;
+    }
+
+    /**
+     * Creates the outcome of an article with demographic sentences
+     * @param sentences the sentences, each with its "text" and "section"
+     * @return the outcome
+     */
+    public static MiningOutcome sentences(List<Map<String, String>> sentences) {
+        return new MiningOutcome(Collections.unmodifiableList(sentences), null);
+    }
+
+    /**
+     * Creates the outcome of an article without demographic sentences
+     * @param errorStatus the reason, eg. "empty"
+     * @return the outcome
+     */
+    public static MiningOutcome error(String errorStatus) {
+        return new MiningOutcome(Collections.emptyList(), errorStatus);
+    }
+
+    public List<Map<String, String>> getSentences() {
+        return sentences;
+    }
+
+    public String getErrorStatus() {
+        return errorStatus;
+    }
+
+    public boolean isError() {
+        return errorStatus != null;
+    }
+}
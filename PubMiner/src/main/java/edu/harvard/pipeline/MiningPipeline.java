@@ -0,0 +1,390 @@
+package edu.harvard.pipeline;
+
+import edu.uwm.pmcarticleparser.PMCArticle;
+import edu.uwm.pmcarticleparser.PMCArticleStreamParser;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Mines the demographic sentences of a list of articles in four stages
+ * joined by bounded queues, so that network waits and CPU work overlap:
+ *
+ * <ol>
+ * <li>fetch: looks the article up in the store and reads its NXML from the
+ * article source, on I/O threads; the states of the articles are read
+ * ahead, {@value #STATUS_BATCH_SIZE} at a time;</li>
+ * <li>parse: parses the NXML, on CPU threads;</li>
+ * <li>nlp: finds the demographic sentences, on CPU threads;</li>
+ * <li>persist: stores the sentences or the error status, on I/O threads.</li>
+ * </ol>
+ *
+ * A run ends once the store has flushed its writes.
+ *
+ * A stage blocks when the queue of the next stage is full, so a slow stage
+ * holds back the ones before it instead of letting work pile up in memory.
+ * The depth of every queue and the work of every stage are counted in
+ * {@link StageMetrics}. Articles are processed in no particular order, and
+ * an article that fails in a stage is logged and dropped, as SentencesMiner
+ * did.
+ */
+public class MiningPipeline {
+    public static final int DEFAULT_IO_THREADS = 16;
+    public static final int DEFAULT_QUEUE_CAPACITY = 64;
+    public static final int STATUS_BATCH_SIZE = DynamoDBDemographicsStore.BATCH_GET_LIMIT;
+    private static final long POLL_MILLIS = 100;
+
+    private final ArticleSource articleSource;
+    private final DemographicsStore store;
+    private final Function<PMCArticle, MiningOutcome> miner;
+    private final int ioThreads;
+    private final int cpuThreads;
+    private final int queueCapacity;
+    private int reportIntervalSeconds;
+    private Function<InputStream, PMCArticle> parser = PMCArticleStreamParser::parse;
+    private volatile List<StageMetrics> metrics = Collections.emptyList();
+    // The states read ahead of the fetch stage, each taken by the fetch of its article.
+    private final Map<String, DemographicsStore.Status> prefetchedStatuses = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a pipeline with {@value #DEFAULT_IO_THREADS} fetch threads,
+     * CPU threads for the available processors and queues of
+     * {@value #DEFAULT_QUEUE_CAPACITY} articles
+     * @param articleSource where the NXML of the articles is read from
+     * @param store where the outcomes are stored
+     * @param miner finds the demographic sentences of an article; called from several threads at once
+     */
+    public MiningPipeline(ArticleSource articleSource, DemographicsStore store,
+            Function<PMCArticle, MiningOutcome> miner) {
+        this(articleSource, store, miner, DEFAULT_IO_THREADS, Runtime.getRuntime().availableProcessors(),
+                DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * Creates a pipeline
+     * @param articleSource where the NXML of the articles is read from
+     * @param store where the outcomes are stored
+     * @param miner finds the demographic sentences of an article; called from several threads at once
+     * @param ioThreads the number of fetch threads; persistence gets a quarter of them
+     * @param cpuThreads the number of nlp threads; parsing gets a quarter of them
+     * @param queueCapacity the number of articles each queue holds before blocking its producers
+     */
+    public MiningPipeline(ArticleSource articleSource, DemographicsStore store,
+            Function<PMCArticle, MiningOutcome> miner, int ioThreads, int cpuThreads, int queueCapacity) {
+        this.articleSource = articleSource;
+        this.store = store;
+        this.miner = miner;
+        this.ioThreads = ioThreads;
+        this.cpuThreads = cpuThreads;
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * Sets how often the stage metrics are printed while the pipeline runs
+     * @param reportIntervalSeconds the interval, or 0 not to print them
+     */
+    public void setReportIntervalSeconds(int reportIntervalSeconds) {
+        this.reportIntervalSeconds = reportIntervalSeconds;
+    }
+
+    /**
+     * Sets how the parse stage parses the NXML of the articles, eg. with
+     * {@link DemographicExtractor#parse(InputStream)}
+     * @param parser parses an article; called from several threads at once
+     */
+    public void setParser(Function<InputStream, PMCArticle> parser) {
+        this.parser = parser;
+    }
+
+    /**
+     * Gets the metrics of the stages of the last run, in stage order
+     * @return the metrics, empty before the first run
+     */
+    public List<StageMetrics> getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Mines the given articles and waits until all of them are stored or
+     * dropped, and the store has flushed its writes
+     * @param pmcids the PMC ids, without the "PMC" prefix
+     * @throws InterruptedException if the calling thread is interrupted; the stages are stopped
+     */
+    public void run(Iterable<String> pmcids) throws InterruptedException {
+        Stage<String, FetchedArticle> fetch = new Stage<>("fetch", Math.max(1, ioThreads), queueCapacity,
+                this::fetch);
+        Stage<FetchedArticle, ParsedArticle> parse = new Stage<>("parse", Math.max(1, cpuThreads / 4),
+                queueCapacity, this::parse);
+        Stage<ParsedArticle, MinedArticle> nlp = new Stage<>("nlp", Math.max(1, cpuThreads), queueCapacity,
+                this::mine);
+        Stage<MinedArticle, String> persist = new Stage<>("persist", Math.max(1, ioThreads / 4), queueCapacity,
+                this::persist);
+        fetch.next = parse;
+        parse.next = nlp;
+        nlp.next = persist;
+        List<Stage<?, ?>> stages = Arrays.asList(fetch, parse, nlp, persist);
+        List<StageMetrics> stageMetrics = new ArrayList<>();
+        for (Stage<?, ?> stage : stages) {
+            stageMetrics.add(stage.metrics);
+        }
+        metrics = Collections.unmodifiableList(stageMetrics);
+        prefetchedStatuses.clear();
+
+        ScheduledExecutorService reporter = null;
+        if (reportIntervalSeconds > 0) {
+            reporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "pipeline-report");
+                thread.setDaemon(true);
+                return thread;
+            });
+            reporter.scheduleAtFixedRate(() -> stageMetrics.forEach(System.out::println), reportIntervalSeconds,
+                    reportIntervalSeconds, TimeUnit.SECONDS);
+        }
+        for (Stage<?, ?> stage : stages) {
+            stage.start();
+        }
+        try {
+            List<String> batch = new ArrayList<>(STATUS_BATCH_SIZE);
+            for (String pmcid : pmcids) {
+                batch.add(pmcid);
+                if (batch.size() == STATUS_BATCH_SIZE) {
+                    queue(batch, fetch);
+                    batch.clear();
+                }
+            }
+            queue(batch, fetch);
+            fetch.close();
+            for (Stage<?, ?> stage : stages) {
+                stage.join();
+            }
+            store.flush();
+        } catch (InterruptedException ex) {
+            for (Stage<?, ?> stage : stages) {
+                stage.interrupt();
+            }
+            throw ex;
+        } finally {
+            if (reporter != null) {
+                reporter.shutdownNow();
+            }
+        }
+    }
+
+    private void queue(List<String> pmcids, Stage<String, ?> fetch) throws InterruptedException {
+        if (pmcids.isEmpty()) {
+            return;
+        }
+        try {
+            prefetchedStatuses.putAll(store.getStatuses(pmcids));
+        } catch (RuntimeException ex) {
+            // The fetch stage reads the states it does not find.
+            Logger.getLogger(MiningPipeline.class.getName()).log(Level.WARNING,
+                    "Reading the states of " + pmcids.size() + " articles failed", ex);
+        }
+        for (String pmcid : pmcids) {
+            fetch.put(pmcid);
+        }
+    }
+
+    private FetchedArticle fetch(String pmcid) throws IOException {
+        DemographicsStore.Status status = prefetchedStatuses.remove(pmcid);
+        if (status == null) {
+            status = store.getStatus(pmcid);
+        }
+        if (status != DemographicsStore.Status.PENDING) {
+            System.out.println("pmcid " + pmcid + " is not pending: " + status);
+            return null;
+        }
+        byte[] nxml = articleSource.readArticle(pmcid);
+        if (nxml == null) {
+            throw new IOException("Article not found");
+        }
+        return new FetchedArticle(pmcid, nxml);
+    }
+
+    private ParsedArticle parse(FetchedArticle fetched) {
+        return new ParsedArticle(fetched.pmcid, parser.apply(new ByteArrayInputStream(fetched.nxml)));
+    }
+
+    private MinedArticle mine(ParsedArticle parsed) {
+        return new MinedArticle(parsed.pmcid, miner.apply(parsed.article));
+    }
+
+    private String persist(MinedArticle mined) {
+        if (mined.outcome.isError()) {
+            store.putErrorStatus(mined.pmcid, mined.outcome.getErrorStatus());
+        } else if (!store.putSentences(mined.pmcid, mined.outcome.getSentences())) {
+            return null;
+        }
+        return mined.pmcid;
+    }
+
+    @FunctionalInterface
+    private interface StageFunction<I, O> {
+        /**
+         * Processes an item
+         * @return the item for the next stage, or null to drop the item
+         */
+        O apply(I item) throws Exception;
+    }
+
+    /**
+     * The threads of a stage and the queue feeding them. The input is closed
+     * once every item is queued; the threads then drain the queue, and the
+     * last one to stop closes the input of the next stage.
+     */
+    private static final class Stage<I, O> {
+        private final String name;
+        private final BlockingQueue<I> input;
+        private final StageFunction<I, O> function;
+        private final Thread[] threads;
+        private final AtomicInteger running;
+        private final StageMetrics metrics;
+        private volatile boolean closed;
+        private Stage<O, ?> next;
+
+        Stage(String name, int threadCount, int queueCapacity, StageFunction<I, O> function) {
+            this.name = name;
+            this.input = new ArrayBlockingQueue<>(queueCapacity);
+            this.function = function;
+            this.threads = new Thread[threadCount];
+            this.running = new AtomicInteger(threadCount);
+            this.metrics = new StageMetrics(name, threadCount, input);
+        }
+
+        void start() {
+            for (int i = 0; i < threads.length; ++i) {
+                threads[i] = new Thread(this::work, "pipeline-" + name + "-" + (i + 1));
+                threads[i].start();
+            }
+        }
+
+        void put(I item) throws InterruptedException {
+            input.put(item);
+            metrics.queued();
+        }
+
+        void close() {
+            closed = true;
+        }
+
+        void join() throws InterruptedException {
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        }
+
+        void interrupt() {
+            for (Thread thread : threads) {
+                thread.interrupt();
+            }
+        }
+
+        private void work() {
+            try {
+                while (true) {
+                    // Read before polling: once closed, nothing more is queued, so an empty poll means done.
+                    boolean drained = closed;
+                    I item = input.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                    if (item == null) {
+                        if (drained) {
+                            break;
+                        }
+                        continue;
+                    }
+                    process(item);
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            } finally {
+                if (running.decrementAndGet() == 0 && next != null) {
+                    next.close();
+                }
+            }
+        }
+
+        private void process(I item) throws InterruptedException {
+            long start = System.nanoTime();
+            O result;
+            try {
+                result = function.apply(item);
+            } catch (Exception ex) {
+                Logger.getLogger(MiningPipeline.class.getName()).log(Level.SEVERE,
+                        "Stage " + name + " failed on " + item, ex);
+                metrics.failed(System.nanoTime() - start);
+                return;
+            }
+            long end = System.nanoTime();
+            if (result == null) {
+                metrics.skipped(end - start);
+                return;
+            }
+            metrics.processed(end - start);
+            if (next != null) {
+                next.put(result);
+                metrics.blocked(System.nanoTime() - end);
+            }
+        }
+    }
+
+    private static final class FetchedArticle {
+        private final String pmcid;
+        private final byte[] nxml;
+
+        FetchedArticle(String pmcid, byte[] nxml) {
+            this.pmcid = pmcid;
+            this.nxml = nxml;
+        }
+
+        @Override
+        public String toString() {
+            return "PMC" + pmcid;
+        }
+    }
+
+    private static final class ParsedArticle {
+        private final String pmcid;
+        private final PMCArticle article;
+
+        ParsedArticle(String pmcid, PMCArticle article) {
+            this.pmcid = pmcid;
+            this.article = article;
+        }
+
+        @Override
+        public String toString() {
+            return "PMC" + pmcid;
+        }
+    }
+
+    private static final class MinedArticle {
+        private final String pmcid;
+        private final MiningOutcome outcome;
+
+        MinedArticle(String pmcid, MiningOutcome outcome) {
+            this.pmcid = pmcid;
+            this.outcome = outcome;
+        }
+
+        @Override
+        public String toString() {
+            return "PMC" + pmcid;
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package edu.harvard.pipeline;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Writes to another store in the background, so that the callers do not
+ * wait for a round trip per article. Up to a bound, the writes are in
+ * flight at the same time on writer threads; past it, the callers block
+ * until a write is done. The writes go to the other store unchanged, with
+ * their conditions, and reads are not delayed.
+ *
+ * A write of sentences returns true at once: the articles that already had
+ * sentences are counted in {@link #getRejectedCount()}, and the writes that
+ * failed are logged and counted in {@link #getFailedCount()}.
+ *
+ * With the {@link ThroughputGovernor} of the other store, the callers also
+ * block while the table is out of write capacity, before their write is
+ * queued: the pipeline stage writing, and the stages feeding it, slow down
+ * to the pace of the table instead of filling the queue of writes.
+ */
+public class PipelinedDemographicsStore implements DemographicsStore, AutoCloseable {
+    public static final int DEFAULT_WRITERS = 8;
+    public static final int DEFAULT_MAX_PENDING_WRITES = 64;
+
+    private final DemographicsStore store;
+    private final ExecutorService writers;
+    private final Semaphore pendingWrites;
+    private final int maxPendingWrites;
+    private final ThroughputGovernor governor;
+    private final LongAdder writtenCount = new LongAdder();
+    private final LongAdder rejectedCount = new LongAdder();
+    private final LongAdder failedCount = new LongAdder();
+
+    /**
+     * Creates a store writing to another one on {@value #DEFAULT_WRITERS}
+     * threads, with up to {@value #DEFAULT_MAX_PENDING_WRITES} writes pending
+     * @param store the store written to
+     */
+    public PipelinedDemographicsStore(DemographicsStore store) {
+        this(store, DEFAULT_WRITERS, DEFAULT_MAX_PENDING_WRITES);
+    }
+
+    /**
+     * Creates a store writing to another one in the background
+     * @param store the store written to
+     * @param writerCount the number of writes in flight at the same time
+     * @param maxPendingWrites the number of writes queued or in flight before the callers block
+     */
+    public PipelinedDemographicsStore(DemographicsStore store, int writerCount, int maxPendingWrites) {
+        this(store, writerCount, maxPendingWrites, null);
+    }
+
+    /**
+     * Creates a store writing to another one in the background, at the pace
+     * of a governor
+     * @param store the store written to
+     * @param writerCount the number of writes in flight at the same time
+     * @param maxPendingWrites the number of writes queued or in flight before the callers block
+     * @param governor the governor of the store written to, or null
+     */
+    public PipelinedDemographicsStore(DemographicsStore store, int writerCount, int maxPendingWrites,
+            ThroughputGovernor governor) {
+        this.store = store;
+        this.maxPendingWrites = maxPendingWrites;
+        this.governor = governor;
+        this.pendingWrites = new Semaphore(maxPendingWrites);
+        AtomicInteger threadCount = new AtomicInteger();
+        this.writers = Executors.newFixedThreadPool(writerCount, runnable -> {
+            Thread thread = new Thread(runnable, "demographics-writer-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public Status getStatus(String pmcid) {
+        return store.getStatus(pmcid);
+    }
+
+    @Override
+    public Map<String, Status> getStatuses(List<String> pmcids) {
+        return store.getStatuses(pmcids);
+    }
+
+    @Override
+    public boolean putSentences(String pmcid, List<Map<String, String>> sentences) {
+        write(pmcid, () -> {
+            if (!store.putSentences(pmcid, sentences)) {
+                rejectedCount.increment();
+            }
+        });
+        return true;
+    }
+
+    @Override
+    public void putErrorStatus(String pmcid, String errorStatus) {
+        write(pmcid, () -> store.putErrorStatus(pmcid, errorStatus));
+    }
+
+    private void write(String pmcid, Runnable write) {
+        if (governor != null) {
+            try {
+                governor.acquire();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for write capacity", ex);
+            }
+        }
+        pendingWrites.acquireUninterruptibly();
+        try {
+            writers.execute(() -> {
+                try {
+                    write.run();
+                    writtenCount.increment();
+                } catch (RuntimeException ex) {
+                    failedCount.increment();
+                    Logger.getLogger(PipelinedDemographicsStore.class.getName()).log(Level.SEVERE,
+                            "Write of PMC" + pmcid + " failed", ex);
+                } finally {
+                    pendingWrites.release();
+                }
+            });
+        } catch (RuntimeException ex) {
+            pendingWrites.release();
+            throw ex;
+        }
+    }
+
+    @Override
+    public void flush() throws InterruptedException {
+        // Holding every permit means no write is pending.
+        pendingWrites.acquire(maxPendingWrites);
+        pendingWrites.release(maxPendingWrites);
+        store.flush();
+    }
+
+    /**
+     * Gets the number of writes waiting or in flight
+     * @return the number of pending writes
+     */
+    public int getPendingWriteCount() {
+        return maxPendingWrites - pendingWrites.availablePermits();
+    }
+
+    /**
+     * Gets the number of writes done, including the rejected ones
+     * @return the number of writes
+     */
+    public long getWrittenCount() {
+        return writtenCount.sum();
+    }
+
+    /**
+     * Gets the number of articles whose sentences were not written since
+     * they already had sentences
+     * @return the number of rejected writes
+     */
+    public long getRejectedCount() {
+        return rejectedCount.sum();
+    }
+
+    /**
+     * Gets the number of writes that failed
+     * @return the number of failed writes
+     */
+    public long getFailedCount() {
+        return failedCount.sum();
+    }
+
+    /**
+     * Waits for the pending writes and stops the writer threads
+     * @throws IllegalStateException if the calling thread is interrupted while waiting; the interrupt is kept
+     */
+    @Override
+    public void close() {
+        try {
+            flush();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for pending writes", ex);
+        } finally {
+            writers.shutdown();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("writes: %d done (%d rejected), %d failed, %d pending", getWrittenCount(),
+                getRejectedCount(), getFailedCount(), getPendingWriteCount());
+    }
+}
@@ -0,0 +1,287 @@
+package edu.harvard.pipeline;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Remembers which articles are finished, so that a run started again after
+ * a crash skips them without asking DynamoDB.
+ *
+ * Each finished article is appended to a file as an 8 byte record: its PMC
+ * id, the class of its outcome and a check. The records are forced to disk
+ * in batches of {@value #SYNC_RECORDS}, or once a second, and on
+ * {@link #sync()} and {@link #close()}; a crash loses at most the last
+ * batch, whose articles are then mined again. A record cut or garbled by a
+ * crash ends the journal, and is dropped the next time it is opened.
+ *
+ * In memory, the ids of each outcome class are kept in a compressed bitmap.
+ * Only numeric PMC ids, with or without the "PMC" prefix, are journaled. The
+ * first outcome recorded for an article is kept. A journal is thread-safe.
+ */
+public final class ProgressJournal implements Closeable {
+    public static final int SYNC_RECORDS = 256;
+    private static final long SYNC_NANOS = 1000000000L;
+    private static final long MAGIC = 0x504D434A524E4C31L;
+    private static final int HEADER_BYTES = 8;
+    private static final int RECORD_BYTES = 8;
+    private static final int CHECK_SEED = 0x5A17;
+
+    /**
+     * The classes of outcomes, stored by ordinal: only add new ones at the end
+     */
+    public enum Outcome {
+        /** The sentences of the article are stored. */
+        SENTENCES,
+        /** The article has no sentences: error status "empty". */
+        EMPTY,
+        /** The article has no demographic sentences: error status "not randomized clinical trials". */
+        NOT_RANDOMIZED_CLINICAL_TRIALS,
+        /** The article has another error status, or one found in the store. */
+        ERROR;
+
+        /**
+         * Gets the class of an error status
+         * @param errorStatus the error status
+         * @return the class
+         */
+        public static Outcome ofErrorStatus(String errorStatus) {
+            if (MiningOutcome.EMPTY.equals(errorStatus)) {
+                return EMPTY;
+            } else if (MiningOutcome.NOT_RANDOMIZED_CLINICAL_TRIALS.equals(errorStatus)) {
+                return NOT_RANDOMIZED_CLINICAL_TRIALS;
+            }
+            return ERROR;
+        }
+    }
+
+    private final Path file;
+    private final FileChannel channel;
+    private final Map<Outcome, IntBitmap> bitmaps = new EnumMap<>(Outcome.class);
+    private final ByteBuffer pending = ByteBuffer.allocate(SYNC_RECORDS * RECORD_BYTES);
+    private long lastSync = System.nanoTime();
+    private long fileLength;
+
+    private ProgressJournal(Path file, FileChannel channel) {
+        this.file = file;
+        this.channel = channel;
+        for (Outcome outcome : Outcome.values()) {
+            bitmaps.put(outcome, new IntBitmap());
+        }
+    }
+
+    /**
+     * Opens a journal, creating it if it does not exist
+     * @param file the journal file
+     * @return the journal, with the outcomes recorded so far
+     * @throws IOException if the file cannot be read or written, or is not a journal
+     */
+    public static ProgressJournal open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        ProgressJournal journal = new ProgressJournal(file, channel);
+        try {
+            journal.load();
+        } catch (IOException | RuntimeException ex) {
+            channel.close();
+            throw ex;
+        }
+        return journal;
+    }
+
+    private void load() throws IOException {
+        long size = channel.size();
+        if (size == 0) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).putLong(MAGIC);
+            header.flip();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+            channel.force(true);
+            fileLength = HEADER_BYTES;
+            return;
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        if (!readFully(header, 0) || header.getLong(0) != MAGIC) {
+            throw new IOException("Not a progress journal: " + file);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(SYNC_RECORDS * RECORD_BYTES * 16);
+        long position = HEADER_BYTES;
+        records:
+        while (position + RECORD_BYTES <= size) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), (size - position) / RECORD_BYTES * RECORD_BYTES));
+            readFully(buffer, position);
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                int id = buffer.getInt();
+                int outcome = buffer.getShort();
+                int check = buffer.getShort() & 0xFFFF;
+                if (id < 0 || outcome < 0 || outcome >= Outcome.values().length || check != check(id, outcome)) {
+                    break records;
+                }
+                add(id, Outcome.values()[outcome]);
+                position += RECORD_BYTES;
+            }
+        }
+        if (position < size) {
+            Logger.getLogger(ProgressJournal.class.getName()).log(Level.WARNING,
+                    "Dropping {0} bytes cut by a crash from the end of {1}", new Object[] {size - position, file});
+            channel.truncate(position);
+            channel.force(true);
+        }
+        fileLength = position;
+    }
+
+    private boolean readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                return false;
+            }
+            position += read;
+        }
+        return true;
+    }
+
+    private static int check(int id, int outcome) {
+        return (id * 31 + outcome ^ id >>> 16 ^ CHECK_SEED) & 0xFFFF;
+    }
+
+    private boolean add(int id, Outcome outcome) {
+        for (IntBitmap bitmap : bitmaps.values()) {
+            if (bitmap.contains(id)) {
+                return false;
+            }
+        }
+        return bitmaps.get(outcome).add(id);
+    }
+
+    /**
+     * Parses a PMC id for the journal
+     * @param pmcid the PMC id, with or without the "PMC" prefix
+     * @return the number, or -1 if the id is not numeric
+     */
+    static int id(String pmcid) {
+        String digits = pmcid.startsWith("PMC") ? pmcid.substring(3) : pmcid;
+        if (digits.isEmpty() || digits.length() > 10) {
+            return -1;
+        }
+        long id = 0;
+        for (int i = 0; i < digits.length(); ++i) {
+            char c = digits.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            id = id * 10 + (c - '0');
+        }
+        return id <= Integer.MAX_VALUE ? (int) id : -1;
+    }
+
+    /**
+     * Records the outcome of an article, unless it has one
+     * @param pmcid the PMC id
+     * @param outcome the class of the outcome
+     * @return false if the article already had an outcome, or its id is not numeric
+     * @throws IOException if the batch of records cannot be written
+     */
+    public synchronized boolean record(String pmcid, Outcome outcome) throws IOException {
+        int id = id(pmcid);
+        if (id < 0 || getOutcome(pmcid) != null) {
+            return false;
+        }
+        if (!pending.hasRemaining()) {
+            // The last batch could not be written.
+            sync();
+        }
+        add(id, outcome);
+        pending.putInt(id).putShort((short) outcome.ordinal()).putShort((short) check(id, outcome.ordinal()));
+        if (!pending.hasRemaining() || System.nanoTime() - lastSync >= SYNC_NANOS) {
+            sync();
+        }
+        return true;
+    }
+
+    /**
+     * Gets the outcome recorded for an article
+     * @param pmcid the PMC id
+     * @return the class of its outcome, or null if none was recorded
+     */
+    public synchronized Outcome getOutcome(String pmcid) {
+        int id = id(pmcid);
+        if (id < 0) {
+            return null;
+        }
+        for (Map.Entry<Outcome, IntBitmap> entry : bitmaps.entrySet()) {
+            if (entry.getValue().contains(id)) {
+                return entry.getKey();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Gets the number of articles recorded with an outcome
+     * @param outcome the class of the outcome
+     * @return the number of articles
+     */
+    public synchronized long getCount(Outcome outcome) {
+        return bitmaps.get(outcome).getCardinality();
+    }
+
+    /**
+     * Estimates the memory taken by the ids of the articles
+     * @return the number of bytes of the bitmaps
+     */
+    public synchronized long getSizeInBytes() {
+        long size = 0;
+        for (IntBitmap bitmap : bitmaps.values()) {
+            size += bitmap.getSizeInBytes();
+        }
+        return size;
+    }
+
+    /**
+     * Writes the records not written yet and forces them to disk
+     * @throws IOException if the records cannot be written
+     */
+    public synchronized void sync() throws IOException {
+        lastSync = System.nanoTime();
+        if (pending.position() == 0) {
+            return;
+        }
+        pending.flip();
+        try {
+            while (pending.hasRemaining()) {
+                fileLength += channel.write(pending, fileLength);
+            }
+        } finally {
+            // What was not written is kept for the next batch.
+            pending.compact();
+        }
+        channel.force(false);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            sync();
+        } finally {
+            channel.close();
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("progress journal: %d sentences, %d empty, %d not randomized clinical trials, %d other "
+                        + "errors (%d bytes)", getCount(Outcome.SENTENCES), getCount(Outcome.EMPTY),
+                getCount(Outcome.NOT_RANDOMIZED_CLINICAL_TRIALS), getCount(Outcome.ERROR), getSizeInBytes());
+    }
+}
@@ -0,0 +1,47 @@
+package edu.harvard.pipeline;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.AmazonS3Exception;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.util.IOUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads articles from an S3 bucket holding them as "PMC{pmcid}.nxml", like
+ * the pubmedcentral_oa bucket.
+ */
+public class S3ArticleSource implements ArticleSource {
+    private static final int NOT_FOUND = 404;
+
+    private final AmazonS3 s3Client;
+    private final String bucketName;
+
+    /**
+     * Creates a source reading from the given bucket
+     * @param s3Client the S3 client, which is thread-safe
+     * @param bucketName the bucket
+     */
+    public S3ArticleSource(AmazonS3 s3Client, String bucketName) {
+        this.s3Client = s3Client;
+        this.bucketName = bucketName;
+    }
+
+    @Override
+    public byte[] readArticle(String pmcid) throws IOException {
+        String keyName = "PMC" + pmcid + ".nxml";
+        S3Object object;
+        try {
+            object = s3Client.getObject(bucketName, keyName);
+        } catch (AmazonS3Exception ex) {
+            if (ex.getStatusCode() == NOT_FOUND) {
+                return null;
+            }
+            throw ex;
+        }
+        try (InputStream s3is = object.getObjectContent()) {
+            return IOUtils.toByteArray(s3is);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package edu.harvard.pipeline;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters of one stage of a {@link MiningPipeline}: the depth of the queue
+ * feeding it, what it processed, and how long it worked and waited on the
+ * next stage. The counters are updated while the pipeline runs and can be
+ * read from any thread.
+ */
+public class StageMetrics {
+    private final String name;
+    private final int threads;
+    private final BlockingQueue<?> queue;
+    private final AtomicInteger maxQueueDepth = new AtomicInteger();
+    private final LongAdder processed = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder busyNanos = new LongAdder();
+    private final LongAdder blockedNanos = new LongAdder();
+
+    StageMetrics(String name, int threads, BlockingQueue<?> queue) {
+        this.name = name;
+        this.threads = threads;
+        this.queue = queue;
+    }
+
+    void queued() {
+        int depth = queue.size();
+        int max = maxQueueDepth.get();
+        while (depth > max && !maxQueueDepth.compareAndSet(max, depth)) {
+            max = maxQueueDepth.get();
+        }
+    }
+
+    void processed(long nanos) {
+        processed.increment();
+        busyNanos.add(nanos);
+    }
+
+    void skipped(long nanos) {
+        skipped.increment();
+        busyNanos.add(nanos);
+    }
+
+    void failed(long nanos) {
+        failed.increment();
+        busyNanos.add(nanos);
+    }
+
+    void blocked(long nanos) {
+        blockedNanos.add(nanos);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Gets the number of items waiting for this stage
+     * @return the current depth of the input queue
+     */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    /**
+     * Gets the largest number of items seen waiting for this stage
+     * @return the largest depth of the input queue
+     */
+    public int getMaxQueueDepth() {
+        return maxQueueDepth.get();
+    }
+
+    /**
+     * Gets the capacity of the queue feeding this stage
+     * @return the number of items the stage can fall behind before its
+     * producers block
+     */
+    public int getQueueCapacity() {
+        return queue.size() + queue.remainingCapacity();
+    }
+
+    /**
+     * Gets the number of items passed on to the next stage
+     * @return the number of processed items
+     */
+    public long getProcessed() {
+        return processed.sum();
+    }
+
+    /**
+     * Gets the number of items the stage dropped on purpose, eg. articles
+     * already done
+     * @return the number of skipped items
+     */
+    public long getSkipped() {
+        return skipped.sum();
+    }
+
+    /**
+     * Gets the number of items dropped because of an error
+     * @return the number of failed items
+     */
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    /**
+     * Gets the time the threads of the stage spent on items
+     * @return the time in nanoseconds, summed over the threads
+     */
+    public long getBusyNanos() {
+        return busyNanos.sum();
+    }
+
+    /**
+     * Gets the time the threads of the stage spent waiting for room in the
+     * queue of the next stage, ie. the backpressure it received
+     * @return the time in nanoseconds, summed over the threads
+     */
+    public long getBlockedNanos() {
+        return blockedNanos.sum();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: queue %d/%d (max %d), %d threads, processed %d, skipped %d, failed %d, " +
+                        "busy %.1f s, blocked %.1f s", name, getQueueDepth(), getQueueCapacity(), getMaxQueueDepth(),
+                threads, getProcessed(), getSkipped(), getFailed(), getBusyNanos() / 1e9, getBlockedNanos() / 1e9);
+    }
+}
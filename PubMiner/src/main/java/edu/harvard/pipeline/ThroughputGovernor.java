@@ -0,0 +1,164 @@
+package edu.harvard.pipeline;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Paces the writes to a DynamoDB table with provisioned throughput, as a
+ * token bucket of write capacity units refilled at an adaptive rate.
+ *
+ * A write waits in {@link #acquire()} while the bucket is in debt, and is
+ * then charged the capacity DynamoDB reports it consumed, so that large
+ * lists of sentences cost what they really cost. The bucket holds at most
+ * a second of capacity. The rate starts at the provisioned capacity, which
+ * the Lambda functions share: it is halved when DynamoDB throttles a write,
+ * once for the writes in flight together (at most once a second), and grows
+ * back by a twentieth of the maximum for every second without throttling.
+ * A governor is thread-safe.
+ */
+public class ThroughputGovernor {
+    private static final long ADJUST_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final double DECREASE_FACTOR = 0.5;
+    private static final double INCREASE_FRACTION = 0.05;
+    private static final long MIN_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final double minRate;
+    private final double maxRate;
+    private double rate;
+    private double tokens;
+    private long lastRefill = System.nanoTime();
+    private long lastDecrease = lastRefill - ADJUST_NANOS;
+    private long lastIncrease = lastRefill;
+    private int waitingCount;
+    private long throttleCount;
+    private long writeCount;
+    private double consumedUnits;
+
+    /**
+     * Creates a governor for a table with a fixed write capacity, never
+     * going over it, nor under one unit per second
+     * @param unitsPerSecond the provisioned write capacity units of the table
+     */
+    public ThroughputGovernor(double unitsPerSecond) {
+        this(unitsPerSecond, Math.min(1, unitsPerSecond), unitsPerSecond);
+    }
+
+    /**
+     * Creates a governor
+     * @param initialRate the rate to start with, in capacity units per second
+     * @param minRate the rate throttling does not go under
+     * @param maxRate the rate the governor does not go over
+     */
+    public ThroughputGovernor(double initialRate, double minRate, double maxRate) {
+        if (minRate <= 0 || minRate > maxRate || initialRate < minRate || initialRate > maxRate) {
+            throw new IllegalArgumentException("Bad rates: " + initialRate + " in [" + minRate + ", " + maxRate
+                    + "]");
+        }
+        this.minRate = minRate;
+        this.maxRate = maxRate;
+        this.rate = initialRate;
+        this.tokens = initialRate;
+    }
+
+    private void refill(long now) {
+        tokens = Math.min(rate, tokens + (now - lastRefill) * rate / ADJUST_NANOS);
+        lastRefill = now;
+        if (now - lastIncrease >= ADJUST_NANOS && now - lastDecrease >= ADJUST_NANOS) {
+            rate = Math.min(maxRate, rate + maxRate * INCREASE_FRACTION);
+            lastIncrease = now;
+        }
+    }
+
+    /**
+     * Waits until the bucket is out of debt, before a write
+     * @throws InterruptedException if the calling thread is interrupted while waiting
+     */
+    public synchronized void acquire() throws InterruptedException {
+        refill(System.nanoTime());
+        if (tokens >= 0) {
+            return;
+        }
+        ++waitingCount;
+        try {
+            while (tokens < 0) {
+                long waitNanos = (long) Math.ceil(-tokens * ADJUST_NANOS / rate);
+                TimeUnit.NANOSECONDS.timedWait(this, Math.max(MIN_WAIT_NANOS, waitNanos));
+                refill(System.nanoTime());
+            }
+        } finally {
+            --waitingCount;
+        }
+    }
+
+    /**
+     * Charges a write the capacity it consumed
+     * @param units the write capacity units reported by DynamoDB
+     */
+    public synchronized void recordConsumed(double units) {
+        refill(System.nanoTime());
+        tokens -= units;
+        consumedUnits += units;
+        ++writeCount;
+    }
+
+    /**
+     * Slows down after DynamoDB throttled a write: the write is to be
+     * retried after {@link #acquire()}
+     */
+    public synchronized void recordThrottle() {
+        long now = System.nanoTime();
+        refill(now);
+        ++throttleCount;
+        if (now - lastDecrease >= ADJUST_NANOS) {
+            rate = Math.max(minRate, rate * DECREASE_FACTOR);
+            lastDecrease = now;
+        }
+        // The throttled write waits for a unit at the new rate.
+        tokens = Math.min(tokens, 0) - 1;
+    }
+
+    /**
+     * Gets the current rate
+     * @return the write capacity units per second
+     */
+    public synchronized double getRate() {
+        return rate;
+    }
+
+    /**
+     * Gets the number of writes DynamoDB throttled
+     * @return the number of throttled writes
+     */
+    public synchronized long getThrottleCount() {
+        return throttleCount;
+    }
+
+    /**
+     * Gets the number of threads waiting for capacity
+     * @return the number of waiting threads
+     */
+    public synchronized int getWaitingCount() {
+        return waitingCount;
+    }
+
+    /**
+     * Gets the number of writes charged
+     * @return the number of writes
+     */
+    public synchronized long getWriteCount() {
+        return writeCount;
+    }
+
+    /**
+     * Gets the capacity consumed by the writes
+     * @return the write capacity units
+     */
+    public synchronized double getConsumedUnits() {
+        return consumedUnits;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("write throughput: %.1f units/s of %.1f, %d throttled, %d writes for %.1f units, "
+                + "%d waiting", rate, maxRate, throttleCount, writeCount, consumedUnits, waitingCount);
+    }
+}
@@ -0,0 +1,458 @@
+package edu.harvard.scoring;
+
+import edu.uwm.pmcarticleparser.structuralelements.DemographicScoringModel;
+import edu.uwm.pmcarticleparser.structuralelements.LemmaCounts;
+import edu.uwm.pmcarticleparser.structuralelements.LemmaDictionary;
+import edu.uwm.pmcarticleparser.structuralelements.NummodPairWeights;
+import edu.uwm.pmcarticleparser.structuralelements.PMCArticleSentence;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Corpus-wide statistics of the pairs of a numeric modifier and the lemma
+ * that follows it, its head for the scoring models: in how many articles
+ * each pair occurs in a demographic sentence, in a count-min sketch, and the
+ * pairs that occur in the most articles, eg. "2 patient" or "42 patient".
+ *
+ * The sketch has a fixed size whatever the number of pairs, and an estimate
+ * is never below the true count. Pairs are hashed from their lemma strings
+ * to 64 bits, then per row with fixed seeds, so the sketches of several workers or runs with the same
+ * dimensions are merged by adding their counters, and a merged sketch
+ * estimates the counts of the union of their articles. The pairs kept as
+ * heavy hitters are re-estimated from the merged counters.
+ *
+ * {@link #idfWeights()} makes IDF-style weights of the pairs for a
+ * {@link DemographicScoringModel}. A sketch is not thread-safe: each worker
+ * fills its own, and they are merged at the end.
+ *
+ * Usage: NummodPairSketch &lt;output sketch&gt; [&lt;sketch file|feature store directory&gt;...]
+ */
+public final class NummodPairSketch {
+    /**
+     * The file the miners keep the corpus sketch in
+     */
+    public static final String DEFAULT_FILE = "./nummod-sketch.bin";
+    public static final int DEFAULT_DEPTH = 4;
+    public static final int DEFAULT_WIDTH = 1 << 16;
+    public static final int DEFAULT_HEAVY_HITTERS = 100;
+    // Version 2: pairs hashed with FNV-1a.
+    private static final long MAGIC = 0x504D43534B543032L;
+    private static final long[] SEEDS = {0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L,
+            0xD6E8FEB86659FD93L, 0xFF51AFD7ED558CCDL, 0xC4CEB9FE1A85EC53L, 0x85EBCA77C2B2AE63L,
+            0x27D4EB2F165667C5L};
+
+    private final int depth;
+    private final int width;
+    private final int[] counters;
+    private long articleCount;
+    private final int heavyHitterCapacity;
+    private final Map<String, HeavyHitter> heavyHitters = new HashMap<>();
+    // A lower bound of the smallest count kept while the heavy hitters are full.
+    private long heavyHitterFloor;
+
+    /**
+     * A pair found in many articles
+     */
+    public static final class HeavyHitter {
+        private final String numLemma;
+        private final String headLemma;
+        private long articleCount;
+
+        private HeavyHitter(String numLemma, String headLemma, long articleCount) {
+            this.numLemma = numLemma;
+            this.headLemma = headLemma;
+            this.articleCount = articleCount;
+        }
+
+        public String getNumLemma() {
+            return numLemma;
+        }
+
+        public String getHeadLemma() {
+            return headLemma;
+        }
+
+        /**
+         * Gets the estimated number of articles with the pair
+         * @return the number of articles, maybe over-estimated
+         */
+        public long getArticleCount() {
+            return articleCount;
+        }
+
+        @Override
+        public String toString() {
+            return numLemma + " " + headLemma + "\t" + articleCount;
+        }
+    }
+
+    /**
+     * Creates an empty sketch of the default dimensions
+     */
+    public NummodPairSketch() {
+        this(DEFAULT_DEPTH, DEFAULT_WIDTH, DEFAULT_HEAVY_HITTERS);
+    }
+
+    /**
+     * Creates an empty sketch
+     * @param depth the number of hash rows, from 1 to 8
+     * @param width the number of counters per row, a power of two
+     * @param heavyHitterCapacity the number of heavy hitters kept
+     */
+    public NummodPairSketch(int depth, int width, int heavyHitterCapacity) {
+        if (depth < 1 || depth > SEEDS.length) {
+            throw new IllegalArgumentException("The depth must be from 1 to " + SEEDS.length + ": " + depth);
+        }
+        if (width < 1 || Integer.bitCount(width) != 1 || (long) depth * width > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("The width must be a power of two: " + width);
+        }
+        this.depth = depth;
+        this.width = width;
+        this.counters = new int[depth * width];
+        this.heavyHitterCapacity = heavyHitterCapacity;
+    }
+
+    /**
+     * Counts the pairs of the demographic sentences of an article, once each
+     * @param demographicSentences the demographic sentences of the article
+     */
+    public void addArticle(List<PMCArticleSentence> demographicSentences) {
+        addArticle(demographicSentences, DemographicScoringModel.getDefault());
+    }
+
+    /**
+     * Counts the pairs of the demographic sentences of an article, once each,
+     * but for the numeric modifiers a scoring model excludes
+     * @param demographicSentences the demographic sentences of the article
+     * @param model the model that decides the excluded modifiers
+     */
+    public void addArticle(List<PMCArticleSentence> demographicSentences, DemographicScoringModel model) {
+        LemmaDictionary dictionary = LemmaDictionary.getInstance();
+        Set<String> seen = new HashSet<>();
+        for (PMCArticleSentence sentence : demographicSentences) {
+            int[] lemmaIds = sentence.getLemmaIds();
+            for (int index : sentence.getNummodIndexArray(model)) {
+                add(seen, dictionary.lemma(lemmaIds[index]), dictionary.lemma(lemmaIds[index + 1]));
+            }
+        }
+        ++articleCount;
+    }
+
+    /**
+     * Counts the pairs of the demographic sentences of an article of stored
+     * features, once each
+     * @param features the features
+     * @param article the index of the article in the features
+     * @param model the model that decides the demographic sentences and the excluded modifiers
+     */
+    public void addArticle(SentenceFeatures features, int article, DemographicScoringModel model) {
+        int sentences = features.getSentenceEnd(article) - features.getSentenceStart(article);
+        int[] candidates = new int[sentences];
+        int candidateCount = SentenceRescorer.scoreArticle(features, article, model, new LemmaCounts(),
+                candidates, new double[sentences]);
+        LemmaDictionary dictionary = LemmaDictionary.getInstance();
+        int[] numLemmaIds = features.getNumLemmaIds();
+        int[] headLemmaIds = features.getNextLemmaIds();
+        Set<String> seen = new HashSet<>();
+        for (int c = 0; c < candidateCount; ++c) {
+            for (int p = features.getPairStart(candidates[c]); p < features.getPairEnd(candidates[c]); ++p) {
+                if (!model.isExcludedNummod(numLemmaIds[p])) {
+                    add(seen, dictionary.lemma(numLemmaIds[p]), dictionary.lemma(headLemmaIds[p]));
+                }
+            }
+        }
+        ++articleCount;
+    }
+
+    private void add(Set<String> seen, String numLemma, String headLemma) {
+        numLemma = numLemma == null ? "" : numLemma;
+        headLemma = headLemma == null ? "" : headLemma;
+        // Pairs are told apart by their lemmas, not by their hash, so a pair is never counted for another.
+        String pair = pair(numLemma, headLemma);
+        if (!seen.add(pair)) {
+            return;
+        }
+        long key = key(numLemma, headLemma);
+        long count = Long.MAX_VALUE;
+        for (int row = 0; row < depth; ++row) {
+            int slot = slot(row, key);
+            if (counters[slot] < Integer.MAX_VALUE) {
+                ++counters[slot];
+            }
+            count = Math.min(count, counters[slot]);
+        }
+        offerHeavyHitter(pair, numLemma, headLemma, count);
+    }
+
+    private static String pair(String numLemma, String headLemma) {
+        return numLemma + '\0' + headLemma;
+    }
+
+    private void offerHeavyHitter(String pair, String numLemma, String headLemma, long count) {
+        HeavyHitter hitter = heavyHitters.get(pair);
+        if (hitter != null) {
+            hitter.articleCount = count;
+            return;
+        }
+        if (heavyHitters.size() < heavyHitterCapacity) {
+            heavyHitters.put(pair, new HeavyHitter(numLemma, headLemma, count));
+            return;
+        }
+        if (count <= heavyHitterFloor || heavyHitterCapacity == 0) {
+            return;
+        }
+        // Counts only grow, so the floor is refreshed only when a pair may enter.
+        String smallest = null;
+        long smallestCount = Long.MAX_VALUE;
+        for (Map.Entry<String, HeavyHitter> entry : heavyHitters.entrySet()) {
+            if (entry.getValue().articleCount < smallestCount) {
+                smallest = entry.getKey();
+                smallestCount = entry.getValue().articleCount;
+            }
+        }
+        heavyHitterFloor = smallestCount;
+        if (count > smallestCount) {
+            heavyHitters.remove(smallest);
+            heavyHitters.put(pair, new HeavyHitter(numLemma, headLemma, count));
+        }
+    }
+
+    /**
+     * Adds the counts of another sketch of the same dimensions, eg. of
+     * another worker
+     * @param other the other sketch
+     */
+    public void merge(NummodPairSketch other) {
+        if (other.depth != depth || other.width != width) {
+            throw new IllegalArgumentException("Cannot merge a " + other.depth + "x" + other.width + " sketch into a "
+                    + depth + "x" + width + " sketch");
+        }
+        for (int i = 0; i < counters.length; ++i) {
+            counters[i] = (int) Math.min(Integer.MAX_VALUE, (long) counters[i] + other.counters[i]);
+        }
+        articleCount += other.articleCount;
+
+        List<HeavyHitter> candidates = new ArrayList<>(heavyHitters.values());
+        candidates.addAll(other.heavyHitters.values());
+        heavyHitters.clear();
+        heavyHitterFloor = 0;
+        for (HeavyHitter candidate : candidates) {
+            String pair = pair(candidate.numLemma, candidate.headLemma);
+            if (!heavyHitters.containsKey(pair)) {
+                offerHeavyHitter(pair, candidate.numLemma, candidate.headLemma, estimate(key(candidate.numLemma,
+                        candidate.headLemma)));
+            }
+        }
+    }
+
+    /**
+     * Estimates in how many articles a pair occurs
+     * @param numLemma the lemma of the numeric modifier
+     * @param headLemma the lemma that follows it
+     * @return the estimated number of articles, never below the true one
+     */
+    public long estimate(String numLemma, String headLemma) {
+        return estimate(key(numLemma, headLemma));
+    }
+
+    private long estimate(long key) {
+        return estimate(counters, depth, width, key);
+    }
+
+    private static int estimate(int[] counters, int depth, int width, long key) {
+        int count = Integer.MAX_VALUE;
+        for (int row = 0; row < depth; ++row) {
+            count = Math.min(count, counters[slot(row, width, key)]);
+        }
+        return count;
+    }
+
+    /**
+     * Gets the number of articles counted
+     * @return the number of articles
+     */
+    public long getArticleCount() {
+        return articleCount;
+    }
+
+    /**
+     * Gets the pairs found in the most articles
+     * @return the heavy hitters, by decreasing number of articles
+     */
+    public List<HeavyHitter> getHeavyHitters() {
+        List<HeavyHitter> hitters = new ArrayList<>(heavyHitters.values());
+        hitters.sort((a, b) -> a.articleCount != b.articleCount ? Long.compare(b.articleCount, a.articleCount)
+                : (a.numLemma + " " + a.headLemma).compareTo(b.numLemma + " " + b.headLemma));
+        return hitters;
+    }
+
+    /**
+     * Makes weights of the pairs from the counts so far:
+     * ln((1 + articles) / (1 + articles with the pair)) + 1, so a pair in
+     * every article weighs about 1 and a rare pair more. The weights keep a
+     * copy of the counters, so the sketch can go on counting.
+     * @return the weights, named "idf" and the number of articles
+     */
+    public NummodPairWeights idfWeights() {
+        final int[] snapshot = counters.clone();
+        final int rows = depth;
+        final int columns = width;
+        final double logArticles = Math.log(1 + articleCount);
+        final String name = "idf" + articleCount;
+        return new NummodPairWeights() {
+            @Override
+            public double weight(int numLemmaId, int headLemmaId) {
+                LemmaDictionary dictionary = LemmaDictionary.getInstance();
+                long key = key(dictionary.lemma(numLemmaId), dictionary.lemma(headLemmaId));
+                return logArticles - Math.log(1 + estimate(snapshot, rows, columns, key)) + 1;
+            }
+
+            @Override
+            public String getName() {
+                return name;
+            }
+        };
+    }
+
+    // 64-bit FNV-1a over the characters of both lemmas, with a separator out of the range of characters.
+    private static long key(String numLemma, String headLemma) {
+        long h = fnv1a(0xCBF29CE484222325L, numLemma);
+        h = (h ^ 0x10000) * 0x100000001B3L;
+        return fnv1a(h, headLemma);
+    }
+
+    private static long fnv1a(long h, String text) {
+        if (text != null) {
+            for (int i = 0; i < text.length(); ++i) {
+                h = (h ^ text.charAt(i)) * 0x100000001B3L;
+            }
+        }
+        return h;
+    }
+
+    private int slot(int row, long key) {
+        return slot(row, width, key);
+    }
+
+    private static int slot(int row, int width, long key) {
+        // The finalizer of MurmurHash3, seeded per row.
+        long h = key ^ SEEDS[row];
+        h = (h ^ h >>> 33) * 0xFF51AFD7ED558CCDL;
+        h = (h ^ h >>> 33) * 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return row * width + ((int) h & (width - 1));
+    }
+
+    /**
+     * Writes the sketch to a file, replacing it atomically
+     * @param file the file
+     * @throws IOException if the file cannot be written
+     */
+    public void write(Path file) throws IOException {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(temporary), 1 << 16))) {
+            out.writeLong(MAGIC);
+            out.writeInt(depth);
+            out.writeInt(width);
+            out.writeLong(articleCount);
+            for (int counter : counters) {
+                out.writeInt(counter);
+            }
+            out.writeInt(heavyHitterCapacity);
+            List<HeavyHitter> hitters = getHeavyHitters();
+            out.writeInt(hitters.size());
+            for (HeavyHitter hitter : hitters) {
+                out.writeUTF(hitter.numLemma);
+                out.writeUTF(hitter.headLemma);
+                out.writeLong(hitter.articleCount);
+            }
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads a sketch written by {@link #write(Path)}
+     * @param file the file
+     * @return the sketch
+     * @throws IOException if the file cannot be read, or is not a sketch
+     */
+    public static NummodPairSketch read(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file),
+                1 << 16))) {
+            if (in.readLong() != MAGIC) {
+                throw new IOException(file + " is not a numeric modifier sketch");
+            }
+            int depth = in.readInt();
+            int width = in.readInt();
+            long articleCount = in.readLong();
+            int[] counters = new int[depth * width];
+            for (int i = 0; i < counters.length; ++i) {
+                counters[i] = in.readInt();
+            }
+            NummodPairSketch sketch = new NummodPairSketch(depth, width, in.readInt());
+            System.arraycopy(counters, 0, sketch.counters, 0, counters.length);
+            sketch.articleCount = articleCount;
+            int hitters = in.readInt();
+            for (int i = 0; i < hitters; ++i) {
+                String numLemma = in.readUTF();
+                String headLemma = in.readUTF();
+                sketch.offerHeavyHitter(pair(numLemma, headLemma), numLemma, headLemma, in.readLong());
+            }
+            return sketch;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Usage: NummodPairSketch <output sketch> [<sketch file|feature store directory>...]");
+            return;
+        }
+        Path output = Paths.get(args[0]);
+        NummodPairSketch sketch = Files.exists(output) ? read(output) : new NummodPairSketch();
+        DemographicScoringModel model = DemographicScoringModel.getDefault();
+        for (String input : Arrays.asList(args).subList(1, args.length)) {
+            Path path = Paths.get(input);
+            if (Files.isDirectory(path)) {
+                SentenceFeatureStore store = SentenceFeatureStore.open(path);
+                NummodPairSketch storeSketch = new NummodPairSketch(sketch.depth, sketch.width,
+                        sketch.heavyHitterCapacity);
+                for (int from = 0; from < store.getArticleCount(); from += 4096) {
+                    SentenceFeatures features = store.getFeatures(from, Math.min(store.getArticleCount(),
+                            from + 4096));
+                    for (int a = 0; a < features.getArticleCount(); ++a) {
+                        storeSketch.addArticle(features, a, model);
+                    }
+                }
+                sketch.merge(storeSketch);
+            } else {
+                sketch.merge(read(path));
+            }
+            System.out.println("Merged " + input);
+        }
+        if (args.length > 1) {
+            sketch.write(output);
+        }
+
+        System.out.println(sketch.getArticleCount() + " articles");
+        List<HeavyHitter> hitters = sketch.getHeavyHitters();
+        for (HeavyHitter hitter : hitters.subList(0, Math.min(20, hitters.size()))) {
+            System.out.println(hitter);
+        }
+    }
+}
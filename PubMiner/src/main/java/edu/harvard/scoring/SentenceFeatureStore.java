@@ -0,0 +1,489 @@
+package edu.harvard.scoring;
+
+import edu.uwm.pmcarticleparser.structuralelements.LemmaDictionary;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The sentence features of a corpus in a directory of column files, mapped
+ * in memory: one file of little-endian ints per {@link Column}, a file of
+ * floats for the score of each sentence, and files of the PMC ids, lemmas
+ * and section names the columns refer to by number.
+ *
+ * Columns are scanned through the {@link IntBuffer} of {@link #ints(Column)}
+ * and the {@link FloatBuffer} of {@link #scores()}, which read the mapped
+ * pages directly: a scan or an aggregate over millions of sentences runs at
+ * the speed of memory, without a sentence object or a heap copy. Rows of the
+ * sentence, pair and lemma columns are numbered across the whole store; the
+ * start columns give the range of rows of each article and sentence.
+ * {@link #getFeatures(int, int)} copies a range of articles to a
+ * {@link SentenceFeatures}, eg. for {@link SentenceRescorer}.
+ *
+ * Stores are written by {@link SentenceFeatureStoreWriter}, which only
+ * appends. A store shows the rows committed when it was opened; rows
+ * appended after that are seen by opening it again. Lemmas are numbered by
+ * the store, so that the columns mean the same in every process;
+ * {@link #getFeatures(int, int)} translates them to {@link LemmaDictionary}
+ * ids. Each int column holds at most 2^29 rows.
+ *
+ * Usage: SentenceFeatureStore &lt;store directory&gt;
+ */
+public final class SentenceFeatureStore {
+    static final long MAGIC = 0x504D435354523032L;
+    static final String META_FILE = "store.meta";
+    static final String SCORE_FILE = "sentence-score.f32";
+    static final String PMCID_FILE = "pmcids.str";
+    static final String LEMMA_FILE = "lemmas.str";
+    static final String SECTION_FILE = "sections.str";
+    static final ByteOrder ORDER = ByteOrder.LITTLE_ENDIAN;
+
+    /**
+     * The rows a column has one value for
+     */
+    public enum Rows {
+        ARTICLES, SENTENCES, PAIRS, LEMMAS
+    }
+
+    /**
+     * The int columns of a store
+     */
+    public enum Column {
+        /** The first sentence row of each article */
+        ARTICLE_SENTENCE_START("article-sentence-start.i32", Rows.ARTICLES),
+        /** The article row of each sentence */
+        SENTENCE_ARTICLE("sentence-article.i32", Rows.SENTENCES),
+        /** The index of each sentence among the sentences of its article, the abstract first */
+        SENTENCE_INDEX("sentence-index.i32", Rows.SENTENCES),
+        /** The section of each sentence, a number for {@link #getSection(int)} */
+        SENTENCE_SECTION("sentence-section.i32", Rows.SENTENCES),
+        /** The index of each sentence in its paragraph, from 1 */
+        SENTENCE_POSITION("sentence-position.i32", Rows.SENTENCES),
+        /** The first pair row of each sentence */
+        SENTENCE_PAIR_START("sentence-pair-start.i32", Rows.SENTENCES),
+        /** The first lemma row of each sentence */
+        SENTENCE_LEMMA_START("sentence-lemma-start.i32", Rows.SENTENCES),
+        /** The lemma of the numeric modifier of each pair, a number for {@link #getLemma(int)} */
+        PAIR_NUM_LEMMA("pair-num-lemma.i32", Rows.PAIRS),
+        /** The lemma following the numeric modifier of each pair, which the scoring models take as its head */
+        PAIR_HEAD_LEMMA("pair-head-lemma.i32", Rows.PAIRS),
+        /** The distinct lemmas of each sentence, numbers for {@link #getLemma(int)} */
+        SENTENCE_LEMMA("sentence-lemma.i32", Rows.LEMMAS);
+
+        private final String fileName;
+        private final Rows rows;
+
+        Column(String fileName, Rows rows) {
+            this.fileName = fileName;
+            this.rows = rows;
+        }
+
+        public String getFileName() {
+            return fileName;
+        }
+
+        public Rows getRows() {
+            return rows;
+        }
+    }
+
+    private final Meta meta;
+    private final Map<Column, IntBuffer> columns = new EnumMap<>(Column.class);
+    private final FloatBuffer scores;
+    private final String[] pmcids;
+    private final String[] lemmas;
+    private final String[] sections;
+    private volatile int[] dictionaryIds;
+
+    private SentenceFeatureStore(Path directory, Meta meta) throws IOException {
+        this.meta = meta;
+        for (Column column : Column.values()) {
+            columns.put(column, map(directory.resolve(column.getFileName()), meta.rows(column.getRows()))
+                    .asIntBuffer());
+        }
+        scores = map(directory.resolve(SCORE_FILE), meta.sentenceCount).asFloatBuffer();
+        pmcids = readStrings(directory.resolve(PMCID_FILE), meta.articleCount, null);
+        lemmas = readStrings(directory.resolve(LEMMA_FILE), meta.lemmaEntries, null);
+        sections = readStrings(directory.resolve(SECTION_FILE), meta.sectionEntries, null);
+    }
+
+    /**
+     * Opens a store for reading
+     * @param directory the directory of the store
+     * @return the store, with the rows committed so far
+     * @throws IOException if the directory is not a store, or cannot be read
+     */
+    public static SentenceFeatureStore open(Path directory) throws IOException {
+        Meta meta = Meta.read(directory);
+        if (meta == null) {
+            throw new IOException(directory + " is not a sentence feature store");
+        }
+        return new SentenceFeatureStore(directory, meta);
+    }
+
+    /**
+     * Gets the version of the scoring model the scores were computed with
+     * @return the model version
+     */
+    public String getModelVersion() {
+        return meta.modelVersion;
+    }
+
+    public int getArticleCount() {
+        return meta.articleCount;
+    }
+
+    public int getSentenceCount() {
+        return meta.sentenceCount;
+    }
+
+    public int getPairCount() {
+        return meta.pairCount;
+    }
+
+    /**
+     * Gets the number of rows of the lemma column
+     * @return the number of distinct lemmas of all the sentences
+     */
+    public int getLemmaRowCount() {
+        return meta.lemmaCount;
+    }
+
+    /**
+     * Gets a column, to scan it
+     * @param column the column
+     * @return a read-only buffer of the rows of the column, positioned at the first one
+     */
+    public IntBuffer ints(Column column) {
+        return columns.get(column).duplicate();
+    }
+
+    /**
+     * Gets the score of each sentence under the model of the store, to scan
+     * them
+     * @return a read-only buffer of the sentence scores; NaN for a sentence that is not demographic
+     */
+    public FloatBuffer scores() {
+        return scores.duplicate();
+    }
+
+    public String getPmcid(int article) {
+        return pmcids[article];
+    }
+
+    /**
+     * Gets a lemma of the lemma columns
+     * @param lemma the number of the lemma in the store
+     * @return the lemma
+     */
+    public String getLemma(int lemma) {
+        return lemmas[lemma];
+    }
+
+    /**
+     * Gets the number of distinct lemmas of the store
+     * @return the number of lemmas {@link #getLemma(int)} knows
+     */
+    public int getLemmaCount() {
+        return lemmas.length;
+    }
+
+    /**
+     * Gets a section of the section column
+     * @param section the number of the section in the store
+     * @return the section name
+     */
+    public String getSection(int section) {
+        return sections[section];
+    }
+
+    public int getSectionCount() {
+        return sections.length;
+    }
+
+    /**
+     * Counts the values of a column, eg. the sentences of each section or the
+     * pairs of each numeric modifier
+     * @param column a column of numbers, not of row starts
+     * @return the number of rows with each value, indexed by value
+     */
+    public long[] countValues(Column column) {
+        IntBuffer values = ints(column);
+        long[] counts = new long[16];
+        while (values.hasRemaining()) {
+            int value = values.get();
+            if (value >= counts.length) {
+                counts = Arrays.copyOf(counts, Math.max(value + 1, counts.length * 2));
+            }
+            ++counts[value];
+        }
+        return counts;
+    }
+
+    /**
+     * Copies the features of a range of articles to the heap, with lemmas as
+     * {@link LemmaDictionary} ids
+     * @param fromArticle the first article
+     * @param toArticle the article after the last one
+     * @return the features of the articles
+     */
+    public SentenceFeatures getFeatures(int fromArticle, int toArticle) {
+        int firstSentence = rowStart(Column.ARTICLE_SENTENCE_START, fromArticle, meta.sentenceCount);
+        int endSentence = rowStart(Column.ARTICLE_SENTENCE_START, toArticle, meta.sentenceCount);
+        int firstPair = rowStart(Column.SENTENCE_PAIR_START, firstSentence, meta.pairCount);
+        int endPair = rowStart(Column.SENTENCE_PAIR_START, endSentence, meta.pairCount);
+        int firstLemma = rowStart(Column.SENTENCE_LEMMA_START, firstSentence, meta.lemmaCount);
+        int endLemma = rowStart(Column.SENTENCE_LEMMA_START, endSentence, meta.lemmaCount);
+
+        int[] articleSentenceStarts = rebase(copy(Column.ARTICLE_SENTENCE_START, fromArticle, toArticle + 1,
+                meta.sentenceCount, meta.articleCount), firstSentence);
+        int[] pairStarts = rebase(copy(Column.SENTENCE_PAIR_START, firstSentence, endSentence + 1,
+                meta.pairCount, meta.sentenceCount), firstPair);
+        int[] lemmaStarts = rebase(copy(Column.SENTENCE_LEMMA_START, firstSentence, endSentence + 1,
+                meta.lemmaCount, meta.sentenceCount), firstLemma);
+
+        int[] ids = dictionaryIds();
+        int[] numLemmaIds = translate(copy(Column.PAIR_NUM_LEMMA, firstPair, endPair, 0, meta.pairCount), ids);
+        int[] headLemmaIds = translate(copy(Column.PAIR_HEAD_LEMMA, firstPair, endPair, 0, meta.pairCount), ids);
+        int[] lemmaIds = translate(copy(Column.SENTENCE_LEMMA, firstLemma, endLemma, 0, meta.lemmaCount), ids);
+        // Dictionary ids are not in the order of store numbers.
+        for (int s = 0; s < lemmaStarts.length - 1; ++s) {
+            Arrays.sort(lemmaIds, lemmaStarts[s], lemmaStarts[s + 1]);
+        }
+
+        return new SentenceFeatures(Arrays.copyOfRange(pmcids, fromArticle, toArticle), articleSentenceStarts,
+                copy(Column.SENTENCE_INDEX, firstSentence, endSentence, 0, meta.sentenceCount),
+                copy(Column.SENTENCE_SECTION, firstSentence, endSentence, 0, meta.sentenceCount), sections,
+                copy(Column.SENTENCE_POSITION, firstSentence, endSentence, 0, meta.sentenceCount), pairStarts,
+                lemmaStarts, numLemmaIds, headLemmaIds, lemmaIds);
+    }
+
+    // The start of a row range, or the row count for the range after the last one.
+    private int rowStart(Column column, int row, int rowCount) {
+        IntBuffer starts = columns.get(column);
+        return row < starts.limit() ? starts.get(row) : rowCount;
+    }
+
+    // Copies rows [from, to) of a column; a row past the end reads as end.
+    private int[] copy(Column column, int from, int to, int end, int rows) {
+        int[] values = new int[to - from];
+        IntBuffer buffer = ints(column);
+        buffer.position(from);
+        int inColumn = Math.min(to, rows) - from;
+        buffer.get(values, 0, inColumn);
+        Arrays.fill(values, inColumn, values.length, end);
+        return values;
+    }
+
+    private static int[] rebase(int[] starts, int first) {
+        for (int i = 0; i < starts.length; ++i) {
+            starts[i] -= first;
+        }
+        return starts;
+    }
+
+    private static int[] translate(int[] lemmas, int[] ids) {
+        for (int i = 0; i < lemmas.length; ++i) {
+            lemmas[i] = ids[lemmas[i]];
+        }
+        return lemmas;
+    }
+
+    private int[] dictionaryIds() {
+        int[] ids = dictionaryIds;
+        if (ids == null) {
+            ids = new int[lemmas.length];
+            LemmaDictionary dictionary = LemmaDictionary.getInstance();
+            for (int i = 0; i < ids.length; ++i) {
+                ids[i] = dictionary.id(lemmas[i]);
+            }
+            dictionaryIds = ids;
+        }
+        return ids;
+    }
+
+    private static ByteBuffer map(Path file, int rows) throws IOException {
+        long size = 4L * rows;
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException(file + " has more rows than a column can map: " + rows);
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < size) {
+                throw new IOException(file + " is shorter than its " + rows + " committed rows");
+            }
+            // The mapping stays valid once the channel is closed.
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, size).order(ORDER);
+        }
+    }
+
+    /**
+     * Reads the first strings of a string file, each a length and UTF-8 bytes
+     * @param offset receives the offset after the last string read, if not null
+     */
+    static String[] readStrings(Path file, int count, long[] offset) throws IOException {
+        String[] strings = new String[count];
+        long position = 0;
+        if (count > 0) {
+            try (InputStream stream = Files.newInputStream(file);
+                 DataInputStream in = new DataInputStream(new BufferedInputStream(stream, 1 << 16))) {
+                for (int i = 0; i < count; ++i) {
+                    byte[] bytes = new byte[in.readUnsignedShort()];
+                    in.readFully(bytes);
+                    strings[i] = new String(bytes, StandardCharsets.UTF_8);
+                    position += 2 + bytes.length;
+                }
+            }
+        }
+        if (offset != null) {
+            offset[0] = position;
+        }
+        return strings;
+    }
+
+    /**
+     * The committed row counts of a store, replaced as a whole on each commit
+     */
+    static final class Meta {
+        String modelVersion;
+        int articleCount;
+        int sentenceCount;
+        int pairCount;
+        int lemmaCount;
+        int lemmaEntries;
+        int sectionEntries;
+
+        int rows(Rows rows) {
+            switch (rows) {
+                case ARTICLES:
+                    return articleCount;
+                case SENTENCES:
+                    return sentenceCount;
+                case PAIRS:
+                    return pairCount;
+                default:
+                    return lemmaCount;
+            }
+        }
+
+        /**
+         * Reads the meta file of a store
+         * @return the counts, or null if the directory has no store
+         */
+        static Meta read(Path directory) throws IOException {
+            Path file = directory.resolve(META_FILE);
+            if (!Files.exists(file)) {
+                return null;
+            }
+            try (DataInputStream in = new DataInputStream(Files.newInputStream(file))) {
+                if (in.readLong() != MAGIC) {
+                    throw new IOException(file + " is not the meta file of a sentence feature store");
+                }
+                Meta meta = new Meta();
+                meta.modelVersion = in.readUTF();
+                meta.articleCount = in.readInt();
+                meta.sentenceCount = in.readInt();
+                meta.pairCount = in.readInt();
+                meta.lemmaCount = in.readInt();
+                meta.lemmaEntries = in.readInt();
+                meta.sectionEntries = in.readInt();
+                return meta;
+            }
+        }
+
+        /**
+         * Replaces the meta file of a store, atomically
+         */
+        void write(Path directory) throws IOException {
+            Path temporary = directory.resolve(META_FILE + ".tmp");
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+                 OutputStream stream = Channels.newOutputStream(channel);
+                 DataOutputStream out = new DataOutputStream(stream)) {
+                out.writeLong(MAGIC);
+                out.writeUTF(modelVersion);
+                out.writeInt(articleCount);
+                out.writeInt(sentenceCount);
+                out.writeInt(pairCount);
+                out.writeInt(lemmaCount);
+                out.writeInt(lemmaEntries);
+                out.writeInt(sectionEntries);
+                out.flush();
+                channel.force(true);
+            }
+            Files.move(temporary, directory.resolve(META_FILE), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Usage: SentenceFeatureStore <store directory>");
+            return;
+        }
+        SentenceFeatureStore store = open(Paths.get(args[0]));
+        System.out.println(String.format("%d articles, %d sentences, %d numeric modifiers, %d lemmas, model %s",
+                store.getArticleCount(), store.getSentenceCount(), store.getPairCount(), store.getLemmaCount(),
+                store.getModelVersion()));
+
+        long start = System.nanoTime();
+        long[] sectionSentences = store.countValues(Column.SENTENCE_SECTION);
+        double[] sectionScores = new double[store.getSectionCount()];
+        long[] sectionDemographic = new long[store.getSectionCount()];
+        IntBuffer sectionColumn = store.ints(Column.SENTENCE_SECTION);
+        FloatBuffer scoreColumn = store.scores();
+        for (int s = 0; s < store.getSentenceCount(); ++s) {
+            float score = scoreColumn.get(s);
+            if (!Float.isNaN(score)) {
+                int section = sectionColumn.get(s);
+                sectionScores[section] += score;
+                ++sectionDemographic[section];
+            }
+        }
+        long[] modifiers = store.countValues(Column.PAIR_NUM_LEMMA);
+        long nanos = Math.max(1, System.nanoTime() - start);
+        System.out.println(String.format("Scanned the section, score and modifier columns in %d ms, %.0f rows/s",
+                nanos / 1000000, (2.0 * store.getSentenceCount() + store.getPairCount()) * 1e9 / nanos));
+
+        List<Integer> bySize = new ArrayList<>();
+        for (int section = 0; section < sectionSentences.length; ++section) {
+            bySize.add(section);
+        }
+        bySize.sort((a, b) -> Long.compare(sectionSentences[b], sectionSentences[a]));
+        for (int section : bySize.subList(0, Math.min(10, bySize.size()))) {
+            System.out.println(String.format("%s: %d sentences, %d demographic, mean score %.2f",
+                    store.getSection(section), sectionSentences[section], sectionDemographic[section],
+                    sectionDemographic[section] == 0 ? 0 : sectionScores[section] / sectionDemographic[section]));
+        }
+        List<Integer> byCount = new ArrayList<>();
+        for (int lemma = 0; lemma < modifiers.length; ++lemma) {
+            byCount.add(lemma);
+        }
+        byCount.sort((a, b) -> Long.compare(modifiers[b], modifiers[a]));
+        for (int lemma : byCount.subList(0, Math.min(10, byCount.size()))) {
+            if (modifiers[lemma] > 0) {
+                System.out.println(store.getLemma(lemma) + "\t" + modifiers[lemma]);
+            }
+        }
+    }
+}
@@ -0,0 +1,376 @@
+package edu.harvard.scoring;
+
+import edu.harvard.scoring.SentenceFeatureStore.Column;
+import edu.harvard.scoring.SentenceFeatureStore.Meta;
+import edu.uwm.pmcarticleparser.structuralelements.DemographicScoringModel;
+import edu.uwm.pmcarticleparser.structuralelements.LemmaCounts;
+import edu.uwm.pmcarticleparser.structuralelements.LemmaDictionary;
+import edu.uwm.pmcarticleparser.structuralelements.PMCArticleSentence;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Appends the features of articles to a {@link SentenceFeatureStore}, with
+ * the score of each sentence under a scoring model.
+ *
+ * Rows are buffered and appended to the end of the column files; a commit
+ * writes them out, forces them to disk and then replaces the meta file that
+ * holds the committed row counts, so a store always opens on whole
+ * articles. The writer commits every {@value #COMMIT_ARTICLES} articles and
+ * when it is closed. Opening a store for writing cuts the rows appended
+ * after its last commit, eg. by a process that crashed; so does opening it
+ * again after an IOException. A writer is thread-safe; one process writes a
+ * store at a time.
+ */
+public class SentenceFeatureStoreWriter implements Closeable {
+    /**
+     * The number of articles appended between two commits
+     */
+    public static final int COMMIT_ARTICLES = 64;
+    private static final int MAX_STRING_BYTES = 0xFFFF;
+
+    private final Path directory;
+    private final DemographicScoringModel model;
+    private final Meta meta;
+    private final Map<Column, ColumnFile> columns = new EnumMap<>(Column.class);
+    private final ColumnFile scores;
+    private final ColumnFile pmcids;
+    private final ColumnFile lemmas;
+    private final ColumnFile sections;
+    private final Map<String, Integer> sectionNumbers = new HashMap<>();
+    private int[] lemmaNumbers = new int[0];
+    private int articleCount;
+    private int sentenceCount;
+    private int pairCount;
+    private int lemmaCount;
+    private int lemmaEntries;
+    private int sectionEntries;
+
+    private final LemmaCounts numCounts = new LemmaCounts();
+    private int[] candidates = new int[16];
+    private double[] candidateScores = new double[16];
+    private float[] sentenceScores = new float[16];
+
+    private SentenceFeatureStoreWriter(Path directory, DemographicScoringModel model, Meta meta)
+            throws IOException {
+        this.directory = directory;
+        this.model = model;
+        this.meta = meta;
+        for (Column column : Column.values()) {
+            columns.put(column, new ColumnFile(directory.resolve(column.getFileName()),
+                    4L * meta.rows(column.getRows())));
+        }
+        scores = new ColumnFile(directory.resolve(SentenceFeatureStore.SCORE_FILE), 4L * meta.sentenceCount);
+
+        long[] end = new long[1];
+        SentenceFeatureStore.readStrings(directory.resolve(SentenceFeatureStore.PMCID_FILE), meta.articleCount,
+                end);
+        pmcids = new ColumnFile(directory.resolve(SentenceFeatureStore.PMCID_FILE), end[0]);
+        String[] lemmaStrings = SentenceFeatureStore.readStrings(directory.resolve(SentenceFeatureStore.LEMMA_FILE),
+                meta.lemmaEntries, end);
+        lemmas = new ColumnFile(directory.resolve(SentenceFeatureStore.LEMMA_FILE), end[0]);
+        String[] sectionStrings = SentenceFeatureStore.readStrings(
+                directory.resolve(SentenceFeatureStore.SECTION_FILE), meta.sectionEntries, end);
+        sections = new ColumnFile(directory.resolve(SentenceFeatureStore.SECTION_FILE), end[0]);
+
+        LemmaDictionary dictionary = LemmaDictionary.getInstance();
+        for (int number = 0; number < lemmaStrings.length; ++number) {
+            setLemmaNumber(dictionary.id(lemmaStrings[number]), number);
+        }
+        for (int number = 0; number < sectionStrings.length; ++number) {
+            sectionNumbers.put(sectionStrings[number], number);
+        }
+        articleCount = meta.articleCount;
+        sentenceCount = meta.sentenceCount;
+        pairCount = meta.pairCount;
+        lemmaCount = meta.lemmaCount;
+        lemmaEntries = meta.lemmaEntries;
+        sectionEntries = meta.sectionEntries;
+    }
+
+    /**
+     * Opens a store for appending, with scores under the default model
+     * @param directory the directory of the store, created if it does not exist
+     * @return the writer
+     * @throws IOException if the store cannot be read or written, or was scored with another model
+     */
+    public static SentenceFeatureStoreWriter open(Path directory) throws IOException {
+        return open(directory, DemographicScoringModel.getDefault());
+    }
+
+    /**
+     * Opens a store for appending
+     * @param directory the directory of the store, created if it does not exist
+     * @param model the model to score the sentences with
+     * @return the writer
+     * @throws IOException if the store cannot be read or written, or was scored with another model
+     */
+    public static SentenceFeatureStoreWriter open(Path directory, DemographicScoringModel model)
+            throws IOException {
+        Files.createDirectories(directory);
+        Meta meta = Meta.read(directory);
+        if (meta == null) {
+            meta = new Meta();
+            meta.modelVersion = model.getVersion();
+            SentenceFeatureStoreWriter writer = new SentenceFeatureStoreWriter(directory, model, meta);
+            meta.write(directory);
+            return writer;
+        }
+        if (!meta.modelVersion.equals(model.getVersion())) {
+            throw new IOException(directory + " is scored with model " + meta.modelVersion + ", not "
+                    + model.getVersion());
+        }
+        return new SentenceFeatureStoreWriter(directory, model, meta);
+    }
+
+    /**
+     * Appends the features of the parsed sentences of an article; sentences
+     * without dependency labels or numeric modifiers are skipped
+     * @param pmcid the PMC id of the article
+     * @param sentences all the sentences of the article, the abstract first
+     * @throws IOException if the store cannot be written
+     */
+    public void append(String pmcid, List<PMCArticleSentence> sentences) throws IOException {
+        append(SentenceFeatures.builder().addArticle(pmcid, sentences).build());
+    }
+
+    /**
+     * Appends the features of articles, eg. built in memory
+     * @param features the features
+     * @throws IOException if the store cannot be written
+     */
+    public synchronized void append(SentenceFeatures features) throws IOException {
+        for (int a = 0; a < features.getArticleCount(); ++a) {
+            appendArticle(features, a);
+            if (articleCount - meta.articleCount >= COMMIT_ARTICLES) {
+                commit();
+            }
+        }
+    }
+
+    private void appendArticle(SentenceFeatures features, int article) throws IOException {
+        String pmcid = features.getPmcid(article);
+        int first = features.getSentenceStart(article);
+        int end = features.getSentenceEnd(article);
+        int[] numLemmaIds = features.getNumLemmaIds();
+        int[] nextLemmaIds = features.getNextLemmaIds();
+        int[] lemmaIds = features.getLemmaIds();
+
+        // Strings first: an article that cannot be written leaves no rows behind.
+        checkLength(pmcid);
+        for (int s = first; s < end; ++s) {
+            sectionNumber(features.getSection(s));
+            for (int p = features.getPairStart(s); p < features.getPairEnd(s); ++p) {
+                lemmaNumber(numLemmaIds[p]);
+                lemmaNumber(nextLemmaIds[p]);
+            }
+            for (int l = features.getLemmaStart(s); l < features.getLemmaEnd(s); ++l) {
+                lemmaNumber(lemmaIds[l]);
+            }
+        }
+
+        int sentences = end - first;
+        if (candidates.length < sentences) {
+            candidates = new int[sentences];
+            candidateScores = new double[sentences];
+            sentenceScores = new float[sentences];
+        }
+        int candidateCount = SentenceRescorer.scoreArticle(features, article, model, numCounts, candidates,
+                candidateScores);
+        Arrays.fill(sentenceScores, 0, sentences, Float.NaN);
+        for (int c = 0; c < candidateCount; ++c) {
+            sentenceScores[candidates[c] - first] = (float) candidateScores[c];
+        }
+
+        pmcids.putString(pmcid);
+        columns.get(Column.ARTICLE_SENTENCE_START).putInt(sentenceCount);
+        for (int s = first; s < end; ++s) {
+            columns.get(Column.SENTENCE_ARTICLE).putInt(articleCount);
+            columns.get(Column.SENTENCE_INDEX).putInt(features.getSentenceIndex(s));
+            columns.get(Column.SENTENCE_SECTION).putInt(sectionNumber(features.getSection(s)));
+            columns.get(Column.SENTENCE_POSITION).putInt(features.getPosition(s));
+            columns.get(Column.SENTENCE_PAIR_START).putInt(pairCount);
+            columns.get(Column.SENTENCE_LEMMA_START).putInt(lemmaCount);
+            scores.putFloat(sentenceScores[s - first]);
+            for (int p = features.getPairStart(s); p < features.getPairEnd(s); ++p) {
+                columns.get(Column.PAIR_NUM_LEMMA).putInt(lemmaNumber(numLemmaIds[p]));
+                columns.get(Column.PAIR_HEAD_LEMMA).putInt(lemmaNumber(nextLemmaIds[p]));
+                ++pairCount;
+            }
+            for (int l = features.getLemmaStart(s); l < features.getLemmaEnd(s); ++l) {
+                columns.get(Column.SENTENCE_LEMMA).putInt(lemmaNumber(lemmaIds[l]));
+                ++lemmaCount;
+            }
+            ++sentenceCount;
+        }
+        ++articleCount;
+    }
+
+    private int sectionNumber(String section) throws IOException {
+        Integer number = sectionNumbers.get(section);
+        if (number == null) {
+            checkLength(section);
+            sections.putString(section);
+            number = sectionEntries++;
+            sectionNumbers.put(section, number);
+        }
+        return number;
+    }
+
+    private int lemmaNumber(int lemmaId) throws IOException {
+        // Lemmas missing from a sentence are stored as the empty lemma.
+        int id = lemmaId == LemmaDictionary.NULL_ID ? LemmaDictionary.getInstance().id("") : lemmaId;
+        if (id < lemmaNumbers.length && lemmaNumbers[id] >= 0) {
+            return lemmaNumbers[id];
+        }
+        String lemma = LemmaDictionary.getInstance().lemma(id);
+        checkLength(lemma);
+        lemmas.putString(lemma);
+        int number = lemmaEntries++;
+        setLemmaNumber(id, number);
+        return number;
+    }
+
+    private void setLemmaNumber(int lemmaId, int number) {
+        if (lemmaId >= lemmaNumbers.length) {
+            int length = lemmaNumbers.length;
+            lemmaNumbers = Arrays.copyOf(lemmaNumbers, Math.max(lemmaId + 1, 2 * length));
+            Arrays.fill(lemmaNumbers, length, lemmaNumbers.length, -1);
+        }
+        lemmaNumbers[lemmaId] = number;
+    }
+
+    private static void checkLength(String string) throws IOException {
+        if (string.length() > MAX_STRING_BYTES / 3
+                && string.getBytes(StandardCharsets.UTF_8).length > MAX_STRING_BYTES) {
+            throw new IOException("Too long for a sentence feature store: " + string.substring(0, 100) + "...");
+        }
+    }
+
+    /**
+     * Gets the number of articles of the store, committed or not
+     * @return the number of articles
+     */
+    public synchronized int getArticleCount() {
+        return articleCount;
+    }
+
+    /**
+     * Writes the appended rows out to disk and makes them visible to the
+     * stores opened afterwards
+     * @throws IOException if the store cannot be written
+     */
+    public synchronized void commit() throws IOException {
+        if (articleCount == meta.articleCount && lemmaEntries == meta.lemmaEntries
+                && sectionEntries == meta.sectionEntries) {
+            return;
+        }
+        for (ColumnFile column : columns.values()) {
+            column.force();
+        }
+        scores.force();
+        pmcids.force();
+        lemmas.force();
+        sections.force();
+        meta.articleCount = articleCount;
+        meta.sentenceCount = sentenceCount;
+        meta.pairCount = pairCount;
+        meta.lemmaCount = lemmaCount;
+        meta.lemmaEntries = lemmaEntries;
+        meta.sectionEntries = sectionEntries;
+        meta.write(directory);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            commit();
+        } finally {
+            for (ColumnFile column : columns.values()) {
+                column.close();
+            }
+            scores.close();
+            pmcids.close();
+            lemmas.close();
+            sections.close();
+        }
+    }
+
+    /**
+     * A file appended through a buffer, from its committed end
+     */
+    private static final class ColumnFile {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(1 << 17).order(SentenceFeatureStore.ORDER);
+
+        ColumnFile(Path file, long committedSize) throws IOException {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            if (channel.size() > committedSize) {
+                Logger.getLogger(SentenceFeatureStoreWriter.class.getName()).log(Level.WARNING,
+                        "Dropping {0} uncommitted bytes at the end of {1}",
+                        new Object[] {channel.size() - committedSize, file});
+                channel.truncate(committedSize);
+            } else if (channel.size() < committedSize) {
+                channel.close();
+                throw new IOException(file + " is shorter than its committed rows");
+            }
+            channel.position(committedSize);
+        }
+
+        void putInt(int value) throws IOException {
+            if (buffer.remaining() < 4) {
+                flush();
+            }
+            buffer.putInt(value);
+        }
+
+        void putFloat(float value) throws IOException {
+            if (buffer.remaining() < 4) {
+                flush();
+            }
+            buffer.putFloat(value);
+        }
+
+        void putString(String string) throws IOException {
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            if (buffer.remaining() < 2 + bytes.length) {
+                flush();
+            }
+            // The length is big-endian, as DataInputStream reads it back.
+            buffer.put((byte) (bytes.length >>> 8));
+            buffer.put((byte) bytes.length);
+            buffer.put(bytes);
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        void force() throws IOException {
+            flush();
+            channel.force(false);
+        }
+
+        void close() throws IOException {
+            channel.close();
+        }
+    }
+}
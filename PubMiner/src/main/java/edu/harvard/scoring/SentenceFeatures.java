@@ -0,0 +1,383 @@
+package edu.harvard.scoring;
+
+import edu.uwm.pmcarticleparser.structuralelements.LemmaDictionary;
+import edu.uwm.pmcarticleparser.structuralelements.PMCArticleSentence;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * The features a demographic score is computed from, for the parsed
+ * sentences of many articles, in columns of primitive arrays:
+ *
+ * <ul>
+ * <li>per article: the PMC id and its range of sentences;</li>
+ * <li>per sentence: its index among the sentences of the article, its
+ * section, its position in its paragraph, its range of numeric modifier
+ * pairs and its range of distinct lemmas;</li>
+ * <li>per numeric modifier pair: the lemma of the modifier and the lemma
+ * that follows it;</li>
+ * <li>the distinct lemmas of the sentences, to find the anchor words.</li>
+ * </ul>
+ *
+ * Lemmas are {@link LemmaDictionary} ids. All numeric modifiers are kept,
+ * including those a model excludes, so that a model can change the
+ * exclusions; only sentences with dependency labels and at least one numeric
+ * modifier are kept, since no model can score the others. Features are read
+ * from a {@link SentenceFeatureStore} or built in memory; once built they
+ * are immutable.
+ */
+public final class SentenceFeatures {
+    private static final String NUMMOD = "nummod";
+
+    private final String[] pmcids;
+    private final int[] articleSentenceStarts;
+    private final int[] sentenceIndices;
+    private final int[] sectionIds;
+    private final String[] sections;
+    private final int[] positions;
+    private final int[] pairStarts;
+    private final int[] lemmaStarts;
+    private final int[] numLemmaIds;
+    private final int[] nextLemmaIds;
+    private final int[] lemmaIds;
+
+    private SentenceFeatures(Builder builder) {
+        pmcids = Arrays.copyOf(builder.pmcids, builder.articleCount);
+        articleSentenceStarts = Arrays.copyOf(builder.articleSentenceStarts, builder.articleCount + 1);
+        articleSentenceStarts[builder.articleCount] = builder.sentenceCount;
+        sentenceIndices = Arrays.copyOf(builder.sentenceIndices, builder.sentenceCount);
+        sectionIds = Arrays.copyOf(builder.sectionIds, builder.sentenceCount);
+        sections = builder.sectionList.toArray(new String[0]);
+        positions = Arrays.copyOf(builder.positions, builder.sentenceCount);
+        pairStarts = Arrays.copyOf(builder.pairStarts, builder.sentenceCount + 1);
+        pairStarts[builder.sentenceCount] = builder.pairCount;
+        lemmaStarts = Arrays.copyOf(builder.lemmaStarts, builder.sentenceCount + 1);
+        lemmaStarts[builder.sentenceCount] = builder.lemmaCount;
+        numLemmaIds = Arrays.copyOf(builder.numLemmaIds, builder.pairCount);
+        nextLemmaIds = Arrays.copyOf(builder.nextLemmaIds, builder.pairCount);
+        lemmaIds = Arrays.copyOf(builder.lemmaIds, builder.lemmaCount);
+    }
+
+    // Takes the columns as they are, eg. read in bulk from a SentenceFeatureStore.
+    SentenceFeatures(String[] pmcids, int[] articleSentenceStarts, int[] sentenceIndices, int[] sectionIds,
+            String[] sections, int[] positions, int[] pairStarts, int[] lemmaStarts, int[] numLemmaIds,
+            int[] nextLemmaIds, int[] lemmaIds) {
+        this.pmcids = pmcids;
+        this.articleSentenceStarts = articleSentenceStarts;
+        this.sentenceIndices = sentenceIndices;
+        this.sectionIds = sectionIds;
+        this.sections = sections;
+        this.positions = positions;
+        this.pairStarts = pairStarts;
+        this.lemmaStarts = lemmaStarts;
+        this.numLemmaIds = numLemmaIds;
+        this.nextLemmaIds = nextLemmaIds;
+        this.lemmaIds = lemmaIds;
+    }
+
+    /**
+     * Creates an empty builder
+     * @return the builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public int getArticleCount() {
+        return pmcids.length;
+    }
+
+    public int getSentenceCount() {
+        return sentenceIndices.length;
+    }
+
+    public int getPairCount() {
+        return numLemmaIds.length;
+    }
+
+    public String getPmcid(int article) {
+        return pmcids[article];
+    }
+
+    /**
+     * Gets the first sentence of an article
+     * @param article the index of the article
+     * @return the index of its first sentence
+     */
+    public int getSentenceStart(int article) {
+        return articleSentenceStarts[article];
+    }
+
+    /**
+     * Gets the sentence after the last one of an article
+     * @param article the index of the article
+     * @return the index after its last sentence
+     */
+    public int getSentenceEnd(int article) {
+        return articleSentenceStarts[article + 1];
+    }
+
+    /**
+     * Gets the index of a sentence among all the sentences of its article,
+     * the abstract first
+     * @param sentence the index of the sentence in these features
+     * @return the index in the article
+     */
+    public int getSentenceIndex(int sentence) {
+        return sentenceIndices[sentence];
+    }
+
+    /**
+     * Gets the section of a sentence, as a scoring model weighs it
+     * @param sentence the index of the sentence
+     * @return the section name
+     * @see PMCArticleSentence#getScoringSectionName()
+     */
+    public String getSection(int sentence) {
+        return sections[sectionIds[sentence]];
+    }
+
+    /**
+     * Gets the index of a sentence in its paragraph
+     * @param sentence the index of the sentence
+     * @return the index, from 1
+     */
+    public int getPosition(int sentence) {
+        return positions[sentence];
+    }
+
+    public int getPairStart(int sentence) {
+        return pairStarts[sentence];
+    }
+
+    public int getPairEnd(int sentence) {
+        return pairStarts[sentence + 1];
+    }
+
+    public int getLemmaStart(int sentence) {
+        return lemmaStarts[sentence];
+    }
+
+    public int getLemmaEnd(int sentence) {
+        return lemmaStarts[sentence + 1];
+    }
+
+    /**
+     * Gets the lemma of the numeric modifier of each pair; not to be modified
+     * @return the lemma ids, indexed by pair
+     */
+    public int[] getNumLemmaIds() {
+        return numLemmaIds;
+    }
+
+    /**
+     * Gets the lemma following the numeric modifier of each pair; not to be
+     * modified
+     * @return the lemma ids, indexed by pair
+     */
+    public int[] getNextLemmaIds() {
+        return nextLemmaIds;
+    }
+
+    /**
+     * Gets the distinct lemmas of the sentences, sorted within each sentence;
+     * not to be modified
+     * @return the lemma ids, in the ranges of {@link #getLemmaStart(int)}
+     */
+    public int[] getLemmaIds() {
+        return lemmaIds;
+    }
+
+    /**
+     * Appends the features of articles as they are read or extracted. When an
+     * article is added twice, eg. when the corpus was processed again, the
+     * last features win.
+     */
+    public static final class Builder {
+        private String[] pmcids = new String[16];
+        private int[] articleSentenceStarts = new int[17];
+        private int articleCount;
+        private final Map<String, Integer> articleIndex = new HashMap<>();
+        private boolean superseded;
+
+        private int[] sentenceIndices = new int[64];
+        private int[] sectionIds = new int[64];
+        private int[] positions = new int[64];
+        private int[] pairStarts = new int[65];
+        private int[] lemmaStarts = new int[65];
+        private int sentenceCount;
+        private final Map<String, Integer> sectionIndex = new HashMap<>();
+        private final List<String> sectionList = new ArrayList<>();
+
+        private int[] numLemmaIds = new int[128];
+        private int[] nextLemmaIds = new int[128];
+        private int pairCount;
+
+        private int[] lemmaIds = new int[1024];
+        private int lemmaCount;
+
+        private Builder() {
+        }
+
+        /**
+         * Adds the features of the parsed sentences of an article
+         * @param pmcid the PMC id of the article
+         * @param sentences all the sentences of the article, the abstract first
+         * @return this builder
+         */
+        public Builder addArticle(String pmcid, List<PMCArticleSentence> sentences) {
+            startArticle(pmcid);
+            for (int i = 0; i < sentences.size(); ++i) {
+                PMCArticleSentence sentence = sentences.get(i);
+                if (!sentence.hasLemmas() || !sentence.hasDependencyLabels()) {
+                    continue;
+                }
+                int[] ids = sentence.getLemmaIds();
+                List<Optional<String>> labels = sentence.getDependencyLabels();
+                int pairs = 0;
+                for (int index = 0; index < ids.length - 1 && index < labels.size(); ++index) {
+                    Optional<String> label = labels.get(index);
+                    if (label.isPresent() && label.get().equals(NUMMOD)) {
+                        if (pairs++ == 0) {
+                            startSentence(i, sentence.getScoringSectionName(),
+                                    sentence.getInParagraphIndex() + 1);
+                        }
+                        addPair(ids[index], ids[index + 1]);
+                    }
+                }
+                if (pairs > 0) {
+                    int[] distinct = ids.clone();
+                    Arrays.sort(distinct);
+                    int previous = 0;
+                    for (int k = 0; k < distinct.length; ++k) {
+                        if (k == 0 || distinct[k] != previous) {
+                            addLemma(distinct[k]);
+                        }
+                        previous = distinct[k];
+                    }
+                }
+            }
+            return this;
+        }
+
+        /**
+         * Starts the features of an article; its sentences follow
+         * @param pmcid the PMC id of the article
+         * @return this builder
+         */
+        public Builder startArticle(String pmcid) {
+            if (articleCount + 1 == pmcids.length) {
+                pmcids = Arrays.copyOf(pmcids, pmcids.length * 2);
+                articleSentenceStarts = Arrays.copyOf(articleSentenceStarts, pmcids.length + 1);
+            }
+            if (articleIndex.put(pmcid, articleCount) != null) {
+                superseded = true;
+            }
+            pmcids[articleCount] = pmcid;
+            articleSentenceStarts[articleCount] = sentenceCount;
+            ++articleCount;
+            return this;
+        }
+
+        /**
+         * Starts the features of a sentence of the current article; its pairs
+         * and lemmas follow
+         * @param sentenceIndex the index of the sentence in the article
+         * @param section the section of the sentence, as a scoring model weighs it
+         * @param position the index of the sentence in its paragraph, from 1
+         * @return this builder
+         */
+        public Builder startSentence(int sentenceIndex, String section, int position) {
+            if (sentenceCount + 1 == sentenceIndices.length) {
+                int capacity = sentenceIndices.length * 2;
+                sentenceIndices = Arrays.copyOf(sentenceIndices, capacity);
+                sectionIds = Arrays.copyOf(sectionIds, capacity);
+                positions = Arrays.copyOf(positions, capacity);
+                pairStarts = Arrays.copyOf(pairStarts, capacity + 1);
+                lemmaStarts = Arrays.copyOf(lemmaStarts, capacity + 1);
+            }
+            Integer sectionId = sectionIndex.get(section);
+            if (sectionId == null) {
+                sectionId = sectionList.size();
+                sectionList.add(section);
+                sectionIndex.put(section, sectionId);
+            }
+            sentenceIndices[sentenceCount] = sentenceIndex;
+            sectionIds[sentenceCount] = sectionId;
+            positions[sentenceCount] = position;
+            pairStarts[sentenceCount] = pairCount;
+            lemmaStarts[sentenceCount] = lemmaCount;
+            ++sentenceCount;
+            return this;
+        }
+
+        /**
+         * Adds a numeric modifier to the current sentence
+         * @param numLemmaId the lemma of the modifier
+         * @param nextLemmaId the lemma that follows it
+         * @return this builder
+         */
+        public Builder addPair(int numLemmaId, int nextLemmaId) {
+            if (pairCount == numLemmaIds.length) {
+                numLemmaIds = Arrays.copyOf(numLemmaIds, pairCount * 2);
+                nextLemmaIds = Arrays.copyOf(nextLemmaIds, pairCount * 2);
+            }
+            numLemmaIds[pairCount] = numLemmaId;
+            nextLemmaIds[pairCount] = nextLemmaId;
+            ++pairCount;
+            return this;
+        }
+
+        /**
+         * Adds a lemma of the current sentence; the lemmas of a sentence are
+         * added once each, in increasing order
+         * @param lemmaId the lemma
+         * @return this builder
+         */
+        public Builder addLemma(int lemmaId) {
+            if (lemmaCount == lemmaIds.length) {
+                lemmaIds = Arrays.copyOf(lemmaIds, lemmaCount * 2);
+            }
+            lemmaIds[lemmaCount++] = lemmaId;
+            return this;
+        }
+
+        /**
+         * Builds the features of the articles added so far
+         * @return the features
+         */
+        public SentenceFeatures build() {
+            if (!superseded) {
+                return new SentenceFeatures(this);
+            }
+            // Copy the last features of each article to a new builder.
+            Builder live = new Builder();
+            for (int article = 0; article < articleCount; ++article) {
+                if (articleIndex.get(pmcids[article]) != article) {
+                    continue;
+                }
+                live.startArticle(pmcids[article]);
+                for (int s = articleSentenceStarts[article]; s < sentenceEnd(article); ++s) {
+                    live.startSentence(sentenceIndices[s], sectionList.get(sectionIds[s]), positions[s]);
+                    for (int p = pairStarts[s]; p < (s + 1 < sentenceCount ? pairStarts[s + 1] : pairCount); ++p) {
+                        live.addPair(numLemmaIds[p], nextLemmaIds[p]);
+                    }
+                    for (int l = lemmaStarts[s]; l < (s + 1 < sentenceCount ? lemmaStarts[s + 1] : lemmaCount);
+                            ++l) {
+                        live.addLemma(lemmaIds[l]);
+                    }
+                }
+            }
+            return new SentenceFeatures(live);
+        }
+
+        private int sentenceEnd(int article) {
+            return article + 1 < articleCount ? articleSentenceStarts[article + 1] : sentenceCount;
+        }
+    }
+}
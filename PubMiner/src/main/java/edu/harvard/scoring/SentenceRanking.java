@@ -0,0 +1,226 @@
+package edu.harvard.scoring;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The best demographic sentences of each article of a corpus under one
+ * scoring model, as the indices of the sentences in their article, best
+ * first. Built by {@link SentenceRescorer}; two rankings of the same corpus
+ * are compared with {@link #diff(SentenceRanking)}.
+ */
+public final class SentenceRanking {
+    private final String modelVersion;
+    private final int k;
+    private final String[] pmcids;
+    private final int[] starts;
+    private final int[] sentenceIndices;
+    private final double[] scores;
+
+    SentenceRanking(String modelVersion, int k, String[] pmcids, int[] starts, int[] sentenceIndices,
+            double[] scores) {
+        this.modelVersion = modelVersion;
+        this.k = k;
+        this.pmcids = pmcids;
+        this.starts = starts;
+        this.sentenceIndices = sentenceIndices;
+        this.scores = scores;
+    }
+
+    public String getModelVersion() {
+        return modelVersion;
+    }
+
+    /**
+     * Gets the number of sentences kept per article
+     * @return the k of the ranking
+     */
+    public int getK() {
+        return k;
+    }
+
+    public int getArticleCount() {
+        return pmcids.length;
+    }
+
+    public String getPmcid(int article) {
+        return pmcids[article];
+    }
+
+    /**
+     * Gets the best sentences of an article
+     * @param article the index of the article
+     * @return the indices of the sentences in the article, best first
+     */
+    public int[] getTop(int article) {
+        return Arrays.copyOfRange(sentenceIndices, starts[article], starts[article + 1]);
+    }
+
+    /**
+     * Gets the scores of the best sentences of an article
+     * @param article the index of the article
+     * @return the score of each sentence of {@link #getTop(int)}
+     */
+    public double[] getTopScores(int article) {
+        return Arrays.copyOfRange(scores, starts[article], starts[article + 1]);
+    }
+
+    /**
+     * Compares the best sentences of the articles of this ranking with those
+     * of another ranking of the same corpus
+     * @param other the other ranking, eg. under a new model version
+     * @return the differences, article by article
+     */
+    public Diff diff(SentenceRanking other) {
+        Map<String, Integer> otherArticles = new HashMap<>();
+        for (int a = 0; a < other.pmcids.length; ++a) {
+            otherArticles.put(other.pmcids[a], a);
+        }
+        Diff diff = new Diff(modelVersion, other.modelVersion);
+        double overlapSum = 0;
+        for (int a = 0; a < pmcids.length; ++a) {
+            Integer b = otherArticles.get(pmcids[a]);
+            if (b == null) {
+                ++diff.missing;
+                continue;
+            }
+            ++diff.compared;
+            int[] mine = getTop(a);
+            int[] theirs = other.getTop(b);
+            if (Arrays.equals(mine, theirs)) {
+                ++diff.identical;
+                overlapSum += 1;
+                continue;
+            }
+            int[] sortedMine = mine.clone();
+            int[] sortedTheirs = theirs.clone();
+            Arrays.sort(sortedMine);
+            Arrays.sort(sortedTheirs);
+            if (Arrays.equals(sortedMine, sortedTheirs)) {
+                ++diff.reordered;
+                overlapSum += 1;
+            } else {
+                ++diff.changed;
+                if (diff.changedPmcids.size() < Diff.EXAMPLES) {
+                    diff.changedPmcids.add(pmcids[a]);
+                }
+                overlapSum += overlap(sortedMine, sortedTheirs);
+            }
+        }
+        diff.meanOverlap = diff.compared == 0 ? 1 : overlapSum / diff.compared;
+        return diff;
+    }
+
+    // The share of the longer of two sorted top lists found in the other one.
+    private static double overlap(int[] a, int[] b) {
+        int longest = Math.max(a.length, b.length);
+        if (longest == 0) {
+            return 1;
+        }
+        int common = 0;
+        for (int i = 0, j = 0; i < a.length && j < b.length; ) {
+            if (a[i] == b[j]) {
+                ++common;
+                ++i;
+                ++j;
+            } else if (a[i] < b[j]) {
+                ++i;
+            } else {
+                ++j;
+            }
+        }
+        return (double) common / longest;
+    }
+
+    /**
+     * The differences between the best sentences of two rankings of a corpus
+     */
+    public static final class Diff {
+        private static final int EXAMPLES = 10;
+
+        private final String fromVersion;
+        private final String toVersion;
+        private int compared;
+        private int missing;
+        private int identical;
+        private int reordered;
+        private int changed;
+        private double meanOverlap;
+        private final List<String> changedPmcids = new ArrayList<>();
+
+        private Diff(String fromVersion, String toVersion) {
+            this.fromVersion = fromVersion;
+            this.toVersion = toVersion;
+        }
+
+        /**
+         * Gets the number of articles found in both rankings
+         * @return the number of articles compared
+         */
+        public int getCompared() {
+            return compared;
+        }
+
+        /**
+         * Gets the number of articles of the first ranking missing from the
+         * other one
+         * @return the number of articles not compared
+         */
+        public int getMissing() {
+            return missing;
+        }
+
+        /**
+         * Gets the number of articles with the same best sentences in the same
+         * order
+         * @return the number of unchanged articles
+         */
+        public int getIdentical() {
+            return identical;
+        }
+
+        /**
+         * Gets the number of articles with the same best sentences in another
+         * order
+         * @return the number of reordered articles
+         */
+        public int getReordered() {
+            return reordered;
+        }
+
+        /**
+         * Gets the number of articles with other best sentences
+         * @return the number of changed articles
+         */
+        public int getChanged() {
+            return changed;
+        }
+
+        /**
+         * Gets the mean share of the best sentences of an article kept by the
+         * other ranking
+         * @return the mean overlap, from 0 to 1
+         */
+        public double getMeanOverlap() {
+            return meanOverlap;
+        }
+
+        /**
+         * Gets a few of the articles with other best sentences
+         * @return at most 10 PMC ids
+         */
+        public List<String> getChangedPmcids() {
+            return changedPmcids;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("model %s -> %s: %d articles compared (%d missing), %d identical, %d reordered, " +
+                    "%d changed, mean overlap %.3f%s", fromVersion, toVersion, compared, missing, identical,
+                    reordered, changed, meanOverlap, changedPmcids.isEmpty() ? "" : ", eg. " + changedPmcids);
+        }
+    }
+}
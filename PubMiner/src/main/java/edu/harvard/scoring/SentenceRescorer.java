@@ -0,0 +1,222 @@
+package edu.harvard.scoring;
+
+import edu.harvard.nlp.DemographicRanker;
+import edu.uwm.pmcarticleparser.structuralelements.DemographicScoringModel;
+import edu.uwm.pmcarticleparser.structuralelements.LemmaCounts;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+/**
+ * Ranks the sentences of a corpus again under a scoring model, from their
+ * stored {@link SentenceFeatures} in a {@link SentenceFeatureStore} instead
+ * of parsing the articles.
+ *
+ * The ranking of an article is the one the miners store: its demographic
+ * sentences are those with an anchor word and a numeric modifier the model
+ * does not exclude, their modifiers are counted, each one is scored, and
+ * the best k are kept as {@link DemographicRanker} keeps them. The work is
+ * a few passes over primitive arrays per article, with buffers reused from
+ * one article to the next.
+ *
+ * Usage: SentenceRescorer &lt;feature store directory&gt;
+ * &lt;model file|default&gt; [&lt;other model file|default&gt;] [k]
+ */
+public final class SentenceRescorer {
+    private static final int BATCH_ARTICLES = 4096;
+
+    private final DemographicScoringModel model;
+    private final int k;
+
+    /**
+     * Creates a rescorer
+     * @param model the scoring model
+     * @param k the number of sentences to keep per article
+     */
+    public SentenceRescorer(DemographicScoringModel model, int k) {
+        this.model = model;
+        this.k = k;
+    }
+
+    /**
+     * Ranks the sentences of each article of the features
+     * @param features the features of a corpus
+     * @return the best sentences of each article under the model
+     */
+    public SentenceRanking rescore(SentenceFeatures features) {
+        RankingBuilder ranking = new RankingBuilder();
+        rescore(features, ranking);
+        return ranking.build(model.getVersion(), k);
+    }
+
+    /**
+     * Ranks the sentences of each article of a store, reading the columns a
+     * batch of articles at a time
+     * @param store the features of a corpus
+     * @return the best sentences of each article under the model
+     */
+    public SentenceRanking rescore(SentenceFeatureStore store) {
+        RankingBuilder ranking = new RankingBuilder();
+        for (int from = 0; from < store.getArticleCount(); from += BATCH_ARTICLES) {
+            rescore(store.getFeatures(from, Math.min(store.getArticleCount(), from + BATCH_ARTICLES)), ranking);
+        }
+        return ranking.build(model.getVersion(), k);
+    }
+
+    private void rescore(SentenceFeatures features, RankingBuilder ranking) {
+        LemmaCounts numCounts = new LemmaCounts();
+        int[] candidates = new int[16];
+        double[] scores = new double[16];
+        for (int a = 0; a < features.getArticleCount(); ++a) {
+            int sentenceCount = features.getSentenceEnd(a) - features.getSentenceStart(a);
+            if (candidates.length < sentenceCount) {
+                candidates = new int[sentenceCount];
+                scores = new double[sentenceCount];
+            }
+            int candidateCount = scoreArticle(features, a, model, numCounts, candidates, scores);
+            ranking.startArticle(features.getPmcid(a));
+            for (int c : DemographicRanker.topIndices(scores, 0, candidateCount, k)) {
+                ranking.add(features.getSentenceIndex(candidates[c]), scores[c]);
+            }
+        }
+    }
+
+    /**
+     * Scores the demographic sentences of an article: those with an anchor
+     * word and a numeric modifier the model does not exclude
+     * @param candidates receives the demographic sentences, in article order; as long as the article
+     * @param scores receives their scores; as long as the article
+     * @return the number of demographic sentences
+     */
+    static int scoreArticle(SentenceFeatures features, int article, DemographicScoringModel model,
+            LemmaCounts numCounts, int[] candidates, double[] scores) {
+        int[] numLemmaIds = features.getNumLemmaIds();
+        int[] nextLemmaIds = features.getNextLemmaIds();
+        int[] lemmaIds = features.getLemmaIds();
+
+        numCounts.clear();
+        int candidateCount = 0;
+        for (int s = features.getSentenceStart(article); s < features.getSentenceEnd(article); ++s) {
+            if (!hasAnchor(model, lemmaIds, features.getLemmaStart(s), features.getLemmaEnd(s))) {
+                continue;
+            }
+            boolean counted = false;
+            for (int p = features.getPairStart(s); p < features.getPairEnd(s); ++p) {
+                if (!model.isExcludedNummod(numLemmaIds[p])) {
+                    numCounts.increment(numLemmaIds[p]);
+                    counted = true;
+                }
+            }
+            if (counted) {
+                candidates[candidateCount++] = s;
+            }
+        }
+
+        for (int c = 0; c < candidateCount; ++c) {
+            int s = candidates[c];
+            scores[c] = model.score(numLemmaIds, nextLemmaIds, features.getPairStart(s), features.getPairEnd(s),
+                    numCounts, features.getSection(s), features.getPosition(s));
+        }
+        return candidateCount;
+    }
+
+    private static boolean hasAnchor(DemographicScoringModel model, int[] lemmaIds, int from, int to) {
+        for (int l = from; l < to; ++l) {
+            if (model.isAnchor(lemmaIds[l])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Collects the best sentences of the articles, one article after the
+     * other
+     */
+    private static final class RankingBuilder {
+        private String[] pmcids = new String[16];
+        private int[] starts = new int[17];
+        private int articleCount;
+        private int[] sentenceIndices = new int[64];
+        private double[] scores = new double[64];
+        private int count;
+
+        void startArticle(String pmcid) {
+            if (articleCount + 1 == pmcids.length) {
+                pmcids = Arrays.copyOf(pmcids, pmcids.length * 2);
+                starts = Arrays.copyOf(starts, pmcids.length + 1);
+            }
+            pmcids[articleCount] = pmcid;
+            starts[articleCount] = count;
+            ++articleCount;
+        }
+
+        void add(int sentenceIndex, double score) {
+            if (count == sentenceIndices.length) {
+                sentenceIndices = Arrays.copyOf(sentenceIndices, count * 2);
+                scores = Arrays.copyOf(scores, count * 2);
+            }
+            sentenceIndices[count] = sentenceIndex;
+            scores[count] = score;
+            ++count;
+        }
+
+        SentenceRanking build(String modelVersion, int k) {
+            int[] articleStarts = Arrays.copyOf(starts, articleCount + 1);
+            articleStarts[articleCount] = count;
+            return new SentenceRanking(modelVersion, k, Arrays.copyOf(pmcids, articleCount), articleStarts,
+                    Arrays.copyOf(sentenceIndices, count), Arrays.copyOf(scores, count));
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: SentenceRescorer <feature store directory> " +
+                    "<model file|default> [<other model file|default>] [k]");
+            return;
+        }
+        boolean compare = args.length > 2 && !args[2].matches("\\d+");
+        int k = DemographicRanker.DEFAULT_TOP_K;
+        if (args.length > (compare ? 3 : 2)) {
+            k = Integer.parseInt(args[compare ? 3 : 2]);
+        }
+
+        long start = System.nanoTime();
+        SentenceFeatureStore store = SentenceFeatureStore.open(Paths.get(args[0]));
+        int sentenceCount = store.getSentenceCount();
+        System.out.println(String.format("Mapped %d articles, %d sentences, %d numeric modifiers in %d ms",
+                store.getArticleCount(), sentenceCount, store.getPairCount(), (System.nanoTime() - start) / 1000000));
+
+        SentenceRanking ranking = null;
+        for (int m = 1; m <= (compare ? 2 : 1); ++m) {
+            DemographicScoringModel model = loadModel(args[m]);
+            SentenceRescorer rescorer = new SentenceRescorer(model, k);
+            start = System.nanoTime();
+            SentenceRanking next = rescorer.rescore(store);
+            long nanos = Math.max(1, System.nanoTime() - start);
+            System.out.println(String.format("Model %s: rescored %d sentences in %d ms, %.0f sentences/s",
+                    model.getVersion(), sentenceCount, nanos / 1000000, sentenceCount * 1e9 / nanos));
+            if (ranking != null) {
+                System.out.println(ranking.diff(next));
+            }
+            ranking = next;
+        }
+    }
+
+    private static DemographicScoringModel loadModel(String name) throws IOException {
+        DemographicScoringModel model = name.equals("default") ? DemographicScoringModel.getDefault()
+                : DemographicScoringModel.load(Paths.get(name));
+        if (model.getPairWeighting().equals("idf")) {
+            Path sketchFile = Paths.get(NummodPairSketch.DEFAULT_FILE);
+            if (Files.exists(sketchFile)) {
+                model = model.withPairWeights(NummodPairSketch.read(sketchFile).idfWeights());
+            } else {
+                System.out.println("No " + sketchFile + " for the idf pair weights of model " + model.getVersion());
+            }
+        }
+        return model;
+    }
+}
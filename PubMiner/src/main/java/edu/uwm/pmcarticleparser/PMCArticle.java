@@ -1,21 +1,16 @@
 package edu.uwm.pmcarticleparser;
 
 import edu.uwm.pmcarticleparser.structuralelements.*;
-import generalutils.SentenceTokenizer;
 import org.apache.xerces.impl.Constants;
 import org.apache.xerces.parsers.DOMParser;
 import org.w3c.dom.Document;
-import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Element;
 import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
 import org.xml.sax.InputSource;
 
-import javax.xml.xpath.XPath;
-import javax.xml.xpath.XPathConstants;
-import javax.xml.xpath.XPathExpression;
-import javax.xml.xpath.XPathFactory;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -23,6 +18,17 @@ import java.util.List;
  *
  * https://orbit.nlm.nih.gov/browse-repository/software/other/44-pmc-parser
  *
+ * An instance is a snapshot of the article: everything the getters return is
+ * read in a single walk over the parsed document when the instance is
+ * constructed, and the document itself is not kept. The XPath constants
+ * describe which elements each getter reads. The fields and lists of an
+ * instance never change, and can be read from any thread; the elements of
+ * the lists are not copied, though. The sentences are annotated in place
+ * later, their lemmas, dependency labels and numeric modifiers published
+ * through volatile fields, so a sentence annotated in one thread can be read
+ * in another. The setters of the sentences and of the other elements are not
+ * synchronized: they are only to be called before the instance is shared.
+ *
  * @author Shashank Agarwal
  * @author gaob@github, extend the class to read from pubmed efetch API and InputStream (such as from AWS S3 bucket).
  */
@@ -44,6 +50,7 @@ public class PMCArticle {
     public static final String FULL_TEXT_TEXT_XPATH = "//body";
     public static final String FIGURE_XPATH = "//fig";
     public static final String TABLE_XPATH = "//table-wrap";
+    public static final String EFETCH_URL = "https://eutils.ncbi.nlm.nih.gov/entrez/eutils/efetch.fcgi?db=pmc&id=";
 
     public static final String NO_TITLE_DEFAULT = "No Title Found";
     public static final String NO_JOURNAL_NAME_DEFAULT = "No Journal Name Found";
@@ -63,24 +70,31 @@ public class PMCArticle {
     public static final int INDEX_FROM = 0; // Eg. Array index starts from 0.
     public static String citationReplacement = "citation";
 
-    private Document document;
-    private int abstractSentenceIndex;
-    private int fullTextSentenceIndex;
+    private final String title;
+    private final String pmcId;
+    private final String pubmedId;
+    private final String journal;
+    private final String volume;
+    private final String firstPage;
+    private final String lastPage;
+    private final String publicationDay;
+    private final String publicationMonth;
+    private final String publicationYear;
+    private final String abstractText;
+    private final String fullTextText;
+    private final List<PMCArticleAuthor> authors;
+    private final List<PMCArticleFigure> figures;
+    private final List<PMCArticleTable> tables;
+    private final List<PMCArticleReference> references;
+    private final List<PMCArticleSentence> abstractSentences;
+    private final List<PMCArticleSentence> fullTextSentences;
 
     /**
      * Constructs an instance of PMCArticle.
      * @param articleLocation the location of the article xml file
      */
     public PMCArticle(String articleLocation) {
-        try {
-            DOMParser parser = new DOMParser();
-            parser.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
-            parser.setFeature(Constants.SAX_FEATURE_PREFIX + Constants.NAMESPACES_FEATURE, false);
-            parser.parse(articleLocation);
-            document = parser.getDocument();
-        } catch (Exception ex) {
-            ex.printStackTrace();
-        }
+        this(extract(new InputSource(articleLocation)));
     }
 
     /**
@@ -88,15 +102,7 @@ public class PMCArticle {
      * @param inputStream the input stream of the article xml file
      */
     public PMCArticle(InputStream inputStream) {
-        try {
-            DOMParser parser = new DOMParser();
-            parser.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
-            parser.setFeature(Constants.SAX_FEATURE_PREFIX + Constants.NAMESPACES_FEATURE, false);
-            parser.parse(new InputSource(inputStream));
-            document = parser.getDocument();
-        } catch (Exception ex) {
-            ex.printStackTrace();
-        }
+        this(extract(new InputSource(inputStream)));
     }
 
     /**
@@ -113,23 +119,35 @@ public class PMCArticle {
      * accordingly.
      */
     public PMCArticle(String pmcId, int timeToWaitBeforeConnecting) {
-        try {
-            Thread.sleep(timeToWaitBeforeConnecting);
-            DOMParser parser = new DOMParser();
-            parser.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
-            parser.setFeature(Constants.SAX_FEATURE_PREFIX + Constants.NAMESPACES_FEATURE, false);
-            parser.parse("https://eutils.ncbi.nlm.nih.gov/entrez/eutils/efetch.fcgi?db=pmc&id=" + pmcId);
-
-            document = parser.getDocument();
-        } catch (Exception ex) {
-            ex.printStackTrace();
-        }
+        this(fetch(pmcId, timeToWaitBeforeConnecting));
     }
 
     /**
-     * The default constructor is not available
+     * Constructs an instance of PMCArticle from content that has already been
+     * read from the article.
+     * @param content the content of the article
      */
-    private PMCArticle() {
+    PMCArticle(PMCArticleExtractor content) {
+        title = content.getTitle();
+        pmcId = content.getPmcId();
+        pubmedId = content.getPubmedId();
+        journal = content.getJournal();
+        volume = content.getVolume();
+        firstPage = content.getFirstPage();
+        lastPage = content.getLastPage();
+        publicationDay = content.getDay();
+        publicationMonth = content.getMonth();
+        publicationYear = content.getYear();
+        abstractText = content.getAbstractText();
+        fullTextText = content.getFullTextText();
+        authors = Collections.unmodifiableList(new ArrayList<>(content.getAuthors()));
+        figures = Collections.unmodifiableList(new ArrayList<>(content.getFigures()));
+        tables = Collections.unmodifiableList(new ArrayList<>(content.getTables()));
+        references = Collections.unmodifiableList(new ArrayList<>(content.getReferences()));
+        abstractSentences = Collections.unmodifiableList(
+                new ArrayList<>(content.getAbstract().getAbstractSentences()));
+        fullTextSentences = Collections.unmodifiableList(
+                new ArrayList<>(content.getFullText().getFullTextSentences()));
     }
 
     /**
@@ -137,7 +155,7 @@ public class PMCArticle {
      * @return the title of the article
      */
     public String getTitle() {
-        return commonElementParser(TITLE_XPATH, NO_TITLE_DEFAULT);
+        return title;
     }
 
     /**
@@ -145,7 +163,7 @@ public class PMCArticle {
      * @return the pubmed central id of the article
      */
     public String getPmcId() {
-        return commonElementParser(PMC_ID_XPATH, NO_PMC_ID_DEFAULT);
+        return pmcId;
     }
 
     /**
@@ -153,7 +171,7 @@ public class PMCArticle {
      * @return pubmed id of the article
      */
     public String getPubmedId() {
-        return commonElementParser(PUBMED_ID_XPATH, NO_PUBMED_ID_DEFAULT);
+        return pubmedId;
     }
 
     /**
@@ -161,7 +179,7 @@ public class PMCArticle {
      * @return the name of the journal
      */
     public String getJournal() {
-        return commonElementParser(JOURNAL_XPATH, NO_JOURNAL_NAME_DEFAULT);
+        return journal;
     }
 
     /**
@@ -169,7 +187,7 @@ public class PMCArticle {
      * @return volume of the journal in which the article was published.
      */
     public String getVolume() {
-        return commonElementParser(VOLUME_XPATH, NO_VOLUME_DEFAULT);
+        return volume;
     }
 
     /**
@@ -177,7 +195,7 @@ public class PMCArticle {
      * @return the first page number
      */
     public String getFirstPage() {
-        return commonElementParser(FIRST_PAGE_XPATH, NO_FIRST_PAGE_DEFAULT);
+        return firstPage;
     }
 
     /**
@@ -185,7 +203,7 @@ public class PMCArticle {
      * @return the last page number
      */
     public String getLastPage() {
-        return commonElementParser(LAST_PAGE_XPATH, NO_LAST_PAGE_DEFAULT);
+        return lastPage;
     }
 
     /**
@@ -193,10 +211,7 @@ public class PMCArticle {
      * @return the PMCArticlePublicationDate object for this article
      */
     public PMCArticlePublicationDate getPublicationDate() {
-        String day = commonElementParser(PUBLICATION_DATE_DAY_XPATH, NO_DAY_DEFAULT);
-        String month = commonElementParser(PUBLICATION_DATE_MONTH_XPATH, NO_MONTH_DEFAULT);
-        String year = commonElementParser(PUBLICATION_DATE_YEAR_XPATH, NO_YEAR_DEFAULT);
-        return new PMCArticlePublicationDate(day, month, year);
+        return new PMCArticlePublicationDate(publicationDay, publicationMonth, publicationYear);
     }
 
     /**
@@ -204,55 +219,13 @@ public class PMCArticle {
      * @return a list of PMCArticleAuthors
      */
     public List<PMCArticleAuthor> getAuthors() {
-        try {
-            XPathFactory xPathFactory = XPathFactory.newInstance();
-            XPath xPath = xPathFactory.newXPath();
-            XPathExpression expression = xPath.compile(AUTHORS_XPATH);
-            NodeList sectionNodes = (NodeList) expression.evaluate(document, XPathConstants.NODESET);
-            if (sectionNodes.getLength() == 0) {
-                return new ArrayList<>();
-            }
-
-            List<PMCArticleAuthor> authorList = new ArrayList<>();
-            Node node, childNode, grandChildNode;
-            String firstName;
-            String lastName;
-            String email;
-            NodeList childNodes;
-            NodeList grandChildNodes;
-
-            for (int i = 0; i < sectionNodes.getLength(); ++i) {
-                firstName = "";
-                lastName = "";
-                email = "";
-                node = sectionNodes.item(i);
-                childNodes = node.getChildNodes();
-                for (int j = 0; j < childNodes.getLength(); ++j) {
-                    childNode = childNodes.item(j);
-                    if ("name".equalsIgnoreCase(childNode.getNodeName())) {
-                        grandChildNodes = childNode.getChildNodes();
-                        for (int k = 0; k < grandChildNodes.getLength(); ++k) {
-                            grandChildNode = grandChildNodes.item(k);
-                            if ((grandChildNode.getNodeName() != null) && "given-names".equalsIgnoreCase(grandChildNode.getNodeName())) {
-                                firstName = grandChildNode.getTextContent();
-                            } else if ((grandChildNode.getNodeName() != null) && "surname".equalsIgnoreCase(grandChildNode.getNodeName())) {
-                                lastName = grandChildNode.getTextContent();
-                            }
-                        }
-                    }
-                    if ("email".equalsIgnoreCase(childNode.getNodeName())) {
-                        email = childNode.getTextContent();
-                    }
-                }
-
-                PMCArticleAuthor author = new PMCArticleAuthor(firstName, lastName);
-                author.setEmail(email);
-                authorList.add(author);
-            }
-            return authorList;
-        } catch (Exception ex) {
-            return new ArrayList<>();
+        List<PMCArticleAuthor> authorList = new ArrayList<>();
+        for (PMCArticleAuthor author : authors) {
+            PMCArticleAuthor copy = new PMCArticleAuthor(author.getFirstName(), author.getLastName());
+            copy.setEmail(author.getEmail());
+            authorList.add(copy);
         }
+        return authorList;
     }
 
     /**
@@ -261,42 +234,9 @@ public class PMCArticle {
      */
     public List<PMCArticleFigure> getFigures() {
         List<PMCArticleFigure> figureList = new ArrayList<>();
-        try {
-            XPathFactory xPathFactory = XPathFactory.newInstance();
-            XPath xPath = xPathFactory.newXPath();
-            XPathExpression expression = xPath.compile(FIGURE_XPATH);
-            NodeList sectionNodes = (NodeList) expression.evaluate(document, XPathConstants.NODESET);
-
-            for (int i = 0; i < sectionNodes.getLength(); ++i) {
-                String id = "";
-                String label = "";
-                String caption = "";
-                String graphicLocation = "";
-                Node node = sectionNodes.item(i);
-                NamedNodeMap figureNodeAttributes = node.getAttributes();
-                Node nodeId = figureNodeAttributes.getNamedItem("id");
-                if (nodeId != null) {
-                    id = nodeId.getTextContent();
-                }
-                NodeList nodeChildren = node.getChildNodes();
-                for (int j = 0; j < nodeChildren.getLength(); ++j) {
-                    Node childNode = nodeChildren.item(j);
-                    if ((childNode.getNodeName() != null) && "caption".equalsIgnoreCase(childNode.getNodeName())) {
-                        caption = childNode.getTextContent();
-                    } else if ((childNode.getNodeName() != null) && "label".equalsIgnoreCase(childNode.getNodeName())) {
-                        label = childNode.getTextContent();
-                    } else if ((childNode.getNodeName() != null) && "graphic".equalsIgnoreCase(childNode.getNodeName())) {
-                        NamedNodeMap graphicNodeAttributes = childNode.getAttributes();
-                        Node nodeGraphicLocation = graphicNodeAttributes.getNamedItem("xlink:href");
-                        if (nodeGraphicLocation != null) {
-                            graphicLocation = nodeGraphicLocation.getTextContent();
-                        }
-                    }
-                }
-                figureList.add(new PMCArticleFigure(id, label, caption, graphicLocation));
-            }
-        } catch (Exception ex) {
-            ex.printStackTrace();
+        for (PMCArticleFigure figure : figures) {
+            figureList.add(new PMCArticleFigure(figure.getId(), figure.getLabel(), figure.getCaption(),
+                    figure.getGraphicLocation()));
         }
         return figureList;
     }
@@ -308,35 +248,8 @@ public class PMCArticle {
      */
     public List<PMCArticleTable> getTables() {
         List<PMCArticleTable> tableList = new ArrayList<>();
-        try {
-            XPathFactory xPathFactory = XPathFactory.newInstance();
-            XPath xPath = xPathFactory.newXPath();
-            XPathExpression expression = xPath.compile(TABLE_XPATH);
-            NodeList sectionNodes = (NodeList) expression.evaluate(document, XPathConstants.NODESET);
-
-            for (int i = 0; i < sectionNodes.getLength(); ++i) {
-                String id = "";
-                String label = "";
-                String caption = "";
-                Node node = sectionNodes.item(i);
-                NamedNodeMap figureNodeAttributes = node.getAttributes();
-                Node nodeId = figureNodeAttributes.getNamedItem("id");
-                if (nodeId != null) {
-                    id = nodeId.getTextContent();
-                }
-                NodeList nodeChildren = node.getChildNodes();
-                for (int j = 0; j < nodeChildren.getLength(); ++j) {
-                    Node childNode = nodeChildren.item(j);
-                    if ((childNode.getNodeName() != null) && "caption".equalsIgnoreCase(childNode.getNodeName())) {
-                        caption = childNode.getTextContent();
-                    } else if ((childNode.getNodeName() != null) && "label".equalsIgnoreCase(childNode.getNodeName())) {
-                        label = childNode.getTextContent();
-                    }
-                }
-                tableList.add(new PMCArticleTable(id, label, caption));
-            }
-        } catch (Exception ex) {
-            ex.printStackTrace();
+        for (PMCArticleTable table : tables) {
+            tableList.add(new PMCArticleTable(table.getId(), table.getLabel(), table.getCaption(), table.getContent()));
         }
         return tableList;
     }
@@ -346,7 +259,7 @@ public class PMCArticle {
      * @return the abstract text.
      */
     public String getAbstractText() {
-        return commonElementParser(ABSTRACT_XPATH, DEFAULT_ABSTRACT_SECTION);
+        return abstractText;
     }
 
     /**
@@ -356,53 +269,29 @@ public class PMCArticle {
      * @return the text from the full text of the article
      */
     public String getFullTextText() {
-        return commonElementParser(FULL_TEXT_TEXT_XPATH, DEFAULT_FULL_TEXT_SECTION);
+        return fullTextText;
     }
 
     /**
      * Gets the PMCArticleAbstract object of this article. Individual sentences
-     * can be extracted using this format.
+     * can be extracted using this format. The sentences are shared by all
+     * calls, so that their lemmas and dependency labels are only computed
+     * once.
      * @return the abstract object
      */
     public PMCArticleAbstract getAbstract() {
-        try {
-            XPathFactory xPathFactory = XPathFactory.newInstance();
-            XPath xPath = xPathFactory.newXPath();
-            XPathExpression expression = xPath.compile(ABSTRACT_XPATH);
-            NodeList sectionNodes = (NodeList) expression.evaluate(document, XPathConstants.NODESET);
-            abstractSentenceIndex = INDEX_FROM;
-            PMCArticleAbstract articleAbstract = new PMCArticleAbstract();
-            // Use only the first node because subsequent "abstract" nodes might be editor's summary
-            if (sectionNodes.getLength() != 0) {
-                getAbstractHelper(articleAbstract, sectionNodes.item(0), DEFAULT_ABSTRACT_SECTION);
-            }
-            return articleAbstract;
-        } catch (Exception ex) {
-            ex.printStackTrace();
-            return new PMCArticleAbstract();
-        }
+        return new PMCArticleAbstract(abstractSentences);
     }
 
     /**
      * Returns the full text object of this article. A list of sentences can be
      * obtained from this object, which has information about the sections, 
-     * subsections, refering references, figures and tables.
+     * subsections, refering references, figures and tables. The sentences are
+     * shared by all calls.
      * @return the full text of the article
      */
     public PMCArticleFullText getFullText() {
-        try {
-            XPathFactory xPathFactory = XPathFactory.newInstance();
-            XPath xPath = xPathFactory.newXPath();
-            XPathExpression expression = xPath.compile(FULL_TEXT_XPATH);
-            NodeList sectionNodes = (NodeList) expression.evaluate(document, XPathConstants.NODESET);
-            fullTextSentenceIndex = INDEX_FROM;
-            PMCArticleFullText articleFullText = new PMCArticleFullText();
-            getFullTextHelper(articleFullText, sectionNodes, DEFAULT_FULL_TEXT_SECTION, DEFAULT_FULL_TEXT_SUBSECTION);
-            return articleFullText;
-        } catch (Exception ex) {
-            ex.printStackTrace();
-            return new PMCArticleFullText();
-        }
+        return new PMCArticleFullText(fullTextSentences);
     }
 
     /**
@@ -410,71 +299,18 @@ public class PMCArticle {
      * @return list of references in the article
      */
     public List<PMCArticleReference> getReferences() {
-        List<PMCArticleReference> references = new ArrayList<>();
-        try {
-            XPathFactory xPathFactory = XPathFactory.newInstance();
-            XPath xPath = xPathFactory.newXPath();
-            XPathExpression expression = xPath.compile(REFERENCES_XPATH);
-            NodeList sectionNodes = (NodeList) expression.evaluate(document, XPathConstants.NODESET);
-            for (int i = 0; i < sectionNodes.getLength(); ++i) {
-                String id = "";
-                Node node = sectionNodes.item(i);
-                NamedNodeMap refAttributes = node.getAttributes();
-                Node idNode = refAttributes.getNamedItem("id");
-                if (idNode != null) {
-                    id = idNode.getTextContent();
-                }
-                references.add(new PMCArticleReference(id, node.getTextContent()));
-            }
-        } catch (Exception ex) {
-            ex.printStackTrace();
+        List<PMCArticleReference> referenceList = new ArrayList<>();
+        for (PMCArticleReference reference : references) {
+            referenceList.add(new PMCArticleReference(reference.getId(), reference.getText()));
         }
-        return references;
+        return referenceList;
     }
 
-    /**
-     * Private recursive function to get abstract text.
-     * @param articleAbstract the article's abstract object
-     * @param node node
-     * @param section section
-     */
-    private void getAbstractHelper(PMCArticleAbstract articleAbstract, Node node, String section) {
-        int indexInParagraph;
-        String[] sentences;
-
-        if ((node.getNodeName() != null) && "p".equalsIgnoreCase(node.getNodeName())) {
-            indexInParagraph = INDEX_FROM;
-            String paragraphText = getTextHelper(node.getChildNodes()).toString();
-            sentences = SentenceTokenizer.getSentences(paragraphText);
-            for (String sentence : sentences) {
-                articleAbstract.addSentence(postProcessSentence(sentence, indexInParagraph, sentences.length, abstractSentenceIndex, section, ""));
-                ++abstractSentenceIndex;
-                ++indexInParagraph;
-            }
-        } else if ((node.getNodeName() != null) && "sec".equalsIgnoreCase(node.getNodeName())) {
-            NodeList children = node.getChildNodes();
-            int numChildren = children.getLength();
-            for (int i = 0; i < numChildren; ++i) {
-                getAbstractHelper(articleAbstract, children.item(i), section);
-            }
-        } else if ((node.getNodeName() != null) && "title".equalsIgnoreCase(node.getNodeName())) {
-            section = node.getTextContent();
-        } else if ((node.getNodeName() != null) && "abstract".equalsIgnoreCase(node.getNodeName())) {
-            NodeList children = node.getChildNodes();
-            int numChildren = children.getLength();
-            for (int i = 0; i < numChildren; ++i) {
-                getAbstractHelper(articleAbstract, children.item(i), section);
-            }
-        }
-    }
-
-    private PMCArticleSentence postProcessSentence(String s, int indexInParagraph,
+    static PMCArticleSentence postProcessSentence(String s, int indexInParagraph,
             int totalSentencesInParagraph, int indexInDocument,
             String section, String subsection) {
 
-        String text = s.replaceAll("</?xref.*?>", "");
-
-        PMCArticleSentence sentence = new PMCArticleSentence(text);
+        PMCArticleSentence sentence = new PMCArticleSentence(s);
         sentence.setInParagraphIndex(indexInParagraph);
         sentence.setTotalSentencesInContainingParagraph(totalSentencesInParagraph);
         sentence.setIndexInDocument(indexInDocument);
@@ -484,86 +320,74 @@ public class PMCArticle {
         return sentence;
     }
 
-    private StringBuffer getTextHelper(NodeList nodes) {
-        StringBuffer text = new StringBuffer();
-        Node node;
-        for (int i = 0; i < nodes.getLength(); ++i) {
-            node = nodes.item(i);
-            if ("#text".equalsIgnoreCase(node.getNodeName())) {
-                text.append(node.getTextContent());
-            } else if ((node.getNodeName() != null) && ("xref".equalsIgnoreCase(node.getNodeName()))) {
-                NamedNodeMap nodeAttributes = node.getAttributes();
-                String refType, rid;
-                try {
-                    refType = nodeAttributes.getNamedItem("ref-type").getTextContent();
-                } catch (Exception ex) {
-                    refType = "";
-                }
-                try {
-                    rid = nodeAttributes.getNamedItem("rid").getTextContent();
-                } catch (Exception ex) {
-                    rid = "";
-                }
-                text.append("<xref ref-type=\"").append(refType).append("\" rid=\"").append(rid).append("\">").append(node.getTextContent()).append("</xref>");
-            } else if ((node.getNodeName() != null) && ("fig".equalsIgnoreCase(node.getNodeName()))) {
-                // Ignore figures
-            } else if ((node.getNodeName() != null) && ("table-wrap".equalsIgnoreCase(node.getNodeName()))) {
-                // Ignore tables
-            } else {
-                text.append(getTextHelper(node.getChildNodes()));
-            }
+    private static PMCArticleExtractor fetch(String pmcId, int timeToWaitBeforeConnecting) {
+        try {
+            Thread.sleep(timeToWaitBeforeConnecting);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            ex.printStackTrace();
+            return new PMCArticleExtractor();
         }
-        return text;
+        return extract(new InputSource(EFETCH_URL + pmcId));
     }
 
-    private void getFullTextHelper(PMCArticleFullText articleFullText, NodeList nodes, String section, String subSection) {
-        Node node;
-        int indexInParagraph;
-        String[] sentences;
-
-        for (int i = 0; i < nodes.getLength(); ++i) {
-            node = nodes.item(i);
-            if ((node.getNodeName() != null) && "p".equalsIgnoreCase(node.getNodeName())) {
-                indexInParagraph = INDEX_FROM;
-                String paragraphText = getTextHelper(node.getChildNodes()).toString();
-                sentences = SentenceTokenizer.getSentences(paragraphText);
-                for (String sentence : sentences) {
-                    articleFullText.addSentence(postProcessSentence(sentence, indexInParagraph, sentences.length, fullTextSentenceIndex, section, subSection));
-                    ++fullTextSentenceIndex;
-                    ++indexInParagraph;
-                }
-            } else if ((node.getNodeName() != null) && "sec".equalsIgnoreCase(node.getNodeName())) {
-                getFullTextHelper(articleFullText, node.getChildNodes(), section, subSection);
-            } else if ((node.getNodeName() != null) && "body".equalsIgnoreCase(node.getNodeName())) {
-                getFullTextHelper(articleFullText, node.getChildNodes(), section, subSection);
-            } else if ((node.getNodeName() != null) && "title".equalsIgnoreCase(node.getNodeName())) {
-                if (DEFAULT_FULL_TEXT_SECTION.equalsIgnoreCase(section)) {
-                    section = node.getTextContent();
-                } else if (DEFAULT_FULL_TEXT_SUBSECTION.equalsIgnoreCase(subSection)) {
-                    subSection = node.getTextContent();
-                }
-            } else if ((node.getNodeName() != null) && "fig".equalsIgnoreCase(node.getNodeName())) {
-                //Ignore
-            } else if ((node.getNodeName() != null) && "table-wrap".equalsIgnoreCase(node.getNodeName())) {
-                //Ignore
-            }
+    /**
+     * Parses the article into a DOM and reads its content in a single walk.
+     * @param inputSource the article xml
+     * @return the content of the article, empty if it could not be parsed
+     */
+    private static PMCArticleExtractor extract(InputSource inputSource) {
+        PMCArticleExtractor extractor = new PMCArticleExtractor();
+        try {
+            DOMParser parser = new DOMParser();
+            parser.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
+            parser.setFeature(Constants.SAX_FEATURE_PREFIX + Constants.NAMESPACES_FEATURE, false);
+            parser.parse(inputSource);
+            walk(parser.getDocument(), extractor, new DomAttributes());
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            return new PMCArticleExtractor();
         }
+        return extractor;
     }
 
-    private String commonElementParser(String xPathString, String defaultText) {
-        try {
-            XPathFactory xPathFactory = XPathFactory.newInstance();
-            XPath xPath = xPathFactory.newXPath();
-            XPathExpression expression = xPath.compile(xPathString);
-            NodeList sectionNodes = (NodeList) expression.evaluate(document, XPathConstants.NODESET);
-            if (sectionNodes.getLength() == 0) {
-                return defaultText;
+    /**
+     * Feeds the nodes under the given node to the extractor in document order.
+     */
+    private static void walk(Node node, PMCArticleExtractor extractor, DomAttributes attributes) {
+        for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+            switch (child.getNodeType()) {
+                case Node.ELEMENT_NODE:
+                    attributes.element = (Element) child;
+                    extractor.startElement(child.getNodeName(), attributes);
+                    walk(child, extractor, attributes);
+                    extractor.endElement();
+                    break;
+                case Node.TEXT_NODE:
+                    extractor.characters(child.getNodeValue(), false);
+                    break;
+                case Node.CDATA_SECTION_NODE:
+                    extractor.characters(child.getNodeValue(), true);
+                    break;
+                case Node.ENTITY_REFERENCE_NODE:
+                    walk(child, extractor, attributes);
+                    break;
+                default:
+                    break;
             }
-            return sectionNodes.item(0).getTextContent();
-        } catch (Exception ex) {
-            System.err.println("Exception");
-            ex.printStackTrace();
-            return defaultText;
+        }
+    }
+
+    /**
+     * Attributes of the element the DOM walk is starting.
+     */
+    private static final class DomAttributes implements PMCArticleExtractor.Attributes {
+        Element element;
+
+        @Override
+        public String getValue(String qName) {
+            Node attribute = element.getAttributeNode(qName);
+            return attribute == null ? null : attribute.getNodeValue();
         }
     }
 }
@@ -0,0 +1,722 @@
+package edu.uwm.pmcarticleparser;
+
+import edu.uwm.pmcarticleparser.structuralelements.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Collects the content of a PMC article from a stream of element and text
+ * events in document order.
+ *
+ * Each field is read from the elements named by the XPath constants of
+ * {@link PMCArticle}. Only the currently open elements and the paragraph being
+ * read are kept in memory, so the extractor can be driven by a pull parser
+ * ({@link PMCArticleStreamParser}) as well as by a walk over a DOM.
+ */
+final class PMCArticleExtractor {
+
+    /**
+     * Read-only view of the attributes of the element being started.
+     */
+    interface Attributes {
+        /**
+         * Gets the value of an attribute by its qualified name.
+         * @param qName the qualified name, eg. "xlink:href"
+         * @return the value or null if the element has no such attribute
+         */
+        String getValue(String qName);
+    }
+
+    private enum Field {
+        TITLE, JOURNAL, DAY, MONTH, YEAR, PMC_ID, PUBMED_ID, VOLUME, FIRST_PAGE, LAST_PAGE, ABSTRACT_TEXT,
+        FULL_TEXT_TEXT
+    }
+
+    private static final int ABSTRACT_CONTAINER = 1;
+    private static final int FULL_TEXT_CONTAINER = 2;
+
+    // Open elements, indexed by depth (the root element has depth 1).
+    private String[] names = new String[32];
+    private int[] flags = new int[32];
+    private String[] sections = new String[32];
+    private String[] subSections = new String[32];
+    private int depth;
+
+    private final String[] fields = new String[Field.values().length];
+    private final boolean[] claimed = new boolean[Field.values().length];
+    private final List<TextCapture> captures = new ArrayList<>();
+
+    private final List<PMCArticleAuthor> authors = new ArrayList<>();
+    private final List<PMCArticleFigure> figures = new ArrayList<>();
+    private final List<PMCArticleTable> tables = new ArrayList<>();
+    private final List<PMCArticleReference> references = new ArrayList<>();
+    private PMCArticleAuthor author;
+    private int authorDepth = -1;
+    private int authorNameDepth = -1;
+    private PMCArticleFigure figure;
+    private int figureDepth = -1;
+    private PMCArticleTable table;
+    private int tableDepth = -1;
+    private final boolean readTableContent;
+    private TableContentBuilder tableContent;
+    private int tableContentDepth = -1;
+    private int tableHeaderDepth = -1;
+    private int tableCellDepth = -1;
+
+    private final PMCArticleAbstract articleAbstract = new PMCArticleAbstract();
+    private final PMCArticleFullText articleFullText = new PMCArticleFullText();
+    private boolean abstractSeen;
+    private int fullTextDepth = -1;
+    private final PMCSectionFilter sectionFilter;
+    // The top level section waiting for its title to be filtered, and the section being skipped.
+    private int filteredSectionDepth = -1;
+    private int skippedSectionDepth = -1;
+    private long keptCharacters;
+    private long skippedCharacters;
+    private final Paragraph abstractParagraph = new Paragraph();
+    private final Paragraph fullTextParagraph = new Paragraph();
+    private int abstractSentenceIndex = PMCArticle.INDEX_FROM;
+    private int fullTextSentenceIndex = PMCArticle.INDEX_FROM;
+
+    /**
+     * Creates an extractor that does not read the cells of tables.
+     */
+    PMCArticleExtractor() {
+        this(false, null);
+    }
+
+    /**
+     * Creates an extractor.
+     * @param readTableContent whether to read the header and body cells of tables
+     * @param sectionFilter the sections of the full text to split into sentences, or null for all of them
+     */
+    PMCArticleExtractor(boolean readTableContent, PMCSectionFilter sectionFilter) {
+        this.readTableContent = readTableContent;
+        this.sectionFilter = sectionFilter;
+    }
+
+    /**
+     * Handles the start tag of an element.
+     * @param name the qualified name of the element
+     * @param attributes the attributes of the element
+     */
+    void startElement(String name, Attributes attributes) {
+        String parent = depth > 0 ? names[depth] : null;
+        push(name);
+
+        startFields(name, parent, attributes);
+        startStructuralElements(name, parent, attributes);
+
+        abstractParagraph.startElement(name, attributes);
+        fullTextParagraph.startElement(name, attributes);
+        startAbstract(name);
+        startFullText(name, attributes);
+    }
+
+    /**
+     * Handles character data.
+     * @param text the buffer holding the characters
+     * @param start the offset of the first character
+     * @param length the number of characters
+     * @param cdata whether the characters come from a CDATA section
+     */
+    void characters(char[] text, int start, int length, boolean cdata) {
+        countFullText(length);
+        for (int i = 0; i < captures.size(); ++i) {
+            captures.get(i).text.append(text, start, length);
+        }
+        abstractParagraph.characters(text, start, length, cdata);
+        fullTextParagraph.characters(text, start, length, cdata);
+    }
+
+    /**
+     * Handles character data held in a string, as in a DOM text node.
+     * @param text the characters
+     * @param cdata whether the characters come from a CDATA section
+     */
+    void characters(String text, boolean cdata) {
+        countFullText(text.length());
+        for (int i = 0; i < captures.size(); ++i) {
+            captures.get(i).text.append(text);
+        }
+        abstractParagraph.characters(text, cdata);
+        fullTextParagraph.characters(text, cdata);
+    }
+
+    /**
+     * Handles the end tag of the innermost open element.
+     */
+    void endElement() {
+        abstractParagraph.endElement();
+        fullTextParagraph.endElement();
+
+        for (int i = captures.size() - 1; i >= 0; --i) {
+            TextCapture capture = captures.get(i);
+            if (capture.depth == depth) {
+                captures.remove(i);
+                capture.target.accept(capture.text.toString());
+            }
+        }
+
+        if (depth == authorDepth) {
+            authorDepth = -1;
+        } else if (depth == authorNameDepth) {
+            authorNameDepth = -1;
+        }
+        if (depth == figureDepth) {
+            figureDepth = -1;
+        }
+        if (depth == tableCellDepth) {
+            tableCellDepth = -1;
+        } else if (depth == tableHeaderDepth) {
+            tableHeaderDepth = -1;
+        } else if (depth == tableContentDepth) {
+            table.setContent(tableContent.build());
+            tableContent = null;
+            tableContentDepth = -1;
+        }
+        if (depth == tableDepth) {
+            tableDepth = -1;
+        }
+        if (depth == skippedSectionDepth) {
+            skippedSectionDepth = -1;
+        } else if (depth == filteredSectionDepth) {
+            filteredSectionDepth = -1;
+        }
+        if (depth == fullTextDepth) {
+            if (sectionFilter != null) {
+                sectionFilter.count(keptCharacters, skippedCharacters);
+            }
+            fullTextDepth = -1;
+        }
+        flags[depth] = 0;
+        names[depth] = null;
+        --depth;
+    }
+
+    String getTitle() {
+        return getField(Field.TITLE, PMCArticle.NO_TITLE_DEFAULT);
+    }
+
+    String getPmcId() {
+        return getField(Field.PMC_ID, PMCArticle.NO_PMC_ID_DEFAULT);
+    }
+
+    String getPubmedId() {
+        return getField(Field.PUBMED_ID, PMCArticle.NO_PUBMED_ID_DEFAULT);
+    }
+
+    String getJournal() {
+        return getField(Field.JOURNAL, PMCArticle.NO_JOURNAL_NAME_DEFAULT);
+    }
+
+    String getVolume() {
+        return getField(Field.VOLUME, PMCArticle.NO_VOLUME_DEFAULT);
+    }
+
+    String getFirstPage() {
+        return getField(Field.FIRST_PAGE, PMCArticle.NO_FIRST_PAGE_DEFAULT);
+    }
+
+    String getLastPage() {
+        return getField(Field.LAST_PAGE, PMCArticle.NO_LAST_PAGE_DEFAULT);
+    }
+
+    String getDay() {
+        return getField(Field.DAY, PMCArticle.NO_DAY_DEFAULT);
+    }
+
+    String getMonth() {
+        return getField(Field.MONTH, PMCArticle.NO_MONTH_DEFAULT);
+    }
+
+    String getYear() {
+        return getField(Field.YEAR, PMCArticle.NO_YEAR_DEFAULT);
+    }
+
+    String getAbstractText() {
+        return getField(Field.ABSTRACT_TEXT, PMCArticle.DEFAULT_ABSTRACT_SECTION);
+    }
+
+    String getFullTextText() {
+        return getField(Field.FULL_TEXT_TEXT, PMCArticle.DEFAULT_FULL_TEXT_SECTION);
+    }
+
+    List<PMCArticleAuthor> getAuthors() {
+        return authors;
+    }
+
+    List<PMCArticleFigure> getFigures() {
+        return figures;
+    }
+
+    List<PMCArticleTable> getTables() {
+        return tables;
+    }
+
+    List<PMCArticleReference> getReferences() {
+        return references;
+    }
+
+    PMCArticleAbstract getAbstract() {
+        return articleAbstract;
+    }
+
+    PMCArticleFullText getFullText() {
+        return articleFullText;
+    }
+
+    private String getField(Field field, String defaultText) {
+        String value = fields[field.ordinal()];
+        return value == null ? defaultText : value;
+    }
+
+    private void push(String name) {
+        ++depth;
+        if (depth == names.length) {
+            int capacity = names.length * 2;
+            names = Arrays.copyOf(names, capacity);
+            flags = Arrays.copyOf(flags, capacity);
+            sections = Arrays.copyOf(sections, capacity);
+            subSections = Arrays.copyOf(subSections, capacity);
+        }
+        names[depth] = name;
+        flags[depth] = 0;
+    }
+
+    /**
+     * Starts capturing the text content of the current element for the first
+     * element matching each metadata XPath of {@link PMCArticle}.
+     */
+    private void startFields(String name, String parent, Attributes attributes) {
+        switch (name) {
+            case "article-title":
+                if ("title-group".equals(parent)) {
+                    claim(Field.TITLE);
+                }
+                break;
+            case "journal-title":
+                claim(Field.JOURNAL);
+                break;
+            case "day":
+                if ("pub-date".equals(parent)) {
+                    claim(Field.DAY);
+                }
+                break;
+            case "month":
+                if ("pub-date".equals(parent)) {
+                    claim(Field.MONTH);
+                }
+                break;
+            case "year":
+                if ("pub-date".equals(parent)) {
+                    claim(Field.YEAR);
+                }
+                break;
+            case "article-id":
+                String idType = attributes.getValue("pub-id-type");
+                if ("pmc".equals(idType)) {
+                    claim(Field.PMC_ID);
+                } else if ("pmid".equals(idType)) {
+                    claim(Field.PUBMED_ID);
+                }
+                break;
+            case "volume":
+                claim(Field.VOLUME);
+                break;
+            case "fpage":
+                claim(Field.FIRST_PAGE);
+                break;
+            case "lpage":
+                claim(Field.LAST_PAGE);
+                break;
+            case "abstract":
+                claim(Field.ABSTRACT_TEXT);
+                break;
+            case "body":
+                claim(Field.FULL_TEXT_TEXT);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void claim(Field field) {
+        final int index = field.ordinal();
+        if (!claimed[index]) {
+            claimed[index] = true;
+            capture(value -> fields[index] = value);
+        }
+    }
+
+    private void capture(Consumer<String> target) {
+        captures.add(new TextCapture(depth, target));
+    }
+
+    /**
+     * Tracks authors, figures, tables and references.
+     */
+    private void startStructuralElements(String name, String parent, Attributes attributes) {
+        if ("contrib".equals(name) && "contrib-group".equals(parent)
+                && "author".equals(attributes.getValue("contrib-type"))) {
+            final PMCArticleAuthor contributor = new PMCArticleAuthor();
+            contributor.setEmail("");
+            authors.add(contributor);
+            author = contributor;
+            authorDepth = depth;
+        } else if (authorDepth >= 0 && depth == authorDepth + 1) {
+            final PMCArticleAuthor contributor = author;
+            if ("name".equals(name)) {
+                authorNameDepth = depth;
+            } else if ("email".equals(name)) {
+                capture(contributor::setEmail);
+            }
+        } else if (authorNameDepth >= 0 && depth == authorNameDepth + 1) {
+            final PMCArticleAuthor contributor = author;
+            if ("given-names".equals(name)) {
+                capture(contributor::setFirstName);
+            } else if ("surname".equals(name)) {
+                capture(contributor::setLastName);
+            }
+        }
+
+        if ("fig".equals(name)) {
+            figure = new PMCArticleFigure();
+            figure.setId(valueOrEmpty(attributes.getValue("id")));
+            figures.add(figure);
+            figureDepth = depth;
+        } else if (figureDepth >= 0 && depth == figureDepth + 1) {
+            final PMCArticleFigure current = figure;
+            if ("caption".equals(name)) {
+                capture(current::setCaption);
+            } else if ("label".equals(name)) {
+                capture(current::setLabel);
+            } else if ("graphic".equals(name)) {
+                String location = attributes.getValue("xlink:href");
+                if (location != null) {
+                    current.setGraphicLocation(location);
+                }
+            }
+        }
+
+        if ("table-wrap".equals(name)) {
+            table = new PMCArticleTable();
+            table.setId(valueOrEmpty(attributes.getValue("id")));
+            tables.add(table);
+            tableDepth = depth;
+        } else if (tableDepth >= 0 && depth == tableDepth + 1) {
+            final PMCArticleTable current = table;
+            if ("caption".equals(name)) {
+                capture(current::setCaption);
+            } else if ("label".equals(name)) {
+                capture(current::setLabel);
+            }
+        }
+        if (readTableContent && tableDepth >= 0) {
+            startTableContent(name, attributes);
+        }
+
+        if ("ref".equals(name) && "ref-list".equals(parent)) {
+            final PMCArticleReference reference = new PMCArticleReference();
+            reference.setId(valueOrEmpty(attributes.getValue("id")));
+            references.add(reference);
+            capture(reference::setText);
+        }
+    }
+
+    /**
+     * Reads the rows and cells of the first "table" of a table wrap. Tables
+     * nested in a cell are part of the text of the cell.
+     */
+    private void startTableContent(String name, Attributes attributes) {
+        if (tableContentDepth < 0) {
+            if ("table".equals(name) && table.getContent() == null) {
+                tableContent = new TableContentBuilder();
+                tableContentDepth = depth;
+            }
+        } else if (tableCellDepth < 0) {
+            if ("thead".equals(name)) {
+                tableHeaderDepth = depth;
+            } else if ("tr".equals(name)) {
+                tableContent.startRow(tableHeaderDepth >= 0);
+            } else if ("th".equals(name) || "td".equals(name)) {
+                final TableContentBuilder builder = tableContent;
+                final String rowSpan = attributes.getValue("rowspan");
+                final String columnSpan = attributes.getValue("colspan");
+                tableCellDepth = depth;
+                capture(text -> builder.addCell(text.trim(), rowSpan, columnSpan));
+            }
+        }
+    }
+
+    /**
+     * Only the first abstract is read, and only the paragraphs nested in "sec"
+     * and "abstract" elements. Titles do not name abstract sections.
+     */
+    private void startAbstract(String name) {
+        if (!abstractSeen && "abstract".equals(name)) {
+            abstractSeen = true;
+            flags[depth] |= ABSTRACT_CONTAINER;
+        } else if ((flags[depth - 1] & ABSTRACT_CONTAINER) != 0) {
+            if ("sec".equals(name) || "abstract".equals(name)) {
+                flags[depth] |= ABSTRACT_CONTAINER;
+            } else if ("p".equals(name)) {
+                abstractParagraph.start(depth);
+            }
+        }
+    }
+
+    /**
+     * The first title of a section names the section, the first title of a
+     * nested section names the subsection, and only the paragraphs nested in
+     * "sec" and "body" elements are read.
+     */
+    private void startFullText(String name, Attributes attributes) {
+        if (fullTextDepth < 0 && "body".equals(name)) {
+            fullTextDepth = depth;
+            flags[depth] |= FULL_TEXT_CONTAINER;
+            sections[depth] = PMCArticle.DEFAULT_FULL_TEXT_SECTION;
+            subSections[depth] = PMCArticle.DEFAULT_FULL_TEXT_SUBSECTION;
+        } else if ((flags[depth - 1] & FULL_TEXT_CONTAINER) != 0) {
+            final int parentDepth = depth - 1;
+            if ("sec".equals(name) || "body".equals(name)) {
+                flags[depth] |= FULL_TEXT_CONTAINER;
+                sections[depth] = sections[parentDepth];
+                subSections[depth] = subSections[parentDepth];
+                if (sectionFilter != null && parentDepth == fullTextDepth && "sec".equals(name)
+                        && !sectionFilter.acceptsSectionType(attributes.getValue("sec-type"))) {
+                    filteredSectionDepth = depth;
+                }
+            } else if ("title".equals(name)) {
+                capture(title -> {
+                    if (parentDepth == filteredSectionDepth) {
+                        filteredSectionDepth = -1;
+                        if (!sectionFilter.acceptsTitle(title)) {
+                            skippedSectionDepth = parentDepth;
+                        }
+                    }
+                    if (PMCArticle.DEFAULT_FULL_TEXT_SECTION.equalsIgnoreCase(sections[parentDepth])) {
+                        sections[parentDepth] = title;
+                    } else if (PMCArticle.DEFAULT_FULL_TEXT_SUBSECTION.equalsIgnoreCase(subSections[parentDepth])) {
+                        subSections[parentDepth] = title;
+                    }
+                });
+            } else if ("p".equals(name) && skippedSectionDepth < 0) {
+                fullTextParagraph.start(depth);
+            }
+        }
+    }
+
+    private void countFullText(int length) {
+        if (fullTextDepth < 0) {
+            return;
+        }
+        if (skippedSectionDepth >= 0) {
+            skippedCharacters += length;
+        } else {
+            keptCharacters += length;
+        }
+    }
+
+    private void endParagraph(Paragraph paragraph) {
+        char[] paragraphText = paragraph.text.chars();
+        int[] bounds = SentenceSplitter.split(paragraphText, 0, paragraph.text.length());
+        String[] sentences = new String[bounds.length / 2];
+        for (int i = 0; i < sentences.length; ++i) {
+            sentences[i] = SentenceSplitter.sentenceText(paragraphText, bounds[2 * i], bounds[2 * i + 1]);
+        }
+        int indexInParagraph = PMCArticle.INDEX_FROM;
+        paragraph.attachedCount = 0;
+        if (paragraph == abstractParagraph) {
+            for (int i = 0; i < sentences.length; ++i) {
+                PMCArticleSentence articleSentence = PMCArticle.postProcessSentence(sentences[i], indexInParagraph,
+                        sentences.length, abstractSentenceIndex, PMCArticle.DEFAULT_ABSTRACT_SECTION, "");
+                paragraph.attachReferences(articleSentence, paragraphText, bounds[2 * i], bounds[2 * i + 1],
+                        sentences[i].length());
+                articleAbstract.addSentence(articleSentence);
+                ++abstractSentenceIndex;
+                ++indexInParagraph;
+            }
+        } else {
+            String section = sections[depth - 1];
+            String subSection = subSections[depth - 1];
+            for (int i = 0; i < sentences.length; ++i) {
+                PMCArticleSentence articleSentence = PMCArticle.postProcessSentence(sentences[i], indexInParagraph,
+                        sentences.length, fullTextSentenceIndex, section, subSection);
+                paragraph.attachReferences(articleSentence, paragraphText, bounds[2 * i], bounds[2 * i + 1],
+                        sentences[i].length());
+                articleFullText.addSentence(articleSentence);
+                ++fullTextSentenceIndex;
+                ++indexInParagraph;
+            }
+        }
+    }
+
+    private static String valueOrEmpty(String value) {
+        return value == null ? "" : value;
+    }
+
+    /**
+     * Text content of an element that is being read, together with where the
+     * content goes once the element ends.
+     */
+    private static final class TextCapture {
+        final int depth;
+        final StringBuilder text = new StringBuilder();
+        final Consumer<String> target;
+
+        TextCapture(int depth, Consumer<String> target) {
+            this.depth = depth;
+            this.target = target;
+        }
+    }
+
+    /**
+     * Text of the paragraph being read, assembled in a single buffer: figures
+     * and tables are skipped and CDATA sections are dropped. The text of a cross reference is kept as
+     * plain text and the reference itself is recorded as a span of the
+     * paragraph text, which is moved onto the sentence it starts in after
+     * sentence splitting.
+     */
+    private final class Paragraph {
+        // Only held while the paragraph is open.
+        TextBuffer text;
+        int paragraphDepth = -1;
+        int xrefDepth = -1;
+        int skipDepth = -1;
+
+        // Cross references in document order: bounds holds start, end pairs in the paragraph text.
+        int[] bounds = new int[16];
+        String[] refTypes = new String[8];
+        String[] rids = new String[8];
+        int referenceCount;
+
+        // The number of references attached to the sentences so far.
+        int attachedCount;
+
+        void start(int depth) {
+            paragraphDepth = depth;
+            text = TextBuffer.acquire();
+            referenceCount = 0;
+        }
+
+        void startElement(String name, Attributes attributes) {
+            if (paragraphDepth < 0 || xrefDepth >= 0 || skipDepth >= 0) {
+                return;
+            }
+            if ("xref".equals(name)) {
+                xrefDepth = depth;
+                if (referenceCount == refTypes.length) {
+                    bounds = Arrays.copyOf(bounds, bounds.length * 2);
+                    refTypes = Arrays.copyOf(refTypes, refTypes.length * 2);
+                    rids = Arrays.copyOf(rids, rids.length * 2);
+                }
+                bounds[2 * referenceCount] = text.length();
+                refTypes[referenceCount] = valueOrEmpty(attributes.getValue("ref-type"));
+                rids[referenceCount] = valueOrEmpty(attributes.getValue("rid"));
+            } else if ("fig".equals(name) || "table-wrap".equals(name)) {
+                skipDepth = depth;
+            }
+        }
+
+        void characters(char[] buffer, int start, int length, boolean cdata) {
+            if (paragraphDepth < 0 || skipDepth >= 0 || (cdata && xrefDepth < 0)) {
+                return;
+            }
+            text.append(buffer, start, length);
+        }
+
+        void characters(String buffer, boolean cdata) {
+            if (paragraphDepth < 0 || skipDepth >= 0 || (cdata && xrefDepth < 0)) {
+                return;
+            }
+            text.append(buffer);
+        }
+
+        void endElement() {
+            if (paragraphDepth < 0) {
+                return;
+            }
+            if (depth == xrefDepth) {
+                bounds[2 * referenceCount + 1] = text.length();
+                ++referenceCount;
+                xrefDepth = -1;
+            } else if (depth == skipDepth) {
+                skipDepth = -1;
+            } else if (depth == paragraphDepth) {
+                endParagraph(this);
+                text.release();
+                text = null;
+                paragraphDepth = -1;
+            }
+        }
+
+        /**
+         * Attaches the references that start before the end of a sentence,
+         * and were not attached to the sentences before it, to the sentence.
+         * Their spans are moved from the paragraph text to the sentence text,
+         * whose whitespace runs are collapsed by the splitter. A reference
+         * that ends in a later sentence is cut at the end of the sentence.
+         * @param sentence the sentence to attach the references to
+         * @param chars the paragraph text
+         * @param start the offset of the sentence in the paragraph text
+         * @param end the offset after the sentence in the paragraph text
+         * @param length the length of the sentence text
+         */
+        void attachReferences(PMCArticleSentence sentence, char[] chars, int start, int end, int length) {
+            int first = attachedCount;
+            while (attachedCount < referenceCount && bounds[2 * attachedCount] < end) {
+                ++attachedCount;
+            }
+            int found = attachedCount - first;
+            if (found == 0) {
+                return;
+            }
+            int[] spans = new int[2 * found];
+            String[] types = new String[found];
+            String[] ids = new String[found];
+            int position = start;
+            int offset = 0;
+            for (int k = 0; k < found; ++k) {
+                int referenceStart = Math.max(position, bounds[2 * (first + k)]);
+                offset = collapsedOffset(chars, start, position, referenceStart, offset);
+                position = referenceStart;
+                spans[2 * k] = offset;
+                int referenceEnd = bounds[2 * (first + k) + 1];
+                if (referenceEnd <= end) {
+                    offset = collapsedOffset(chars, start, position, Math.max(position, referenceEnd), offset);
+                    position = Math.max(position, referenceEnd);
+                    spans[2 * k + 1] = offset;
+                } else {
+                    spans[2 * k + 1] = length;
+                }
+                types[k] = refTypes[first + k];
+                ids[k] = rids[first + k];
+            }
+            sentence.setReferences(spans, types, ids);
+        }
+
+        /**
+         * Moves an offset in the sentence text along the paragraph text,
+         * counting a whitespace run as a single character
+         * @param chars the paragraph text
+         * @param start the offset of the sentence, which does not start with whitespace
+         * @param from the position in the paragraph text the offset matches
+         * @param to the position to move to
+         * @param offset the offset in the sentence text
+         * @return the offset matching the position to move to
+         */
+        private int collapsedOffset(char[] chars, int start, int from, int to, int offset) {
+            for (int k = from; k < to; ++k) {
+                if (k == start || !SentenceSplitter.isWhitespace(chars[k])
+                        || !SentenceSplitter.isWhitespace(chars[k - 1])) {
+                    ++offset;
+                }
+            }
+            return offset;
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package edu.uwm.pmcarticleparser;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Parses a PMC article with a StAX pull parser in a single forward pass.
+ *
+ * Unlike the DOM based constructors of {@link PMCArticle}, no document tree is
+ * built: the metadata, abstract sentences and full text sentences are read as
+ * the events go by. Parsing needs memory for the text and sentences of the
+ * article, which the parsed article keeps anyway, but not for a tree of every
+ * element, attribute and whitespace node of the document.
+ */
+public final class PMCArticleStreamParser {
+    private static final String REPORT_CDATA_PROPERTY = "http://java.sun.com/xml/stream/properties/report-cdata-event";
+    // XMLInputFactory is not guaranteed to be thread-safe, so every thread gets its own, like PubmedArticleIterator.
+    private static final ThreadLocal<XMLInputFactory> INPUT_FACTORY = ThreadLocal.withInitial(() -> {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        // Same settings as the DOM parser: no namespaces and no external DTD.
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, false);
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        // Entities declared in the (unread) DTD are reported instead of failing the parse.
+        factory.setProperty(XMLInputFactory.IS_REPLACING_ENTITY_REFERENCES, false);
+        // CDATA sections are dropped from paragraph text, so they must not be merged into character events.
+        if (factory.isPropertySupported(REPORT_CDATA_PROPERTY)) {
+            factory.setProperty(REPORT_CDATA_PROPERTY, true);
+        }
+        return factory;
+    });
+
+    private final XMLStreamReader reader;
+
+    private PMCArticleStreamParser(XMLStreamReader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Parses the article in the given file.
+     * @param articleLocation the location of the article xml file
+     * @return the parsed article
+     */
+    public static PMCArticle parse(String articleLocation) {
+        try (InputStream inputStream = new FileInputStream(articleLocation)) {
+            return parse(inputStream);
+        } catch (IOException ex) {
+            ex.printStackTrace();
+            return new PMCArticle(new PMCArticleExtractor());
+        }
+    }
+
+    /**
+     * Parses the article read from the given input stream. The stream is not
+     * closed.
+     * @param inputStream the input stream of the article xml file
+     * @return the parsed article
+     */
+    public static PMCArticle parse(InputStream inputStream) {
+        return parse(inputStream, false);
+    }
+
+    /**
+     * Parses the article read from the given input stream, optionally with
+     * the header and body cells of its tables. The stream is not closed.
+     * @param inputStream the input stream of the article xml file
+     * @param readTableContent whether to read the cells of the tables, see
+     * {@link edu.uwm.pmcarticleparser.structuralelements.PMCArticleTable#getContent()}
+     * @return the parsed article
+     */
+    public static PMCArticle parse(InputStream inputStream, boolean readTableContent) {
+        return parse(inputStream, readTableContent, null);
+    }
+
+    /**
+     * Parses the article read from the given input stream, splitting only the
+     * chosen sections of the full text into sentences. The stream is not
+     * closed.
+     * @param inputStream the input stream of the article xml file
+     * @param sectionFilter the sections to split into sentences
+     * @return the parsed article
+     */
+    public static PMCArticle parse(InputStream inputStream, PMCSectionFilter sectionFilter) {
+        return parse(inputStream, false, sectionFilter);
+    }
+
+    /**
+     * Parses the article read from the given input stream. The stream is not
+     * closed.
+     * @param inputStream the input stream of the article xml file
+     * @param readTableContent whether to read the cells of the tables
+     * @param sectionFilter the sections to split into sentences, or null for all of them
+     * @return the parsed article
+     */
+    public static PMCArticle parse(InputStream inputStream, boolean readTableContent,
+            PMCSectionFilter sectionFilter) {
+        PMCArticleExtractor extractor = new PMCArticleExtractor(readTableContent, sectionFilter);
+        try {
+            XMLStreamReader reader = INPUT_FACTORY.get().createXMLStreamReader(inputStream);
+            try {
+                new PMCArticleStreamParser(reader).read(extractor);
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException ex) {
+            ex.printStackTrace();
+            // Like the DOM constructors, an article that cannot be parsed has no content.
+            extractor = new PMCArticleExtractor();
+        }
+        return new PMCArticle(extractor);
+    }
+
+    private void read(PMCArticleExtractor extractor) throws XMLStreamException {
+        PMCArticleExtractor.Attributes attributes = this::getAttributeValue;
+        while (reader.hasNext()) {
+            switch (reader.next()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    extractor.startElement(qualifiedName(reader.getPrefix(), reader.getLocalName()), attributes);
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    extractor.endElement();
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.SPACE:
+                    extractor.characters(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength(),
+                            false);
+                    break;
+                case XMLStreamConstants.CDATA:
+                    extractor.characters(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength(),
+                            true);
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    private String getAttributeValue(String qName) {
+        for (int i = 0; i < reader.getAttributeCount(); ++i) {
+            if (qName.equals(qualifiedName(reader.getAttributePrefix(i), reader.getAttributeLocalName(i)))) {
+                return reader.getAttributeValue(i);
+            }
+        }
+        return null;
+    }
+
+    private static String qualifiedName(String prefix, String localName) {
+        if (prefix == null || prefix.isEmpty()) {
+            return localName;
+        }
+        return prefix + ":" + localName;
+    }
+}
@@ -0,0 +1,135 @@
+package edu.uwm.pmcarticleparser;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * Chooses the sections of the full text whose paragraphs are split into
+ * sentences.
+ *
+ * A top level section of the body is kept if one of the values of its
+ * sec-type attribute (eg. "materials|methods") is accepted, or if its title
+ * matches one of the title patterns. The paragraphs of the other sections,
+ * nested sections included, are skipped before sentence splitting, which is
+ * where the parsing time goes. A section whose title comes after some of its
+ * paragraphs keeps those paragraphs. Paragraphs outside sections and the
+ * abstract are always kept, and the metadata, figures, tables and references
+ * are read from the whole article.
+ *
+ * With a filter, the indices of full text sentences count the kept sentences
+ * only. A filter is thread-safe, and counts the full text characters it kept
+ * and skipped over all the articles it was used for.
+ */
+public class PMCSectionFilter {
+    /**
+     * The sec-type values of sections that describe the study population.
+     */
+    public static final List<String> DEMOGRAPHIC_SECTION_TYPES = Arrays.asList("methods", "materials", "subjects",
+            "patients", "participants", "results", "cases");
+
+    /**
+     * The titles of sections that describe the study population.
+     */
+    public static final String DEMOGRAPHIC_TITLE_PATTERN = "method|material|patient|participant|subject"
+            + "|population|result|design|enrol|recruit|baseline|characteristic|sample|cohort|eligib";
+
+    private final Set<String> sectionTypes = new HashSet<>();
+    private final List<Pattern> titlePatterns = new ArrayList<>();
+    private final LongAdder keptCharacters = new LongAdder();
+    private final LongAdder skippedCharacters = new LongAdder();
+
+    /**
+     * Creates a filter
+     * @param sectionTypes the accepted sec-type values, compared ignoring case
+     * @param titlePatterns regular expressions found in the accepted titles, compared ignoring case
+     */
+    public PMCSectionFilter(Collection<String> sectionTypes, Collection<String> titlePatterns) {
+        for (String sectionType : sectionTypes) {
+            this.sectionTypes.add(sectionType.toLowerCase(Locale.ROOT));
+        }
+        for (String titlePattern : titlePatterns) {
+            this.titlePatterns.add(Pattern.compile(titlePattern, Pattern.CASE_INSENSITIVE));
+        }
+    }
+
+    /**
+     * Creates a filter keeping the sections where demographic sentences are
+     * found: methods, participants and results.
+     * @return the filter
+     */
+    public static PMCSectionFilter demographics() {
+        return new PMCSectionFilter(DEMOGRAPHIC_SECTION_TYPES, Arrays.asList(DEMOGRAPHIC_TITLE_PATTERN));
+    }
+
+    /**
+     * Tells whether a section is kept by its sec-type attribute
+     * @param sectionType the sec-type attribute, possibly several values separated by "|", or null
+     * @return true if one of the values is accepted
+     */
+    public boolean acceptsSectionType(String sectionType) {
+        if (sectionType == null) {
+            return false;
+        }
+        for (String value : sectionType.split("\\|")) {
+            if (sectionTypes.contains(value.trim().toLowerCase(Locale.ROOT))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Tells whether a section is kept by its title
+     * @param title the text of the first title of the section
+     * @return true if one of the title patterns is found in the title
+     */
+    public boolean acceptsTitle(String title) {
+        for (Pattern titlePattern : titlePatterns) {
+            if (titlePattern.matcher(title).find()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    void count(long kept, long skipped) {
+        keptCharacters.add(kept);
+        skippedCharacters.add(skipped);
+    }
+
+    /**
+     * @return the number of full text characters read from kept sections so far
+     */
+    public long getKeptCharacters() {
+        return keptCharacters.sum();
+    }
+
+    /**
+     * @return the number of full text characters in skipped sections so far
+     */
+    public long getSkippedCharacters() {
+        return skippedCharacters.sum();
+    }
+
+    /**
+     * @return the fraction of the full text characters that were skipped so far
+     */
+    public double getSkippedFraction() {
+        long skipped = getSkippedCharacters();
+        long total = skipped + getKeptCharacters();
+        return total == 0 ? 0 : (double) skipped / total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("section filter: %.1f%% of the full text skipped (%d of %d characters)",
+                100 * getSkippedFraction(), getSkippedCharacters(), getSkippedCharacters() + getKeptCharacters());
+    }
+}
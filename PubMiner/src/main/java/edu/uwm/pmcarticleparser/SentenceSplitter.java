@@ -0,0 +1,233 @@
+package edu.uwm.pmcarticleparser;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Splits paragraph text into sentences, with the conventions of biomedical
+ * articles in mind.
+ *
+ * A sentence ends at ".", "!" or "?", possibly repeated and followed by
+ * closing quotes or brackets, when whitespace and the start of a sentence
+ * (an upper case letter or a digit, possibly after opening quotes or
+ * brackets) follow. A period does not end a sentence after a known
+ * abbreviation ("vs.", "et al.", "approx.", "Fig.", "e.g."...) or an
+ * initialism such as "U.S.". Words that also end sentences are only taken
+ * as abbreviations where they are unambiguous: "no.", "ca." and month
+ * names before a number ("No. 5", "Jan. 2010"), and "St." capitalized. A
+ * period inside a number, as in
+ * "54.9 (SD=8.1)", is never followed by whitespace. Citation numbers glued to
+ * the period ("reported.1,2 The") stay with the sentence they cite from.
+ *
+ * The splitter works on the characters of a paragraph in place and returns
+ * the offsets of the sentences, trimmed of whitespace. It replaces
+ * generalutils.SentenceTokenizer, whose rules match these for the common
+ * cases, and like it collapses whitespace runs in {@link #sentenceText}. It
+ * has no state and is thread-safe.
+ */
+public final class SentenceSplitter {
+    private static final Set<String> ABBREVIATIONS = new HashSet<>(Arrays.asList("vs", "al", "approx", "e.g",
+            "i.e", "cf", "viz", "resp", "esp", "incl", "fig", "figs", "eq", "eqs", "ref", "refs", "vol", "vols", "pp",
+            "dr", "mr", "mrs", "ms", "prof"));
+    // Abbreviations only before a number: "the answer was no." or "500 mg of Ca." end sentences.
+    private static final Set<String> NUMBER_ABBREVIATIONS = new HashSet<>(Arrays.asList("no", "nos", "ca", "jan",
+            "feb", "mar", "apr", "jun", "jul", "aug", "sep", "sept", "oct", "nov", "dec"));
+    // Abbreviations only as capitalized: "St. Louis".
+    private static final Set<String> CAPITALIZED_ABBREVIATIONS = new HashSet<>(Arrays.asList("St"));
+    private static final int MAX_ABBREVIATION_LENGTH = 6;
+    private static final int[] NO_SENTENCES = new int[0];
+
+    private SentenceSplitter() {
+    }
+
+    /**
+     * Splits the given text into sentences
+     * @param text the text
+     * @return start, end pairs of offsets in the text, one pair per sentence
+     */
+    public static int[] split(String text) {
+        return split(text.toCharArray(), 0, text.length());
+    }
+
+    /**
+     * Splits a range of characters into sentences
+     * @param text the characters
+     * @param start the offset of the first character of the range
+     * @param end the offset after the last character of the range
+     * @return start, end pairs of offsets in the characters, one pair per
+     * sentence, without leading or trailing whitespace
+     */
+    public static int[] split(char[] text, int start, int end) {
+        int[] bounds = NO_SENTENCES;
+        int count = 0;
+        int sentenceStart = skipWhitespace(text, start, end);
+        int i = sentenceStart;
+        while (i < end) {
+            char c = text[i];
+            if (!isTerminator(c)) {
+                ++i;
+                continue;
+            }
+            int j = i + 1;
+            while (j < end && isTerminator(text[j])) {
+                ++j;
+            }
+            while (j < end && isClosing(text[j])) {
+                ++j;
+            }
+            int boundary = j;
+            if (c == '.' && j < end && isDigit(text[j]) && i > sentenceStart && !isDigit(text[i - 1])) {
+                boundary = skipCitation(text, j, end);
+            }
+            if (boundary < end && isWhitespace(text[boundary])) {
+                int next = skipWhitespace(text, boundary, end);
+                if (next < end && startsSentence(text, next, end)
+                        && !(c == '.' && isAbbreviation(text, sentenceStart, i, next))) {
+                    if (count * 2 == bounds.length) {
+                        bounds = Arrays.copyOf(bounds, Math.max(8, bounds.length * 2));
+                    }
+                    bounds[2 * count] = sentenceStart;
+                    bounds[2 * count + 1] = boundary;
+                    ++count;
+                    sentenceStart = next;
+                }
+                i = next;
+            } else {
+                i = j;
+            }
+        }
+        int sentenceEnd = end;
+        while (sentenceEnd > sentenceStart && isWhitespace(text[sentenceEnd - 1])) {
+            --sentenceEnd;
+        }
+        if (sentenceEnd > sentenceStart) {
+            bounds = Arrays.copyOf(bounds, 2 * count + 2);
+            bounds[2 * count] = sentenceStart;
+            bounds[2 * count + 1] = sentenceEnd;
+        } else {
+            bounds = Arrays.copyOf(bounds, 2 * count);
+        }
+        return bounds;
+    }
+
+    /**
+     * Gets the text of a sentence, with whitespace runs collapsed to a single
+     * space
+     * @param text the characters the sentence was found in
+     * @param start the offset of the sentence
+     * @param end the offset after the sentence
+     * @return the sentence text
+     */
+    public static String sentenceText(char[] text, int start, int end) {
+        int i = start;
+        while (i < end && !(isWhitespace(text[i]) && (text[i] != ' ' || i + 1 < end && isWhitespace(text[i + 1])))) {
+            ++i;
+        }
+        if (i == end) {
+            // Nothing to collapse.
+            return new String(text, start, end - start);
+        }
+        StringBuilder sentence = new StringBuilder(end - start);
+        sentence.append(text, start, i - start);
+        boolean inWhitespace = false;
+        for (; i < end; ++i) {
+            char c = text[i];
+            if (isWhitespace(c)) {
+                if (!inWhitespace) {
+                    sentence.append(' ');
+                }
+                inWhitespace = true;
+            } else {
+                sentence.append(c);
+                inWhitespace = false;
+            }
+        }
+        return sentence.toString();
+    }
+
+    /**
+     * Tells whether the word before a period is an abbreviation that does
+     * not end a sentence
+     * @param next the offset of the word after the period
+     */
+    private static boolean isAbbreviation(char[] text, int sentenceStart, int period, int next) {
+        int wordStart = period;
+        while (wordStart > sentenceStart && !isWhitespace(text[wordStart - 1]) && !isOpening(text[wordStart - 1])) {
+            --wordStart;
+        }
+        int length = period - wordStart;
+        if (length == 0) {
+            return false;
+        }
+        if (length <= MAX_ABBREVIATION_LENGTH) {
+            String word = new String(text, wordStart, length);
+            if (CAPITALIZED_ABBREVIATIONS.contains(word)) {
+                return true;
+            }
+            word = word.toLowerCase(Locale.ROOT);
+            if (ABBREVIATIONS.contains(word) || NUMBER_ABBREVIATIONS.contains(word) && isDigit(text[next])) {
+                return true;
+            }
+        }
+        // Initialisms such as "U.S." or "p.m.": single letters separated by periods.
+        if (length < 3) {
+            return false;
+        }
+        for (int k = wordStart; k < period; ++k) {
+            boolean letter = (k - wordStart) % 2 == 0;
+            if (letter ? !Character.isLetter(text[k]) : text[k] != '.') {
+                return false;
+            }
+        }
+        return (length - 1) % 2 == 0;
+    }
+
+    private static boolean startsSentence(char[] text, int i, int end) {
+        while (i < end && isOpening(text[i])) {
+            ++i;
+        }
+        return i < end && (Character.isUpperCase(text[i]) || isDigit(text[i]));
+    }
+
+    /**
+     * Skips citation numbers such as "1,2" or "3-5" written right after a
+     * period
+     * @return the offset after the numbers
+     */
+    private static int skipCitation(char[] text, int i, int end) {
+        while (i < end && (isDigit(text[i]) || text[i] == ',' || text[i] == '-' || text[i] == '\u2013')) {
+            ++i;
+        }
+        return i;
+    }
+
+    private static int skipWhitespace(char[] text, int i, int end) {
+        while (i < end && isWhitespace(text[i])) {
+            ++i;
+        }
+        return i;
+    }
+
+    private static boolean isTerminator(char c) {
+        return c == '.' || c == '!' || c == '?';
+    }
+
+    private static boolean isClosing(char c) {
+        return c == '"' || c == '\'' || c == ')' || c == ']' || c == '\u201d' || c == '\u2019';
+    }
+
+    private static boolean isOpening(char c) {
+        return c == '"' || c == '\'' || c == '(' || c == '[' || c == '\u201c' || c == '\u2018';
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    // The whitespace the old splitter collapsed; other spaces, like no-break spaces, are kept as they are.
+    static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f';
+    }
+}
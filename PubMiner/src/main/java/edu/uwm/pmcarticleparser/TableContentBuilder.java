@@ -0,0 +1,120 @@
+package edu.uwm.pmcarticleparser;
+
+import edu.uwm.pmcarticleparser.structuralelements.PMCArticleTableContent;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Lays out the cells of a table row by row, the way HTML tables are laid
+ * out: a cell goes in the first slot of its row that is not covered by a
+ * row span from above, and covers the slots of its own row and column spans.
+ */
+final class TableContentBuilder {
+    // Spans larger than this are clipped, so a malformed attribute cannot blow up the grid.
+    private static final int MAX_SPAN = 1000;
+
+    private final List<String[]> rows = new ArrayList<>();
+    private final List<BitSet> spannedRows = new ArrayList<>();
+    private int headerRowCount;
+    private int columnCount;
+    private int row = -1;
+    private int column;
+
+    /**
+     * Starts a new row
+     * @param header whether the row belongs to the table header
+     */
+    void startRow(boolean header) {
+        ++row;
+        column = 0;
+        slots(row);
+        if (header && headerRowCount == row) {
+            headerRowCount = row + 1;
+        }
+    }
+
+    /**
+     * Adds a cell to the current row
+     * @param text the text of the cell
+     * @param rowSpan the value of the rowspan attribute, or null
+     * @param columnSpan the value of the colspan attribute, or null
+     */
+    void addCell(String text, String rowSpan, String columnSpan) {
+        if (row < 0) {
+            startRow(false);
+        }
+        String[] cells = slots(row);
+        while (column < cells.length && cells[column] != null) {
+            ++column;
+        }
+        int height = span(rowSpan);
+        int width = span(columnSpan);
+        for (int r = row; r < row + height; ++r) {
+            for (int c = column; c < column + width; ++c) {
+                String[] target = slots(r);
+                if (c >= target.length) {
+                    target = Arrays.copyOf(target, Math.max(c + 1, target.length * 2));
+                    rows.set(r, target);
+                }
+                if (target[c] == null) {
+                    target[c] = text;
+                    if (r != row || c != column) {
+                        spannedRows.get(r).set(c);
+                    }
+                }
+            }
+        }
+        column += width;
+        columnCount = Math.max(columnCount, column);
+    }
+
+    private String[] slots(int r) {
+        while (rows.size() <= r) {
+            rows.add(new String[Math.max(columnCount, 4)]);
+            spannedRows.add(new BitSet());
+        }
+        return rows.get(r);
+    }
+
+    private static int span(String value) {
+        if (value == null) {
+            return 1;
+        }
+        try {
+            int span = Integer.parseInt(value.trim());
+            // rowspan="0" spans the rest of the row group; the grid is clipped to the rows read anyway.
+            return span < 1 ? 1 : Math.min(span, MAX_SPAN);
+        } catch (NumberFormatException ex) {
+            return 1;
+        }
+    }
+
+    /**
+     * Builds the table content. Row spans reaching past the last row are
+     * clipped.
+     * @return the content, or null if the table has no cells
+     */
+    PMCArticleTableContent build() {
+        int rowCount = row + 1;
+        if (rowCount == 0 || columnCount == 0) {
+            return null;
+        }
+        String[][] columns = new String[columnCount][rowCount];
+        BitSet spanned = new BitSet();
+        for (int r = 0; r < rowCount; ++r) {
+            String[] cells = rows.get(r);
+            BitSet spannedRow = spannedRows.get(r);
+            for (int c = 0; c < columnCount; ++c) {
+                String text = c < cells.length ? cells[c] : null;
+                columns[c][r] = text == null ? "" : text;
+                if (spannedRow.get(c)) {
+                    spanned.set(c * rowCount + r);
+                }
+            }
+        }
+        return new PMCArticleTableContent(rowCount, headerRowCount, columns, spanned);
+    }
+}
@@ -0,0 +1,94 @@
+package edu.uwm.pmcarticleparser;
+
+import java.util.Arrays;
+
+/**
+ * An unsynchronized, growable character buffer whose storage is reused by the
+ * next buffer acquired on the same thread.
+ *
+ * Paragraph text is appended to one buffer as the text events go by, so no
+ * intermediate buffer is built per nesting level of inline markup, and after
+ * the first few paragraphs parsing on a thread no longer allocates buffer
+ * storage at all. A buffer must be released by the thread that acquired it.
+ */
+final class TextBuffer {
+    private static final int INITIAL_CAPACITY = 1024;
+    // Larger buffers are not kept, so an outsized paragraph does not pin memory for the life of the thread.
+    private static final int MAX_RETAINED_CAPACITY = 1 << 20;
+    private static final ThreadLocal<char[]> FREE_STORAGE = new ThreadLocal<>();
+
+    private char[] chars;
+    private int length;
+
+    private TextBuffer(char[] chars) {
+        this.chars = chars;
+    }
+
+    /**
+     * Gets an empty buffer, reusing the storage released last on this thread
+     * if there is one.
+     * @return the buffer
+     */
+    static TextBuffer acquire() {
+        char[] chars = FREE_STORAGE.get();
+        if (chars == null) {
+            chars = new char[INITIAL_CAPACITY];
+        } else {
+            FREE_STORAGE.set(null);
+        }
+        return new TextBuffer(chars);
+    }
+
+    /**
+     * Hands the storage back to this thread. The buffer cannot be used
+     * afterwards.
+     */
+    void release() {
+        if (chars != null && chars.length <= MAX_RETAINED_CAPACITY) {
+            FREE_STORAGE.set(chars);
+        }
+        chars = null;
+        length = 0;
+    }
+
+    int length() {
+        return length;
+    }
+
+    /**
+     * Gets the storage of the buffer, valid up to {@link #length()} and until
+     * the next append or release
+     * @return the characters
+     */
+    char[] chars() {
+        return chars;
+    }
+
+    char charAt(int index) {
+        return chars[index];
+    }
+
+    void append(char[] text, int start, int count) {
+        ensureCapacity(length + count);
+        System.arraycopy(text, start, chars, length, count);
+        length += count;
+    }
+
+    void append(String text) {
+        int count = text.length();
+        ensureCapacity(length + count);
+        text.getChars(0, count, chars, length);
+        length += count;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > chars.length) {
+            chars = Arrays.copyOf(chars, Math.max(capacity, chars.length * 2));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return new String(chars, 0, length);
+    }
+}
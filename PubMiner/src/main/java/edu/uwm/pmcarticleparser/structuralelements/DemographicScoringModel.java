@@ -0,0 +1,407 @@
+package edu.uwm.pmcarticleparser.structuralelements;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * The weights that decide which sentences are demographic sentences and how
+ * they rank: the anchor words, the numeric modifiers that never count, the
+ * keywords that make a numeric modifier count more, and optional multipliers
+ * by section and by position in the paragraph. A model can also weigh each
+ * numeric modifier pair, eg. by its frequency in the corpus, with
+ * {@link #withPairWeights(NummodPairWeights)}.
+ *
+ * A model is a properties file with a version; the model the sentences are
+ * scored with by default is the demographic-scoring-model.properties
+ * resource, which documents the format. Other versions can be loaded from a
+ * file to rescore stored sentence features without parsing the articles
+ * again (see edu.harvard.scoring.SentenceRescorer). Lemmas are looked up by
+ * their {@link LemmaDictionary} id. A model is immutable and thread-safe.
+ */
+public final class DemographicScoringModel {
+    private static final String DEFAULT_RESOURCE = "/demographic-scoring-model.properties";
+    private static final String KEYWORD_PREFIX = "keyword.";
+    private static final String SECTION_PREFIX = "section.";
+    private static final String POSITION_PREFIX = "position.";
+    private static final String PAIR_WEIGHTING = "pairWeighting";
+    /**
+     * The pair weighting of a model that scores pairs with no weights
+     */
+    public static final String NO_PAIR_WEIGHTING = "none";
+    // Keyword occurrences are counted in 4 bits each of a long while a sentence is scored.
+    private static final int MAX_KEYWORDS = 16;
+    private static final int MAX_KEYWORD_MAX = 15;
+
+    private static volatile DemographicScoringModel defaultModel;
+
+    private final String version;
+    private final Set<String> anchorWords;
+    private final Set<String> excludedNummods;
+    private final Map<String, Integer> keywordBases;
+    private final Map<String, Integer> keywordMaxes;
+    private final double countDivisor;
+    private final Map<String, Double> sectionWeights;
+    private final Map<Integer, Double> positionWeights;
+    private final String pairWeighting;
+    private final NummodPairWeights pairWeights;
+
+    // The lemmas above by id, sorted, and the base and max of each keyword id.
+    private final int[] anchorIds;
+    private final int[] excludedIds;
+    private final int[] keywordIds;
+    private final int[] keywordBaseById;
+    private final int[] keywordMaxById;
+
+    private DemographicScoringModel(String version, Set<String> anchorWords, Set<String> excludedNummods,
+            Map<String, Integer> keywordBases, Map<String, Integer> keywordMaxes, double countDivisor,
+            Map<String, Double> sectionWeights, Map<Integer, Double> positionWeights, String pairWeighting,
+            NummodPairWeights pairWeights) {
+        this.version = version;
+        this.anchorWords = Collections.unmodifiableSet(anchorWords);
+        this.excludedNummods = Collections.unmodifiableSet(excludedNummods);
+        this.keywordBases = Collections.unmodifiableMap(keywordBases);
+        this.keywordMaxes = Collections.unmodifiableMap(keywordMaxes);
+        this.countDivisor = countDivisor;
+        this.sectionWeights = Collections.unmodifiableMap(sectionWeights);
+        this.positionWeights = Collections.unmodifiableMap(positionWeights);
+        this.pairWeighting = pairWeighting;
+        this.pairWeights = pairWeights;
+
+        anchorIds = sortedIds(anchorWords);
+        excludedIds = sortedIds(excludedNummods);
+        keywordIds = sortedIds(keywordBases.keySet());
+        keywordBaseById = new int[keywordIds.length];
+        keywordMaxById = new int[keywordIds.length];
+        for (int i = 0; i < keywordIds.length; ++i) {
+            String keyword = LemmaDictionary.getInstance().lemma(keywordIds[i]);
+            keywordBaseById[i] = keywordBases.get(keyword);
+            keywordMaxById[i] = keywordMaxes.get(keyword);
+        }
+    }
+
+    private static int[] sortedIds(Set<String> lemmas) {
+        int[] ids = LemmaDictionary.getInstance().ids(lemmas);
+        Arrays.sort(ids);
+        return ids;
+    }
+
+    /**
+     * Gets the model the sentences are scored with, read from the
+     * demographic-scoring-model.properties resource
+     * @return the default model
+     */
+    public static DemographicScoringModel getDefault() {
+        DemographicScoringModel model = defaultModel;
+        if (model == null) {
+            try (InputStream in = DemographicScoringModel.class.getResourceAsStream(DEFAULT_RESOURCE)) {
+                if (in == null) {
+                    throw new IllegalStateException("Missing resource " + DEFAULT_RESOURCE);
+                }
+                model = load(in);
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+            defaultModel = model;
+        }
+        return model;
+    }
+
+    /**
+     * Loads a model from a file
+     * @param file a properties file in UTF-8, in the format of the default model
+     * @return the model
+     * @throws IOException if the file cannot be read
+     * @throws IllegalArgumentException if the model is not valid
+     */
+    public static DemographicScoringModel load(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            return load(in);
+        }
+    }
+
+    /**
+     * Loads a model from a stream
+     * @param in properties in UTF-8, in the format of the default model
+     * @return the model
+     * @throws IOException if the stream cannot be read
+     * @throws IllegalArgumentException if the model is not valid
+     */
+    public static DemographicScoringModel load(InputStream in) throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        return fromProperties(properties);
+    }
+
+    /**
+     * Makes a model from properties in the format of the default model
+     * @param properties the properties
+     * @return the model
+     * @throws IllegalArgumentException if the model is not valid
+     */
+    public static DemographicScoringModel fromProperties(Properties properties) {
+        String version = properties.getProperty("version");
+        if (version == null || version.trim().isEmpty()) {
+            throw new IllegalArgumentException("A scoring model needs a version");
+        }
+        Set<String> anchorWords = new HashSet<>(list(properties.getProperty("anchorWords", "")));
+        Set<String> excludedNummods = new HashSet<>(list(properties.getProperty("excludedNummods", "")));
+        double countDivisor = Double.parseDouble(properties.getProperty("countDivisor", "10"));
+        if (!(countDivisor > 0)) {
+            throw new IllegalArgumentException("countDivisor must be positive: " + countDivisor);
+        }
+        Map<String, Integer> keywordBases = new HashMap<>();
+        Map<String, Integer> keywordMaxes = new HashMap<>();
+        Map<String, Double> sectionWeights = new HashMap<>();
+        Map<Integer, Double> positionWeights = new HashMap<>();
+        for (String name : properties.stringPropertyNames()) {
+            String value = properties.getProperty(name).trim();
+            if (name.startsWith(KEYWORD_PREFIX)) {
+                List<String> baseAndMax = list(value);
+                if (baseAndMax.size() != 2) {
+                    throw new IllegalArgumentException("Expected <base>,<max> for " + name + ": " + value);
+                }
+                int max = Integer.parseInt(baseAndMax.get(1));
+                if (max < 0 || max > MAX_KEYWORD_MAX) {
+                    throw new IllegalArgumentException("The max of " + name + " must be from 0 to "
+                            + MAX_KEYWORD_MAX + ": " + max);
+                }
+                String keyword = name.substring(KEYWORD_PREFIX.length());
+                keywordBases.put(keyword, Integer.parseInt(baseAndMax.get(0)));
+                keywordMaxes.put(keyword, max);
+            } else if (name.startsWith(SECTION_PREFIX)) {
+                sectionWeights.put(name.substring(SECTION_PREFIX.length()), Double.parseDouble(value));
+            } else if (name.startsWith(POSITION_PREFIX)) {
+                positionWeights.put(Integer.parseInt(name.substring(POSITION_PREFIX.length())),
+                        Double.parseDouble(value));
+            }
+        }
+        if (keywordBases.size() > MAX_KEYWORDS) {
+            throw new IllegalArgumentException("A scoring model has at most " + MAX_KEYWORDS + " keywords");
+        }
+        String pairWeighting = properties.getProperty(PAIR_WEIGHTING, NO_PAIR_WEIGHTING).trim();
+        return new DemographicScoringModel(version.trim(), anchorWords, excludedNummods, keywordBases, keywordMaxes,
+                countDivisor, sectionWeights, positionWeights, pairWeighting, null);
+    }
+
+    private static List<String> list(String value) {
+        List<String> items = new ArrayList<>();
+        for (String item : value.split(",")) {
+            if (!item.trim().isEmpty()) {
+                items.add(item.trim());
+            }
+        }
+        return items;
+    }
+
+    /**
+     * Gets the version of the model, followed by "+" and the name of its pair
+     * weights if it has any
+     * @return the version
+     */
+    public String getVersion() {
+        return pairWeights == null ? version : version + "+" + pairWeights.getName();
+    }
+
+    public Set<String> getAnchorWords() {
+        return anchorWords;
+    }
+
+    public Set<String> getExcludedNummods() {
+        return excludedNummods;
+    }
+
+    /**
+     * Gets the base score of each keyword
+     * @return the bases by keyword lemma
+     */
+    public Map<String, Integer> getKeywordBases() {
+        return keywordBases;
+    }
+
+    /**
+     * Gets how many occurrences of each keyword score in a sentence
+     * @return the maxes by keyword lemma
+     */
+    public Map<String, Integer> getKeywordMaxes() {
+        return keywordMaxes;
+    }
+
+    public double getCountDivisor() {
+        return countDivisor;
+    }
+
+    /**
+     * Gets the multiplier of the score of the sentences of a section
+     * @param section the subsection of the sentence, else its section, else "Abstract"
+     * @return the multiplier, 1 by default
+     */
+    public double getSectionWeight(String section) {
+        Double weight = sectionWeights.get(section);
+        return weight == null ? 1 : weight;
+    }
+
+    /**
+     * Gets the multiplier of the score of the sentences at a position in
+     * their paragraph
+     * @param position the index of the sentence in its paragraph, from 1
+     * @return the multiplier, 1 by default
+     */
+    public double getPositionWeight(int position) {
+        Double weight = positionWeights.get(position);
+        return weight == null ? 1 : weight;
+    }
+
+    /**
+     * Gets the kind of pair weights the model asks for, eg. "idf" for
+     * weights from the frequency of the pairs in the corpus
+     * @return the pair weighting, {@link #NO_PAIR_WEIGHTING} by default
+     */
+    public String getPairWeighting() {
+        return pairWeighting;
+    }
+
+    /**
+     * Gets the weights the pairs of numeric modifiers are scored with
+     * @return the weights, or null if the pairs are not weighted
+     */
+    public NummodPairWeights getPairWeights() {
+        return pairWeights;
+    }
+
+    /**
+     * Makes a model that multiplies the score of each numeric modifier pair
+     * by a weight, in place of the weights of this model. Its version is the
+     * version of the model file followed by "+" and the name of the weights.
+     * @param weights the weights, or null for none
+     * @return the model with the weights
+     */
+    public DemographicScoringModel withPairWeights(NummodPairWeights weights) {
+        return new DemographicScoringModel(version, new HashSet<>(anchorWords), new HashSet<>(excludedNummods),
+                new HashMap<>(keywordBases), new HashMap<>(keywordMaxes), countDivisor, new HashMap<>(sectionWeights),
+                new HashMap<>(positionWeights), pairWeighting, weights);
+    }
+
+    /**
+     * Tells whether a lemma is an anchor word
+     * @param lemmaId the id of the lemma
+     * @return true for an anchor word
+     */
+    public boolean isAnchor(int lemmaId) {
+        return Arrays.binarySearch(anchorIds, lemmaId) >= 0;
+    }
+
+    /**
+     * Tells whether a numeric modifier never counts
+     * @param lemmaId the id of the lemma of the modifier
+     * @return true for an excluded modifier
+     */
+    public boolean isExcludedNummod(int lemmaId) {
+        return Arrays.binarySearch(excludedIds, lemmaId) >= 0;
+    }
+
+    /**
+     * Tells whether this model excludes the same numeric modifiers as
+     * another one, so that the modifiers found with either count for both
+     * @param other the other model
+     * @return true for the same excluded modifiers
+     */
+    public boolean hasExcludedNummodsOf(DemographicScoringModel other) {
+        return other == this || Arrays.equals(excludedIds, other.excludedIds);
+    }
+
+    /**
+     * Scores a sentence from its numeric modifiers and the lemmas that follow
+     * them
+     * @param numLemmaIds the lemma ids of the numeric modifiers
+     * @param nextLemmaIds the lemma id following each modifier
+     * @param from the index of the first modifier of the sentence in the arrays
+     * @param to the index after the last one
+     * @param numCounts the number of times each modifier occurs in the demographic sentences of the article
+     * @param section the subsection of the sentence, else its section, else "Abstract"
+     * @param position the index of the sentence in its paragraph, from 1
+     * @return the score; excluded modifiers are skipped
+     */
+    public double score(int[] numLemmaIds, int[] nextLemmaIds, int from, int to, LemmaCounts numCounts,
+            String section, int position) {
+        double score = 0;
+        long keywordsSeen = 0;
+        for (int i = from; i < to; ++i) {
+            if (isExcludedNummod(numLemmaIds[i])) {
+                continue;
+            }
+            double weight = pairWeights == null ? 1 : pairWeights.weight(numLemmaIds[i], nextLemmaIds[i]);
+            int keyword = Arrays.binarySearch(keywordIds, nextLemmaIds[i]);
+            if (keyword < 0) {
+                score += weight;
+                continue;
+            }
+            int seen = (int) (keywordsSeen >>> 4 * keyword & 0xF);
+            if (seen < keywordMaxById[keyword]) {
+                keywordsSeen += 1L << 4 * keyword;
+                score += weight * (1 + numCounts.get(numLemmaIds[i]) / countDivisor) * keywordBaseById[keyword];
+            }
+        }
+        return weigh(score, section, position);
+    }
+
+    /**
+     * Scores a sentence from its lemmas
+     * @param lemmaIds the lemma ids of the sentence
+     * @param nummodIndices the indices of its numeric modifiers, none of them the last token
+     * @param numCounts the number of times each modifier occurs in the demographic sentences of the article
+     * @param section the subsection of the sentence, else its section, else "Abstract"
+     * @param position the index of the sentence in its paragraph, from 1
+     * @return the same score as {@link #score(int[], int[], int, int, LemmaCounts, String, int)}
+     */
+    public double score(int[] lemmaIds, int[] nummodIndices, LemmaCounts numCounts, String section, int position) {
+        double score = 0;
+        long keywordsSeen = 0;
+        for (int index : nummodIndices) {
+            int numLemmaId = lemmaIds[index];
+            if (isExcludedNummod(numLemmaId)) {
+                continue;
+            }
+            double weight = pairWeights == null ? 1 : pairWeights.weight(numLemmaId, lemmaIds[index + 1]);
+            int keyword = Arrays.binarySearch(keywordIds, lemmaIds[index + 1]);
+            if (keyword < 0) {
+                score += weight;
+                continue;
+            }
+            int seen = (int) (keywordsSeen >>> 4 * keyword & 0xF);
+            if (seen < keywordMaxById[keyword]) {
+                keywordsSeen += 1L << 4 * keyword;
+                score += weight * (1 + numCounts.get(numLemmaId) / countDivisor) * keywordBaseById[keyword];
+            }
+        }
+        return weigh(score, section, position);
+    }
+
+    private double weigh(double score, String section, int position) {
+        if (sectionWeights.isEmpty() && positionWeights.isEmpty()) {
+            return score;
+        }
+        return score * getSectionWeight(section) * getPositionWeight(position);
+    }
+
+    @Override
+    public String toString() {
+        return "DemographicScoringModel " + getVersion();
+    }
+}
@@ -0,0 +1,113 @@
+package edu.uwm.pmcarticleparser.structuralelements;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Assigns one-byte codes to dependency labels, so that sentences store the
+ * incoming dependency label of every token as a byte[].
+ *
+ * Code 0 stands for a token without an incoming label. The basic Universal
+ * Dependencies labels get fixed codes; the other labels, such as the
+ * enhanced "nmod:of" or "conj:and", get the next free code when first seen,
+ * up to 255 codes in all. The fixed codes are the same in every process, so
+ * they may be stored, eg. by the annotation cache; the others may not. Like {@link LemmaDictionary}, one instance is
+ * shared by all sentences, lookups take no lock and it is thread-safe.
+ */
+public final class DependencyLabelDictionary {
+    /**
+     * The code of a token without an incoming dependency label
+     */
+    public static final byte NO_LABEL = 0;
+    private static final int MAX_CODES = 256;
+    private static final List<String> FIXED_LABELS = Arrays.asList("acl", "acl:relcl", "advcl", "advmod", "amod",
+            "appos", "aux", "auxpass", "case", "cc", "cc:preconj", "ccomp", "compound", "compound:prt", "conj", "cop",
+            "csubj", "csubjpass", "dep", "det", "det:predet", "discourse", "dobj", "expl", "iobj", "mark", "mwe",
+            "neg", "nmod", "nmod:npmod", "nmod:poss", "nmod:tmod", "nsubj", "nsubjpass", "nummod", "parataxis",
+            "punct", "root", "xcomp");
+    /**
+     * The number of fixed codes, {@link #NO_LABEL} included: changing the
+     * fixed labels changes the codes stored by their users
+     */
+    public static final int FIXED_CODES = 1 + FIXED_LABELS.size();
+    private static final DependencyLabelDictionary INSTANCE = new DependencyLabelDictionary();
+
+    private final ConcurrentHashMap<String, Byte> codes = new ConcurrentHashMap<>();
+    // Written under the lock before the code is published in the map, like LemmaDictionary.
+    private final AtomicReferenceArray<Optional<String>> labels = new AtomicReferenceArray<>(MAX_CODES);
+    private volatile int size;
+
+    private DependencyLabelDictionary() {
+        labels.set(NO_LABEL, Optional.empty());
+        size = 1;
+        for (String label : FIXED_LABELS) {
+            code(label);
+        }
+    }
+
+    /**
+     * Gets the dictionary shared by all sentences
+     * @return the dictionary
+     */
+    public static DependencyLabelDictionary getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Gets the code of a label, adding the label if it is new
+     * @param label the label
+     * @return the code, or -1 if all 255 codes are taken
+     */
+    public int code(String label) {
+        Byte code = codes.get(label);
+        if (code != null) {
+            return code & 0xFF;
+        }
+        synchronized (this) {
+            code = codes.get(label);
+            if (code != null) {
+                return code & 0xFF;
+            }
+            int next = size;
+            if (next == MAX_CODES) {
+                return -1;
+            }
+            labels.set(next, Optional.of(label));
+            size = next + 1;
+            codes.put(label, (byte) next);
+            return next;
+        }
+    }
+
+    /**
+     * Encodes the labels of a sentence
+     * @param labels the incoming dependency label of each token
+     * @return the code of each label, or null if a label could not get a code
+     */
+    public byte[] encode(List<Optional<String>> labels) {
+        byte[] encoded = new byte[labels.size()];
+        for (int i = 0; i < encoded.length; ++i) {
+            Optional<String> label = labels.get(i);
+            if (label.isPresent()) {
+                int code = code(label.get());
+                if (code < 0) {
+                    return null;
+                }
+                encoded[i] = (byte) code;
+            }
+        }
+        return encoded;
+    }
+
+    /**
+     * Gets the label of a code
+     * @param code a code returned by this dictionary
+     * @return the label, empty for {@link #NO_LABEL}
+     */
+    public Optional<String> label(byte code) {
+        return labels.get(code & 0xFF);
+    }
+}
@@ -0,0 +1,120 @@
+package edu.uwm.pmcarticleparser.structuralelements;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Counts lemmas by their {@link LemmaDictionary} id, in an open addressing
+ * hash table of primitive ints: the numeric modifier counts an article's
+ * sentences are scored with.
+ *
+ * Not thread-safe; an article counts its lemmas on one thread and the counts
+ * are only read afterwards.
+ */
+public final class LemmaCounts {
+    private static final int EMPTY = Integer.MIN_VALUE;
+
+    private int[] keys;
+    private int[] counts;
+    private int size;
+
+    /**
+     * Creates empty counts
+     */
+    public LemmaCounts() {
+        keys = new int[16];
+        counts = new int[16];
+        Arrays.fill(keys, EMPTY);
+    }
+
+    /**
+     * Adds one to the count of a lemma
+     * @param lemmaId the id of the lemma
+     */
+    public void increment(int lemmaId) {
+        int slot = slot(keys, lemmaId);
+        if (keys[slot] == EMPTY) {
+            if (2 * (size + 1) > keys.length) {
+                grow();
+                slot = slot(keys, lemmaId);
+            }
+            keys[slot] = lemmaId;
+            ++size;
+        }
+        ++counts[slot];
+    }
+
+    /**
+     * Gets the count of a lemma
+     * @param lemmaId the id of the lemma
+     * @return the count, 0 for a lemma never counted
+     */
+    public int get(int lemmaId) {
+        int slot = slot(keys, lemmaId);
+        return keys[slot] == EMPTY ? 0 : counts[slot];
+    }
+
+    /**
+     * Gets the number of lemmas counted
+     * @return the number of distinct lemmas
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Removes all the counts, keeping the table to count the next article
+     */
+    public void clear() {
+        if (size > 0) {
+            Arrays.fill(keys, EMPTY);
+            Arrays.fill(counts, 0);
+            size = 0;
+        }
+    }
+
+    /**
+     * Copies the counts into a map keyed by lemma, eg. to print them
+     * @return the count of each lemma
+     */
+    public Map<String, Integer> toMap() {
+        Map<String, Integer> map = new HashMap<>();
+        LemmaDictionary dictionary = LemmaDictionary.getInstance();
+        for (int i = 0; i < keys.length; ++i) {
+            if (keys[i] != EMPTY) {
+                map.put(dictionary.lemma(keys[i]), counts[i]);
+            }
+        }
+        return map;
+    }
+
+    private void grow() {
+        int[] oldKeys = keys;
+        int[] oldCounts = counts;
+        keys = new int[oldKeys.length * 2];
+        counts = new int[oldKeys.length * 2];
+        Arrays.fill(keys, EMPTY);
+        for (int i = 0; i < oldKeys.length; ++i) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = slot(keys, oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                counts[slot] = oldCounts[i];
+            }
+        }
+    }
+
+    /**
+     * Finds the slot of a key, or the empty slot where it would go, by linear
+     * probing from its mixed hash
+     */
+    private static int slot(int[] keys, int key) {
+        int mask = keys.length - 1;
+        int hash = key * 0x9E3779B9;
+        int slot = (hash ^ hash >>> 16) & mask;
+        while (keys[slot] != EMPTY && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+}
@@ -0,0 +1,119 @@
+package edu.uwm.pmcarticleparser.structuralelements;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Assigns dense int ids to lemmas, so that sentences store their lemmas as
+ * an int[] and share one copy of every lemma string.
+ *
+ * One dictionary is shared by all the sentences of the process
+ * ({@link #getInstance()}); ids are never reused or forgotten, so they are
+ * only meaningful within the process. Every distinct lemma keeps its id, so
+ * the dictionary grows with the vocabulary of the articles read, numbers
+ * included; it has no size limit, so that no lemma is ever read as missing
+ * and merged with the others. Looking up a known lemma takes no lock;
+ * adding a new one takes the dictionary lock, and is rare once the common
+ * vocabulary of the articles has been seen. It is thread-safe.
+ */
+public final class LemmaDictionary {
+    /**
+     * The id standing for a missing (null) lemma
+     */
+    public static final int NULL_ID = -1;
+
+    private static final LemmaDictionary INSTANCE = new LemmaDictionary();
+    private static final int INITIAL_CAPACITY = 1 << 12;
+
+    private final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<>(INITIAL_CAPACITY);
+    // Written under the lock before the id is published in the map, so a reader that got an id sees its lemma.
+    private volatile String[] lemmas = new String[INITIAL_CAPACITY];
+    private int size;
+
+    LemmaDictionary() {
+    }
+
+    /**
+     * Gets the dictionary shared by all sentences
+     * @return the dictionary
+     */
+    public static LemmaDictionary getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Gets the id of a lemma, adding the lemma if it is new
+     * @param lemma the lemma
+     * @return the id, from 0, or {@value #NULL_ID} for a null lemma
+     */
+    public int id(String lemma) {
+        if (lemma == null) {
+            return NULL_ID;
+        }
+        Integer id = ids.get(lemma);
+        if (id != null) {
+            return id;
+        }
+        synchronized (this) {
+            id = ids.get(lemma);
+            if (id != null) {
+                return id;
+            }
+            String[] lemmas = this.lemmas;
+            if (size == lemmas.length) {
+                lemmas = Arrays.copyOf(lemmas, lemmas.length * 2);
+            }
+            lemmas[size] = lemma;
+            this.lemmas = lemmas;
+            ids.put(lemma, size);
+            return size++;
+        }
+    }
+
+    /**
+     * Gets the id of a lemma without adding it
+     * @param lemma the lemma
+     * @return the id, or -1 if the lemma was never added (or is null)
+     */
+    public int find(String lemma) {
+        if (lemma == null) {
+            return NULL_ID;
+        }
+        Integer id = ids.get(lemma);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * Gets the ids of lemmas, adding the new ones
+     * @param lemmas the lemmas
+     * @return the id of each lemma
+     */
+    public int[] ids(Iterable<String> lemmas) {
+        int[] lemmaIds = new int[8];
+        int count = 0;
+        for (String lemma : lemmas) {
+            if (count == lemmaIds.length) {
+                lemmaIds = Arrays.copyOf(lemmaIds, count * 2);
+            }
+            lemmaIds[count++] = id(lemma);
+        }
+        return count == lemmaIds.length ? lemmaIds : Arrays.copyOf(lemmaIds, count);
+    }
+
+    /**
+     * Gets the lemma of an id
+     * @param id an id returned by this dictionary
+     * @return the lemma, null for {@value #NULL_ID}
+     */
+    public String lemma(int id) {
+        return id == NULL_ID ? null : lemmas[id];
+    }
+
+    /**
+     * Gets the number of lemmas in the dictionary
+     * @return the number of ids assigned so far
+     */
+    public int size() {
+        return ids.size();
+    }
+}
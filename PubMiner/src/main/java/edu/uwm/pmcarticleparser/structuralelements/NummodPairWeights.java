@@ -0,0 +1,25 @@
+package edu.uwm.pmcarticleparser.structuralelements;
+
+/**
+ * Weights of the pairs of a numeric modifier and the lemma that follows it,
+ * eg. from their frequency in a corpus, that a {@link DemographicScoringModel}
+ * multiplies the score of each pair by. A weight is looked up for every pair
+ * of every sentence scored, so it must take constant time; weights are
+ * thread-safe.
+ */
+public interface NummodPairWeights {
+    /**
+     * Gets the weight of a pair
+     * @param numLemmaId the lemma id of the numeric modifier
+     * @param headLemmaId the lemma id that follows it
+     * @return the weight, 1 for a neutral one
+     */
+    double weight(int numLemmaId, int headLemmaId);
+
+    /**
+     * Gets a short name of the weights, appended to the version of the models
+     * that use them
+     * @return the name
+     */
+    String getName();
+}
@@ -21,6 +21,14 @@ public class PMCArticleAbstract {
         abstractSentences = new ArrayList<>();
     }
 
+    /**
+     * Creates an abstract holding the given sentences.
+     * @param abstractSentences the sentences of the abstract
+     */
+    public PMCArticleAbstract(List<PMCArticleSentence> abstractSentences) {
+        this.abstractSentences = new ArrayList<>(abstractSentences);
+    }
+
     /**
      * Adds a sentence to the abstract sentences.
      * @param sentence the sentence to add
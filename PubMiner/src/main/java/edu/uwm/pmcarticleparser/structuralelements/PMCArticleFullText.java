@@ -18,6 +18,14 @@ public class PMCArticleFullText {
         fullTextSentences = new ArrayList<>();
     }
 
+    /**
+     * Creates an instance of PMCArticleFullText holding the given sentences
+     * @param fullTextSentences the sentences of the full text
+     */
+    public PMCArticleFullText(List<PMCArticleSentence> fullTextSentences) {
+        this.fullTextSentences = new ArrayList<>(fullTextSentences);
+    }
+
     /**
      * Adds a sentence to the list of full text sentences
      * @param sentence sentence to add
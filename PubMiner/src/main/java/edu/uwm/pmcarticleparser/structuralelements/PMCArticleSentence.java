@@ -20,47 +20,30 @@ public class PMCArticleSentence {
     private int indexInDocument;
     private String sectionName;
     private String subSectionName;
-
-    private Sentence stanfordSentence;
-    private List<Optional<String>> dependencyLabels;
-    private List<Integer> nummodIndices;
+    // Cross references as start, end pairs of offsets in the text, with their ref-type and rid attributes.
+    private int[] referenceSpans = NO_SPANS;
+    private String[] referenceTypes = NO_STRINGS;
+    private String[] referenceIds = NO_STRINGS;
+    private static final int[] NO_SPANS = new int[0];
+    private static final String[] NO_STRINGS = new String[0];
+
+    // Created on first use: sentences annotated in batches by edu.harvard.nlp.SentenceAnnotator never need it.
+    // Dropped once the lemmas and dependency labels are read from it.
+    private volatile Sentence stanfordSentence;
+    // Computed lazily and published through volatile fields, since the sentences of an article are shared.
+    // Lemmas are LemmaDictionary ids and labels DependencyLabelDictionary codes; labels that could not get a
+    // code are kept as they are in uncodedLabels instead.
+    private volatile int[] lemmaIds;
+    private volatile byte[] dependencyLabelCodes;
+    private volatile List<Optional<String>> uncodedLabels;
+    private volatile int[] nummodIndices;
     private static final String NUMMOD = "nummod";
-    private List<String> lemmas;
-
-    // "women" and "men" are included because Stanford lemmatization sometimes doesn't reduce these plural forms to their singular forms.
-    private static final Set<String> ANCHOR_WORDS = new HashSet<>(Arrays.asList("patient", "age", "aged", "male",
-            "female", "subject", "individual", "woman", "man", "women", "men", "people"));
-    private static final Set<String> EXCLUSION_NUMMOD = new HashSet<>(Arrays.asList("±", "1", "®", "one", "0"));
-
-    private static final Map<String, Integer> keywordBase = new HashMap<>();
-    static {
-        keywordBase.put("patient", 5);
-        keywordBase.put("year", 5);
-        keywordBase.put("male", 5);
-        keywordBase.put("female", 5);
-        keywordBase.put("subject", 5);
-        keywordBase.put("individual", 5);
-        keywordBase.put("woman", 5);
-        keywordBase.put("man", 5);
-        keywordBase.put("women", 5);
-        keywordBase.put("men", 5);
-        keywordBase.put("people", 5);
-    }
-
-    private static final Map<String, Integer> keywordMax = new HashMap<>();
-    static {
-        keywordMax.put("patient", 1);
-        keywordMax.put("year", 2);
-        keywordMax.put("male", 1);
-        keywordMax.put("female", 1);
-        keywordMax.put("subject", 1);
-        keywordMax.put("individual", 1);
-        keywordMax.put("woman", 1);
-        keywordMax.put("man", 1);
-        keywordMax.put("women", 1);
-        keywordMax.put("men", 1);
-        keywordMax.put("people", 1);
-    }
+
+    // The model of the methods that take none: demographic-scoring-model.properties. The nummod indices are
+    // found with its excluded numeric modifiers, and found again for a model that excludes others.
+    private static final DemographicScoringModel MODEL = DemographicScoringModel.getDefault();
+    private static final Map<String, Integer> keywordBase = MODEL.getKeywordBases();
+    private static final Map<String, Integer> keywordMax = MODEL.getKeywordMaxes();
 
     /**
      * Creates an instance of PMCArticleSentence with the given text
@@ -72,9 +55,10 @@ public class PMCArticleSentence {
         sectionName = "No Section";
         subSectionName = "No Sub-section";
 
-        stanfordSentence = new Sentence(text);
-        lemmas = null;
-        dependencyLabels = null;
+        stanfordSentence = null;
+        lemmaIds = null;
+        dependencyLabelCodes = null;
+        uncodedLabels = null;
         nummodIndices = null;
     }
 
@@ -188,28 +172,167 @@ public class PMCArticleSentence {
         this.totalSentencesInContainingParagraph = totalSentencesInContainingParagraph;
     }
 
+    /**
+     * Gets the number of cross references (citations, figures, tables...)
+     * in this sentence
+     * @return the number of cross references
+     */
+    public int getReferenceCount() {
+        return referenceTypes.length;
+    }
+
+    /**
+     * Gets the offset in the text where a cross reference starts
+     * @param index the index of the reference, from 0
+     * @return the offset of the first character of the reference
+     */
+    public int getReferenceStart(int index) {
+        return referenceSpans[2 * index];
+    }
+
+    /**
+     * Gets the offset in the text where a cross reference ends
+     * @param index the index of the reference, from 0
+     * @return the offset after the last character of the reference
+     */
+    public int getReferenceEnd(int index) {
+        return referenceSpans[2 * index + 1];
+    }
+
+    /**
+     * Gets the type of a cross reference, eg. "bibr", "fig" or "table"
+     * @param index the index of the reference, from 0
+     * @return the ref-type attribute of the reference
+     */
+    public String getReferenceType(int index) {
+        return referenceTypes[index];
+    }
+
+    /**
+     * Gets the id of the element a cross reference points to, eg. "B1"
+     * @param index the index of the reference, from 0
+     * @return the rid attribute of the reference
+     */
+    public String getReferenceId(int index) {
+        return referenceIds[index];
+    }
+
+    /**
+     * Sets the cross references of this sentence
+     * @param spans start, end pairs of offsets in the text, one pair per reference
+     * @param types the ref-type of each reference
+     * @param ids the rid of each reference
+     */
+    public void setReferences(int[] spans, String[] types, String[] ids) {
+        if (spans.length != 2 * types.length || ids.length != types.length) {
+            throw new IllegalArgumentException("Expected one span, type and id per reference");
+        }
+        this.referenceSpans = spans;
+        this.referenceTypes = types;
+        this.referenceIds = ids;
+    }
+
     public Sentence getStanfordSentence() {
-        return stanfordSentence;
+        Sentence sentence = stanfordSentence;
+        if (sentence == null) {
+            sentence = new Sentence(text);
+            stanfordSentence = sentence;
+        }
+        return sentence;
     }
 
     public List<String> getLemmas() {
-        if (lemmas==null) {
-            lemmas = stanfordSentence.lemmas();
+        return new LemmaList(getLemmaIds());
+    }
+
+    /**
+     * Gets the lemmas as {@link LemmaDictionary} ids, annotating the sentence
+     * if needed
+     * @return one id per token; not to be modified
+     */
+    public int[] getLemmaIds() {
+        int[] ids = lemmaIds;
+        if (ids == null) {
+            ids = LemmaDictionary.getInstance().ids(getStanfordSentence().lemmas());
+            lemmaIds = ids;
+            releaseStanfordSentence();
         }
+        return ids;
+    }
+
+    /**
+     * Tells whether the lemmas are already known, so that getLemmas() does
+     * not need to annotate the sentence
+     * @return true if the lemmas were computed or set
+     */
+    public boolean hasLemmas() {
+        return lemmaIds != null;
+    }
+
+    /**
+     * Sets the lemmas computed outside of this sentence, eg. in a batch
+     * @param lemmas one lemma per token, as Sentence.lemmas() would return them, or null to compute them again
+     */
+    public void setLemmas(List<String> lemmas) {
+        lemmaIds = lemmas == null ? null : LemmaDictionary.getInstance().ids(lemmas);
+    }
+
+    /**
+     * Tells whether the dependency labels are already known, so that
+     * getNummodCount() does not need to parse the sentence
+     * @return true if the dependency labels were computed or set
+     */
+    public boolean hasDependencyLabels() {
+        return dependencyLabelCodes != null || uncodedLabels != null;
+    }
+
+    /**
+     * Sets the dependency labels computed outside of this sentence, eg. in a
+     * batch, and finds the nummod indices from them. The lemmas must be set
+     * first.
+     * @param labels the incoming dependency label of each token, as Sentence.incomingDependencyLabels() would return them
+     */
+    public void setDependencyLabels(List<Optional<String>> labels) {
+        nummodIndices = findNummodIndices(labels, MODEL);
+        publishDependencyLabels(labels);
+    }
 
-        return lemmas;
+    /**
+     * Sets dependency labels and nummod indices that were computed together
+     * before, eg. read back from a cache
+     * @param labels the incoming dependency label of each token
+     * @param nummodIndices the indices getNummodIndices() returned for these labels
+     */
+    public void setDependencyLabels(List<Optional<String>> labels, List<Integer> nummodIndices) {
+        int[] indices = new int[nummodIndices.size()];
+        for (int i = 0; i < indices.length; ++i) {
+            indices[i] = nummodIndices.get(i);
+        }
+        this.nummodIndices = indices;
+        publishDependencyLabels(labels);
     }
 
     public List<Optional<String>> getDependencyLabels() {
         populateDependencyFields();
 
-        return dependencyLabels;
+        List<Optional<String>> labels = uncodedLabels;
+        return labels != null ? labels : new LabelList(dependencyLabelCodes);
     }
 
     public int getNummodCount() {
         populateDependencyFields();
 
-        return nummodIndices.size();
+        return nummodIndices.length;
+    }
+
+    /**
+     * Gets the number of numeric modifiers that count towards the demographic
+     * score under a scoring model, parsing the sentence if needed
+     * @param model the scoring model, which decides the excluded modifiers
+     * @return the number of numeric modifiers
+     */
+    public int getNummodCount(DemographicScoringModel model) {
+        return getNummodIndexArray(model).length;
     }
 
     @Deprecated
@@ -242,20 +365,34 @@ public class PMCArticleSentence {
     }
 
     public Double getDemographicScoreBasedOnNumCounts(Map<String, Integer> numCounts) {
+        return getDemographicScore(numCounts);
+    }
+
+    /**
+     * Gets the demographic score of this sentence without boxing it; rank
+     * sentences on scores computed once each, as
+     * edu.harvard.nlp.DemographicRanker does, rather than in a comparator
+     * @param numCounts the number of times each numeric modifier lemma occurs in the article
+     * @return the score
+     */
+    public double getDemographicScore(Map<String, Integer> numCounts) {
         double score = 0;
 
-        Map<String, Integer> keywordCurrentMax = new HashMap<>();
+        Map<String, Integer> keywordCurrentMax = null;
 
         for (int index : getNummodIndices()) {
             String numLemma = getLemmas().get(index);
             Integer count = numCounts.get(numLemma);
-            double multiplier = 1 + count/10.0;
+            double multiplier = 1 + count/MODEL.getCountDivisor();
 
             String baseLemma = getLemmas().get(index + 1);
             Integer base = keywordBase.get(baseLemma);
             if (base==null) {
                 score++;
             } else {
+                if (keywordCurrentMax == null) {
+                    keywordCurrentMax = new HashMap<>();
+                }
                 Integer currentMax = keywordCurrentMax.get(baseLemma);
                 if (currentMax==null) {
                     keywordCurrentMax.put(baseLemma, 1);
@@ -273,34 +410,176 @@ public class PMCArticleSentence {
         return score;
     }
 
+    /**
+     * Gets the demographic score of this sentence from counts by lemma id;
+     * the same score as {@link #getDemographicScore(Map)}, computed on the
+     * encoded lemmas without allocating
+     * @param numCounts the number of times each numeric modifier lemma occurs in the article
+     * @return the score
+     */
+    public double getDemographicScore(LemmaCounts numCounts) {
+        return getDemographicScore(numCounts, MODEL);
+    }
+
+    /**
+     * Gets the demographic score of this sentence under another scoring
+     * model, eg. the default one with corpus pair weights
+     * @param numCounts the number of times each numeric modifier lemma occurs in the article
+     * @param model the scoring model
+     * @return the score
+     */
+    public double getDemographicScore(LemmaCounts numCounts, DemographicScoringModel model) {
+        return model.score(getLemmaIds(), getNummodIndexArray(model), numCounts, getScoringSectionName(),
+                inParagraphIndex + 1);
+    }
+
+    /**
+     * Gets the section a scoring model weighs this sentence by: the
+     * subsection, else the section, else "Abstract", as the sentences are
+     * stored
+     * @return the section name
+     */
+    public String getScoringSectionName() {
+        if (subSectionName != null && !subSectionName.isEmpty()) {
+            return subSectionName;
+        } else if (sectionName != null && !sectionName.isEmpty()) {
+            return sectionName;
+        }
+        return "Abstract";
+    }
+
     public List<Integer> getNummodIndices() {
+        int[] indices = getNummodIndexArray();
+        List<Integer> list = new ArrayList<>(indices.length);
+        for (int index : indices) {
+            list.add(index);
+        }
+        return list;
+    }
+
+    /**
+     * Gets the token indices of the numeric modifiers that count towards the
+     * demographic score, parsing the sentence if needed
+     * @return the indices, in order; not to be modified
+     */
+    public int[] getNummodIndexArray() {
         populateDependencyFields();
 
         return nummodIndices;
     }
 
+    /**
+     * Gets the token indices of the numeric modifiers that count towards the
+     * demographic score under a scoring model, parsing the sentence if needed
+     * @param model the scoring model, which decides the excluded modifiers
+     * @return the indices, in order; not to be modified
+     */
+    public int[] getNummodIndexArray(DemographicScoringModel model) {
+        int[] indices = getNummodIndexArray();
+        return model.hasExcludedNummodsOf(MODEL) ? indices : findNummodIndices(getDependencyLabels(), model);
+    }
+
     private void populateDependencyFields() {
-        if (dependencyLabels == null || nummodIndices == null) {
-            dependencyLabels = stanfordSentence.incomingDependencyLabels();
-            nummodIndices = new ArrayList<>();
-            for (int index = 0; index < dependencyLabels.size(); index++) {
-                Optional<String> labelOptional = dependencyLabels.get(index);
-                if (labelOptional.isPresent() && labelOptional.get().equals(NUMMOD) && !EXCLUSION_NUMMOD.contains
-                        (getLemmas
-                        ().get(index)) && index < (getLemmas().size() - 1)) {
-                    nummodIndices.add(index);
-                }
+        if (!hasDependencyLabels() || nummodIndices == null) {
+            List<Optional<String>> labels = getStanfordSentence().incomingDependencyLabels();
+            nummodIndices = findNummodIndices(labels, MODEL);
+            publishDependencyLabels(labels);
+            releaseStanfordSentence();
+        }
+    }
+
+    // Labels are published last, so a reader that sees them also sees the indices.
+    private void publishDependencyLabels(List<Optional<String>> labels) {
+        byte[] codes = DependencyLabelDictionary.getInstance().encode(labels);
+        if (codes != null) {
+            uncodedLabels = null;
+            dependencyLabelCodes = codes;
+        } else {
+            dependencyLabelCodes = null;
+            uncodedLabels = labels;
+        }
+    }
+
+    // The lemmas and labels were read: the annotations of the Simple API sentence are no longer needed.
+    private void releaseStanfordSentence() {
+        if (lemmaIds != null && hasDependencyLabels()) {
+            stanfordSentence = null;
+        }
+    }
+
+    private int[] findNummodIndices(List<Optional<String>> labels, DemographicScoringModel model) {
+        int[] ids = getLemmaIds();
+        int[] indices = new int[labels.size()];
+        int count = 0;
+        for (int index = 0; index < labels.size(); index++) {
+            Optional<String> labelOptional = labels.get(index);
+            if (index < (ids.length - 1) && labelOptional.isPresent() && labelOptional.get().equals(NUMMOD)
+                    && !model.isExcludedNummod(ids[index])) {
+                indices[count++] = index;
             }
         }
+        return Arrays.copyOf(indices, count);
     }
 
     public boolean hasAnchorWords() {
-        for (String lemma : getLemmas()) {
-            if (ANCHOR_WORDS.contains(lemma)) {
+        return hasAnchorWords(MODEL);
+    }
+
+    /**
+     * Tells whether one of the lemmas of this sentence is an anchor word of a
+     * scoring model, lemmatizing the sentence if needed
+     * @param model the scoring model
+     * @return true if the sentence has an anchor word
+     */
+    public boolean hasAnchorWords(DemographicScoringModel model) {
+        for (int id : getLemmaIds()) {
+            if (model.isAnchor(id)) {
                 return true;
             }
         }
 
         return false;
     }
+
+    /**
+     * The lemmas of a sentence, read from their ids
+     */
+    private static final class LemmaList extends AbstractList<String> implements RandomAccess {
+        private final int[] ids;
+
+        LemmaList(int[] ids) {
+            this.ids = ids;
+        }
+
+        @Override
+        public String get(int index) {
+            return LemmaDictionary.getInstance().lemma(ids[index]);
+        }
+
+        @Override
+        public int size() {
+            return ids.length;
+        }
+    }
+
+    /**
+     * The dependency labels of a sentence, read from their codes
+     */
+    private static final class LabelList extends AbstractList<Optional<String>> implements RandomAccess {
+        private final byte[] codes;
+
+        LabelList(byte[] codes) {
+            this.codes = codes;
+        }
+
+        @Override
+        public Optional<String> get(int index) {
+            return DependencyLabelDictionary.getInstance().label(codes[index]);
+        }
+
+        @Override
+        public int size() {
+            return codes.length;
+        }
+    }
 }
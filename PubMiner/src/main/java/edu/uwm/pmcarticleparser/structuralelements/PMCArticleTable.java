@@ -8,6 +8,7 @@ public class PMCArticleTable {
     private String id;
     private String label;
     private String caption;
+    private PMCArticleTableContent content;
 
     /**
      * Creates an instances of PMCArticleTable
@@ -21,6 +22,18 @@ public class PMCArticleTable {
         this.caption = caption;
     }
 
+    /**
+     * Creates an instances of PMCArticleTable with its cells
+     * @param id id of the table
+     * @param label label used in the article for this table, eg. "Table 1"
+     * @param caption the caption or legend of the table
+     * @param content the header and body cells, or null if they were not read
+     */
+    public PMCArticleTable(String id, String label, String caption, PMCArticleTableContent content) {
+        this(id, label, caption);
+        this.content = content;
+    }
+
     /**
      * Creates an empty instance of PMCArticleTable
      */
@@ -77,4 +90,21 @@ public class PMCArticleTable {
     public void setLabel(String label) {
         this.label = label;
     }
+
+    /**
+     * Gets the header and body cells of the table. They are only read when
+     * asked for, see {@code PMCArticleStreamParser.parse(InputStream, boolean)}.
+     * @return the cells of the table, or null if they were not read
+     */
+    public PMCArticleTableContent getContent() {
+        return content;
+    }
+
+    /**
+     * Sets the header and body cells of the table
+     * @param content the cells of the table
+     */
+    public void setContent(PMCArticleTableContent content) {
+        this.content = content;
+    }
 }
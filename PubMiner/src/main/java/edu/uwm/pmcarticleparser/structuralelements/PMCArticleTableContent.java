@@ -0,0 +1,90 @@
+package edu.uwm.pmcarticleparser.structuralelements;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The header and body cells of a table, stored column by column.
+ *
+ * Cells spanning several rows or columns are expanded: every slot covered by
+ * a span holds the text of the spanning cell, so a column can be read without
+ * knowing the layout, and {@link #isSpanned(int, int)} tells the copies apart
+ * from the original cell. Missing cells of short rows are empty strings.
+ * Instances are immutable.
+ */
+public class PMCArticleTableContent {
+    private final int rowCount;
+    private final int headerRowCount;
+    private final String[][] columns;
+    // Slots covered by a span, indexed by column * rowCount + row.
+    private final BitSet spanned;
+
+    /**
+     * Creates the content of a table
+     * @param rowCount the number of rows, header rows included
+     * @param headerRowCount the number of leading rows that are header rows
+     * @param columns the cells, columns[column][row]
+     * @param spanned the slots covered by a span, indexed by column * rowCount + row
+     */
+    public PMCArticleTableContent(int rowCount, int headerRowCount, String[][] columns, BitSet spanned) {
+        this.rowCount = rowCount;
+        this.headerRowCount = headerRowCount;
+        this.columns = columns;
+        this.spanned = spanned;
+    }
+
+    /**
+     * Gets the number of rows, header rows included
+     * @return the number of rows
+     */
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Gets the number of header rows, which are the first rows of the table
+     * @return the number of header rows
+     */
+    public int getHeaderRowCount() {
+        return headerRowCount;
+    }
+
+    /**
+     * Gets the number of columns
+     * @return the number of columns
+     */
+    public int getColumnCount() {
+        return columns.length;
+    }
+
+    /**
+     * Gets the text of a cell
+     * @param row the row, from 0
+     * @param column the column, from 0
+     * @return the text of the cell, or of the cell spanning over it
+     */
+    public String getCell(int row, int column) {
+        return columns[column][row];
+    }
+
+    /**
+     * Gets the cells of a column, header rows first
+     * @param column the column, from 0
+     * @return the texts of the cells in the column
+     */
+    public List<String> getColumn(int column) {
+        return Collections.unmodifiableList(Arrays.asList(columns[column]));
+    }
+
+    /**
+     * Tells whether a slot is covered by the row or column span of another cell
+     * @param row the row, from 0
+     * @param column the column, from 0
+     * @return true if the text of the slot is copied from a spanning cell
+     */
+    public boolean isSpanned(int row, int column) {
+        return spanned.get(column * rowCount + row);
+    }
+}
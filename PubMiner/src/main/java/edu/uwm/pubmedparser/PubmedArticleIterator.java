@@ -0,0 +1,196 @@
+package edu.uwm.pubmedparser;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Reads pubmed articles one MedlineCitation at a time with a pull parser.
+ *
+ * Only the citation being read is held in memory, so a whole baseline file
+ * can be processed with constant memory, and iteration can stop at any point.
+ * The fields are filled with the same rules as {@link PubmedParser}. An
+ * iterator is not thread-safe, but iterators are independent of each other.
+ */
+public class PubmedArticleIterator implements Iterator<PubmedArticle>, Closeable {
+    public static final String ARTICLE_NODE = "MedlineCitation";
+
+    // XMLInputFactory is not guaranteed to be thread-safe, so every thread gets its own.
+    private static final ThreadLocal<XMLInputFactory> INPUT_FACTORY = ThreadLocal.withInitial(() -> {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, false);
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_REPLACING_ENTITY_REFERENCES, false);
+        return factory;
+    });
+
+    private final InputStream inputStream;
+    private final XMLStreamReader reader;
+    private final StringBuilder text = new StringBuilder();
+    private PubmedArticle nextArticle;
+    private boolean finished;
+    private XMLStreamException error;
+
+    /**
+     * Creates an iterator over the articles in the given xml input stream.
+     * The stream is closed by {@link #close()}.
+     * @param inputStream
+     * @throws XMLStreamException if the xml cannot be read
+     */
+    public PubmedArticleIterator(InputStream inputStream) throws XMLStreamException {
+        this.inputStream = inputStream;
+        this.reader = INPUT_FACTORY.get().createXMLStreamReader(inputStream);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (nextArticle == null && !finished) {
+            try {
+                nextArticle = readNextArticle();
+            } catch (XMLStreamException ex) {
+                Logger.getLogger(PubmedArticleIterator.class.getName()).log(Level.SEVERE, null, ex);
+                error = ex;
+            }
+            finished = nextArticle == null;
+        }
+        return nextArticle != null;
+    }
+
+    @Override
+    public PubmedArticle next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        PubmedArticle article = nextArticle;
+        nextArticle = null;
+        return article;
+    }
+
+    /**
+     * Gets the error that stopped the iteration before the end of the input
+     * @return the error, or null if the input was read without errors
+     */
+    public XMLStreamException getError() {
+        return error;
+    }
+
+    /**
+     * Closes the parser and the underlying input stream
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        finished = true;
+        try {
+            reader.close();
+        } catch (XMLStreamException ex) {
+            Logger.getLogger(PubmedArticleIterator.class.getName()).log(Level.WARNING, null, ex);
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    /**
+     * Skips to the next MedlineCitation and reads it
+     * @return the article or null at the end of the input
+     * @throws XMLStreamException
+     */
+    private PubmedArticle readNextArticle() throws XMLStreamException {
+        while (reader.hasNext()) {
+            if (reader.next() == XMLStreamConstants.START_ELEMENT && ARTICLE_NODE.equals(reader.getLocalName())) {
+                return readArticle();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Reads the citation the parser is positioned at, in the same way
+     * PubmedParser.processNode reads a citation node
+     * @return the article
+     * @throws XMLStreamException
+     */
+    private PubmedArticle readArticle() throws XMLStreamException {
+        PubmedArticle pubmedArticle = new PubmedArticle();
+        int depth = 0;
+        int pubDateDepth = -1;
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                ++depth;
+                String name = reader.getLocalName();
+                if (PubmedParser.PMID_NODE.equalsIgnoreCase(name) && depth == 1) {
+                    pubmedArticle.setPmid(readTextContent());
+                    --depth;
+                } else if (PubmedParser.TITLE_NODE.equalsIgnoreCase(name)) {
+                    pubmedArticle.setTitle(readTextContent());
+                    --depth;
+                } else if (PubmedParser.ABSTRACT_NODE.equalsIgnoreCase(name)) {
+                    pubmedArticle.setAbstractText(readTextContent());
+                    --depth;
+                } else if (PubmedParser.PUBLICATION_DATE_NODE.equalsIgnoreCase(name)) {
+                    pubDateDepth = depth;
+                } else if (pubDateDepth >= 0 && PubmedParser.YEAR_NODE.equalsIgnoreCase(name)) {
+                    pubmedArticle.setYear(readTextContent());
+                    --depth;
+                } else if (pubDateDepth >= 0 && PubmedParser.MONTH_NODE.equalsIgnoreCase(name)) {
+                    pubmedArticle.setMonth(readTextContent());
+                    --depth;
+                } else if (pubDateDepth >= 0 && PubmedParser.DAY_NODE.equalsIgnoreCase(name)) {
+                    pubmedArticle.setDay(readTextContent());
+                    --depth;
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                if (depth == 0) {
+                    return pubmedArticle;
+                }
+                if (depth == pubDateDepth) {
+                    pubDateDepth = -1;
+                }
+                --depth;
+            }
+        }
+        return pubmedArticle;
+    }
+
+    /**
+     * Reads the text content of the element the parser is positioned at,
+     * leaving the parser at its end tag
+     * @return the concatenated text of the element and its descendants
+     * @throws XMLStreamException
+     */
+    private String readTextContent() throws XMLStreamException {
+        text.setLength(0);
+        int depth = 0;
+        while (reader.hasNext()) {
+            switch (reader.next()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    ++depth;
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    if (depth == 0) {
+                        return text.toString();
+                    }
+                    --depth;
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                case XMLStreamConstants.SPACE:
+                    text.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+                    break;
+                default:
+                    break;
+            }
+        }
+        return text.toString();
+    }
+}
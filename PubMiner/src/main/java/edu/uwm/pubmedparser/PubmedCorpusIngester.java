@@ -0,0 +1,214 @@
+package edu.uwm.pubmedparser;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import javax.xml.stream.XMLStreamException;
+
+/**
+ * Processes a directory of pubmed baseline and update files in parallel.
+ *
+ * Every file is read by a single worker of a work-stealing pool with its own
+ * pull parser ({@link PubmedArticleIterator}), so no parser state is shared
+ * between threads. The larger files are started first to keep all workers
+ * busy until the end, while the results are always returned in file name
+ * order, so the output does not depend on the number of workers or on
+ * scheduling.
+ */
+public class PubmedCorpusIngester {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final int parallelism;
+    private volatile Consumer<PubmedFileReport> progressListener = report -> { };
+    private volatile List<PubmedFileReport> reports = Collections.emptyList();
+
+    /**
+     * Creates an ingester using one worker per available processor
+     */
+    public PubmedCorpusIngester() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates an ingester with the given number of workers
+     * @param parallelism
+     */
+    public PubmedCorpusIngester(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be positive: " + parallelism);
+        }
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Sets a listener that is called by the worker thread each time a file is
+     * done or has failed
+     * @param progressListener
+     */
+    public void setProgressListener(Consumer<PubmedFileReport> progressListener) {
+        this.progressListener = progressListener;
+    }
+
+    /**
+     * Gets the reports of the files of the current or last ingestion, in file
+     * name order. The reports are updated while the ingestion runs.
+     * @return
+     */
+    public List<PubmedFileReport> getReports() {
+        return reports;
+    }
+
+    /**
+     * Lists the pubmed xml files (.xml.gz or .xml) in the given directory in
+     * name order
+     * @param directory
+     * @return
+     * @throws IOException
+     */
+    public static List<Path> listFiles(Path directory) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory, "*.{xml,xml.gz}")) {
+            for (Path entry : entries) {
+                if (Files.isRegularFile(entry)) {
+                    files.add(entry);
+                }
+            }
+        }
+        Collections.sort(files);
+        return files;
+    }
+
+    /**
+     * Processes all pubmed xml files in the given directory.
+     * @param directory the directory of baseline and update files
+     * @param processor called once per file, on a worker thread, with the
+     * citations of the file in document order
+     * @param <R> the type of the per file result
+     * @return the results in file name order; null for files that failed
+     * @throws IOException if the directory cannot be listed
+     */
+    public <R> List<R> ingest(Path directory, BiFunction<Path, Stream<PubmedArticle>, R> processor)
+            throws IOException {
+        return ingest(listFiles(directory), processor);
+    }
+
+    /**
+     * Processes the given pubmed xml files.
+     * @param files the files, gziped if their name ends with ".gz"
+     * @param processor called once per file, on a worker thread, with the
+     * citations of the file in document order
+     * @param <R> the type of the per file result
+     * @return the results in the order of the given files; null for files
+     * that failed
+     */
+    public <R> List<R> ingest(List<Path> files, BiFunction<Path, Stream<PubmedArticle>, R> processor) {
+        List<PubmedFileReport> fileReports = new ArrayList<>(files.size());
+        for (Path file : files) {
+            fileReports.add(new PubmedFileReport(file, sizeOf(file)));
+        }
+        reports = Collections.unmodifiableList(fileReports);
+
+        // Longest files first: with one task per file, this is what keeps the tail short.
+        List<Integer> schedule = new ArrayList<>(files.size());
+        for (int i = 0; i < files.size(); ++i) {
+            schedule.add(i);
+        }
+        schedule.sort(Comparator.comparingLong((Integer i) -> fileReports.get(i).getSizeInBytes()).reversed());
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            List<ForkJoinTask<R>> tasks = new ArrayList<>(Collections.nCopies(files.size(), null));
+            for (int i : schedule) {
+                PubmedFileReport report = fileReports.get(i);
+                tasks.set(i, pool.submit(() -> processFile(report, processor)));
+            }
+            List<R> results = new ArrayList<>(files.size());
+            for (ForkJoinTask<R> task : tasks) {
+                results.add(task.join());
+            }
+            return results;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private <R> R processFile(PubmedFileReport report, BiFunction<Path, Stream<PubmedArticle>, R> processor) {
+        Path file = report.getFile();
+        report.start();
+        try (PubmedArticleIterator iterator = new PubmedArticleIterator(open(file))) {
+            R result = processor.apply(file, PubmedParser.stream(iterator).peek(article -> report.articleRead()));
+            if (iterator.getError() != null) {
+                report.fail(iterator.getError());
+            } else {
+                report.finish();
+            }
+            return result;
+        } catch (IOException | XMLStreamException | RuntimeException ex) {
+            Logger.getLogger(PubmedCorpusIngester.class.getName()).log(Level.SEVERE, file.toString(), ex);
+            report.fail(ex);
+            return null;
+        } finally {
+            progressListener.accept(report);
+        }
+    }
+
+    private static InputStream open(Path file) throws IOException {
+        InputStream inputStream = new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE);
+        if (file.getFileName().toString().endsWith(".gz")) {
+            return new GZIPInputStream(inputStream, BUFFER_SIZE);
+        }
+        return inputStream;
+    }
+
+    private static long sizeOf(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException ex) {
+            return 0;
+        }
+    }
+
+    /**
+     * Counts the citations of every file in a directory and prints the per
+     * file reports and the overall throughput.
+     * Usage: PubmedCorpusIngester directory [parallelism]
+     * @param args
+     * @throws IOException
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: PubmedCorpusIngester directory [parallelism]");
+            return;
+        }
+        PubmedCorpusIngester ingester = args.length > 1 ? new PubmedCorpusIngester(Integer.parseInt(args[1]))
+                : new PubmedCorpusIngester();
+        ingester.setProgressListener(System.out::println);
+
+        long start = System.nanoTime();
+        List<Long> counts = ingester.ingest(Paths.get(args[0]), (file, articles) -> articles.count());
+        long elapsedMillis = Math.max(1, (System.nanoTime() - start) / 1000000);
+
+        long total = 0;
+        for (Long count : counts) {
+            total += count == null ? 0 : count;
+        }
+        System.out.println("Files: " + counts.size() + ", articles: " + total + ", time: " + elapsedMillis
+                + " ms, articles per second: " + (total * 1000 / elapsedMillis));
+    }
+}
@@ -0,0 +1,121 @@
+package edu.uwm.pubmedparser;
+
+import java.nio.file.Path;
+
+/**
+ * Progress of one pubmed baseline or update file during corpus ingestion.
+ * A report is written by the worker that processes the file and can be read
+ * from any thread while the ingestion runs.
+ */
+public class PubmedFileReport {
+    /**
+     * Processing state of a file
+     */
+    public enum Status {
+        PENDING, RUNNING, DONE, FAILED
+    }
+
+    private final Path file;
+    private final long sizeInBytes;
+    private volatile Status status;
+    private volatile int articleCount;
+    private volatile long startNanos;
+    private volatile long endNanos;
+    private volatile String error;
+
+    /**
+     * Creates a pending report for the given file
+     * @param file
+     * @param sizeInBytes the size of the file on disk
+     */
+    public PubmedFileReport(Path file, long sizeInBytes) {
+        this.file = file;
+        this.sizeInBytes = sizeInBytes;
+        this.status = Status.PENDING;
+    }
+
+    void start() {
+        startNanos = System.nanoTime();
+        status = Status.RUNNING;
+    }
+
+    void articleRead() {
+        // Only the worker processing the file writes the count.
+        articleCount = articleCount + 1;
+    }
+
+    void finish() {
+        endNanos = System.nanoTime();
+        status = Status.DONE;
+    }
+
+    void fail(Exception ex) {
+        endNanos = System.nanoTime();
+        error = String.valueOf(ex);
+        status = Status.FAILED;
+    }
+
+    /**
+     * Gets the file this report is about
+     * @return
+     */
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Gets the size of the file on disk
+     * @return
+     */
+    public long getSizeInBytes() {
+        return sizeInBytes;
+    }
+
+    /**
+     * Gets the processing state of the file
+     * @return
+     */
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * Gets the number of citations read from the file so far
+     * @return
+     */
+    public int getArticleCount() {
+        return articleCount;
+    }
+
+    /**
+     * Gets the time spent on the file so far, in milliseconds
+     * @return
+     */
+    public long getElapsedMillis() {
+        Status current = status;
+        if (current == Status.PENDING) {
+            return 0;
+        }
+        long end = current == Status.RUNNING ? System.nanoTime() : endNanos;
+        return (end - startNanos) / 1000000;
+    }
+
+    /**
+     * Gets the error that made processing of the file fail
+     * @return the error, or null if the file did not fail
+     */
+    public String getError() {
+        return error;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder ret = new StringBuilder(file.getFileName().toString());
+        ret.append(": ").append(status).append(", ").append(articleCount).append(" articles in ")
+                .append(getElapsedMillis()).append(" ms");
+        if (error != null) {
+            ret.append(" (").append(error).append(")");
+        }
+        return ret.toString();
+    }
+}
@@ -3,11 +3,18 @@ package edu.uwm.pubmedparser;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.zip.GZIPInputStream;
+import javax.xml.stream.XMLStreamException;
 import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathConstants;
 import javax.xml.xpath.XPathExpression;
@@ -115,6 +122,76 @@ public class PubmedParser {
         return articles;
     }
 
+    /**
+     * Streams the pubmed articles in the given gziped xml file one citation at
+     * a time, without parsing the whole file into memory. The returned stream
+     * must be closed to release the file.
+     * @param file
+     * @return
+     */
+    public Stream<PubmedArticle> streamArticles(String file) {
+        try {
+            return streamArticles(new GZIPInputStream(new FileInputStream(file)));
+        } catch (IOException ex) {
+            Logger.getLogger(PubmedParser.class.getName()).log(Level.SEVERE, null, ex);
+            return Stream.empty();
+        }
+    }
+
+    /**
+     * Streams the pubmed articles in the given xml file. The returned stream
+     * must be closed to release the file.
+     * @param xmlFile
+     * @return
+     */
+    public Stream<PubmedArticle> streamArticlesFromXml(String xmlFile) {
+        try {
+            return streamArticles(new FileInputStream(xmlFile));
+        } catch (FileNotFoundException ex) {
+            Logger.getLogger(PubmedParser.class.getName()).log(Level.SEVERE, null, ex);
+            return Stream.empty();
+        }
+    }
+
+    /**
+     * Streams the pubmed articles in the given xml input stream. Closing the
+     * returned stream closes the input stream.
+     * @param inputStream
+     * @return
+     */
+    public Stream<PubmedArticle> streamArticles(InputStream inputStream) {
+        final PubmedArticleIterator iterator;
+        try {
+            iterator = new PubmedArticleIterator(inputStream);
+        } catch (XMLStreamException ex) {
+            Logger.getLogger(PubmedParser.class.getName()).log(Level.SEVERE, null, ex);
+            try {
+                inputStream.close();
+            } catch (IOException closeEx) {
+                Logger.getLogger(PubmedParser.class.getName()).log(Level.WARNING, null, closeEx);
+            }
+            return Stream.empty();
+        }
+        return stream(iterator).onClose(() -> {
+            try {
+                iterator.close();
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        });
+    }
+
+    /**
+     * Wraps the given iterator in an ordered sequential stream. Closing the
+     * stream does not close the iterator.
+     * @param iterator
+     * @return
+     */
+    static Stream<PubmedArticle> stream(PubmedArticleIterator iterator) {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator,
+                Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
     /**
      * Recursively processes the given node and populates the passed {@link
      * PubmedArticle} object
@@ -0,0 +1,97 @@
+package edu.harvard;
+
+import edu.uwm.pmcarticleparser.PMCArticle;
+import edu.uwm.pmcarticleparser.PMCArticleStreamParser;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Measures the time to the first result of {@link LambdaRequestHandler} in
+ * fresh JVMs, like a cold Lambda container, and of the next requests in the
+ * same JVM, like warm invocations. The article is read from a local NXML
+ * file instead of the network.
+ *
+ * Usage: ColdStartHarness [nxml file] [cold starts] [warm requests] [JVM options...]
+ * eg. JVM options "-XX:SharedArchiveFile=target/pubminer.jsa" to compare
+ * with the archive of the appcds profile, or "-Xshare:off" without CDS.
+ * Set WARMUP=init in the environment to measure the warm-up at
+ * initialization, as with provisioned concurrency.
+ */
+public class ColdStartHarness {
+    private static final String CHILD = "--child";
+    private static final String RESULT = "RESULT";
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && CHILD.equals(args[0])) {
+            child(args[1], Integer.parseInt(args[2]));
+            return;
+        }
+        String nxml = args.length > 0 ? args[0] : Paths.get(ColdStartHarness.class.getResource("/PMC0000001.nxml")
+                .toURI()).toString();
+        int coldStarts = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        int warmRequests = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        List<String> jvmOptions = args.length > 3 ? Arrays.asList(args).subList(3, args.length) : new ArrayList<>();
+
+        for (int i = 0; i < coldStarts; ++i) {
+            List<String> command = new ArrayList<>();
+            command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+            command.addAll(jvmOptions);
+            command.add("-cp");
+            command.add(System.getProperty("java.class.path"));
+            command.add(ColdStartHarness.class.getName());
+            command.add(CHILD);
+            command.add(nxml);
+            command.add(Integer.toString(warmRequests));
+            Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(),
+                    StandardCharsets.UTF_8))) {
+                for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                    if (line.startsWith(RESULT)) {
+                        System.out.println("Cold start " + (i + 1) + ": " + line.substring(RESULT.length()).trim());
+                    }
+                }
+            }
+            process.waitFor();
+        }
+    }
+
+    private static void child(String nxml, int warmRequests) throws Exception {
+        byte[] article = Files.readAllBytes(Paths.get(nxml));
+        long jvmStart = ManagementFactory.getRuntimeMXBean().getStartTime();
+
+        long start = System.nanoTime();
+        // Initializes the handler class, which runs its warm-up with WARMUP=init.
+        LambdaRequestHandler handler = new LambdaRequestHandler();
+        long initialized = System.nanoTime();
+        handler.handleArticle(parse(article));
+        long firstResult = System.currentTimeMillis() - jvmStart;
+        long firstRequest = System.nanoTime() - initialized;
+
+        long[] warm = new long[warmRequests];
+        for (int i = 0; i < warmRequests; ++i) {
+            long requestStart = System.nanoTime();
+            handler.handleArticle(parse(article));
+            warm[i] = System.nanoTime() - requestStart;
+        }
+        Arrays.sort(warm);
+        System.out.println(String.format("%s first result %d ms after JVM start (init %d ms, first request %d ms), "
+                        + "warm request p50 %.1f ms", RESULT, firstResult, (initialized - start) / 1000000,
+                firstRequest / 1000000, warmRequests == 0 ? 0.0 : warm[warmRequests / 2] / 1e6));
+    }
+
+    private static PMCArticle parse(byte[] article) throws Exception {
+        try (InputStream inputStream = new ByteArrayInputStream(article)) {
+            return PMCArticleStreamParser.parse(inputStream);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package edu.harvard.corpus;
+
+import edu.uwm.pmcarticleparser.PMCArticle;
+import edu.uwm.pmcarticleparser.PMCArticleStreamParser;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.*;
+
+public class PMCCorpusStoreTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static byte[] fixture() throws Exception {
+        return Files.readAllBytes(Paths.get(PMCCorpusStoreTest.class.getResource("/PMC0000001.nxml").toURI()));
+    }
+
+    @Test
+    public void pack_directory() throws Exception {
+        byte[] nxml = fixture();
+        Path input = folder.newFolder("oa").toPath();
+        Files.createDirectories(input.resolve("journal"));
+        Files.write(input.resolve("journal/PMC3978729.nxml"), nxml);
+        Files.write(input.resolve("PMC12.nxml"), "<article/>".getBytes(StandardCharsets.UTF_8));
+        Files.write(input.resolve("not_a_pmcid.nxml"), nxml);
+
+        List<byte[]> samples = new ArrayList<>();
+        PMCCorpusPacker.forEachArticle(input, Integer.MAX_VALUE, (pmcid, xml) -> samples.add(xml));
+        assertEquals(2, samples.size());
+        byte[] dictionary = PMCCorpusPacker.trainDictionary(Collections.nCopies(3, nxml), 4096);
+        assertTrue(dictionary.length > 0 && dictionary.length <= 4096);
+
+        Path output = folder.newFolder("corpus").toPath();
+        try (PMCCorpusPacker packer = new PMCCorpusPacker(output, dictionary)) {
+            PMCCorpusPacker.forEachArticle(input, Integer.MAX_VALUE, (pmcid, xml) -> {
+                try {
+                    packer.add(pmcid, xml);
+                } catch (Exception ex) {
+                    throw new RuntimeException(ex);
+                }
+            });
+            assertTrue(packer.getCompressedBytes() < packer.getRawBytes());
+        }
+
+        try (PMCCorpusStore store = PMCCorpusStore.open(output)) {
+            assertEquals(2, store.size());
+            assertEquals(12, store.getPmcid(0));
+            assertEquals(3978729, store.getPmcid(1));
+            assertTrue(store.contains("PMC3978729"));
+            assertFalse(store.contains("3978730"));
+            assertNull(store.openArticle("3978730"));
+            assertArrayEquals(nxml, store.readArticle("3978729"));
+            assertEquals("<article/>", new String(store.readArticle("12"), StandardCharsets.UTF_8));
+
+            PMCArticle expected = PMCArticleStreamParser.parse(
+                    PMCCorpusStoreTest.class.getResourceAsStream("/PMC0000001.nxml"));
+            PMCArticle article;
+            try (InputStream inputStream = store.openArticle("3978729")) {
+                article = PMCArticleStreamParser.parse(inputStream);
+            }
+            assertEquals(expected.getTitle(), article.getTitle());
+            assertEquals(expected.getFullText().getFullTextSentences().size(), article.getFullText().getFullTextSentences().size());
+        }
+    }
+
+    @Test
+    public void pack_tarball() throws Exception {
+        byte[] nxml = fixture();
+        Path tarball = folder.getRoot().toPath().resolve("oa.tar.gz");
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(tarball))) {
+            for (int i = 1; i <= 5; ++i) {
+                writeTarEntry(out, "oa_package/0" + i + "/PMC" + (100 + i) + ".nxml", nxml);
+            }
+            writeTarEntry(out, "oa_package/01/figure.jpg", new byte[700]);
+            out.write(new byte[1024]);
+        }
+
+        byte[] dictionary = PMCCorpusPacker.trainDictionary(Collections.singletonList(nxml),
+                PMCCorpusPacker.MAX_DICTIONARY_BYTES);
+        Path output = folder.newFolder("corpus").toPath();
+        // Small segments, so the articles are spread over several files.
+        try (PMCCorpusPacker packer = new PMCCorpusPacker(output, dictionary, nxml.length)) {
+            PMCCorpusPacker.forEachArticle(tarball, Integer.MAX_VALUE, (pmcid, xml) -> {
+                try {
+                    packer.add(pmcid, xml);
+                } catch (Exception ex) {
+                    throw new RuntimeException(ex);
+                }
+            });
+        }
+        assertTrue(Files.exists(PMCCorpusFormat.segmentFile(output, 1)));
+
+        try (PMCCorpusStore store = PMCCorpusStore.open(output)) {
+            assertEquals(5, store.size());
+            for (int i = 1; i <= 5; ++i) {
+                assertArrayEquals(nxml, store.readArticle("PMC" + (100 + i)));
+            }
+        }
+    }
+
+    private static void writeTarEntry(OutputStream out, String name, byte[] data) throws Exception {
+        byte[] header = new byte[512];
+        System.arraycopy(name.getBytes(StandardCharsets.UTF_8), 0, header, 0, name.length());
+        byte[] size = String.format("%011o", data.length).getBytes(StandardCharsets.UTF_8);
+        System.arraycopy(size, 0, header, 124, size.length);
+        header[156] = '0';
+        out.write(header);
+        out.write(data);
+        out.write(new byte[(512 - data.length % 512) % 512]);
+    }
+}
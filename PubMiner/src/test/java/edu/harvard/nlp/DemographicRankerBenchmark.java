@@ -0,0 +1,46 @@
+package edu.harvard.nlp;
+
+import edu.uwm.pmcarticleparser.structuralelements.LemmaCounts;
+import edu.uwm.pmcarticleparser.structuralelements.PMCArticleSentence;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+/**
+ * Compares the comparator sort the miners used to rank demographic sentences
+ * with {@link DemographicRanker#top}, on synthetic annotated sentences.
+ *
+ * Usage: DemographicRankerBenchmark [sentences per article] [rounds]
+ */
+public class DemographicRankerBenchmark {
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        List<PMCArticleSentence> sentences = DemographicRankerTest.randomSentences(new Random(42), count);
+        LemmaCounts numCounts = DemographicRanker.countNummodLemmas(sentences);
+        Map<String, Integer> numCountMap = numCounts.toMap();
+
+        for (int pass = 0; pass < 3; ++pass) {
+            long checksum = 0;
+            long start = System.nanoTime();
+            for (int round = 0; round < rounds; ++round) {
+                List<PMCArticleSentence> sorted = sentences.stream().sorted((s1, s2) ->
+                        s2.getDemographicScoreBasedOnNumCounts(numCountMap).compareTo(
+                                s1.getDemographicScoreBasedOnNumCounts(numCountMap))).collect(Collectors.toList());
+                checksum += sorted.subList(0, Math.min(DemographicRanker.DEFAULT_TOP_K, sorted.size())).hashCode();
+            }
+            long sortNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int round = 0; round < rounds; ++round) {
+                checksum -= DemographicRanker.top(sentences, numCounts, DemographicRanker.DEFAULT_TOP_K).hashCode();
+            }
+            long topNanos = System.nanoTime() - start;
+            System.out.println(String.format("%d sentences: sort %.1f us, top %d %.1f us per article (%s)", count,
+                    sortNanos / 1000.0 / rounds, DemographicRanker.DEFAULT_TOP_K, topNanos / 1000.0 / rounds,
+                    checksum == 0 ? "same" : "different"));
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package edu.harvard.nlp;
+
+import edu.uwm.pmcarticleparser.structuralelements.LemmaCounts;
+import edu.uwm.pmcarticleparser.structuralelements.PMCArticleSentence;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class DemographicRankerTest {
+    private static final List<String> NUMBERS = Arrays.asList("40", "65", "twenty", "12", "3");
+    private static final List<String> NOUNS = Arrays.asList("patient", "year", "woman", "man", "visit", "week");
+
+    /**
+     * Makes annotated sentences with a few numeric modifiers each, many of
+     * them with equal scores
+     */
+    static List<PMCArticleSentence> randomSentences(Random random, int count) {
+        List<PMCArticleSentence> sentences = new ArrayList<>();
+        for (int i = 0; i < count; ++i) {
+            List<String> lemmas = new ArrayList<>();
+            List<Optional<String>> labels = new ArrayList<>();
+            List<Integer> nummodIndices = new ArrayList<>();
+            int modifiers = 1 + random.nextInt(3);
+            for (int m = 0; m < modifiers; ++m) {
+                nummodIndices.add(lemmas.size());
+                lemmas.add(NUMBERS.get(random.nextInt(NUMBERS.size())));
+                labels.add(Optional.of("nummod"));
+                lemmas.add(NOUNS.get(random.nextInt(NOUNS.size())));
+                labels.add(Optional.of("nsubj"));
+            }
+            PMCArticleSentence sentence = new PMCArticleSentence("Sentence " + i + ".");
+            sentence.setLemmas(lemmas);
+            sentence.setDependencyLabels(labels, nummodIndices);
+            sentences.add(sentence);
+        }
+        return sentences;
+    }
+
+    // The stable sort on boxed scores the callers used before.
+    private static List<PMCArticleSentence> sorted(List<PMCArticleSentence> sentences, Map<String, Integer> numCounts) {
+        return sentences.stream().sorted((s1, s2) -> s2.getDemographicScoreBasedOnNumCounts(numCounts).compareTo(
+                s1.getDemographicScoreBasedOnNumCounts(numCounts))).collect(Collectors.toList());
+    }
+
+    @Test
+    public void top_sameOrderAsSort() {
+        Random random = new Random(17);
+        for (int round = 0; round < 50; ++round) {
+            List<PMCArticleSentence> sentences = randomSentences(random, random.nextInt(40));
+            LemmaCounts numCounts = DemographicRanker.countNummodLemmas(sentences);
+            List<PMCArticleSentence> expected = sorted(sentences, numCounts.toMap());
+            for (int k : new int[] {1, 3, DemographicRanker.DEFAULT_TOP_K, sentences.size() + 1}) {
+                assertEquals(expected.subList(0, Math.min(k, expected.size())),
+                        DemographicRanker.top(sentences, numCounts, k));
+            }
+            assertEquals(expected, DemographicRanker.rank(sentences, numCounts));
+        }
+    }
+
+    @Test
+    public void top_emptyAndZero() {
+        List<PMCArticleSentence> sentences = randomSentences(new Random(1), 5);
+        LemmaCounts numCounts = DemographicRanker.countNummodLemmas(sentences);
+        assertEquals(Collections.emptyList(), DemographicRanker.top(sentences, numCounts, 0));
+        assertEquals(Collections.emptyList(), DemographicRanker.top(Collections.emptyList(), numCounts, 10));
+    }
+
+    @Test
+    public void countNummodLemmas() {
+        List<PMCArticleSentence> sentences = randomSentences(new Random(2), 30);
+        LemmaCounts numCounts = DemographicRanker.countNummodLemmas(sentences);
+        int total = 0;
+        for (PMCArticleSentence sentence : sentences) {
+            total += sentence.getNummodIndices().size();
+        }
+        assertEquals(total, numCounts.toMap().values().stream().mapToInt(Integer::intValue).sum());
+    }
+}
@@ -0,0 +1,69 @@
+package edu.harvard.nlp;
+
+import edu.uwm.pmcarticleparser.structuralelements.PMCArticleSentence;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Measures the latency of annotating the sentences of one article, in turn
+ * and in parallel over a pool, as LambdaRequestHandler does for a single
+ * article request. The test sentences are repeated to the size of a long
+ * article.
+ *
+ * Usage: ParallelAnnotationBenchmark [rounds] [sentences] [parallelism]
+ */
+public class ParallelAnnotationBenchmark {
+    public static void main(String[] args) throws Exception {
+        int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        int sentenceCount = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        int parallelism = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        List<String> testTexts = SentenceAnnotatorTest.sentenceTexts();
+        List<String> texts = new ArrayList<>();
+        for (int i = 0; i < sentenceCount; ++i) {
+            texts.add(testTexts.get(i % testTexts.size()));
+        }
+
+        SentenceAnnotator annotator = SentenceAnnotator.getInstance();
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            annotator.annotate(sentences(texts), PMCArticleSentence::hasAnchorWords, pool);
+            long[] sequential = new long[rounds];
+            long[] parallel = new long[rounds];
+            for (int round = 0; round < rounds; ++round) {
+                List<PMCArticleSentence> sentences = sentences(texts);
+                long start = System.nanoTime();
+                annotator.annotate(sentences, PMCArticleSentence::hasAnchorWords);
+                sequential[round] = System.nanoTime() - start;
+
+                sentences = sentences(texts);
+                start = System.nanoTime();
+                annotator.annotate(sentences, PMCArticleSentence::hasAnchorWords, pool);
+                parallel[round] = System.nanoTime() - start;
+            }
+            System.out.println(String.format("%d sentences, %d cores", sentenceCount,
+                    Runtime.getRuntime().availableProcessors()));
+            System.out.println("In turn:  " + percentiles(sequential));
+            System.out.println("Parallel (" + parallelism + "): " + percentiles(parallel));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static String percentiles(long[] nanos) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        return String.format("p50 %.1f ms, p99 %.1f ms", sorted[sorted.length / 2] / 1e6,
+                sorted[Math.min(sorted.length - 1, (int) Math.ceil(sorted.length * 0.99) - 1)] / 1e6);
+    }
+
+    private static List<PMCArticleSentence> sentences(List<String> texts) {
+        List<PMCArticleSentence> sentences = new ArrayList<>();
+        for (String text : texts) {
+            sentences.add(new PMCArticleSentence(text));
+        }
+        return sentences;
+    }
+}
@@ -0,0 +1,122 @@
+package edu.harvard.nlp;
+
+import edu.uwm.pmcarticleparser.structuralelements.PMCArticleSentence;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.Assert.*;
+
+public class SentenceAnnotationCacheTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static PMCArticleSentence annotated(String text) {
+        PMCArticleSentence sentence = new PMCArticleSentence(text);
+        sentence.setLemmas(Arrays.asList("forty", "patient", "be", "age", "65", "."));
+        sentence.setDependencyLabels(Arrays.asList(Optional.of("nummod"), Optional.of("nsubjpass"),
+                Optional.of("auxpass"), Optional.of("root"), Optional.of("conj:and"), Optional.empty()));
+        return sentence;
+    }
+
+    @Test
+    public void load_afterReopen() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("annotations.cache");
+        PMCArticleSentence parsed = annotated("Forty patients were aged 65.");
+        PMCArticleSentence lemmatized = new PMCArticleSentence("No parse here.");
+        lemmatized.setLemmas(Arrays.asList("no", "parse", "here", "."));
+        try (SentenceAnnotationCache cache = SentenceAnnotationCache.open(file, 1 << 20)) {
+            cache.store(parsed);
+            cache.store(lemmatized);
+            cache.store(new PMCArticleSentence("Not annotated."));
+            assertEquals(2, cache.size());
+        }
+
+        try (SentenceAnnotationCache cache = SentenceAnnotationCache.open(file, 1 << 20)) {
+            PMCArticleSentence sentence = new PMCArticleSentence(parsed.getText());
+            assertTrue(cache.load(sentence));
+            assertEquals(parsed.getLemmas(), sentence.getLemmas());
+            assertEquals(parsed.getDependencyLabels(), sentence.getDependencyLabels());
+            assertEquals(Arrays.asList(0), sentence.getNummodIndices());
+
+            sentence = new PMCArticleSentence(lemmatized.getText());
+            assertTrue(cache.load(sentence));
+            assertEquals(lemmatized.getLemmas(), sentence.getLemmas());
+            assertFalse(sentence.hasDependencyLabels());
+
+            assertFalse(cache.load(new PMCArticleSentence("Not annotated.")));
+            assertEquals(2, cache.getHitCount());
+            assertEquals(1, cache.getMissCount());
+        }
+    }
+
+    @Test
+    public void store_evictsLeastRecentlyUsed() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("annotations.cache");
+        try (SentenceAnnotationCache cache = SentenceAnnotationCache.open(file, 2000)) {
+            for (int i = 0; i < 100; ++i) {
+                cache.store(annotated("Sentence " + i));
+                // Keeps the first sentence recently used.
+                assertTrue(cache.load(new PMCArticleSentence("Sentence 0")));
+            }
+            assertTrue(cache.getEvictionCount() > 0);
+            assertTrue(cache.getFileLength() <= 2000);
+            assertEquals(cache.getFileLength(), Files.size(file));
+            assertTrue(cache.load(new PMCArticleSentence("Sentence 0")));
+            assertTrue(cache.load(new PMCArticleSentence("Sentence 99")));
+            assertFalse(cache.load(new PMCArticleSentence("Sentence 1")));
+        }
+        try (SentenceAnnotationCache cache = SentenceAnnotationCache.open(file, 2000)) {
+            assertTrue(cache.load(new PMCArticleSentence("Sentence 99")));
+        }
+    }
+
+    @Test
+    public void open_dropsCutRecord() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("annotations.cache");
+        try (SentenceAnnotationCache cache = SentenceAnnotationCache.open(file, 1 << 20)) {
+            cache.store(annotated("Kept."));
+        }
+        long length = Files.size(file);
+        try (OutputStream out = Files.newOutputStream(file, StandardOpenOption.APPEND)) {
+            out.write(new byte[] {1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 0, 0, 1, 0, 42});
+        }
+
+        try (SentenceAnnotationCache cache = SentenceAnnotationCache.open(file, 1 << 20)) {
+            assertEquals(1, cache.size());
+            assertEquals(length, Files.size(file));
+            PMCArticleSentence sentence = new PMCArticleSentence("Kept.");
+            assertTrue(cache.load(sentence));
+            List<String> lemmas = sentence.getLemmas();
+            assertEquals("patient", lemmas.get(1));
+        }
+    }
+
+    @Test
+    public void load_badRecordLeavesSentenceUnchanged() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("annotations.cache");
+        try (SentenceAnnotationCache cache = SentenceAnnotationCache.open(file, 1 << 20)) {
+            cache.store(annotated("Garbled."));
+        }
+        // The record ends with the label of the last token, then one nummod index: garble the label code.
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length - 3] = (byte) 0xFE;
+        Files.write(file, bytes);
+
+        try (SentenceAnnotationCache cache = SentenceAnnotationCache.open(file, 1 << 20)) {
+            PMCArticleSentence sentence = new PMCArticleSentence("Garbled.");
+            assertFalse(cache.load(sentence));
+            assertFalse(sentence.hasLemmas());
+            assertFalse(sentence.hasDependencyLabels());
+            assertEquals(1, cache.getMissCount());
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package edu.harvard.nlp;
+
+import edu.uwm.pmcarticleparser.structuralelements.PMCArticleSentence;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares annotating the sentences of an article one Simple API sentence at
+ * a time, as SentencesMiner used to, with the batched {@link SentenceAnnotator}.
+ *
+ * Usage: SentenceAnnotatorBenchmark [rounds]
+ */
+public class SentenceAnnotatorBenchmark {
+    public static void main(String[] args) throws Exception {
+        List<String> texts = SentenceAnnotatorTest.sentenceTexts();
+        int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+
+        // Loads the models shared by both approaches.
+        SentenceAnnotator.getInstance().annotate(sentences(texts), PMCArticleSentence::hasAnchorWords);
+        for (PMCArticleSentence sentence : sentences(texts)) {
+            if (sentence.hasAnchorWords()) {
+                sentence.getNummodCount();
+            }
+        }
+
+        long simple = 0;
+        long batched = 0;
+        for (int round = 0; round < rounds; ++round) {
+            List<PMCArticleSentence> sentences = sentences(texts);
+            long start = System.nanoTime();
+            for (PMCArticleSentence sentence : sentences) {
+                if (sentence.hasAnchorWords()) {
+                    sentence.getNummodCount();
+                }
+            }
+            simple += System.nanoTime() - start;
+
+            sentences = sentences(texts);
+            start = System.nanoTime();
+            SentenceAnnotator.getInstance().annotate(sentences, PMCArticleSentence::hasAnchorWords);
+            for (PMCArticleSentence sentence : sentences) {
+                if (sentence.hasAnchorWords()) {
+                    sentence.getNummodCount();
+                }
+            }
+            batched += System.nanoTime() - start;
+        }
+        System.out.println(String.format("%d sentences: simple %.1f sentences/s, batched %.1f sentences/s",
+                texts.size(), 1e9 * texts.size() * rounds / simple, 1e9 * texts.size() * rounds / batched));
+    }
+
+    private static List<PMCArticleSentence> sentences(List<String> texts) {
+        List<PMCArticleSentence> sentences = new ArrayList<>();
+        for (String text : texts) {
+            sentences.add(new PMCArticleSentence(text));
+        }
+        return sentences;
+    }
+}
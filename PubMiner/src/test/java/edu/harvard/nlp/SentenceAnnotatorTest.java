@@ -0,0 +1,88 @@
+package edu.harvard.nlp;
+
+import edu.uwm.pmcarticleparser.PMCArticle;
+import edu.uwm.pmcarticleparser.PMCArticleStreamParser;
+import edu.uwm.pmcarticleparser.structuralelements.PMCArticleSentence;
+import org.junit.Test;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+public class SentenceAnnotatorTest {
+    static List<String> sentenceTexts() throws Exception {
+        PMCArticle article;
+        try (InputStream inputStream = SentenceAnnotatorTest.class.getResourceAsStream("/PMC0000001.nxml")) {
+            article = PMCArticleStreamParser.parse(inputStream);
+        }
+        List<String> texts = new ArrayList<>();
+        for (PMCArticleSentence sentence : article.getAbstract().getAbstractSentences()) {
+            texts.add(sentence.getText());
+        }
+        for (PMCArticleSentence sentence : article.getFullText().getFullTextSentences()) {
+            texts.add(sentence.getText());
+        }
+        texts.addAll(Arrays.asList(
+                "\"Quoted\" text with 12 patients aged 54.9 (SD=8.1) years vs. 30 controls.",
+                "A total of 200 women and 150 men were enrolled in three centers.",
+                "'Single' quotes: 45 subjects (30%) were male.",
+                "The mean age was 62 ± 5 years; 1 patient withdrew.",
+                "Twenty-two participants -- 10 female -- completed the study."));
+        return texts;
+    }
+
+    @Test
+    public void annotate_sameAsSimpleApi() throws Exception {
+        List<PMCArticleSentence> expected = new ArrayList<>();
+        List<PMCArticleSentence> batched = new ArrayList<>();
+        for (String text : sentenceTexts()) {
+            expected.add(new PMCArticleSentence(text));
+            batched.add(new PMCArticleSentence(text));
+        }
+
+        SentenceAnnotator.getInstance().annotate(batched, PMCArticleSentence::hasAnchorWords);
+
+        for (int i = 0; i < expected.size(); ++i) {
+            PMCArticleSentence simple = expected.get(i);
+            PMCArticleSentence sentence = batched.get(i);
+            assertEquals(simple.getText(), simple.getLemmas(), sentence.getLemmas());
+            assertEquals(simple.hasAnchorWords(), sentence.hasDependencyLabels());
+            if (simple.hasAnchorWords()) {
+                assertEquals(simple.getText(), simple.getDependencyLabels(), sentence.getDependencyLabels());
+                assertEquals(simple.getText(), simple.getNummodIndices(), sentence.getNummodIndices());
+            }
+        }
+    }
+
+    @Test
+    public void annotate_parallelSameAsSequential() throws Exception {
+        List<PMCArticleSentence> sequential = new ArrayList<>();
+        List<PMCArticleSentence> parallel = new ArrayList<>();
+        for (String text : sentenceTexts()) {
+            sequential.add(new PMCArticleSentence(text));
+            parallel.add(new PMCArticleSentence(text));
+        }
+
+        SentenceAnnotator.getInstance().annotate(sequential, PMCArticleSentence::hasAnchorWords);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            SentenceAnnotator.getInstance().annotate(parallel, PMCArticleSentence::hasAnchorWords, pool);
+        } finally {
+            pool.shutdown();
+        }
+
+        for (int i = 0; i < sequential.size(); ++i) {
+            PMCArticleSentence expected = sequential.get(i);
+            PMCArticleSentence sentence = parallel.get(i);
+            assertEquals(expected.getText(), expected.getLemmas(), sentence.getLemmas());
+            assertEquals(expected.hasDependencyLabels(), sentence.hasDependencyLabels());
+            if (expected.hasDependencyLabels()) {
+                assertEquals(expected.getText(), expected.getDependencyLabels(), sentence.getDependencyLabels());
+            }
+        }
+    }
+}
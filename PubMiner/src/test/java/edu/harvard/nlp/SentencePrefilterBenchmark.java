@@ -0,0 +1,79 @@
+package edu.harvard.nlp;
+
+import edu.harvard.corpus.PMCCorpusStore;
+import edu.uwm.pmcarticleparser.PMCArticle;
+import edu.uwm.pmcarticleparser.PMCArticleStreamParser;
+import edu.uwm.pmcarticleparser.structuralelements.PMCArticleSentence;
+
+import java.io.InputStream;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures the recall of {@link SentencePrefilter} against the lemma and
+ * dependency filter of SentencesMiner, and how many sentences it saves from
+ * annotation, on the test article or on the articles of a packed corpus.
+ *
+ * Usage: SentencePrefilterBenchmark [corpus directory] [article limit]
+ */
+public class SentencePrefilterBenchmark {
+    public static void main(String[] args) throws Exception {
+        List<PMCArticle> articles = new ArrayList<>();
+        if (args.length > 0) {
+            int limit = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+            try (PMCCorpusStore store = PMCCorpusStore.open(Paths.get(args[0]))) {
+                for (int entry = 0; entry < store.size() && entry < limit; ++entry) {
+                    try (InputStream inputStream = store.openArticle("PMC" + store.getPmcid(entry))) {
+                        articles.add(PMCArticleStreamParser.parse(inputStream));
+                    }
+                }
+            }
+        } else {
+            try (InputStream inputStream = SentencePrefilterBenchmark.class.getResourceAsStream("/PMC0000001.nxml")) {
+                articles.add(PMCArticleStreamParser.parse(inputStream));
+            }
+        }
+
+        // Loads the models before timing.
+        SentenceAnnotator.getInstance();
+        SentencePrefilter prefilter = new SentencePrefilter();
+        int sentenceCount = 0;
+        int demographic = 0;
+        int missed = 0;
+        long filterNanos = 0;
+        long annotateNanos = 0;
+        for (PMCArticle article : articles) {
+            List<PMCArticleSentence> sentences = new ArrayList<>();
+            sentences.addAll(article.getAbstract().getAbstractSentences());
+            sentences.addAll(article.getFullText().getFullTextSentences());
+            sentenceCount += sentences.size();
+
+            long start = System.nanoTime();
+            List<PMCArticleSentence> kept = prefilter.filter(sentences);
+            filterNanos += System.nanoTime() - start;
+
+            // The current filter, on every sentence.
+            start = System.nanoTime();
+            SentenceAnnotator.getInstance().annotate(sentences, PMCArticleSentence::hasAnchorWords);
+            for (PMCArticleSentence sentence : sentences) {
+                if (sentence.hasAnchorWords() && sentence.getNummodCount() > 0) {
+                    ++demographic;
+                    if (!kept.contains(sentence)) {
+                        ++missed;
+                        System.out.println("Missed: " + sentence.getText());
+                    }
+                }
+            }
+            annotateNanos += System.nanoTime() - start;
+        }
+
+        System.out.println(String.format("%d articles, %d sentences, %d demographic sentences",
+                articles.size(), sentenceCount, demographic));
+        System.out.println(String.format("Recall %.4f (%d missed), %d sentences kept (%.1f%%)",
+                demographic == 0 ? 1.0 : (demographic - missed) / (double) demographic, missed,
+                prefilter.getKeptSentences(), 100.0 * prefilter.getKeptSentences() / sentenceCount));
+        System.out.println(String.format("Prefilter %.2f ms, annotation of all sentences %.2f ms",
+                filterNanos / 1e6, annotateNanos / 1e6));
+    }
+}
@@ -0,0 +1,128 @@
+package edu.harvard.nlp;
+
+import edu.uwm.pmcarticleparser.structuralelements.DemographicScoringModel;
+import edu.uwm.pmcarticleparser.structuralelements.PMCArticleSentence;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+
+public class SentencePrefilterTest {
+    /**
+     * Reads the labelled sentences of demographic_sentences.txt
+     * @return each sentence, with true if it is labelled demographic
+     */
+    private static Map<String, Boolean> labelledSentences() throws Exception {
+        Map<String, Boolean> sentences = new LinkedHashMap<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                SentencePrefilterTest.class.getResourceAsStream("/demographic_sentences.txt"),
+                StandardCharsets.UTF_8))) {
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                if (line.startsWith("#") || line.trim().isEmpty()) {
+                    continue;
+                }
+                String[] fields = line.split("\t", 2);
+                sentences.put(fields[1], fields[0].equals("D"));
+            }
+        }
+        return sentences;
+    }
+
+    @Test
+    public void mayBeDemographic_surfaceForms() {
+        SentencePrefilter prefilter = new SentencePrefilter();
+        assertTrue(prefilter.mayBeDemographic("PATIENTS (n=40) were enrolled."));
+        assertTrue(prefilter.mayBeDemographic("Twenty-two women completed the study."));
+        assertTrue(prefilter.mayBeDemographic("Subjects with type II diabetes were excluded."));
+        assertTrue(prefilter.mayBeDemographic("The patient's age was 54.9 (SD=8.1) years."));
+        assertFalse(prefilter.mayBeDemographic("Screening reduces mortality from colorectal cancer 1,2."));
+        assertFalse(prefilter.mayBeDemographic("All patients gave written informed consent."));
+        assertFalse(prefilter.mayBeDemographic("Management of many outpatients improved in 2010."));
+    }
+
+    @Test
+    public void filter_keepsEveryDemographicSentence() throws Exception {
+        List<PMCArticleSentence> sentences = new ArrayList<>();
+        for (String text : SentenceAnnotatorTest.sentenceTexts()) {
+            sentences.add(new PMCArticleSentence(text));
+        }
+        for (String text : Arrays.asList(
+                "Forty patients aged 18 to 65 years were randomized.",
+                "Mean age was sixty years in both arms.",
+                "Of the subjects, 12 were male and 8 female.",
+                "The study population included 1,204 individuals from three hospitals.")) {
+            sentences.add(new PMCArticleSentence(text));
+        }
+
+        SentencePrefilter prefilter = new SentencePrefilter();
+        List<PMCArticleSentence> kept = prefilter.filter(sentences);
+
+        int demographic = 0;
+        for (PMCArticleSentence sentence : sentences) {
+            if (sentence.hasAnchorWords() && sentence.getNummodCount() > 0) {
+                ++demographic;
+                assertTrue(sentence.getText(), kept.contains(sentence));
+            }
+        }
+        assertTrue(demographic > 0);
+        assertTrue(prefilter.getDroppedSentences() > 0);
+        assertEquals(sentences.size(), prefilter.getKeptSentences() + prefilter.getDroppedSentences());
+    }
+
+    @Test
+    public void filter_keepsEveryDemographicSentenceOfLabelledSample() throws Exception {
+        Map<String, Boolean> labelled = labelledSentences();
+        SentencePrefilter prefilter = new SentencePrefilter();
+        List<PMCArticleSentence> sentences = new ArrayList<>();
+        int labelledDemographic = 0;
+        for (Map.Entry<String, Boolean> entry : labelled.entrySet()) {
+            sentences.add(new PMCArticleSentence(entry.getKey()));
+            if (entry.getValue()) {
+                ++labelledDemographic;
+                assertTrue(entry.getKey(), prefilter.mayBeDemographic(entry.getKey()));
+            }
+        }
+
+        List<PMCArticleSentence> kept = prefilter.filter(sentences);
+
+        // Whatever the labels say, nothing the lemma and dependency filter keeps may be dropped.
+        int demographic = 0;
+        for (PMCArticleSentence sentence : sentences) {
+            if (sentence.hasAnchorWords() && sentence.getNummodCount() > 0) {
+                ++demographic;
+                assertTrue(sentence.getText(), kept.contains(sentence));
+            }
+        }
+        assertTrue(labelledDemographic >= 50);
+        assertTrue(demographic >= labelledDemographic / 2);
+        assertTrue(prefilter.getDroppedSentences() >= 20);
+    }
+
+    @Test
+    public void anchorForms_inflectionsOfAnchorWords() {
+        Pattern defaults = SentencePrefilter.anchorForms(DemographicScoringModel.getDefault().getAnchorWords());
+        for (String form : Arrays.asList("patients", "ages", "aged", "ageing", "aging", "males", "females",
+                "subjects", "subjected", "subjecting", "individuals", "woman", "women", "womans", "man", "men",
+                "mans", "manned", "manning", "peoples", "peopled", "PATIENT'S")) {
+            assertTrue(form, defaults.matcher(form).find());
+        }
+        assertFalse(defaults.matcher("outpatients").find());
+
+        Pattern other = SentencePrefilter.anchorForms(Arrays.asList("nurse", "study", "chairman"));
+        for (String form : Arrays.asList("nurses", "nursing", "studies", "chairmen")) {
+            assertTrue(form, other.matcher(form).find());
+        }
+        assertFalse(other.matcher("patients").find());
+        assertFalse(SentencePrefilter.anchorForms(Collections.<String>emptyList()).matcher("patients").find());
+    }
+}
@@ -0,0 +1,166 @@
+package edu.harvard.pipeline;
+
+import edu.harvard.nlp.DemographicRanker;
+import edu.harvard.nlp.SentenceAnnotator;
+import edu.uwm.pmcarticleparser.PMCArticle;
+import edu.uwm.pmcarticleparser.PMCArticleStreamParser;
+import edu.uwm.pmcarticleparser.PMCSectionFilter;
+import edu.uwm.pmcarticleparser.structuralelements.DemographicScoringModel;
+import edu.uwm.pmcarticleparser.structuralelements.LemmaCounts;
+import edu.uwm.pmcarticleparser.structuralelements.PMCArticleSentence;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class DemographicExtractorTest {
+    private static PMCArticle article() throws Exception {
+        try (InputStream inputStream = DemographicExtractorTest.class.getResourceAsStream("/PMC0000001.nxml")) {
+            return PMCArticleStreamParser.parse(inputStream);
+        }
+    }
+
+    private static PMCArticle article(String xml) {
+        return PMCArticleStreamParser.parse(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static List<String> texts(List<PMCArticleSentence> sentences) {
+        return sentences.stream().map(PMCArticleSentence::getText).collect(Collectors.toList());
+    }
+
+    @Test
+    public void extract_sameAsEveryStep() throws Exception {
+        // Every sentence annotated, without the prefilter.
+        PMCArticle article = article();
+        List<PMCArticleSentence> sentences = new ArrayList<>();
+        sentences.addAll(article.getAbstract().getAbstractSentences());
+        sentences.addAll(article.getFullText().getFullTextSentences());
+        SentenceAnnotator.getInstance().annotate(sentences, PMCArticleSentence::hasAnchorWords);
+        List<PMCArticleSentence> demographicSentences = sentences.stream().filter(s -> s.hasDependencyLabels()
+                && s.hasAnchorWords() && s.getNummodCount() > 0).collect(Collectors.toList());
+        LemmaCounts numCounts = DemographicRanker.countNummodLemmas(demographicSentences);
+        List<PMCArticleSentence> expected = DemographicRanker.top(demographicSentences, numCounts,
+                DemographicRanker.DEFAULT_TOP_K);
+
+        DemographicExtraction extraction = DemographicExtractor.builder().build().extract(article());
+        assertFalse(extraction.isEmpty());
+        assertEquals(sentences.size(), extraction.getSentences().size());
+        assertEquals(demographicSentences.size(), extraction.getDemographicCount());
+        assertFalse(extraction.getTopSentences().isEmpty());
+        assertEquals(texts(expected), texts(extraction.getTopSentences()));
+        assertEquals(numCounts.toMap(), extraction.getNummodCounts().toMap());
+
+        MiningOutcome outcome = extraction.toOutcome();
+        assertFalse(outcome.isError());
+        assertEquals(expected.size(), outcome.getSentences().size());
+        Map<String, String> first = outcome.getSentences().get(0);
+        assertEquals(expected.get(0).getText(), first.get("text"));
+        assertEquals(expected.get(0).getScoringSectionName(), first.get("section"));
+
+        // As many sentences are stored as the extractor keeps.
+        assertEquals(Math.min(2, expected.size()), DemographicExtractor.builder().topK(2).build().extract(article())
+                .toOutcome().getSentences().size());
+    }
+
+    @Test
+    public void extract_anchorWordsAndExclusionsOfModel() throws Exception {
+        PMCArticle article = article("<article><front><article-meta><abstract><p>Twelve nurses were interviewed. "
+                + "Forty patients were randomized. One patient withdrew.</p></abstract></article-meta></front>"
+                + "</article>");
+        assertEquals(Collections.singletonList("Forty patients were randomized."),
+                texts(DemographicExtractor.builder().build().extract(article).getTopSentences()));
+
+        Properties properties = new Properties();
+        try (InputStream in = DemographicScoringModel.class.getResourceAsStream(
+                "/demographic-scoring-model.properties")) {
+            properties.load(in);
+        }
+        properties.setProperty("version", "nurses");
+        properties.setProperty("anchorWords", "nurse");
+        DemographicScoringModel nurses = DemographicScoringModel.fromProperties(properties);
+        assertEquals(Collections.singletonList("Twelve nurses were interviewed."),
+                texts(DemographicExtractor.builder().scoringModel(nurses).build().extract(article)
+                        .getTopSentences()));
+
+        properties.setProperty("version", "one-counts");
+        properties.setProperty("anchorWords", "patient");
+        properties.setProperty("excludedNummods", "±,®,0");
+        DemographicScoringModel oneCounts = DemographicScoringModel.fromProperties(properties);
+        DemographicExtraction extraction = DemographicExtractor.builder().scoringModel(oneCounts).build()
+                .extract(article);
+        assertEquals(Arrays.asList("Forty patients were randomized.", "One patient withdrew."),
+                texts(extraction.getTopSentences()));
+        assertEquals(2, extraction.getDemographicCount());
+    }
+
+    @Test
+    public void parse_sectionFilter() throws Exception {
+        PMCSectionFilter filter = PMCSectionFilter.demographics();
+        DemographicExtractor extractor = DemographicExtractor.builder().sectionFilter(filter).build();
+        PMCArticle filtered;
+        try (InputStream inputStream = DemographicExtractorTest.class.getResourceAsStream("/PMC0000001.nxml")) {
+            filtered = extractor.parse(inputStream);
+        }
+        // Introduction and Discussion are not split into sentences.
+        assertEquals(article().getFullText().getFullTextSentences().size() - 5,
+                filtered.getFullText().getFullTextSentences().size());
+        assertTrue(filter.getSkippedCharacters() > 0);
+
+        // Without a filter, every section is.
+        try (InputStream inputStream = DemographicExtractorTest.class.getResourceAsStream("/PMC0000001.nxml")) {
+            assertEquals(article().getFullText().getFullTextSentences().size(),
+                    DemographicExtractor.builder().build().parse(inputStream).getFullText().getFullTextSentences()
+                            .size());
+        }
+    }
+
+    @Test
+    public void extract_errorStatuses() {
+        DemographicExtractor extractor = DemographicExtractor.builder().build();
+        DemographicExtraction empty = extractor.extract(article("<article><front><article-meta></article-meta>"
+                + "</front></article>"));
+        assertTrue(empty.isEmpty());
+        assertEquals(MiningOutcome.EMPTY, empty.toOutcome().getErrorStatus());
+
+        DemographicExtraction none = extractor.extract(article("<article><front><article-meta><abstract><p>The "
+                + "weather was fine. Nothing was counted here.</p></abstract></article-meta></front></article>"));
+        assertFalse(none.isEmpty());
+        assertTrue(none.getTopSentences().isEmpty());
+        assertEquals(MiningOutcome.NOT_RANDOMIZED_CLINICAL_TRIALS, none.toOutcome().getErrorStatus());
+    }
+
+    @Test
+    public void extract_concurrentArticles() throws Exception {
+        List<String> expected = texts(DemographicExtractor.builder().build().extract(article()).getTopSentences());
+
+        DemographicExtractor extractor = DemographicExtractor.builder().countPairs().build();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<List<String>>> futures = new ArrayList<>();
+            for (int i = 0; i < 12; ++i) {
+                futures.add(executor.submit(() -> texts(extractor.extract(article()).getTopSentences())));
+            }
+            for (Future<List<String>> future : futures) {
+                assertEquals(expected, future.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(12, extractor.getPairSketch().getArticleCount());
+        assertFalse(extractor.getPairSketch().getHeavyHitters().isEmpty());
+        assertEquals(0, DemographicExtractor.builder().build().getPairSketch().getArticleCount());
+    }
+}
@@ -0,0 +1,91 @@
+package edu.harvard.pipeline;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how many articles per second the demographics table takes, with
+ * a fixed round trip per request to an in-memory table:
+ *
+ * <ul>
+ * <li>per article: a query, then an update waited for, on as many threads
+ * as the persist stage has;</li>
+ * <li>batched: the states read 100 articles per BatchGetItem, then updates
+ * pipelined in the background;</li>
+ * <li>optimistic: no states read, pipelined updates.</li>
+ * </ul>
+ *
+ * Usage: DemographicsStoreBenchmark [articles] [round trip ms] [threads]
+ */
+public class DemographicsStoreBenchmark {
+    public static void main(String[] args) throws Exception {
+        int articles = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        long latencyMillis = args.length > 1 ? Long.parseLong(args[1]) : 5;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : MiningPipeline.DEFAULT_IO_THREADS / 4;
+
+        List<String> pmcids = new ArrayList<>();
+        for (int i = 0; i < articles; ++i) {
+            pmcids.add(Integer.toString(i));
+        }
+        Map<String, String> sentence = new HashMap<>();
+        sentence.put("text", "A total of 585 women completed the study.");
+        sentence.put("section", "Abstract");
+        List<Map<String, String>> sentences = Collections.singletonList(sentence);
+
+        // Per article, the way the store was used before.
+        FakeDynamoDB fake = new FakeDynamoDB(latencyMillis);
+        fake.addPending(pmcids);
+        DynamoDBDemographicsStore store = new DynamoDBDemographicsStore(fake.client(),
+                DynamoDBDemographicsStore.TABLE_NAME);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        long start = System.nanoTime();
+        List<Future<?>> futures = new ArrayList<>();
+        for (String pmcid : pmcids) {
+            futures.add(executor.submit(() -> {
+                if (store.getStatus(pmcid) == DemographicsStore.Status.PENDING) {
+                    store.putSentences(pmcid, sentences);
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        report("per article", articles, System.nanoTime() - start, fake);
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+
+        for (boolean optimistic : new boolean[] {false, true}) {
+            fake = new FakeDynamoDB(latencyMillis);
+            fake.addPending(pmcids);
+            DynamoDBDemographicsStore dynamoDBStore = new DynamoDBDemographicsStore(fake.client(),
+                    DynamoDBDemographicsStore.TABLE_NAME, optimistic);
+            PipelinedDemographicsStore pipelinedStore = new PipelinedDemographicsStore(dynamoDBStore);
+            start = System.nanoTime();
+            for (int from = 0; from < articles; from += MiningPipeline.STATUS_BATCH_SIZE) {
+                List<String> batch = pmcids.subList(from, Math.min(articles, from + MiningPipeline
+                        .STATUS_BATCH_SIZE));
+                Map<String, DemographicsStore.Status> statuses = pipelinedStore.getStatuses(batch);
+                for (String pmcid : batch) {
+                    if (statuses.get(pmcid) == DemographicsStore.Status.PENDING) {
+                        pipelinedStore.putSentences(pmcid, sentences);
+                    }
+                }
+            }
+            pipelinedStore.close();
+            report(optimistic ? "optimistic" : "batched", articles, System.nanoTime() - start, fake);
+        }
+    }
+
+    private static void report(String mode, int articles, long nanos, FakeDynamoDB fake) {
+        System.out.println(String.format("%s: %.0f articles/s, %.2f requests per article (%d queries, %d batch "
+                        + "gets, %d updates)", mode, articles * 1e9 / nanos, (double) fake.getRequestCount() / articles,
+                fake.queries.get(), fake.batchGets.get(), fake.updates.get()));
+    }
+}
@@ -0,0 +1,147 @@
+package edu.harvard.pipeline;
+
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class DynamoDBDemographicsStoreTest {
+    private static final String TABLE = DynamoDBDemographicsStore.TABLE_NAME;
+
+    private static List<String> pmcids(int from, int to) {
+        List<String> pmcids = new ArrayList<>();
+        for (int i = from; i < to; ++i) {
+            pmcids.add(Integer.toString(i));
+        }
+        return pmcids;
+    }
+
+    private static List<Map<String, String>> sentences(String text) {
+        Map<String, String> sentence = new HashMap<>();
+        sentence.put("text", text);
+        sentence.put("section", "Abstract");
+        return Collections.singletonList(sentence);
+    }
+
+    @Test
+    public void getStatuses_batchesOf100() {
+        FakeDynamoDB fake = new FakeDynamoDB(0);
+        fake.addPending(pmcids(0, 250));
+        DynamoDBDemographicsStore store = new DynamoDBDemographicsStore(fake.client(), TABLE);
+        assertTrue(store.putSentences("7", sentences("A")));
+        store.putErrorStatus("8", MiningOutcome.EMPTY);
+        int updates = fake.updates.get();
+
+        List<String> pmcids = pmcids(0, 260);
+        pmcids.add("7");
+        Map<String, DemographicsStore.Status> statuses = store.getStatuses(pmcids);
+        assertEquals(3, fake.batchGets.get());
+        assertEquals(0, fake.queries.get());
+        assertEquals(updates, fake.updates.get());
+
+        assertEquals(260, statuses.size());
+        for (String pmcid : pmcids(0, 260)) {
+            assertEquals(pmcid, store.getStatus(pmcid), statuses.get(pmcid));
+        }
+        assertEquals(DemographicsStore.Status.DONE, statuses.get("7"));
+        assertEquals(DemographicsStore.Status.FAILED, statuses.get("8"));
+        assertEquals(DemographicsStore.Status.PENDING, statuses.get("9"));
+        assertEquals(DemographicsStore.Status.MISSING, statuses.get("255"));
+    }
+
+    @Test
+    public void getStatuses_retriesUnprocessedKeys() {
+        FakeDynamoDB fake = new FakeDynamoDB(0);
+        fake.addPending(pmcids(0, 100));
+        fake.setMaxProcessedKeys(30);
+        DynamoDBDemographicsStore store = new DynamoDBDemographicsStore(fake.client(), TABLE);
+
+        Map<String, DemographicsStore.Status> statuses = store.getStatuses(pmcids(0, 100));
+        assertEquals(4, fake.batchGets.get());
+        assertEquals(100, statuses.size());
+        for (DemographicsStore.Status status : statuses.values()) {
+            assertEquals(DemographicsStore.Status.PENDING, status);
+        }
+    }
+
+    @Test
+    public void putSentences_keepsStoredSentences() {
+        FakeDynamoDB fake = new FakeDynamoDB(0);
+        fake.addPending(pmcids(0, 2));
+        DynamoDBDemographicsStore store = new DynamoDBDemographicsStore(fake.client(), TABLE);
+
+        assertTrue(store.putSentences("0", sentences("A")));
+        assertFalse(store.putSentences("0", sentences("B")));
+        List<AttributeValue> stored = fake.getItem("0").get(DynamoDBDemographicsStore.SENTENCES_COLUMN_NAME).getL();
+        assertEquals(1, stored.size());
+        assertEquals("A", stored.get(0).getM().get("text").getS());
+        assertEquals(1, fake.conditionFailures.get());
+    }
+
+    @Test
+    public void optimistic_writesWithoutReading() {
+        FakeDynamoDB fake = new FakeDynamoDB(0);
+        fake.addPending(pmcids(0, 3));
+        new DynamoDBDemographicsStore(fake.client(), TABLE).putSentences("0", sentences("A"));
+        DynamoDBDemographicsStore store = new DynamoDBDemographicsStore(fake.client(), TABLE, true);
+        assertTrue(store.isOptimistic());
+        int requests = fake.getRequestCount();
+
+        Map<String, DemographicsStore.Status> statuses = store.getStatuses(pmcids(0, 5));
+        assertEquals(DemographicsStore.Status.PENDING, store.getStatus("0"));
+        assertEquals(requests, fake.getRequestCount());
+        for (DemographicsStore.Status status : statuses.values()) {
+            assertEquals(DemographicsStore.Status.PENDING, status);
+        }
+
+        // Stored sentences are kept, and articles missing from the table are not added.
+        assertFalse(store.putSentences("0", sentences("B")));
+        store.putErrorStatus("0", MiningOutcome.EMPTY);
+        assertFalse(fake.getItem("0").containsKey(DynamoDBDemographicsStore.ERROR_STATUS_COLUMN_NAME));
+        assertFalse(store.putSentences("4", sentences("B")));
+        store.putErrorStatus("4", MiningOutcome.EMPTY);
+        assertNull(fake.getItem("4"));
+
+        assertTrue(store.putSentences("1", sentences("C")));
+        store.putErrorStatus("2", MiningOutcome.NOT_RANDOMIZED_CLINICAL_TRIALS);
+        assertEquals(MiningOutcome.NOT_RANDOMIZED_CLINICAL_TRIALS, fake.getItem("2").get(
+                DynamoDBDemographicsStore.ERROR_STATUS_COLUMN_NAME).getS());
+    }
+
+    @Test
+    public void pipelined_writesInBackground() throws Exception {
+        FakeDynamoDB fake = new FakeDynamoDB(2);
+        fake.addPending(pmcids(0, 100));
+        DynamoDBDemographicsStore dynamoDBStore = new DynamoDBDemographicsStore(fake.client(), TABLE);
+        dynamoDBStore.putSentences("5", sentences("A"));
+
+        PipelinedDemographicsStore store = new PipelinedDemographicsStore(dynamoDBStore, 4, 8);
+        for (String pmcid : pmcids(0, 100)) {
+            if (pmcid.endsWith("0")) {
+                store.putErrorStatus(pmcid, MiningOutcome.EMPTY);
+            } else {
+                assertTrue(store.putSentences(pmcid, sentences("B")));
+            }
+            assertTrue(store.getPendingWriteCount() <= 8);
+        }
+        store.close();
+
+        assertEquals(0, store.getPendingWriteCount());
+        assertEquals(100, store.getWrittenCount());
+        assertEquals(1, store.getRejectedCount());
+        assertEquals(0, store.getFailedCount());
+        Map<String, DemographicsStore.Status> statuses = dynamoDBStore.getStatuses(pmcids(0, 100));
+        for (String pmcid : pmcids(0, 100)) {
+            assertEquals(pmcid.endsWith("0") ? DemographicsStore.Status.FAILED : DemographicsStore.Status.DONE,
+                    statuses.get(pmcid));
+        }
+        assertEquals("A", fake.getItem("5").get(DynamoDBDemographicsStore.SENTENCES_COLUMN_NAME).getL().get(0)
+                .getM().get("text").getS());
+    }
+}
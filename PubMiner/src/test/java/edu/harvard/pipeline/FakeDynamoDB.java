@@ -0,0 +1,245 @@
+package edu.harvard.pipeline;
+
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.BatchGetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.BatchGetItemResult;
+import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException;
+import com.amazonaws.services.dynamodbv2.model.ConsumedCapacity;
+import com.amazonaws.services.dynamodbv2.model.KeysAndAttributes;
+import com.amazonaws.services.dynamodbv2.model.ProvisionedThroughputExceededException;
+import com.amazonaws.services.dynamodbv2.model.QueryRequest;
+import com.amazonaws.services.dynamodbv2.model.QueryResult;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemRequest;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemResult;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An in-memory stand-in for the demographics table behind the DynamoDB
+ * client interface, with the requests {@link DynamoDBDemographicsStore}
+ * makes: queries by pmcid, BatchGetItem and the two update expressions with
+ * their attribute_exists / attribute_not_exists conditions. Every request
+ * can take a fixed latency, like a round trip, and BatchGetItem can leave
+ * keys unprocessed, like a throttled table. With a write capacity, updates
+ * consume a unit per started KB of the item and are throttled past the
+ * capacity of the current second, and report the consumed capacity when
+ * asked.
+ */
+class FakeDynamoDB {
+    private final Map<String, Map<String, AttributeValue>> items = new ConcurrentHashMap<>();
+    private final long latencyMillis;
+    private volatile int maxProcessedKeys = Integer.MAX_VALUE;
+    private volatile double writeCapacity = Double.POSITIVE_INFINITY;
+    private long writeSecond;
+    private double writeUnits;
+    final AtomicInteger queries = new AtomicInteger();
+    final AtomicInteger batchGets = new AtomicInteger();
+    final AtomicInteger updates = new AtomicInteger();
+    final AtomicInteger conditionFailures = new AtomicInteger();
+    final AtomicInteger throttles = new AtomicInteger();
+
+    FakeDynamoDB(long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+    }
+
+    /**
+     * Adds articles waiting for their sentences
+     */
+    void addPending(Iterable<String> pmcids) {
+        for (String pmcid : pmcids) {
+            Map<String, AttributeValue> item = new HashMap<>();
+            item.put(DynamoDBDemographicsStore.PMCID_COLUMN_NAME, new AttributeValue(pmcid));
+            items.put(pmcid, item);
+        }
+    }
+
+    /**
+     * Leaves the keys past the first ones of every BatchGetItem unprocessed
+     */
+    void setMaxProcessedKeys(int maxProcessedKeys) {
+        this.maxProcessedKeys = maxProcessedKeys;
+    }
+
+    /**
+     * Throttles the updates past the given units in a second
+     */
+    void setWriteCapacity(double writeCapacity) {
+        this.writeCapacity = writeCapacity;
+    }
+
+    Map<String, AttributeValue> getItem(String pmcid) {
+        return items.get(pmcid);
+    }
+
+    int getRequestCount() {
+        return queries.get() + batchGets.get() + updates.get();
+    }
+
+    AmazonDynamoDB client() {
+        return (AmazonDynamoDB) Proxy.newProxyInstance(FakeDynamoDB.class.getClassLoader(),
+                new Class<?>[] {AmazonDynamoDB.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "query":
+                            return query((QueryRequest) args[0]);
+                        case "batchGetItem":
+                            return batchGetItem((BatchGetItemRequest) args[0]);
+                        case "updateItem":
+                            return updateItem((UpdateItemRequest) args[0]);
+                        case "toString":
+                            return "FakeDynamoDB";
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == args[0];
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    private void roundTrip() {
+        if (latencyMillis > 0) {
+            try {
+                Thread.sleep(latencyMillis);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private QueryResult query(QueryRequest request) {
+        queries.incrementAndGet();
+        roundTrip();
+        String pmcid = request.getExpressionAttributeValues().get(":pmc_id").getS();
+        Map<String, AttributeValue> item = items.get(pmcid);
+        List<Map<String, AttributeValue>> found = new ArrayList<>();
+        if (item != null) {
+            synchronized (item) {
+                if (!item.isEmpty()) {
+                    found.add(new HashMap<>(item));
+                }
+            }
+        }
+        return new QueryResult().withItems(found).withCount(found.size());
+    }
+
+    private BatchGetItemResult batchGetItem(BatchGetItemRequest request) {
+        batchGets.incrementAndGet();
+        roundTrip();
+        Map<String, List<Map<String, AttributeValue>>> responses = new HashMap<>();
+        Map<String, KeysAndAttributes> unprocessed = new HashMap<>();
+        for (Map.Entry<String, KeysAndAttributes> entry : request.getRequestItems().entrySet()) {
+            List<Map<String, AttributeValue>> keys = entry.getValue().getKeys();
+            if (keys.size() > DynamoDBDemographicsStore.BATCH_GET_LIMIT) {
+                throw new IllegalArgumentException("Too many keys: " + keys.size());
+            }
+            List<Map<String, AttributeValue>> found = new ArrayList<>();
+            for (int i = 0; i < keys.size() && i < maxProcessedKeys; ++i) {
+                Map<String, AttributeValue> item = items.get(keys.get(i).get(DynamoDBDemographicsStore
+                        .PMCID_COLUMN_NAME).getS());
+                if (item != null) {
+                    synchronized (item) {
+                        if (!item.isEmpty()) {
+                            found.add(new HashMap<>(item));
+                        }
+                    }
+                }
+            }
+            responses.put(entry.getKey(), found);
+            if (keys.size() > maxProcessedKeys) {
+                unprocessed.put(entry.getKey(), new KeysAndAttributes()
+                        .withKeys(keys.subList(maxProcessedKeys, keys.size()))
+                        .withProjectionExpression(entry.getValue().getProjectionExpression()));
+            }
+        }
+        return new BatchGetItemResult().withResponses(responses).withUnprocessedKeys(unprocessed);
+    }
+
+    private UpdateItemResult updateItem(UpdateItemRequest request) {
+        updates.incrementAndGet();
+        roundTrip();
+        String pmcid = request.getKey().get(DynamoDBDemographicsStore.PMCID_COLUMN_NAME).getS();
+        // Like DynamoDB, an update creates a missing item unless its condition fails.
+        Map<String, AttributeValue> newItem = new HashMap<>();
+        Map<String, AttributeValue> item = items.putIfAbsent(pmcid, newItem);
+        boolean created = item == null;
+        if (created) {
+            item = newItem;
+        }
+        double units = units(request);
+        synchronized (item) {
+            String condition = request.getConditionExpression();
+            if (condition != null) {
+                for (String term : condition.split(" AND ")) {
+                    String attribute = term.substring(term.indexOf('(') + 1, term.indexOf(')'));
+                    boolean exists = item.containsKey(attribute);
+                    if (term.startsWith("attribute_exists") ? !exists : exists) {
+                        if (created) {
+                            items.remove(pmcid);
+                        }
+                        conditionFailures.incrementAndGet();
+                        throw new ConditionalCheckFailedException("The conditional request failed");
+                    }
+                }
+            }
+            if (!consume(units)) {
+                if (created) {
+                    items.remove(pmcid);
+                }
+                throttles.incrementAndGet();
+                throw new ProvisionedThroughputExceededException("The level of configured provisioned throughput "
+                        + "for the table was exceeded");
+            }
+            item.put(DynamoDBDemographicsStore.PMCID_COLUMN_NAME, new AttributeValue(pmcid));
+            Map<String, AttributeValue> values = request.getExpressionAttributeValues();
+            String update = request.getUpdateExpression();
+            if (update.startsWith("set sentences")) {
+                List<AttributeValue> sentences = new ArrayList<>();
+                if (item.containsKey(DynamoDBDemographicsStore.SENTENCES_COLUMN_NAME)) {
+                    sentences.addAll(item.get(DynamoDBDemographicsStore.SENTENCES_COLUMN_NAME).getL());
+                }
+                sentences.addAll(values.get(":val").getL());
+                item.put(DynamoDBDemographicsStore.SENTENCES_COLUMN_NAME, new AttributeValue().withL(sentences));
+            } else if (update.startsWith("set errorStatus")) {
+                item.put(DynamoDBDemographicsStore.ERROR_STATUS_COLUMN_NAME, values.get(":val"));
+            } else {
+                throw new UnsupportedOperationException(update);
+            }
+        }
+        UpdateItemResult result = new UpdateItemResult().withAttributes(Collections.emptyMap());
+        if (request.getReturnConsumedCapacity() != null) {
+            result.setConsumedCapacity(new ConsumedCapacity().withTableName(request.getTableName())
+                    .withCapacityUnits(units));
+        }
+        return result;
+    }
+
+    private static double units(UpdateItemRequest request) {
+        int bytes = 0;
+        for (AttributeValue value : request.getExpressionAttributeValues().values()) {
+            bytes += value.toString().length();
+        }
+        return Math.max(1, Math.ceil(bytes / 1024.0));
+    }
+
+    private synchronized boolean consume(double units) {
+        long second = System.nanoTime() / 1000000000L;
+        if (second != writeSecond) {
+            writeSecond = second;
+            writeUnits = 0;
+        }
+        if (writeUnits + units > writeCapacity) {
+            return false;
+        }
+        writeUnits += units;
+        return true;
+    }
+}
@@ -0,0 +1,160 @@
+package edu.harvard.pipeline;
+
+import edu.uwm.pmcarticleparser.PMCArticle;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class MiningPipelineTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path articles(int count) throws Exception {
+        Path directory = folder.newFolder("articles").toPath();
+        for (int i = 1; i <= count; ++i) {
+            try (InputStream inputStream = MiningPipelineTest.class.getResourceAsStream("/PMC0000001.nxml")) {
+                Files.copy(inputStream, directory.resolve("PMC" + i + ".nxml"));
+            }
+        }
+        return directory;
+    }
+
+    private static List<String> pmcids(int count) {
+        List<String> pmcids = new ArrayList<>();
+        for (int i = 1; i <= count; ++i) {
+            pmcids.add(Integer.toString(i));
+        }
+        return pmcids;
+    }
+
+    private static MiningOutcome firstSentence(PMCArticle article) {
+        Map<String, String> sentence = new HashMap<>();
+        sentence.put("text", article.getAbstract().getAbstractSentences().get(0).getText());
+        sentence.put("section", "Abstract");
+        return MiningOutcome.sentences(Collections.singletonList(sentence));
+    }
+
+    @Test
+    public void run_storesEveryPendingArticle() throws Exception {
+        Path directory = articles(20);
+        InMemoryDemographicsStore store = new InMemoryDemographicsStore();
+        List<String> pmcids = pmcids(20);
+        pmcids.add("99");
+        store.addPending(pmcids);
+        store.putSentences("3", Collections.emptyList());
+
+        MiningPipeline pipeline = new MiningPipeline(new DirectoryArticleSource(directory), store,
+                MiningPipelineTest::firstSentence, 4, 2, 4);
+        pipeline.run(pmcids);
+
+        for (int i = 1; i <= 20; ++i) {
+            if (i != 3) {
+                assertEquals(1, store.getSentences(Integer.toString(i)).size());
+                assertTrue(store.getSentences(Integer.toString(i)).get(0).get("text").startsWith("Colorectal cancer"));
+            }
+        }
+        assertTrue(store.getSentences("3").isEmpty());
+        assertEquals(DemographicsStore.Status.PENDING, store.getStatus("99"));
+
+        List<StageMetrics> metrics = pipeline.getMetrics();
+        assertEquals(4, metrics.size());
+        assertEquals("fetch", metrics.get(0).getName());
+        assertEquals(19, metrics.get(0).getProcessed());
+        assertEquals(1, metrics.get(0).getSkipped());
+        assertEquals(1, metrics.get(0).getFailed());
+        assertEquals(19, metrics.get(3).getProcessed());
+        for (StageMetrics stage : metrics) {
+            assertEquals(0, stage.getQueueDepth());
+            assertTrue(stage.getMaxQueueDepth() <= 4);
+        }
+    }
+
+    @Test
+    public void run_readsStatesInBatchesAndFlushesWrites() throws Exception {
+        Path directory = articles(20);
+        FakeDynamoDB fake = new FakeDynamoDB(1);
+        List<String> pmcids = pmcids(20);
+        fake.addPending(pmcids);
+        DynamoDBDemographicsStore dynamoDBStore = new DynamoDBDemographicsStore(fake.client(),
+                DynamoDBDemographicsStore.TABLE_NAME);
+        dynamoDBStore.putSentences("3", Collections.emptyList());
+        pmcids.add("99");
+        PipelinedDemographicsStore store = new PipelinedDemographicsStore(dynamoDBStore, 2, 4);
+
+        MiningPipeline pipeline = new MiningPipeline(new DirectoryArticleSource(directory), store,
+                MiningPipelineTest::firstSentence, 4, 2, 4);
+        pipeline.run(pmcids);
+
+        assertEquals(1, fake.batchGets.get());
+        assertEquals(0, fake.queries.get());
+        assertEquals(0, store.getPendingWriteCount());
+        assertEquals(19, store.getWrittenCount());
+        for (int i = 1; i <= 20; ++i) {
+            assertEquals(DemographicsStore.Status.DONE, dynamoDBStore.getStatus(Integer.toString(i)));
+        }
+        assertEquals(DemographicsStore.Status.MISSING, dynamoDBStore.getStatus("99"));
+        assertEquals(19, pipeline.getMetrics().get(3).getProcessed());
+        store.close();
+    }
+
+    @Test
+    public void run_slowPersistenceHoldsBackEarlierStages() throws Exception {
+        Path directory = articles(12);
+        InMemoryDemographicsStore store = new InMemoryDemographicsStore();
+        store.addPending(pmcids(12));
+        DemographicsStore slowStore = new DemographicsStore() {
+            @Override
+            public Status getStatus(String pmcid) {
+                return store.getStatus(pmcid);
+            }
+
+            @Override
+            public boolean putSentences(String pmcid, List<Map<String, String>> sentences) {
+                try {
+                    Thread.sleep(20);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                return store.putSentences(pmcid, sentences);
+            }
+
+            @Override
+            public void putErrorStatus(String pmcid, String errorStatus) {
+                store.putErrorStatus(pmcid, errorStatus);
+            }
+        };
+
+        AtomicInteger mined = new AtomicInteger();
+        MiningPipeline pipeline = new MiningPipeline(new DirectoryArticleSource(directory), slowStore,
+                article -> mined.getAndIncrement() == 0 ? MiningOutcome.error("empty") : firstSentence(article),
+                4, 1, 1);
+        pipeline.run(pmcids(12));
+
+        int errors = 0;
+        for (String pmcid : pmcids(12)) {
+            if (store.getErrorStatus(pmcid) != null) {
+                assertEquals("empty", store.getErrorStatus(pmcid));
+                assertNull(store.getSentences(pmcid));
+                ++errors;
+            }
+        }
+        assertEquals(1, errors);
+        StageMetrics nlp = pipeline.getMetrics().get(2);
+        StageMetrics persist = pipeline.getMetrics().get(3);
+        assertEquals(12, persist.getProcessed());
+        assertEquals(1, persist.getMaxQueueDepth());
+        assertTrue(nlp.getBlockedNanos() > 0);
+    }
+}
@@ -0,0 +1,186 @@
+package edu.harvard.pipeline;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class ProgressJournalTest {
+    private static Path newJournalFile() throws IOException {
+        Path file = Files.createTempFile("progress", ".journal");
+        Files.delete(file);
+        file.toFile().deleteOnExit();
+        return file;
+    }
+
+    private static List<String> pmcids(int from, int to) {
+        List<String> pmcids = new ArrayList<>();
+        for (int i = from; i < to; ++i) {
+            pmcids.add(Integer.toString(i));
+        }
+        return pmcids;
+    }
+
+    @Test
+    public void bitmap_matchesHashSet() {
+        IntBitmap bitmap = new IntBitmap();
+        Set<Integer> expected = new HashSet<>();
+        Random random = new Random(7);
+        // Sparse ids, and a dense range that turns a container into a bitset.
+        for (int i = 0; i < 5000; ++i) {
+            int value = random.nextInt(Integer.MAX_VALUE);
+            assertEquals(expected.add(value), bitmap.add(value));
+        }
+        for (int value = 3000000; value < 3010000; ++value) {
+            assertEquals(expected.add(value), bitmap.add(value));
+        }
+        assertFalse(bitmap.add(3000000));
+        assertEquals(expected.size(), bitmap.getCardinality());
+        for (int value : expected) {
+            assertTrue(bitmap.contains(value));
+        }
+        for (int i = 0; i < 5000; ++i) {
+            int value = random.nextInt(Integer.MAX_VALUE);
+            assertEquals(expected.contains(value), bitmap.contains(value));
+        }
+    }
+
+    @Test
+    public void bitmap_compressesDenseIds() {
+        // Like PMC ids mined in a run: most of a range, with gaps.
+        IntBitmap bitmap = new IntBitmap();
+        Random random = new Random(7);
+        for (int value = 5000000; value < 5500000; ++value) {
+            if (random.nextInt(4) != 0) {
+                bitmap.add(value);
+            }
+        }
+        assertTrue(bitmap.getCardinality() > 300000);
+        assertTrue(bitmap.getSizeInBytes() < bitmap.getCardinality() / 4);
+    }
+
+    @Test
+    public void record_survivesReopen() throws IOException {
+        Path file = newJournalFile();
+        try (ProgressJournal journal = ProgressJournal.open(file)) {
+            assertTrue(journal.record("PMC101", ProgressJournal.Outcome.SENTENCES));
+            assertTrue(journal.record("102", ProgressJournal.Outcome.EMPTY));
+            assertTrue(journal.record("103", ProgressJournal.Outcome.NOT_RANDOMIZED_CLINICAL_TRIALS));
+            assertTrue(journal.record("104", ProgressJournal.Outcome.ERROR));
+            // The first outcome is kept, and ids that are not numeric are not journaled.
+            assertFalse(journal.record("101", ProgressJournal.Outcome.EMPTY));
+            assertFalse(journal.record("PMCxyz", ProgressJournal.Outcome.SENTENCES));
+            assertNull(journal.getOutcome("PMCxyz"));
+        }
+        try (ProgressJournal journal = ProgressJournal.open(file)) {
+            assertEquals(ProgressJournal.Outcome.SENTENCES, journal.getOutcome("101"));
+            assertEquals(ProgressJournal.Outcome.EMPTY, journal.getOutcome("PMC102"));
+            assertEquals(ProgressJournal.Outcome.NOT_RANDOMIZED_CLINICAL_TRIALS, journal.getOutcome("103"));
+            assertEquals(ProgressJournal.Outcome.ERROR, journal.getOutcome("104"));
+            assertNull(journal.getOutcome("105"));
+            assertEquals(1, journal.getCount(ProgressJournal.Outcome.SENTENCES));
+            assertEquals(1, journal.getCount(ProgressJournal.Outcome.EMPTY));
+            assertEquals(8 + 4 * 8, Files.size(file));
+        }
+    }
+
+    @Test
+    public void open_dropsTornTail() throws IOException {
+        Path file = newJournalFile();
+        try (ProgressJournal journal = ProgressJournal.open(file)) {
+            for (String pmcid : pmcids(0, 1000)) {
+                journal.record(pmcid, ProgressJournal.Outcome.SENTENCES);
+            }
+        }
+        long size = Files.size(file);
+        // A record cut by a crash, then a garbled one after it.
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(size - 3);
+            ByteBuffer garbage = ByteBuffer.allocate(16);
+            garbage.putLong(0, 0x0102030405060708L).putLong(8, -1L);
+            channel.write(garbage, size - 3);
+        }
+        try (ProgressJournal journal = ProgressJournal.open(file)) {
+            assertEquals(999, journal.getCount(ProgressJournal.Outcome.SENTENCES));
+            assertNull(journal.getOutcome("999"));
+            assertEquals(size - 8, Files.size(file));
+            assertTrue(journal.record("999", ProgressJournal.Outcome.EMPTY));
+        }
+        try (ProgressJournal journal = ProgressJournal.open(file)) {
+            assertEquals(ProgressJournal.Outcome.EMPTY, journal.getOutcome("999"));
+            assertEquals(1000, journal.getCount(ProgressJournal.Outcome.SENTENCES)
+                    + journal.getCount(ProgressJournal.Outcome.EMPTY));
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void open_rejectsOtherFiles() throws IOException {
+        Path file = newJournalFile();
+        Files.write(file, "not a journal".getBytes("UTF-8"));
+        ProgressJournal.open(file).close();
+    }
+
+    @Test
+    public void journaledStore_skipsFinishedArticlesOnRestart() throws Exception {
+        FakeDynamoDB fake = new FakeDynamoDB(0);
+        fake.addPending(pmcids(0, 300));
+        DynamoDBDemographicsStore dynamoDBStore = new DynamoDBDemographicsStore(fake.client(),
+                DynamoDBDemographicsStore.TABLE_NAME);
+        Map<String, String> sentence = new HashMap<>();
+        sentence.put("text", "A total of 585 women completed the study.");
+        sentence.put("section", "Abstract");
+        List<Map<String, String>> sentences = Collections.singletonList(sentence);
+
+        Path file = newJournalFile();
+        try (ProgressJournal journal = ProgressJournal.open(file)) {
+            PipelinedDemographicsStore store = new PipelinedDemographicsStore(new JournaledDemographicsStore(
+                    dynamoDBStore, journal), 4, 16);
+            Map<String, DemographicsStore.Status> statuses = store.getStatuses(pmcids(0, 200));
+            for (String pmcid : pmcids(0, 200)) {
+                assertEquals(DemographicsStore.Status.PENDING, statuses.get(pmcid));
+                if (pmcid.endsWith("1")) {
+                    store.putErrorStatus(pmcid, MiningOutcome.EMPTY);
+                } else if (pmcid.endsWith("2")) {
+                    store.putErrorStatus(pmcid, MiningOutcome.NOT_RANDOMIZED_CLINICAL_TRIALS);
+                } else {
+                    store.putSentences(pmcid, sentences);
+                }
+            }
+            store.close();
+            assertEquals(160, journal.getCount(ProgressJournal.Outcome.SENTENCES));
+            assertEquals(20, journal.getCount(ProgressJournal.Outcome.EMPTY));
+            assertEquals(20, journal.getCount(ProgressJournal.Outcome.NOT_RANDOMIZED_CLINICAL_TRIALS));
+        }
+
+        // After a restart, only the articles not finished are asked from the table.
+        try (ProgressJournal journal = ProgressJournal.open(file)) {
+            JournaledDemographicsStore store = new JournaledDemographicsStore(dynamoDBStore, journal);
+            int requests = fake.getRequestCount();
+            Map<String, DemographicsStore.Status> statuses = store.getStatuses(pmcids(0, 200));
+            assertEquals(DemographicsStore.Status.DONE, store.getStatus("5"));
+            assertEquals(DemographicsStore.Status.FAILED, store.getStatus("11"));
+            assertEquals(requests, fake.getRequestCount());
+            assertEquals(DemographicsStore.Status.DONE, statuses.get("0"));
+            assertEquals(DemographicsStore.Status.FAILED, statuses.get("2"));
+
+            statuses = store.getStatuses(pmcids(150, 300));
+            assertEquals(requests + 1, fake.getRequestCount());
+            assertEquals(150, statuses.size());
+            assertEquals(DemographicsStore.Status.PENDING, statuses.get("250"));
+        }
+    }
+}
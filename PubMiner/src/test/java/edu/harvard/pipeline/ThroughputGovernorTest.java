@@ -0,0 +1,105 @@
+package edu.harvard.pipeline;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class ThroughputGovernorTest {
+    private static List<Map<String, String>> sentences(int length) {
+        StringBuilder text = new StringBuilder();
+        while (text.length() < length) {
+            text.append("A total of 585 women completed the study. ");
+        }
+        Map<String, String> sentence = new HashMap<>();
+        sentence.put("text", text.toString());
+        sentence.put("section", "Abstract");
+        return Collections.singletonList(sentence);
+    }
+
+    private static List<String> pmcids(int count) {
+        List<String> pmcids = new ArrayList<>();
+        for (int i = 0; i < count; ++i) {
+            pmcids.add(Integer.toString(i));
+        }
+        return pmcids;
+    }
+
+    @Test
+    public void acquire_pacesToRate() throws InterruptedException {
+        ThroughputGovernor governor = new ThroughputGovernor(200);
+        long start = System.nanoTime();
+        // A second of capacity goes at once, the rest at 200 units per second.
+        for (int i = 0; i < 150; ++i) {
+            governor.acquire();
+            governor.recordConsumed(2);
+        }
+        long millis = (System.nanoTime() - start) / 1000000;
+        assertTrue(millis + " ms", millis >= 400 && millis < 3000);
+        assertEquals(150, governor.getWriteCount());
+        assertEquals(300, governor.getConsumedUnits(), 1e-9);
+        assertEquals(0, governor.getThrottleCount());
+    }
+
+    @Test
+    public void recordThrottle_halvesRateOncePerSecond() {
+        ThroughputGovernor governor = new ThroughputGovernor(100, 30, 100);
+        governor.recordThrottle();
+        assertEquals(50, governor.getRate(), 1e-9);
+        governor.recordThrottle();
+        assertEquals(50, governor.getRate(), 1e-9);
+        assertEquals(2, governor.getThrottleCount());
+        assertTrue(governor.toString().contains("2 throttled"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_rejectsBadRates() {
+        new ThroughputGovernor(10, 20, 100);
+    }
+
+    @Test
+    public void governedStore_retriesThrottledWritesAndSlowsCallers() throws Exception {
+        // Without a governor, the writes past the capacity of a second fail.
+        FakeDynamoDB fake = new FakeDynamoDB(0);
+        fake.addPending(pmcids(100));
+        fake.setWriteCapacity(100);
+        PipelinedDemographicsStore store = new PipelinedDemographicsStore(new DynamoDBDemographicsStore(
+                fake.client(), DynamoDBDemographicsStore.TABLE_NAME), 4, 16);
+        for (String pmcid : pmcids(100)) {
+            store.putSentences(pmcid, sentences(1500));
+        }
+        store.close();
+        assertTrue(store.getFailedCount() > 0);
+
+        // Every article takes 2 units: with the governor, the callers are held to about 50 a second.
+        fake = new FakeDynamoDB(0);
+        fake.addPending(pmcids(100));
+        fake.setWriteCapacity(100);
+        ThroughputGovernor governor = new ThroughputGovernor(100);
+        DynamoDBDemographicsStore dynamoDBStore = new DynamoDBDemographicsStore(fake.client(),
+                DynamoDBDemographicsStore.TABLE_NAME, false, governor);
+        assertSame(governor, dynamoDBStore.getGovernor());
+        store = new PipelinedDemographicsStore(dynamoDBStore, 4, 16, governor);
+        long start = System.nanoTime();
+        for (String pmcid : pmcids(100)) {
+            store.putSentences(pmcid, sentences(1500));
+        }
+        long millis = (System.nanoTime() - start) / 1000000;
+        store.close();
+        assertTrue(millis + " ms", millis >= 500);
+        assertEquals(100, store.getWrittenCount());
+        assertEquals(0, store.getFailedCount());
+        assertEquals(fake.throttles.get(), governor.getThrottleCount());
+        assertEquals(100, governor.getWriteCount());
+        assertEquals(200, governor.getConsumedUnits(), 1e-9);
+        assertEquals(0, governor.getWaitingCount());
+        for (String pmcid : pmcids(100)) {
+            assertNotNull(fake.getItem(pmcid).get(DynamoDBDemographicsStore.SENTENCES_COLUMN_NAME));
+        }
+    }
+}
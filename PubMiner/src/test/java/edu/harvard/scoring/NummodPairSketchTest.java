@@ -0,0 +1,216 @@
+package edu.harvard.scoring;
+
+import edu.harvard.nlp.DemographicRanker;
+import edu.uwm.pmcarticleparser.structuralelements.DemographicScoringModel;
+import edu.uwm.pmcarticleparser.structuralelements.LemmaCounts;
+import edu.uwm.pmcarticleparser.structuralelements.LemmaDictionary;
+import edu.uwm.pmcarticleparser.structuralelements.NummodPairWeights;
+import edu.uwm.pmcarticleparser.structuralelements.PMCArticleSentence;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class NummodPairSketchTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static List<PMCArticleSentence> demographicSentences(List<PMCArticleSentence> sentences) {
+        return sentences.stream().filter(s -> s.hasLemmas() && s.hasDependencyLabels() && s.hasAnchorWords()
+                && s.getNummodCount() > 0).collect(Collectors.toList());
+    }
+
+    // The number of articles each pair occurs in, counted exactly.
+    private static void countPairs(List<PMCArticleSentence> demographicSentences, Map<String, Integer> counts) {
+        LemmaDictionary dictionary = LemmaDictionary.getInstance();
+        Set<String> pairs = new HashSet<>();
+        for (PMCArticleSentence sentence : demographicSentences) {
+            int[] lemmaIds = sentence.getLemmaIds();
+            for (int index : sentence.getNummodIndexArray()) {
+                pairs.add(dictionary.lemma(lemmaIds[index]) + " " + dictionary.lemma(lemmaIds[index + 1]));
+            }
+        }
+        for (String pair : pairs) {
+            counts.merge(pair, 1, Integer::sum);
+        }
+    }
+
+    @Test
+    public void estimate_neverBelowTrueCount() {
+        Random random = new Random(37);
+        // Narrow enough that pairs collide.
+        NummodPairSketch sketch = new NummodPairSketch(2, 8, 5);
+        Map<String, Integer> counts = new HashMap<>();
+        for (int a = 0; a < 300; ++a) {
+            List<PMCArticleSentence> sentences = demographicSentences(
+                    SentenceRescorerTest.randomArticle(random, random.nextInt(30)));
+            sketch.addArticle(sentences);
+            countPairs(sentences, counts);
+        }
+        assertEquals(300, sketch.getArticleCount());
+        assertFalse(counts.isEmpty());
+        for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+            String[] pair = entry.getKey().split(" ");
+            assertTrue(entry.getKey(), sketch.estimate(pair[0], pair[1]) >= entry.getValue());
+        }
+    }
+
+    @Test
+    public void merge_sameAsOneSketch() {
+        Random random = new Random(41);
+        NummodPairSketch all = new NummodPairSketch();
+        NummodPairSketch first = new NummodPairSketch();
+        NummodPairSketch second = new NummodPairSketch();
+        Map<String, Integer> counts = new HashMap<>();
+        for (int a = 0; a < 400; ++a) {
+            List<PMCArticleSentence> sentences = demographicSentences(
+                    SentenceRescorerTest.randomArticle(random, random.nextInt(30)));
+            all.addArticle(sentences);
+            (a % 3 == 0 ? first : second).addArticle(sentences);
+            countPairs(sentences, counts);
+        }
+        first.merge(second);
+
+        assertEquals(all.getArticleCount(), first.getArticleCount());
+        for (String pair : counts.keySet()) {
+            String[] lemmas = pair.split(" ");
+            assertEquals(pair, all.estimate(lemmas[0], lemmas[1]), first.estimate(lemmas[0], lemmas[1]));
+            // Wide enough that the few pairs do not collide.
+            assertEquals(pair, (long) counts.get(pair), first.estimate(lemmas[0], lemmas[1]));
+        }
+        assertEquals(all.getHeavyHitters().toString(), first.getHeavyHitters().toString());
+
+        try {
+            first.merge(new NummodPairSketch(2, 1024, 10));
+            fail("Merged sketches of different dimensions");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    @Test
+    public void addArticle_pairsWithEqualStringHashesKeptApart() {
+        // "Aa" and "BB" have the same String.hashCode.
+        PMCArticleSentence sentence = new PMCArticleSentence("2 Aa and 2 BB.");
+        sentence.setLemmas(Arrays.asList("2", "Aa", "and", "2", "BB"));
+        sentence.setDependencyLabels(Arrays.asList(Optional.of("nummod"), Optional.<String>empty(),
+                Optional.<String>empty(), Optional.of("nummod"), Optional.<String>empty()));
+        NummodPairSketch sketch = new NummodPairSketch();
+        sketch.addArticle(Collections.singletonList(sentence));
+        sketch.addArticle(Collections.singletonList(sentence));
+
+        assertEquals(2, sketch.estimate("2", "Aa"));
+        assertEquals(2, sketch.estimate("2", "BB"));
+        Set<String> hitters = sketch.getHeavyHitters().stream().map(h -> h.getNumLemma() + " " + h.getHeadLemma())
+                .collect(Collectors.toSet());
+        assertEquals(new HashSet<>(Arrays.asList("2 Aa", "2 BB")), hitters);
+    }
+
+    @Test
+    public void heavyHitters_mostFrequentPairs() {
+        Random random = new Random(43);
+        NummodPairSketch sketch = new NummodPairSketch(4, 1 << 12, 10);
+        Map<String, Integer> counts = new HashMap<>();
+        for (int a = 0; a < 500; ++a) {
+            List<PMCArticleSentence> sentences = demographicSentences(
+                    SentenceRescorerTest.randomArticle(random, random.nextInt(30)));
+            sketch.addArticle(sentences);
+            countPairs(sentences, counts);
+        }
+        List<Integer> expected = counts.values().stream().sorted((x, y) -> y - x).limit(10)
+                .collect(Collectors.toList());
+
+        List<NummodPairSketch.HeavyHitter> hitters = sketch.getHeavyHitters();
+        assertEquals(10, hitters.size());
+        for (int i = 0; i < hitters.size(); ++i) {
+            NummodPairSketch.HeavyHitter hitter = hitters.get(i);
+            assertEquals(hitter.toString(), (long) expected.get(i), hitter.getArticleCount());
+            assertEquals((long) counts.get(hitter.getNumLemma() + " " + hitter.getHeadLemma()),
+                    hitter.getArticleCount());
+        }
+    }
+
+    @Test
+    public void write_roundTrip() throws Exception {
+        Random random = new Random(47);
+        NummodPairSketch sketch = new NummodPairSketch(3, 256, 20);
+        for (int a = 0; a < 100; ++a) {
+            sketch.addArticle(demographicSentences(SentenceRescorerTest.randomArticle(random, random.nextInt(30))));
+        }
+        Path file = folder.getRoot().toPath().resolve("nummod-sketch.bin");
+        sketch.write(file);
+        NummodPairSketch read = NummodPairSketch.read(file);
+
+        assertEquals(sketch.getArticleCount(), read.getArticleCount());
+        assertEquals(sketch.getHeavyHitters().toString(), read.getHeavyHitters().toString());
+        for (String num : new String[] {"40", "65", "twenty", "12"}) {
+            for (String head : new String[] {"patient", "year", "woman", "week"}) {
+                assertEquals(sketch.estimate(num, head), read.estimate(num, head));
+            }
+        }
+        // Read back sketches go on counting and merging.
+        read.merge(sketch);
+        assertEquals(2 * sketch.getArticleCount(), read.getArticleCount());
+    }
+
+    @Test
+    public void idfWeights_favourRarePairs() {
+        LemmaDictionary dictionary = LemmaDictionary.getInstance();
+        NummodPairSketch sketch = new NummodPairSketch();
+        Random random = new Random(53);
+        List<List<PMCArticleSentence>> articles = new ArrayList<>();
+        for (int a = 0; a < 200; ++a) {
+            List<PMCArticleSentence> sentences = demographicSentences(
+                    SentenceRescorerTest.randomArticle(random, random.nextInt(30)));
+            articles.add(sentences);
+            sketch.addArticle(sentences);
+        }
+        NummodPairWeights weights = sketch.idfWeights();
+        assertEquals("idf200", weights.getName());
+        double unseen = weights.weight(dictionary.id("1000"), dictionary.id("participant"));
+        assertEquals(Math.log(201) + 1, unseen, 1e-9);
+        NummodPairSketch.HeavyHitter frequent = sketch.getHeavyHitters().get(0);
+        double common = weights.weight(dictionary.id(frequent.getNumLemma()), dictionary.id(frequent.getHeadLemma()));
+        assertTrue(common >= 1);
+        assertTrue(common < unseen);
+
+        // Weights of 1 score as the default model does.
+        DemographicScoringModel model = DemographicScoringModel.getDefault();
+        DemographicScoringModel unit = model.withPairWeights(new NummodPairWeights() {
+            @Override
+            public double weight(int numLemmaId, int headLemmaId) {
+                return 1;
+            }
+
+            @Override
+            public String getName() {
+                return "unit";
+            }
+        });
+        assertEquals(model.getVersion() + "+unit", unit.getVersion());
+        DemographicScoringModel idf = model.withPairWeights(weights);
+        for (List<PMCArticleSentence> sentences : articles) {
+            LemmaCounts numCounts = DemographicRanker.countNummodLemmas(sentences);
+            for (PMCArticleSentence sentence : sentences) {
+                double score = sentence.getDemographicScore(numCounts, model);
+                assertEquals(score, sentence.getDemographicScore(numCounts, unit), 1e-9);
+                assertTrue(sentence.getDemographicScore(numCounts, idf) >= score - 1e-9);
+            }
+            assertEquals(DemographicRanker.top(sentences, numCounts, 3),
+                    DemographicRanker.top(sentences, numCounts, 3, unit));
+        }
+    }
+}
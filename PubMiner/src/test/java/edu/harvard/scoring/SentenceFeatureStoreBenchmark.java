@@ -0,0 +1,83 @@
+package edu.harvard.scoring;
+
+import edu.harvard.nlp.DemographicRanker;
+import edu.harvard.scoring.SentenceFeatureStore.Column;
+import edu.uwm.pmcarticleparser.structuralelements.DemographicScoringModel;
+
+import java.io.IOException;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * Measures a sentence feature store on synthetic features: how fast
+ * articles are appended, how fast its mapped columns are scanned for an
+ * aggregate (the mean score of the demographic sentences of each section,
+ * and the count of each numeric modifier), and how fast the corpus is
+ * rescored from the store compared with features already on the heap.
+ *
+ * Usage: SentenceFeatureStoreBenchmark [articles] [sentences per article]
+ */
+public class SentenceFeatureStoreBenchmark {
+    public static void main(String[] args) throws IOException {
+        int articles = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        int perArticle = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+        SentenceFeatures features = SentenceRescorerBenchmark.syntheticFeatures(articles, perArticle);
+
+        Path directory = Files.createTempDirectory("sentence-features");
+        try {
+            long start = System.nanoTime();
+            try (SentenceFeatureStoreWriter writer = SentenceFeatureStoreWriter.open(directory)) {
+                writer.append(features);
+            }
+            long nanos = System.nanoTime() - start;
+            SentenceFeatureStore store = SentenceFeatureStore.open(directory);
+            System.out.println(String.format("appended %d articles, %d sentences in %d ms, %.0f sentences/s",
+                    store.getArticleCount(), store.getSentenceCount(), nanos / 1000000,
+                    store.getSentenceCount() * 1e9 / nanos));
+
+            for (int pass = 0; pass < 5; ++pass) {
+                start = System.nanoTime();
+                double[] sectionScores = new double[store.getSectionCount()];
+                long[] sectionCounts = new long[store.getSectionCount()];
+                IntBuffer sections = store.ints(Column.SENTENCE_SECTION);
+                FloatBuffer scores = store.scores();
+                for (int s = 0; s < store.getSentenceCount(); ++s) {
+                    float score = scores.get(s);
+                    if (!Float.isNaN(score)) {
+                        int section = sections.get(s);
+                        sectionScores[section] += score;
+                        ++sectionCounts[section];
+                    }
+                }
+                long[] modifiers = store.countValues(Column.PAIR_NUM_LEMMA);
+                nanos = System.nanoTime() - start;
+                long bytes = 8L * store.getSentenceCount() + 4L * store.getPairCount();
+                System.out.println(String.format("scan: %.0f sentences/s, %.2f GB/s (%s %.2f, %d modifiers)",
+                        store.getSentenceCount() * 1e9 / nanos, bytes / (double) nanos, store.getSection(0),
+                        sectionScores[0] / Math.max(1, sectionCounts[0]), modifiers.length));
+            }
+
+            SentenceRescorer rescorer = new SentenceRescorer(DemographicScoringModel.getDefault(),
+                    DemographicRanker.DEFAULT_TOP_K);
+            for (int pass = 0; pass < 5; ++pass) {
+                start = System.nanoTime();
+                SentenceRanking fromStore = rescorer.rescore(store);
+                long storeNanos = System.nanoTime() - start;
+                start = System.nanoTime();
+                SentenceRanking fromHeap = rescorer.rescore(features);
+                long heapNanos = System.nanoTime() - start;
+                System.out.println(String.format("rescore: store %.0f, heap %.0f sentences/s (%d identical)",
+                        store.getSentenceCount() * 1e9 / storeNanos, features.getSentenceCount() * 1e9 / heapNanos,
+                        fromStore.diff(fromHeap).getIdentical()));
+            }
+        } finally {
+            try (Stream<Path> files = Files.walk(directory)) {
+                files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+}
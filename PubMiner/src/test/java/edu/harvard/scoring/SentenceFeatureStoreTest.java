@@ -0,0 +1,192 @@
+package edu.harvard.scoring;
+
+import edu.harvard.nlp.DemographicRanker;
+import edu.harvard.scoring.SentenceFeatureStore.Column;
+import edu.uwm.pmcarticleparser.structuralelements.DemographicScoringModel;
+import edu.uwm.pmcarticleparser.structuralelements.LemmaDictionary;
+import edu.uwm.pmcarticleparser.structuralelements.PMCArticleSentence;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.FloatBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.nio.IntBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class SentenceFeatureStoreTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static List<List<PMCArticleSentence>> randomArticles(Random random, int count) {
+        List<List<PMCArticleSentence>> articles = new ArrayList<>();
+        for (int a = 0; a < count; ++a) {
+            articles.add(SentenceRescorerTest.randomArticle(random, random.nextInt(40)));
+        }
+        return articles;
+    }
+
+    @Test
+    public void store_sameFeaturesAndRanking() throws Exception {
+        Path directory = folder.getRoot().toPath().resolve("store");
+        List<List<PMCArticleSentence>> articles = randomArticles(new Random(37), 150);
+        SentenceFeatures.Builder builder = SentenceFeatures.builder();
+        try (SentenceFeatureStoreWriter writer = SentenceFeatureStoreWriter.open(directory)) {
+            for (int a = 0; a < 100; ++a) {
+                writer.append("PMC" + a, articles.get(a));
+                builder.addArticle("PMC" + a, articles.get(a));
+            }
+        }
+        try (SentenceFeatureStoreWriter writer = SentenceFeatureStoreWriter.open(directory)) {
+            for (int a = 100; a < 150; ++a) {
+                writer.append("PMC" + a, articles.get(a));
+                builder.addArticle("PMC" + a, articles.get(a));
+            }
+            assertEquals(150, writer.getArticleCount());
+        }
+        SentenceFeatures expected = builder.build();
+
+        SentenceFeatureStore store = SentenceFeatureStore.open(directory);
+        assertEquals(150, store.getArticleCount());
+        assertEquals(expected.getSentenceCount(), store.getSentenceCount());
+        assertEquals(expected.getPairCount(), store.getPairCount());
+        assertEquals(DemographicScoringModel.getDefault().getVersion(), store.getModelVersion());
+
+        SentenceFeatures features = store.getFeatures(40, 130);
+        assertEquals(90, features.getArticleCount());
+        for (int a = 0; a < features.getArticleCount(); ++a) {
+            assertEquals(expected.getPmcid(a + 40), features.getPmcid(a));
+            int offset = expected.getSentenceStart(a + 40) - features.getSentenceStart(a);
+            for (int s = features.getSentenceStart(a); s < features.getSentenceEnd(a); ++s) {
+                assertEquals(expected.getSentenceIndex(s + offset), features.getSentenceIndex(s));
+                assertEquals(expected.getSection(s + offset), features.getSection(s));
+                assertEquals(expected.getPosition(s + offset), features.getPosition(s));
+                assertEquals(expected.getPairEnd(s + offset) - expected.getPairStart(s + offset),
+                        features.getPairEnd(s) - features.getPairStart(s));
+                for (int l = features.getLemmaStart(s); l < features.getLemmaEnd(s); ++l) {
+                    assertEquals(expected.getLemmaIds()[l - features.getLemmaStart(s)
+                            + expected.getLemmaStart(s + offset)], features.getLemmaIds()[l]);
+                }
+            }
+        }
+
+        SentenceRescorer rescorer = new SentenceRescorer(DemographicScoringModel.getDefault(),
+                DemographicRanker.DEFAULT_TOP_K);
+        SentenceRanking ranking = rescorer.rescore(store);
+        assertEquals(150, ranking.getArticleCount());
+        for (int a = 0; a < 150; ++a) {
+            assertArrayEquals(SentenceRescorerTest.minedTop(articles.get(a), DemographicRanker.DEFAULT_TOP_K),
+                    ranking.getTop(a));
+        }
+        assertEquals(ranking.getArticleCount(), ranking.diff(rescorer.rescore(expected)).getIdentical());
+    }
+
+    @Test
+    public void columns_scan() throws Exception {
+        Path directory = folder.getRoot().toPath().resolve("store");
+        List<List<PMCArticleSentence>> articles = randomArticles(new Random(41), 80);
+        SentenceFeatures.Builder builder = SentenceFeatures.builder();
+        try (SentenceFeatureStoreWriter writer = SentenceFeatureStoreWriter.open(directory)) {
+            for (int a = 0; a < articles.size(); ++a) {
+                writer.append("PMC" + a, articles.get(a));
+                builder.addArticle("PMC" + a, articles.get(a));
+            }
+        }
+        SentenceFeatures expected = builder.build();
+        SentenceRanking ranking = new SentenceRescorer(DemographicScoringModel.getDefault(), Integer.MAX_VALUE)
+                .rescore(expected);
+        int demographic = 0;
+        for (int a = 0; a < ranking.getArticleCount(); ++a) {
+            demographic += ranking.getTop(a).length;
+        }
+
+        SentenceFeatureStore store = SentenceFeatureStore.open(directory);
+        FloatBuffer scores = store.scores();
+        IntBuffer articleColumn = store.ints(Column.SENTENCE_ARTICLE);
+        int scored = 0;
+        for (int s = 0; s < store.getSentenceCount(); ++s) {
+            if (!Float.isNaN(scores.get(s))) {
+                ++scored;
+            }
+            assertEquals(expected.getPmcid(articleColumn.get(s)), store.getPmcid(articleColumn.get(s)));
+        }
+        assertEquals(demographic, scored);
+
+        long[] modifiers = store.countValues(Column.PAIR_NUM_LEMMA);
+        long pairs = 0;
+        int forties = 0;
+        for (int lemma = 0; lemma < modifiers.length; ++lemma) {
+            pairs += modifiers[lemma];
+            if (modifiers[lemma] > 0 && store.getLemma(lemma).equals("40")) {
+                forties += modifiers[lemma];
+            }
+        }
+        assertEquals(store.getPairCount(), pairs);
+        int expectedForties = 0;
+        for (int id : expected.getNumLemmaIds()) {
+            if ("40".equals(LemmaDictionary.getInstance().lemma(id))) {
+                ++expectedForties;
+            }
+        }
+        assertEquals(expectedForties, forties);
+        try {
+            store.ints(Column.SENTENCE_INDEX).put(0, 1);
+            fail("Columns are read-only");
+        } catch (ReadOnlyBufferException ex) {
+            // expected
+        }
+    }
+
+    @Test
+    public void uncommittedRows_dropped() throws Exception {
+        Path directory = folder.getRoot().toPath().resolve("store");
+        List<List<PMCArticleSentence>> articles = randomArticles(new Random(43), 20);
+        try (SentenceFeatureStoreWriter writer = SentenceFeatureStoreWriter.open(directory)) {
+            for (int a = 0; a < 10; ++a) {
+                writer.append("PMC" + a, articles.get(a));
+            }
+        }
+        // Rows of an article a crashed writer did not commit.
+        for (String file : new String[] {Column.SENTENCE_INDEX.getFileName(), Column.PAIR_NUM_LEMMA.getFileName(),
+                SentenceFeatureStore.LEMMA_FILE, SentenceFeatureStore.PMCID_FILE}) {
+            try (OutputStream out = Files.newOutputStream(directory.resolve(file), StandardOpenOption.APPEND)) {
+                out.write(new byte[] {0, 3, 'a', 'b', 'c', 1, 2});
+            }
+        }
+        assertEquals(10, SentenceFeatureStore.open(directory).getArticleCount());
+
+        try (SentenceFeatureStoreWriter writer = SentenceFeatureStoreWriter.open(directory)) {
+            for (int a = 10; a < 20; ++a) {
+                writer.append("PMC" + a, articles.get(a));
+            }
+        }
+        SentenceFeatureStore store = SentenceFeatureStore.open(directory);
+        assertEquals(20, store.getArticleCount());
+        SentenceRanking ranking = new SentenceRescorer(DemographicScoringModel.getDefault(),
+                DemographicRanker.DEFAULT_TOP_K).rescore(store);
+        for (int a = 0; a < 20; ++a) {
+            assertEquals("PMC" + a, store.getPmcid(a));
+            assertArrayEquals(SentenceRescorerTest.minedTop(articles.get(a), DemographicRanker.DEFAULT_TOP_K),
+                    ranking.getTop(a));
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void open_otherModelVersion() throws Exception {
+        Path directory = folder.getRoot().toPath().resolve("store");
+        SentenceFeatureStoreWriter.open(directory).close();
+        Properties properties = new Properties();
+        properties.setProperty("version", "other");
+        SentenceFeatureStoreWriter.open(directory, DemographicScoringModel.fromProperties(properties));
+    }
+}
@@ -0,0 +1,124 @@
+package edu.harvard.scoring;
+
+import edu.harvard.nlp.DemographicRanker;
+import edu.uwm.pmcarticleparser.structuralelements.DemographicScoringModel;
+import edu.uwm.pmcarticleparser.structuralelements.LemmaDictionary;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+
+/**
+ * Measures how fast a corpus is rescored from its stored features, under the
+ * default model, under a model with section and position weights and under
+ * the default model with idf pair weights of a sketch of the corpus.
+ *
+ * The features are synthetic: articles of demographic-looking sentences with
+ * one to three numeric modifiers in front of keywords or other words, and
+ * lemmas drawn from a vocabulary with a Zipf distribution.
+ *
+ * Usage: SentenceRescorerBenchmark [articles] [sentences per article]
+ */
+public class SentenceRescorerBenchmark {
+    private static final List<String> NEXT = Arrays.asList("patient", "year", "woman", "man", "subject", "visit",
+            "week", "mg");
+    private static final List<String> SECTIONS = Arrays.asList("Abstract", "Methods", "Results", "Participants");
+
+    public static void main(String[] args) {
+        int articles = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        int perArticle = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+
+        SentenceFeatures features = syntheticFeatures(articles, perArticle);
+        System.out.println(String.format("%d articles, %d sentences, %d numeric modifiers",
+                features.getArticleCount(), features.getSentenceCount(), features.getPairCount()));
+
+        DemographicScoringModel model = DemographicScoringModel.getDefault();
+        Properties properties = new Properties();
+        properties.setProperty("version", "weighted");
+        properties.setProperty("anchorWords", String.join(",", model.getAnchorWords()));
+        properties.setProperty("excludedNummods", String.join(",", model.getExcludedNummods()));
+        for (String keyword : model.getKeywordBases().keySet()) {
+            properties.setProperty("keyword." + keyword, model.getKeywordBases().get(keyword) + ","
+                    + model.getKeywordMaxes().get(keyword));
+        }
+        properties.setProperty("section.Participants", "1.5");
+        properties.setProperty("position.1", "1.2");
+        DemographicScoringModel weighted = DemographicScoringModel.fromProperties(properties);
+
+        NummodPairSketch sketch = new NummodPairSketch();
+        long start = System.nanoTime();
+        for (int a = 0; a < features.getArticleCount(); ++a) {
+            sketch.addArticle(features, a, model);
+        }
+        System.out.println(String.format("sketched: %.0f articles/s",
+                features.getArticleCount() * 1e9 / (System.nanoTime() - start)));
+        DemographicScoringModel idf = model.withPairWeights(sketch.idfWeights());
+
+        SentenceRanking ranking = null;
+        SentenceRanking weightedRanking = null;
+        SentenceRanking idfRanking = null;
+        for (int pass = 0; pass < 5; ++pass) {
+            start = System.nanoTime();
+            ranking = new SentenceRescorer(model, DemographicRanker.DEFAULT_TOP_K).rescore(features);
+            long nanos = System.nanoTime() - start;
+            start = System.nanoTime();
+            weightedRanking = new SentenceRescorer(weighted, DemographicRanker.DEFAULT_TOP_K).rescore(features);
+            long weightedNanos = System.nanoTime() - start;
+            start = System.nanoTime();
+            idfRanking = new SentenceRescorer(idf, DemographicRanker.DEFAULT_TOP_K).rescore(features);
+            long idfNanos = System.nanoTime() - start;
+            System.out.println(String.format("model %s: %.0f sentences/s; model %s: %.0f sentences/s; "
+                    + "model %s: %.0f sentences/s", model.getVersion(), features.getSentenceCount() * 1e9 / nanos,
+                    weighted.getVersion(), features.getSentenceCount() * 1e9 / weightedNanos, idf.getVersion(),
+                    features.getSentenceCount() * 1e9 / idfNanos));
+        }
+        System.out.println(ranking.diff(weightedRanking));
+        System.out.println(ranking.diff(idfRanking));
+    }
+
+    /**
+     * Makes the features of articles of demographic-looking sentences
+     */
+    static SentenceFeatures syntheticFeatures(int articles, int perArticle) {
+        LemmaDictionary dictionary = LemmaDictionary.getInstance();
+        int[] numbers = new int[100];
+        for (int i = 0; i < numbers.length; ++i) {
+            numbers[i] = dictionary.id(String.valueOf(i));
+        }
+        int[] next = dictionary.ids(NEXT);
+        int[] vocabulary = new int[20000];
+        for (int i = 0; i < vocabulary.length; ++i) {
+            vocabulary[i] = dictionary.id("w" + i);
+        }
+        int anchor = dictionary.id("patient");
+
+        Random random = new Random(11);
+        SentenceFeatures.Builder builder = SentenceFeatures.builder();
+        int[] lemmas = new int[20];
+        for (int a = 0; a < articles; ++a) {
+            builder.startArticle("PMC" + a);
+            for (int s = 0; s < perArticle; ++s) {
+                builder.startSentence(s, SECTIONS.get(random.nextInt(SECTIONS.size())), 1 + random.nextInt(6));
+                int modifiers = 1 + random.nextInt(3);
+                for (int m = 0; m < modifiers; ++m) {
+                    builder.addPair(numbers[(int) Math.exp(random.nextDouble() * Math.log(numbers.length))],
+                            next[random.nextInt(next.length)]);
+                }
+                for (int l = 0; l < lemmas.length; ++l) {
+                    lemmas[l] = vocabulary[(int) Math.exp(random.nextDouble() * Math.log(vocabulary.length))];
+                }
+                if (random.nextInt(4) != 0) {
+                    lemmas[0] = anchor;
+                }
+                Arrays.sort(lemmas);
+                for (int l = 0; l < lemmas.length; ++l) {
+                    if (l == 0 || lemmas[l] != lemmas[l - 1]) {
+                        builder.addLemma(lemmas[l]);
+                    }
+                }
+            }
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,160 @@
+package edu.harvard.scoring;
+
+import edu.harvard.nlp.DemographicRanker;
+import edu.uwm.pmcarticleparser.structuralelements.DemographicScoringModel;
+import edu.uwm.pmcarticleparser.structuralelements.LemmaCounts;
+import edu.uwm.pmcarticleparser.structuralelements.PMCArticleSentence;
+import org.junit.Test;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class SentenceRescorerTest {
+    private static final List<String> NUMBERS = Arrays.asList("40", "65", "twenty", "12", "1", "one");
+    private static final List<String> WORDS = Arrays.asList("patient", "year", "woman", "man", "visit", "week",
+            "dose", "study");
+
+    /**
+     * Makes the sentences of an article: some not parsed, some without an
+     * anchor word or with excluded numeric modifiers only
+     */
+    static List<PMCArticleSentence> randomArticle(Random random, int count) {
+        List<PMCArticleSentence> sentences = new ArrayList<>();
+        for (int i = 0; i < count; ++i) {
+            PMCArticleSentence sentence = new PMCArticleSentence("Sentence " + i + ".");
+            sentences.add(sentence);
+            if (random.nextInt(5) == 0) {
+                continue;
+            }
+            List<String> lemmas = new ArrayList<>();
+            List<Optional<String>> labels = new ArrayList<>();
+            int tokens = 2 + random.nextInt(8);
+            for (int t = 0; t < tokens; ++t) {
+                if (random.nextInt(3) == 0) {
+                    lemmas.add(NUMBERS.get(random.nextInt(NUMBERS.size())));
+                    labels.add(Optional.of("nummod"));
+                } else {
+                    lemmas.add(WORDS.get(random.nextInt(WORDS.size())));
+                    labels.add(random.nextBoolean() ? Optional.of("nsubj") : Optional.empty());
+                }
+            }
+            sentence.setLemmas(lemmas);
+            sentence.setDependencyLabels(labels);
+        }
+        return sentences;
+    }
+
+    // The best sentences of an article as the miners find them.
+    static int[] minedTop(List<PMCArticleSentence> sentences, int k) {
+        List<PMCArticleSentence> demographicSentences = sentences.stream().filter(s -> s.hasLemmas()
+                && s.hasDependencyLabels() && s.hasAnchorWords() && s.getNummodCount() > 0)
+                .collect(Collectors.toList());
+        LemmaCounts numCounts = DemographicRanker.countNummodLemmas(demographicSentences);
+        List<PMCArticleSentence> top = DemographicRanker.top(demographicSentences, numCounts, k);
+        int[] indices = new int[top.size()];
+        for (int i = 0; i < indices.length; ++i) {
+            indices[i] = sentences.indexOf(top.get(i));
+        }
+        return indices;
+    }
+
+    private static Properties defaultProperties() throws Exception {
+        Properties properties = new Properties();
+        try (InputStream in = DemographicScoringModel.class.getResourceAsStream(
+                "/demographic-scoring-model.properties")) {
+            properties.load(in);
+        }
+        return properties;
+    }
+
+    @Test
+    public void rescore_sameTopAsMiners() {
+        Random random = new Random(23);
+        List<List<PMCArticleSentence>> articles = new ArrayList<>();
+        SentenceFeatures.Builder builder = SentenceFeatures.builder();
+        for (int a = 0; a < 100; ++a) {
+            List<PMCArticleSentence> sentences = randomArticle(random, random.nextInt(60));
+            articles.add(sentences);
+            builder.addArticle("PMC" + a, sentences);
+        }
+        SentenceFeatures features = builder.build();
+
+        for (int k : new int[] {1, DemographicRanker.DEFAULT_TOP_K, 1000}) {
+            SentenceRanking ranking = new SentenceRescorer(DemographicScoringModel.getDefault(), k).rescore(features);
+            assertEquals(articles.size(), ranking.getArticleCount());
+            for (int a = 0; a < articles.size(); ++a) {
+                assertEquals("PMC" + a, ranking.getPmcid(a));
+                assertArrayEquals("article " + a + ", k " + k, minedTop(articles.get(a), k), ranking.getTop(a));
+            }
+        }
+    }
+
+    @Test
+    public void diff_betweenModelVersions() throws Exception {
+        Random random = new Random(31);
+        SentenceFeatures.Builder builder = SentenceFeatures.builder();
+        for (int a = 0; a < 200; ++a) {
+            builder.addArticle("PMC" + a, randomArticle(random, 10 + random.nextInt(50)));
+        }
+        SentenceFeatures features = builder.build();
+        DemographicScoringModel model = DemographicScoringModel.getDefault();
+        SentenceRanking ranking = new SentenceRescorer(model, 3).rescore(features);
+
+        Properties properties = defaultProperties();
+        properties.setProperty("version", "1-copy");
+        SentenceRanking same = new SentenceRescorer(DemographicScoringModel.fromProperties(properties), 3)
+                .rescore(features);
+        SentenceRanking.Diff diff = ranking.diff(same);
+        assertEquals(200, diff.getCompared());
+        assertEquals(200, diff.getIdentical());
+        assertEquals(1, diff.getMeanOverlap(), 0);
+
+        properties.setProperty("version", "2");
+        properties.setProperty("keyword.year", "1,2");
+        properties.setProperty("keyword.week", "8,1");
+        properties.setProperty("excludedNummods", "±,®,0");
+        SentenceRanking other = new SentenceRescorer(DemographicScoringModel.fromProperties(properties), 3)
+                .rescore(features);
+        diff = ranking.diff(other);
+        assertEquals(200, diff.getCompared());
+        assertEquals(200, diff.getIdentical() + diff.getReordered() + diff.getChanged());
+        assertTrue(diff.getChanged() > 0);
+        assertTrue(diff.getMeanOverlap() < 1);
+        assertFalse(diff.getChangedPmcids().isEmpty());
+        assertTrue(diff.toString().startsWith("model 1 -> 2"));
+    }
+
+    @Test
+    public void rescore_positionWeightsFromFirstSentenceOfParagraph() throws Exception {
+        List<PMCArticleSentence> sentences = new ArrayList<>();
+        for (int i = 0; i < 2; ++i) {
+            PMCArticleSentence sentence = new PMCArticleSentence("Forty patients were enrolled.");
+            sentence.setInParagraphIndex(i);
+            sentence.setLemmas(Arrays.asList("forty", "patient", "be", "enroll", "."));
+            sentence.setDependencyLabels(Arrays.asList(Optional.of("nummod"), Optional.of("nsubj:pass"),
+                    Optional.of("aux:pass"), Optional.empty(), Optional.of("punct")));
+            sentences.add(sentence);
+        }
+        SentenceFeatures features = SentenceFeatures.builder().addArticle("PMC1", sentences).build();
+        assertEquals(1, features.getPosition(0));
+        assertEquals(2, features.getPosition(1));
+
+        Properties properties = defaultProperties();
+        properties.setProperty("version", "first-halved");
+        properties.setProperty("position.1", "0.5");
+        DemographicScoringModel model = DemographicScoringModel.fromProperties(properties);
+        LemmaCounts numCounts = DemographicRanker.countNummodLemmas(sentences);
+        double score = sentences.get(1).getDemographicScore(numCounts);
+        assertEquals(score * 0.5, sentences.get(0).getDemographicScore(numCounts, model), 1e-9);
+        assertEquals(score, sentences.get(1).getDemographicScore(numCounts, model), 1e-9);
+        assertArrayEquals(new int[] {1}, new SentenceRescorer(model, 1).rescore(features).getTop(0));
+    }
+}
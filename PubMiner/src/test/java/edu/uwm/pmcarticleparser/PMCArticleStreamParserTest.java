@@ -0,0 +1,163 @@
+package edu.uwm.pmcarticleparser;
+
+import edu.uwm.pmcarticleparser.structuralelements.*;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the streaming parser reads the same content as the DOM parser
+ * did before it was added, as recorded in PMC0000001.golden.txt.
+ */
+public class PMCArticleStreamParserTest {
+    private static final String ARTICLE = "/PMC0000001.nxml";
+    private static final String GOLDEN = "/PMC0000001.golden.txt";
+
+    private static PMCArticle domArticle() throws Exception {
+        try (InputStream inputStream = PMCArticleStreamParserTest.class.getResourceAsStream(ARTICLE)) {
+            return new PMCArticle(inputStream);
+        }
+    }
+
+    private static PMCArticle streamedArticle() throws Exception {
+        try (InputStream inputStream = PMCArticleStreamParserTest.class.getResourceAsStream(ARTICLE)) {
+            return PMCArticleStreamParser.parse(inputStream);
+        }
+    }
+
+    private static List<String> golden() throws IOException {
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                PMCArticleStreamParserTest.class.getResourceAsStream(GOLDEN), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.startsWith("#")) {
+                    lines.add(line);
+                }
+            }
+        }
+        return lines;
+    }
+
+    private static String escape(Object value) {
+        return String.valueOf(value).replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n");
+    }
+
+    private static String line(String key, Object... values) {
+        StringBuilder line = new StringBuilder(key);
+        for (Object value : values) {
+            line.append('\t').append(escape(value));
+        }
+        return line.toString();
+    }
+
+    private static String sentence(String key, PMCArticleSentence sentence) {
+        return line(key, sentence.getIndexInDocument(), sentence.getInParagraphIndex(),
+                sentence.getTotalSentencesInContainingParagraph(), sentence.getSectionName(),
+                sentence.getSubSectionName(), sentence.getText());
+    }
+
+    // Writes the article in the format of the golden file.
+    private static List<String> describe(PMCArticle article) {
+        List<String> lines = new ArrayList<>();
+        lines.add(line("title", article.getTitle()));
+        lines.add(line("pmc-id", article.getPmcId()));
+        lines.add(line("pubmed-id", article.getPubmedId()));
+        lines.add(line("journal", article.getJournal()));
+        lines.add(line("volume", article.getVolume()));
+        lines.add(line("pages", article.getFirstPage(), article.getLastPage()));
+        PMCArticlePublicationDate date = article.getPublicationDate();
+        lines.add(line("date", date.getDay(), date.getMonth(), date.getYear()));
+        for (PMCArticleAuthor author : article.getAuthors()) {
+            lines.add(line("author", author.getFirstName(), author.getLastName(), author.getEmail()));
+        }
+        for (PMCArticleFigure figure : article.getFigures()) {
+            lines.add(line("figure", figure.getId(), figure.getLabel(), figure.getCaption(),
+                    figure.getGraphicLocation()));
+        }
+        for (PMCArticleTable table : article.getTables()) {
+            lines.add(line("table", table.getId(), table.getLabel(), table.getCaption()));
+        }
+        for (PMCArticleReference reference : article.getReferences()) {
+            lines.add(line("reference", reference.getId(), reference.getText()));
+        }
+        lines.add(line("abstract", article.getAbstractText()));
+        lines.add(line("full-text", article.getFullTextText()));
+        for (PMCArticleSentence sentence : article.getAbstract().getAbstractSentences()) {
+            lines.add(sentence("abstract-sentence", sentence));
+        }
+        for (PMCArticleSentence sentence : article.getFullText().getFullTextSentences()) {
+            lines.add(sentence("full-text-sentence", sentence));
+        }
+        return lines;
+    }
+
+    @Test
+    public void parse_matchesGolden() throws Exception {
+        List<String> golden = golden();
+        assertEquals(33, golden.size());
+        assertEquals(golden, describe(streamedArticle()));
+    }
+
+    @Test
+    public void domParser_matchesGolden() throws Exception {
+        assertEquals(golden(), describe(domArticle()));
+    }
+
+    @Test
+    public void parse_tableContent() throws Exception {
+        PMCArticle article;
+        try (InputStream inputStream = PMCArticleStreamParserTest.class.getResourceAsStream(ARTICLE)) {
+            article = PMCArticleStreamParser.parse(inputStream, true);
+        }
+        assertNull(streamedArticle().getTables().get(0).getContent());
+
+        PMCArticleTableContent content = article.getTables().get(0).getContent();
+        assertEquals(5, content.getRowCount());
+        assertEquals(2, content.getHeaderRowCount());
+        assertEquals(3, content.getColumnCount());
+        assertEquals("Group", content.getCell(0, 1));
+        assertEquals("Group", content.getCell(0, 2));
+        assertFalse(content.isSpanned(0, 1));
+        assertTrue(content.isSpanned(0, 2));
+        assertEquals("", content.getCell(1, 0));
+        assertEquals("Control (n=497)", content.getCell(1, 2));
+        assertEquals("Age, years", content.getCell(3, 0));
+        assertTrue(content.isSpanned(3, 0));
+        assertEquals("50\u201374", content.getCell(3, 1));
+        assertEquals(Arrays.asList("Characteristic", "", "Age, years", "Age, years", "Women, n (%)"),
+                content.getColumn(0));
+    }
+
+    @Test
+    public void parse_sectionFilter() throws Exception {
+        PMCSectionFilter filter = PMCSectionFilter.demographics();
+        PMCArticle article;
+        try (InputStream inputStream = PMCArticleStreamParserTest.class.getResourceAsStream(ARTICLE)) {
+            article = PMCArticleStreamParser.parse(inputStream, filter);
+        }
+        List<PMCArticleSentence> all = streamedArticle().getFullText().getFullTextSentences();
+        List<PMCArticleSentence> kept = article.getFullText().getFullTextSentences();
+
+        // Introduction and Discussion are skipped, Methods and Results are kept.
+        assertEquals(all.size() - 5, kept.size());
+        for (int i = 0; i < kept.size(); ++i) {
+            assertEquals(all.get(i + 3).getText(), kept.get(i).getText());
+            assertEquals(i, kept.get(i).getIndexInDocument());
+        }
+        assertEquals("Methods", kept.get(0).getSectionName());
+        assertEquals("Results", kept.get(kept.size() - 1).getSectionName());
+        assertEquals(6, article.getAbstract().getAbstractSentences().size());
+        assertEquals(1, article.getTables().size());
+        assertTrue(filter.getSkippedFraction() > 0 && filter.getSkippedFraction() < 1);
+    }
+}
@@ -0,0 +1,115 @@
+package edu.uwm.pmcarticleparser;
+
+import edu.uwm.pmcarticleparser.structuralelements.PMCArticleSentence;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.*;
+
+public class PMCArticleTest {
+    private static PMCArticle article() throws Exception {
+        try (InputStream inputStream = PMCArticleTest.class.getResourceAsStream("/PMC0000001.nxml")) {
+            return new PMCArticle(inputStream);
+        }
+    }
+
+    @Test
+    public void getFullText_sectionsAndIndices() throws Exception {
+        List<PMCArticleSentence> sentences = article().getFullText().getFullTextSentences();
+
+        assertEquals(12, sentences.size());
+        assertEquals("Introduction", sentences.get(0).getSectionName());
+        assertEquals("Methods", sentences.get(3).getSectionName());
+        assertEquals("Participants", sentences.get(3).getSubSectionName());
+        assertEquals("Participants", sentences.get(5).getSubSectionName());
+        assertEquals("", sentences.get(6).getSubSectionName());
+        assertEquals("Randomization", sentences.get(7).getSubSectionName());
+        for (int i = 0; i < sentences.size(); ++i) {
+            assertEquals(i, sentences.get(i).getIndexInDocument());
+        }
+    }
+
+    @Test
+    public void getFullText_referenceSpans() throws Exception {
+        List<PMCArticleSentence> sentences = article().getFullText().getFullTextSentences();
+
+        PMCArticleSentence citations = sentences.get(0);
+        assertEquals("Screening reduces mortality from colorectal cancer 1,2.", citations.getText());
+        assertEquals(2, citations.getReferenceCount());
+        assertEquals("bibr", citations.getReferenceType(0));
+        assertEquals("B1", citations.getReferenceId(0));
+        assertEquals("1", citations.getText().substring(citations.getReferenceStart(0), citations.getReferenceEnd(0)));
+        assertEquals("B2", citations.getReferenceId(1));
+        assertEquals("2", citations.getText().substring(citations.getReferenceStart(1), citations.getReferenceEnd(1)));
+
+        PMCArticleSentence figure = sentences.get(2);
+        assertEquals(1, figure.getReferenceCount());
+        assertEquals("fig", figure.getReferenceType(0));
+        assertEquals("Figure 1", figure.getText().substring(figure.getReferenceStart(0), figure.getReferenceEnd(0)));
+
+        assertEquals(0, sentences.get(1).getReferenceCount());
+    }
+
+    @Test
+    public void getFullText_referenceSpansAfterCollapsedWhitespace() throws Exception {
+        String xml = "<article><body><sec><title>Results</title><p>Shown  in\n   <xref ref-type=\"fig\" rid=\"F1\">"
+                + "Figure\n 1</xref> and <xref ref-type=\"bibr\" rid=\"B2\">2</xref>. Also   see <xref ref-type="
+                + "\"bibr\" rid=\"B3\">Smith. Jones</xref> below.</p></sec></body></article>";
+        PMCArticle article;
+        try (InputStream inputStream = new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8))) {
+            article = new PMCArticle(inputStream);
+        }
+        List<PMCArticleSentence> sentences = article.getFullText().getFullTextSentences();
+
+        assertEquals(3, sentences.size());
+        PMCArticleSentence first = sentences.get(0);
+        assertEquals("Shown in Figure 1 and 2.", first.getText());
+        assertEquals(2, first.getReferenceCount());
+        assertEquals("Figure 1", first.getText().substring(first.getReferenceStart(0), first.getReferenceEnd(0)));
+        assertEquals("2", first.getText().substring(first.getReferenceStart(1), first.getReferenceEnd(1)));
+        // A reference that a sentence boundary cuts ends with its first sentence.
+        PMCArticleSentence second = sentences.get(1);
+        assertEquals("Also see Smith.", second.getText());
+        assertEquals(1, second.getReferenceCount());
+        assertEquals("B3", second.getReferenceId(0));
+        assertEquals("Smith.", second.getText().substring(second.getReferenceStart(0), second.getReferenceEnd(0)));
+        assertEquals(0, sentences.get(2).getReferenceCount());
+    }
+
+    @Test
+    public void getAbstract_snapshotIsNotModifiedByCallers() throws Exception {
+        PMCArticle article = article();
+        article.getAbstract().addSentence(new PMCArticleSentence("Added by a caller."));
+        article.getAuthors().get(0).setLastName("Changed");
+
+        List<PMCArticleSentence> sentences = article.getAbstract().getAbstractSentences();
+        assertEquals(6, sentences.size());
+        assertSame(sentences.get(0), article.getAbstract().getAbstractSentences().get(0));
+        assertEquals("Smith", article.getAuthors().get(0).getLastName());
+    }
+
+    @Test
+    public void getFullText_concurrentCalls() throws Exception {
+        final PMCArticle article = article();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<List<PMCArticleSentence>>> results = new ArrayList<>();
+            for (int i = 0; i < 16; ++i) {
+                results.add(executor.submit(() -> article.getFullText().getFullTextSentences()));
+            }
+            for (Future<List<PMCArticleSentence>> result : results) {
+                List<PMCArticleSentence> sentences = result.get();
+                assertEquals(12, sentences.size());
+                assertEquals(11, sentences.get(11).getIndexInDocument());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package edu.uwm.pmcarticleparser;
+
+import java.io.ByteArrayInputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/**
+ * Measures the allocations and time spent reading an article through the
+ * production extractor, whose paragraph text is assembled in a per-thread
+ * {@link TextBuffer}, with both the streaming parser and the DOM parser.
+ *
+ * Usage: PMCArticleTextBenchmark [article.nxml] [iterations]
+ */
+public class PMCArticleTextBenchmark {
+    private static long checksum;
+
+    public static void main(String[] args) throws Exception {
+        byte[] xml = args.length > 0 ? Files.readAllBytes(Paths.get(args[0]))
+                : Files.readAllBytes(Paths.get(PMCArticleTextBenchmark.class.getResource("/PMC0000001.nxml").toURI()));
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 5000;
+        System.out.println(xml.length + " bytes, " + iterations + " iterations");
+
+        for (int round = 0; round < 3; ++round) {
+            measure("stream parser", iterations, () -> {
+                PMCArticle article = PMCArticleStreamParser.parse(new ByteArrayInputStream(xml));
+                checksum += article.getFullTextText().length();
+            });
+            measure("DOM parser", iterations, () -> {
+                PMCArticle article = new PMCArticle(new ByteArrayInputStream(xml));
+                checksum += article.getFullTextText().length();
+            });
+        }
+        System.out.println("checksum " + checksum);
+    }
+
+    private static void measure(String name, int iterations, Runnable article) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        long allocatedBefore = threads.getThreadAllocatedBytes(thread);
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; ++i) {
+            article.run();
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = threads.getThreadAllocatedBytes(thread) - allocatedBefore;
+        System.out.println(String.format("%-24s %8d bytes/article %8d ns/article", name, allocated / iterations,
+                elapsed / iterations));
+    }
+}
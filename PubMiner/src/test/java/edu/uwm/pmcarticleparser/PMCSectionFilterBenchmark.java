@@ -0,0 +1,62 @@
+package edu.uwm.pmcarticleparser;
+
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Compares parsing whole articles with parsing only the sections kept by
+ * {@link PMCSectionFilter#demographics()}, and reports the fraction of the
+ * full text that was skipped.
+ *
+ * Usage: PMCSectionFilterBenchmark [directory of .nxml files] [rounds]
+ */
+public class PMCSectionFilterBenchmark {
+    public static void main(String[] args) throws Exception {
+        List<byte[]> articles = new ArrayList<>();
+        if (args.length > 0) {
+            List<Path> files;
+            try (Stream<Path> walk = Files.walk(Paths.get(args[0]))) {
+                files = walk.filter(p -> p.toString().endsWith(".nxml")).sorted().collect(Collectors.toList());
+            }
+            for (Path file : files) {
+                articles.add(Files.readAllBytes(file));
+            }
+        } else {
+            articles.add(Files.readAllBytes(
+                    Paths.get(PMCSectionFilterBenchmark.class.getResource("/PMC0000001.nxml").toURI())));
+        }
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        System.out.println(articles.size() + " articles, " + rounds + " rounds");
+
+        for (int warmup = 0; warmup < 2; ++warmup) {
+            long full = 0;
+            long filtered = 0;
+            long fullSentences = 0;
+            long filteredSentences = 0;
+            PMCSectionFilter filter = PMCSectionFilter.demographics();
+            for (int round = 0; round < rounds; ++round) {
+                for (byte[] article : articles) {
+                    long start = System.nanoTime();
+                    fullSentences += PMCArticleStreamParser.parse(new ByteArrayInputStream(article))
+                            .getFullText().getFullTextSentences().size();
+                    full += System.nanoTime() - start;
+                    start = System.nanoTime();
+                    filteredSentences += PMCArticleStreamParser.parse(new ByteArrayInputStream(article), filter)
+                            .getFullText().getFullTextSentences().size();
+                    filtered += System.nanoTime() - start;
+                }
+            }
+            System.out.println(String.format("skipped %.1f%% of full text characters, %d of %d sentences kept",
+                    100 * filter.getSkippedFraction(), filteredSentences, fullSentences));
+            System.out.println(String.format("whole article %d us/article, filtered %d us/article, speedup %.2fx",
+                    full / 1000 / rounds / articles.size(), filtered / 1000 / rounds / articles.size(),
+                    (double) full / filtered));
+        }
+    }
+}
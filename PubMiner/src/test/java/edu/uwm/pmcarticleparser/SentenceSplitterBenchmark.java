@@ -0,0 +1,126 @@
+package edu.uwm.pmcarticleparser;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Compares {@link SentenceSplitter} with the SentenceTokenizer of
+ * lib/java_utils.jar it replaces: accuracy on the hand-made gold splits of
+ * sentence_splits.txt, and throughput on the same paragraphs. The tokenizer
+ * is loaded by reflection, so run with lib/java_utils.jar and
+ * lib/sptoolkit.jar on the classpath to include it; without them, only
+ * SentenceSplitter is measured.
+ *
+ * Usage: SentenceSplitterBenchmark [rounds]
+ */
+public class SentenceSplitterBenchmark {
+    private static final String TOKENIZER_CLASS = "generalutils.SentenceTokenizer";
+
+    public static void main(String[] args) throws Exception {
+        int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        List<List<String>> gold = SentenceSplitterTest.goldParagraphs();
+        List<String> paragraphs = new ArrayList<>();
+        for (List<String> sentences : gold) {
+            paragraphs.add(String.join(" ", sentences));
+        }
+
+        Map<String, Function<String, List<String>>> splitters = new LinkedHashMap<>();
+        Function<String, List<String>> tokenizer = sentenceTokenizer();
+        if (tokenizer != null) {
+            splitters.put("SentenceTokenizer", tokenizer);
+        } else {
+            System.out.println(TOKENIZER_CLASS + " not on the classpath: add lib/java_utils.jar and "
+                    + "lib/sptoolkit.jar to compare with it");
+        }
+        splitters.put("SentenceSplitter", SentenceSplitterBenchmark::split);
+
+        int goldSentences = 0;
+        for (List<String> expected : gold) {
+            goldSentences += expected.size();
+        }
+        System.out.println(String.format("%d paragraphs, %d sentences", paragraphs.size(), goldSentences));
+        for (Map.Entry<String, Function<String, List<String>>> splitter : splitters.entrySet()) {
+            int correct = 0;
+            int correctParagraphs = 0;
+            for (int p = 0; p < paragraphs.size(); ++p) {
+                List<String> expected = gold.get(p);
+                List<String> actual = splitter.getValue().apply(paragraphs.get(p));
+                correct += matching(expected, actual);
+                if (actual.equals(expected)) {
+                    ++correctParagraphs;
+                } else {
+                    System.out.println(splitter.getKey() + ": " + actual);
+                }
+            }
+            System.out.println(String.format("%-18s %d of %d sentences right, %d of %d paragraphs right",
+                    splitter.getKey() + ":", correct, goldSentences, correctParagraphs, paragraphs.size()));
+        }
+
+        for (int warmup = 0; warmup < 2; ++warmup) {
+            for (Map.Entry<String, Function<String, List<String>>> splitter : splitters.entrySet()) {
+                long start = System.nanoTime();
+                int count = 0;
+                for (int round = 0; round < rounds; ++round) {
+                    for (String paragraph : paragraphs) {
+                        count += splitter.getValue().apply(paragraph).size();
+                    }
+                }
+                long nanos = System.nanoTime() - start;
+                if (warmup == 1) {
+                    System.out.println(String.format("%-18s %.1f us/paragraph (%d)", splitter.getKey() + ":",
+                            nanos / ((double) rounds * paragraphs.size()) / 1000, count));
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets SentenceTokenizer.getSentences, as PMCArticle called it on each
+     * paragraph, with the sentences trimmed like the gold ones
+     * @return the tokenizer, or null if it is not on the classpath
+     */
+    private static Function<String, List<String>> sentenceTokenizer() {
+        Method getSentences;
+        try {
+            getSentences = Class.forName(TOKENIZER_CLASS).getMethod("getSentences", String.class);
+        } catch (ReflectiveOperationException | LinkageError ex) {
+            return null;
+        }
+        return paragraph -> {
+            try {
+                List<String> sentences = new ArrayList<>();
+                for (String sentence : (String[]) getSentences.invoke(null, paragraph)) {
+                    sentences.add(sentence.trim());
+                }
+                return sentences;
+            } catch (ReflectiveOperationException ex) {
+                throw new IllegalStateException("Caught Exception while splitting with " + TOKENIZER_CLASS, ex);
+            }
+        };
+    }
+
+    private static List<String> split(String paragraph) {
+        char[] text = paragraph.toCharArray();
+        int[] bounds = SentenceSplitter.split(text, 0, text.length);
+        String[] sentences = new String[bounds.length / 2];
+        for (int i = 0; i < sentences.length; ++i) {
+            sentences[i] = SentenceSplitter.sentenceText(text, bounds[2 * i], bounds[2 * i + 1]);
+        }
+        return Arrays.asList(sentences);
+    }
+
+    private static int matching(List<String> expected, List<String> actual) {
+        int count = 0;
+        for (String sentence : actual) {
+            if (expected.contains(sentence)) {
+                ++count;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,78 @@
+package edu.uwm.pmcarticleparser;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SentenceSplitterTest {
+    /**
+     * Reads the gold splits of sentence_splits.txt
+     * @return the sentences of each paragraph
+     */
+    static List<List<String>> goldParagraphs() throws Exception {
+        List<List<String>> paragraphs = new ArrayList<>();
+        List<String> sentences = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                SentenceSplitterTest.class.getResourceAsStream("/sentence_splits.txt"), StandardCharsets.UTF_8))) {
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                if (line.startsWith("#")) {
+                    continue;
+                }
+                if (line.trim().isEmpty()) {
+                    if (!sentences.isEmpty()) {
+                        paragraphs.add(sentences);
+                        sentences = new ArrayList<>();
+                    }
+                } else {
+                    sentences.add(line);
+                }
+            }
+        }
+        if (!sentences.isEmpty()) {
+            paragraphs.add(sentences);
+        }
+        return paragraphs;
+    }
+
+    private static List<String> sentences(String text) {
+        int[] bounds = SentenceSplitter.split(text);
+        List<String> sentences = new ArrayList<>();
+        for (int i = 0; i < bounds.length; i += 2) {
+            sentences.add(SentenceSplitter.sentenceText(text.toCharArray(), bounds[i], bounds[i + 1]));
+        }
+        return sentences;
+    }
+
+    @Test
+    public void split_goldParagraphs() throws Exception {
+        for (List<String> gold : goldParagraphs()) {
+            assertEquals(gold, sentences(String.join(" ", gold)));
+        }
+    }
+
+    @Test
+    public void split_offsetsInRange() {
+        char[] text = "xx  First one.\n Second\tone!  yy".toCharArray();
+        int[] bounds = SentenceSplitter.split(text, 2, text.length - 4);
+
+        assertEquals(4, bounds.length);
+        assertEquals("First one.", new String(text, bounds[0], bounds[1] - bounds[0]));
+        assertEquals("Second\tone!", new String(text, bounds[2], bounds[3] - bounds[2]));
+        assertEquals("Second one!", SentenceSplitter.sentenceText(text, bounds[2], bounds[3]));
+    }
+
+    @Test
+    public void split_emptyAndUnterminated() {
+        assertEquals(0, SentenceSplitter.split("  \n ").length);
+        assertEquals(Arrays.asList("No period at the end"), sentences(" No period at the end "));
+        assertEquals(Arrays.asList("lower case. does not start a sentence."),
+                sentences("lower case. does not start a sentence."));
+    }
+}
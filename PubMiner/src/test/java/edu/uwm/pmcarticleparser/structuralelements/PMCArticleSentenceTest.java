@@ -0,0 +1,128 @@
+package edu.uwm.pmcarticleparser.structuralelements;
+
+import org.junit.Test;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+
+import static org.junit.Assert.*;
+
+public class PMCArticleSentenceTest {
+    private static PMCArticleSentence annotated() {
+        PMCArticleSentence sentence = new PMCArticleSentence("Forty patients and 12 women aged 65 years, 3 men.");
+        sentence.setLemmas(Arrays.asList("forty", "patient", "and", "12", "woman", "age", "65", "year", ",", "3",
+                "man", "."));
+        sentence.setDependencyLabels(Arrays.asList(Optional.of("nummod"), Optional.of("nsubj"), Optional.of("cc"),
+                Optional.of("nummod"), Optional.of("conj:and"), Optional.of("acl"), Optional.of("nummod"),
+                Optional.of("nmod:tmod"), Optional.of("punct"), Optional.of("nummod"), Optional.of("appos"),
+                Optional.empty()));
+        return sentence;
+    }
+
+    @Test
+    public void encodedAnnotations_readBack() {
+        PMCArticleSentence sentence = annotated();
+
+        assertEquals(Arrays.asList("forty", "patient", "and", "12", "woman", "age", "65", "year", ",", "3", "man",
+                "."), sentence.getLemmas());
+        assertEquals(Optional.of("conj:and"), sentence.getDependencyLabels().get(4));
+        assertEquals(Optional.empty(), sentence.getDependencyLabels().get(11));
+        assertEquals(Arrays.asList(0, 3, 6, 9), sentence.getNummodIndices());
+        assertArrayEquals(new int[] {0, 3, 6, 9}, sentence.getNummodIndexArray());
+        assertEquals(4, sentence.getNummodCount());
+        assertTrue(sentence.hasAnchorWords());
+        assertEquals(LemmaDictionary.getInstance().id("patient"), sentence.getLemmaIds()[1]);
+    }
+
+    @Test
+    public void anchorWordsAndNummods_ofModel() throws Exception {
+        Properties properties = new Properties();
+        try (InputStream in = DemographicScoringModel.class.getResourceAsStream(
+                "/demographic-scoring-model.properties")) {
+            properties.load(in);
+        }
+        properties.setProperty("anchorWords", "nurse");
+        properties.setProperty("excludedNummods", "12,65");
+        DemographicScoringModel model = DemographicScoringModel.fromProperties(properties);
+        PMCArticleSentence sentence = annotated();
+
+        assertTrue(sentence.hasAnchorWords());
+        assertFalse(sentence.hasAnchorWords(model));
+        assertArrayEquals(new int[] {0, 9}, sentence.getNummodIndexArray(model));
+        assertEquals(2, sentence.getNummodCount(model));
+        assertArrayEquals(new int[] {0, 3, 6, 9}, sentence.getNummodIndexArray(DemographicScoringModel.getDefault()));
+        assertTrue(model.hasExcludedNummodsOf(model));
+        assertFalse(model.hasExcludedNummodsOf(DemographicScoringModel.getDefault()));
+    }
+
+    @Test
+    public void getDemographicScore_sameForCountsAndMap() {
+        PMCArticleSentence sentence = annotated();
+        Map<String, Integer> numCountMap = new HashMap<>();
+        LemmaCounts numCounts = new LemmaCounts();
+        for (int index : sentence.getNummodIndexArray()) {
+            numCountMap.merge(sentence.getLemmas().get(index), 1, Integer::sum);
+            numCounts.increment(sentence.getLemmaIds()[index]);
+        }
+        numCountMap.merge("65", 2, Integer::sum);
+        numCounts.increment(LemmaDictionary.getInstance().id("65"));
+        numCounts.increment(LemmaDictionary.getInstance().id("65"));
+
+        assertEquals(numCountMap, numCounts.toMap());
+        assertEquals(sentence.getDemographicScore(numCountMap), sentence.getDemographicScore(numCounts), 0);
+        assertTrue(sentence.getDemographicScore(numCounts) > 0);
+    }
+
+    @Test
+    public void lemmaCounts_grow() {
+        LemmaCounts counts = new LemmaCounts();
+        for (int id = 0; id < 10000; ++id) {
+            for (int i = 0; i <= id % 3; ++i) {
+                counts.increment(id * 7);
+            }
+        }
+        assertEquals(10000, counts.size());
+        for (int id = 0; id < 10000; ++id) {
+            assertEquals(id % 3 + 1, counts.get(id * 7));
+        }
+        assertEquals(0, counts.get(1));
+        assertEquals(0, new LemmaCounts().get(LemmaDictionary.NULL_ID));
+    }
+
+    @Test
+    public void lemmaDictionary_sharedIds() {
+        LemmaDictionary dictionary = LemmaDictionary.getInstance();
+        List<String> lemmas = Arrays.asList("randomize", "participant", "randomize", null);
+        int[] ids = dictionary.ids(lemmas);
+
+        assertEquals(ids[0], ids[2]);
+        assertTrue(ids[0] != ids[1]);
+        assertEquals(LemmaDictionary.NULL_ID, ids[3]);
+        assertEquals("participant", dictionary.lemma(ids[1]));
+        assertNull(dictionary.lemma(ids[3]));
+        assertEquals(ids[1], dictionary.find(new String("participant")));
+    }
+
+    @Test
+    public void lemmaDictionary_growsWithoutLimit() {
+        LemmaDictionary dictionary = new LemmaDictionary();
+        List<String> lemmas = new ArrayList<>();
+        for (int i = 0; i < 100000; ++i) {
+            lemmas.add(Integer.toString(i));
+        }
+        int[] ids = dictionary.ids(lemmas);
+
+        assertEquals(100000, dictionary.size());
+        for (int i = 0; i < ids.length; ++i) {
+            assertEquals(i, ids[i]);
+            assertEquals(lemmas.get(i), dictionary.lemma(ids[i]));
+        }
+        assertEquals(99999, dictionary.find("99999"));
+    }
+}
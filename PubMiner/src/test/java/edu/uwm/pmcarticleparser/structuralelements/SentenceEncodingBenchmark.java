@@ -0,0 +1,207 @@
+package edu.uwm.pmcarticleparser.structuralelements;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+
+/**
+ * Measures the heap taken by the annotations of a sentence, and the speed of
+ * the demographic score, with the annotations held as lists of strings and
+ * boxed integers, as PMCArticleSentence held them before, and as dictionary
+ * ids and codes.
+ *
+ * The sentences are synthetic: tokens drawn from a vocabulary with a Zipf
+ * distribution, with a fresh string per token like CoreNLP's lemmas, and a
+ * few numeric modifiers in front of demographic keywords.
+ *
+ * Usage: SentenceEncodingBenchmark [sentences] [tokens per sentence]
+ */
+public class SentenceEncodingBenchmark {
+    private static final List<String> LABELS = Arrays.asList("nsubj", "dobj", "det", "amod", "case", "nmod",
+            "nmod:of", "nmod:in", "punct", "compound", "conj:and", "cc", "advmod", "aux", "root");
+    private static final Map<String, Integer> KEYWORD_BASE = new HashMap<>();
+    private static final Map<String, Integer> KEYWORD_MAX = new HashMap<>();
+    static {
+        for (String keyword : Arrays.asList("patient", "male", "female", "subject", "individual", "woman", "man",
+                "women", "men", "people")) {
+            KEYWORD_BASE.put(keyword, 5);
+            KEYWORD_MAX.put(keyword, 1);
+        }
+        KEYWORD_BASE.put("year", 5);
+        KEYWORD_MAX.put("year", 2);
+    }
+    private static final List<String> KEYWORDS = Arrays.asList("patient", "year", "woman", "man", "subject",
+            "visit", "week");
+
+    /**
+     * The annotations as PMCArticleSentence held them before they were encoded
+     */
+    private static final class ListAnnotations {
+        final List<String> lemmas;
+        final List<Optional<String>> labels;
+        final List<Integer> nummodIndices;
+
+        ListAnnotations(List<String> lemmas, List<Optional<String>> labels, List<Integer> nummodIndices) {
+            this.lemmas = lemmas;
+            this.labels = labels;
+            this.nummodIndices = nummodIndices;
+        }
+    }
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        int length = args.length > 1 ? Integer.parseInt(args[1]) : 25;
+
+        Random random = new Random(7);
+        List<String[]> lemmaArrays = new ArrayList<>(count);
+        List<String[]> labelArrays = new ArrayList<>(count);
+        List<int[]> nummodArrays = new ArrayList<>(count);
+        for (int i = 0; i < count; ++i) {
+            String[] lemmas = new String[length];
+            String[] labels = new String[length];
+            for (int t = 0; t < length; ++t) {
+                // Zipf-like: word 1 is the most frequent, word 20000 the rarest.
+                lemmas[t] = "w" + (int) Math.exp(random.nextDouble() * Math.log(20000));
+                labels[t] = random.nextInt(20) == 0 ? null : LABELS.get(random.nextInt(LABELS.size()));
+            }
+            int modifiers = 1 + random.nextInt(3);
+            int[] nummods = new int[modifiers];
+            for (int m = 0; m < modifiers; ++m) {
+                int index = 3 * m + random.nextInt(3);
+                nummods[m] = index;
+                lemmas[index] = String.valueOf(random.nextInt(100));
+                labels[index] = "nummod";
+                lemmas[index + 1] = KEYWORDS.get(random.nextInt(KEYWORDS.size()));
+            }
+            lemmaArrays.add(lemmas);
+            labelArrays.add(labels);
+            nummodArrays.add(nummods);
+        }
+
+        // Lists, built the way CoreNLP builds them: new strings and Optionals per token.
+        long before = usedMemory();
+        List<ListAnnotations> listForm = new ArrayList<>(count);
+        for (int i = 0; i < count; ++i) {
+            List<String> lemmas = new ArrayList<>(length);
+            List<Optional<String>> labels = new ArrayList<>(length);
+            for (int t = 0; t < length; ++t) {
+                lemmas.add(new String(lemmaArrays.get(i)[t]));
+                String label = labelArrays.get(i)[t];
+                labels.add(label == null ? Optional.empty() : Optional.of(new String(label)));
+            }
+            List<Integer> nummodIndices = new ArrayList<>();
+            for (int index : nummodArrays.get(i)) {
+                nummodIndices.add(index);
+            }
+            listForm.add(new ListAnnotations(lemmas, labels, nummodIndices));
+        }
+        long listBytes = usedMemory() - before;
+
+        // Encoded: set on sentences with empty text, so only the annotations and the sentence fields count.
+        before = usedMemory();
+        List<PMCArticleSentence> encodedForm = new ArrayList<>(count);
+        for (int i = 0; i < count; ++i) {
+            PMCArticleSentence sentence = new PMCArticleSentence("");
+            sentence.setLemmas(Arrays.asList(lemmaArrays.get(i)));
+            List<Optional<String>> labels = new ArrayList<>(length);
+            for (String label : labelArrays.get(i)) {
+                labels.add(Optional.ofNullable(label));
+            }
+            List<Integer> nummodIndices = new ArrayList<>();
+            for (int index : nummodArrays.get(i)) {
+                nummodIndices.add(index);
+            }
+            sentence.setDependencyLabels(labels, nummodIndices);
+            encodedForm.add(sentence);
+        }
+        long encodedBytes = usedMemory() - before;
+        long emptySentenceBytes = emptySentenceBytes(count);
+        System.out.println(String.format("%d sentences of %d tokens, %d lemmas in the dictionary", count, length,
+                LemmaDictionary.getInstance().size()));
+        System.out.println(String.format("lists: %d bytes per sentence; encoded: %d bytes per sentence " +
+                "(%d of them for the sentence object itself)", listBytes / count,
+                (encodedBytes - emptySentenceBytes) / count, emptySentenceBytes / count));
+
+        Map<String, Integer> numCountMap = new HashMap<>();
+        for (ListAnnotations annotations : listForm) {
+            for (int index : annotations.nummodIndices) {
+                numCountMap.merge(annotations.lemmas.get(index), 1, Integer::sum);
+            }
+        }
+        LemmaCounts numCounts = new LemmaCounts();
+        for (PMCArticleSentence sentence : encodedForm) {
+            for (int index : sentence.getNummodIndexArray()) {
+                numCounts.increment(sentence.getLemmaIds()[index]);
+            }
+        }
+        for (int pass = 0; pass < 5; ++pass) {
+            double listTotal = 0;
+            long start = System.nanoTime();
+            for (ListAnnotations annotations : listForm) {
+                listTotal += listScore(annotations, numCountMap);
+            }
+            long listNanos = System.nanoTime() - start;
+
+            double encodedTotal = 0;
+            start = System.nanoTime();
+            for (PMCArticleSentence sentence : encodedForm) {
+                encodedTotal += sentence.getDemographicScore(numCounts);
+            }
+            long encodedNanos = System.nanoTime() - start;
+            System.out.println(String.format("score: lists %.0f, encoded %.0f sentences/s (%s)",
+                    count * 1e9 / listNanos, count * 1e9 / encodedNanos,
+                    listTotal == encodedTotal ? "same scores" : "different scores"));
+        }
+        // Keep both forms reachable until the end of the measure.
+        System.out.println(listForm.size() + encodedForm.size() == 2 * count ? "" : "?");
+    }
+
+    // The demographic score as PMCArticleSentence computed it from lists and a map of boxed counts.
+    private static double listScore(ListAnnotations annotations, Map<String, Integer> numCounts) {
+        double score = 0;
+        Map<String, Integer> keywordCurrentMax = new HashMap<>();
+        for (int index : annotations.nummodIndices) {
+            Integer count = numCounts.get(annotations.lemmas.get(index));
+            double multiplier = 1 + count / 10.0;
+            String baseLemma = annotations.lemmas.get(index + 1);
+            Integer base = KEYWORD_BASE.get(baseLemma);
+            if (base == null) {
+                score++;
+            } else {
+                Integer currentMax = keywordCurrentMax.get(baseLemma);
+                if (currentMax == null) {
+                    keywordCurrentMax.put(baseLemma, 1);
+                    currentMax = 0;
+                } else {
+                    keywordCurrentMax.put(baseLemma, currentMax + 1);
+                }
+                if (currentMax < KEYWORD_MAX.get(baseLemma)) {
+                    score += multiplier * base;
+                }
+            }
+        }
+        return score;
+    }
+
+    private static long emptySentenceBytes(int count) {
+        long before = usedMemory();
+        List<PMCArticleSentence> sentences = new ArrayList<>(count);
+        for (int i = 0; i < count; ++i) {
+            sentences.add(new PMCArticleSentence(""));
+        }
+        long bytes = usedMemory() - before;
+        return sentences.size() == count ? bytes : 0;
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; ++i) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
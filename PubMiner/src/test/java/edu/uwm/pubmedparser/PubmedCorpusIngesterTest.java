@@ -0,0 +1,69 @@
+package edu.uwm.pubmedparser;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.*;
+
+public class PubmedCorpusIngesterTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path corpus() throws Exception {
+        Path sample = Paths.get(PubmedCorpusIngesterTest.class.getResource("/pubmed_sample.xml").toURI());
+        Path directory = folder.newFolder("baseline").toPath();
+        for (int i = 1; i <= 6; ++i) {
+            try (InputStream in = Files.newInputStream(sample);
+                 OutputStream out = new GZIPOutputStream(Files.newOutputStream(
+                         directory.resolve(String.format("pubmed18n%04d.xml.gz", i))))) {
+                byte[] buffer = new byte[4096];
+                for (int n = in.read(buffer); n > 0; n = in.read(buffer)) {
+                    out.write(buffer, 0, n);
+                }
+            }
+        }
+        Files.write(directory.resolve("pubmed18n0007.xml.gz"), "not gzip".getBytes("UTF-8"));
+        Files.write(directory.resolve("README.txt"), "ignored".getBytes("UTF-8"));
+        return directory;
+    }
+
+    @Test
+    public void ingest_resultsInFileOrder() throws Exception {
+        Path directory = corpus();
+        PubmedCorpusIngester ingester = new PubmedCorpusIngester(4);
+
+        List<String> results = ingester.ingest(directory, (file, articles) -> file.getFileName() + ":"
+                + articles.map(PubmedArticle::getPmid).collect(Collectors.joining(",")));
+
+        assertEquals(7, results.size());
+        for (int i = 0; i < 6; ++i) {
+            assertEquals(String.format("pubmed18n%04d.xml.gz:10000001,10000002,10000003", i + 1), results.get(i));
+        }
+        assertNull(results.get(6));
+    }
+
+    @Test
+    public void ingest_reports() throws Exception {
+        Path directory = corpus();
+        PubmedCorpusIngester ingester = new PubmedCorpusIngester(2);
+
+        ingester.ingest(directory, (file, articles) -> articles.count());
+
+        List<PubmedFileReport> reports = ingester.getReports();
+        assertEquals(7, reports.size());
+        assertEquals(PubmedFileReport.Status.DONE, reports.get(0).getStatus());
+        assertEquals(3, reports.get(0).getArticleCount());
+        assertEquals(PubmedFileReport.Status.FAILED, reports.get(6).getStatus());
+        assertNotNull(reports.get(6).getError());
+    }
+}
@@ -0,0 +1,47 @@
+package edu.uwm.pubmedparser;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class PubmedParserTest {
+    private static String sampleFile() throws Exception {
+        return PubmedParserTest.class.getResource("/pubmed_sample.xml").toURI().getPath();
+    }
+
+    @Test
+    public void streamArticlesFromXml_sameFieldsAsDom() throws Exception {
+        PubmedParser parser = new PubmedParser();
+        List<PubmedArticle> expected = parser.getArticlesFromXml(sampleFile());
+        List<PubmedArticle> actual;
+        try (Stream<PubmedArticle> articles = parser.streamArticlesFromXml(sampleFile())) {
+            actual = articles.collect(Collectors.toList());
+        }
+
+        assertEquals(3, expected.size());
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); ++i) {
+            assertEquals(expected.get(i).getPmid(), actual.get(i).getPmid());
+            assertEquals(expected.get(i).getTitle(), actual.get(i).getTitle());
+            assertEquals(expected.get(i).getAbstractText(), actual.get(i).getAbstractText());
+            assertEquals(expected.get(i).getYear(), actual.get(i).getYear());
+            assertEquals(expected.get(i).getMonth(), actual.get(i).getMonth());
+            assertEquals(expected.get(i).getDay(), actual.get(i).getDay());
+        }
+        assertEquals("10000001", actual.get(0).getPmid());
+        assertEquals("Dec", actual.get(0).getMonth());
+        assertEquals("0000", actual.get(1).getYear());
+    }
+
+    @Test
+    public void streamArticlesFromXml_earlyTermination() throws Exception {
+        try (Stream<PubmedArticle> articles = new PubmedParser().streamArticlesFromXml(sampleFile())) {
+            PubmedArticle article = articles.filter(a -> a.getAbstractText().isEmpty()).findFirst().get();
+            assertEquals("10000002", article.getPmid());
+        }
+    }
+}